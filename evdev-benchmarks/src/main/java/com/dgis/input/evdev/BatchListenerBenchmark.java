@@ -0,0 +1,126 @@
+/**
+ * This file is part of evdev-java - Java implementation.
+ *
+ * evdev-java - Java implementation is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * evdev-java - Java implementation is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with evdev-java - Java implementation.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.dgis.input.evdev;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost per event of dispatching a read of 64 events to per-event RawInputListeners, or to BatchListeners called once
+ * per read. Listeners are of four different classes, as in an application mixing a recorder, a counter and filters,
+ * so that per-event calls do not get inlined.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BatchListenerBenchmark {
+
+    private static final int READ_SIZE = EventDevice.DEFAULT_BATCH_CAPACITY;
+
+    @Param({"1", "8", "64"})
+    public int listeners;
+
+    @Param({"event", "batch"})
+    public String listenerType;
+
+    private final SyntheticEvents events = new SyntheticEvents();
+
+    private final InputEventView view = new InputEventView();
+
+    private EventDevice device;
+
+    private int next;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        device = new EventDevice("benchmark", SyntheticEvents.capabilities());
+        for (int i = 0; i < listeners; i++) {
+            if (listenerType.equals("event")) {
+                device.addListener(eventListener(i, blackhole));
+            } else {
+                device.addBatchListener(batchListener(i, blackhole));
+            }
+        }
+    }
+
+    private static RawInputListener eventListener(int kind, Blackhole blackhole) {
+        switch (kind % 4) {
+            case 0:
+                return (deviceId, timestampNanos, type, code, value) -> blackhole.consume(value);
+            case 1:
+                return (deviceId, timestampNanos, type, code, value) -> blackhole.consume(code);
+            case 2:
+                return (deviceId, timestampNanos, type, code, value) -> blackhole.consume(type);
+            default:
+                return (deviceId, timestampNanos, type, code, value) -> blackhole.consume(timestampNanos);
+        }
+    }
+
+    private static BatchListener batchListener(int kind, Blackhole blackhole) {
+        switch (kind % 4) {
+            case 0:
+                return batch -> {
+                    for (int i = 0; i < batch.size(); i++) blackhole.consume(batch.getValue(i));
+                };
+            case 1:
+                return batch -> {
+                    for (int i = 0; i < batch.size(); i++) blackhole.consume(batch.getCode(i));
+                };
+            case 2:
+                return batch -> {
+                    for (int i = 0; i < batch.size(); i++) blackhole.consume(batch.getType(i));
+                };
+            default:
+                return batch -> {
+                    for (int i = 0; i < batch.size(); i++) blackhole.consume(batch.getTimestampNanos(i));
+                };
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        device.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(READ_SIZE)
+    public void distributeRead() {
+        for (int n = 0; n < READ_SIZE; n++) {
+            int i = next++ & SyntheticEvents.MASK;
+            device.distributeEvent(view.set(device.getDeviceId(), events.timestampNanos[i], events.types[i],
+                    events.codes[i], events.values[i]));
+        }
+        device.flushBatch();
+    }
+}
@@ -0,0 +1,113 @@
+/**
+ * This file is part of evdev-java - Java implementation.
+ *
+ * evdev-java - Java implementation is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * evdev-java - Java implementation is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with evdev-java - Java implementation.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.dgis.input.evdev;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of handing one event to every listener of a device, with RawInputListeners, with InputListeners, which get
+ * an InputEvent each, or with FrameListeners, which are called once per SYN_REPORT with the whole frame. With
+ * lanes, the cost seen by the reader is that of queuing the event into a DispatchLane per listener. Masked
+ * listeners are registered with one of a few masks, buttons, motion, wheel, absolute axes or scan codes, in turn, and
+ * only get the events of their mask.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DistributeEventBenchmark {
+
+    private static final EventMask[] MASKS = {
+            EventMask.builder().add(InputEvent.EV_KEY, InputEvent.BTN_LEFT, InputEvent.BTN_RIGHT).build(),
+            EventMask.builder().add(InputEvent.EV_REL, InputEvent.REL_X, InputEvent.REL_Y).build(),
+            EventMask.builder().add(InputEvent.EV_REL, InputEvent.REL_WHEEL).build(),
+            EventMask.builder().type(InputEvent.EV_ABS).build(),
+            EventMask.builder().add(InputEvent.EV_MSC, InputEvent.MSC_SCAN).build()
+    };
+
+    @Param({"1", "8", "64"})
+    public int listeners;
+
+    @Param({"raw", "masked", "input", "frame", "lane"})
+    public String listenerType;
+
+    private final SyntheticEvents events = new SyntheticEvents();
+
+    private final InputEventView view = new InputEventView();
+
+    private EventDevice device;
+
+    private final List<DispatchLane> lanes = new ArrayList<>();
+
+    private int next;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        device = new EventDevice("benchmark", SyntheticEvents.capabilities());
+        for (int i = 0; i < listeners; i++) {
+            if (listenerType.equals("raw")) {
+                device.addListener((int deviceId, long timestampNanos, int type, int code, int value) ->
+                        blackhole.consume(value));
+            } else if (listenerType.equals("masked")) {
+                device.addListener((int deviceId, long timestampNanos, int type, int code, int value) ->
+                        blackhole.consume(value), MASKS[i % MASKS.length]);
+            } else if (listenerType.equals("lane")) {
+                DispatchLane lane = DispatchLane.builder((int deviceId, long timestampNanos, int type, int code,
+                                                          int value) -> blackhole.consume(value)).build();
+                lanes.add(lane);
+                device.addListener(lane);
+            } else if (listenerType.equals("input")) {
+                device.addListener((InputEvent e) -> blackhole.consume(e));
+            } else {
+                device.addFrameListener(frame -> blackhole.consume(frame.size()));
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        device.close();
+        for (DispatchLane lane : lanes) {
+            lane.close();
+        }
+    }
+
+    @Benchmark
+    public void distributeEvent() {
+        int i = next++ & SyntheticEvents.MASK;
+        device.distributeEvent(view.set(device.getDeviceId(), events.timestampNanos[i], events.types[i],
+                events.codes[i], events.values[i]));
+    }
+}
@@ -0,0 +1,139 @@
+/**
+ * This file is part of evdev-java - Java implementation.
+ *
+ * evdev-java - Java implementation is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * evdev-java - Java implementation is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with evdev-java - Java implementation.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.dgis.input.evdev;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Events per second through an EventRing fed with reads of 64 synthetic events.
+ * <p/>
+ * publishAndConsume publishes a read and has every consumer read it, all on one thread: the cost of the ring itself.
+ * broadcast publishes and reads on separate threads, as with a device and a consumer thread, and reports the events
+ * read by the consumers, all polled from that thread; it needs two free CPUs to mean anything.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Group)
+public class EventRingBenchmark {
+
+    private static final int READ_SIZE = EventDevice.DEFAULT_BATCH_CAPACITY;
+
+    @Param({"1", "3"})
+    public int consumers;
+
+    private final SyntheticEvents events = new SyntheticEvents();
+
+    private EventRing ring;
+
+    private EventRing.Consumer[] readers;
+
+    private EventBatch[] reads;
+
+    private RawInputListener listener;
+
+    private int next;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        listener = (deviceId, timestampNanos, type, code, value) -> blackhole.consume(value);
+        ring = new EventRing();
+        readers = new EventRing.Consumer[consumers];
+        for (int i = 0; i < consumers; i++) {
+            readers[i] = ring.addConsumer(EventRing.WaitStrategy.BUSY_SPIN);
+        }
+        reads = new EventBatch[SyntheticEvents.SIZE / READ_SIZE];
+        for (int r = 0; r < reads.length; r++) {
+            reads[r] = new EventBatch(1);
+            for (int i = r * READ_SIZE; i < (r + 1) * READ_SIZE; i++) {
+                reads[r].add(events.timestampNanos[i], events.types[i], events.codes[i], events.values[i]);
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        ring.close();
+    }
+
+    /**
+     * Events read by the consumer of the broadcast benchmark.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Delivered {
+        public long events;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            events = 0;
+        }
+    }
+
+    @Benchmark
+    @Group("publishAndConsume")
+    @OperationsPerInvocation(READ_SIZE)
+    public void publishAndConsume() {
+        ring.events(reads[next++ % reads.length]);
+        for (EventRing.Consumer reader : readers) {
+            reader.poll(listener);
+        }
+    }
+
+    /**
+     * Publishes a read when it fits, without waiting for the consumer, so that the iteration can end while the
+     * consumer is stopped.
+     */
+    @Benchmark
+    @Group("broadcast")
+    @GroupThreads(1)
+    public void publish() {
+        if (ring.getRemainingCapacity() >= READ_SIZE) {
+            ring.events(reads[next++ % reads.length]);
+        }
+    }
+
+    @Benchmark
+    @Group("broadcast")
+    @GroupThreads(1)
+    public void consume(Delivered delivered) {
+        for (EventRing.Consumer reader : readers) {
+            delivered.events += reader.poll(listener);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/**
+ * This file is part of evdev-java - Java implementation.
+ *
+ * evdev-java - Java implementation is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * evdev-java - Java implementation is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with evdev-java - Java implementation.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.dgis.input.evdev;
+
+import com.dgis.input.evdev.devices.EvdevJoystickFilter;
+import com.dgis.input.evdev.devices.EvdevMouseFilter;
+import com.dgis.input.evdev.devices.IMouseListener.MouseButton;
+import com.dgis.input.evdev.devices.IMouseListener.WheelDirection;
+import com.dgis.input.evdev.devices.IMoveMouseListener;
+import com.dgis.input.evdev.devices.JoystickListener;
+import com.dgis.input.evdev.devices.JoystickState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one event going through the joystick and mouse filters, down to their listeners. The events are built
+ * beforehand, so only the filters themselves are measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FilterBenchmark {
+
+    private final SyntheticEvents events = new SyntheticEvents();
+
+    private EventDevice device;
+
+    private EvdevJoystickFilter joystickFilter;
+
+    private EvdevMouseFilter mouseFilter;
+
+    private int next;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        device = new EventDevice("benchmark", SyntheticEvents.capabilities());
+        joystickFilter = new EvdevJoystickFilter(device);
+        joystickFilter.addListener(new JoystickListener() {
+            @Override
+            public void joystickMoved(boolean[] axesChanged, JoystickState state, String source) {
+                blackhole.consume(state);
+            }
+
+            @Override
+            public void buttonChanged(boolean[] buttonsChanged, JoystickState state, String source) {
+                blackhole.consume(state);
+            }
+        });
+        mouseFilter = new EvdevMouseFilter(device, new Rectangle(0, 0, 1920, 1080), new Point(960, 540));
+        mouseFilter.addMouseListener(new IMoveMouseListener() {
+            @Override
+            public void mouseMoved(int x, int y) {
+                blackhole.consume(x);
+            }
+
+            @Override
+            public void mouseDragged(int x, int y) {
+                blackhole.consume(x);
+            }
+
+            @Override
+            public void mousePressed(MouseButton btn, int x, int y) {
+                blackhole.consume(btn);
+            }
+
+            @Override
+            public void mouseReleased(MouseButton btn, int x, int y) {
+                blackhole.consume(btn);
+            }
+
+            @Override
+            public void mouseWheel(WheelDirection dir, int velocity, int x, int y) {
+                blackhole.consume(dir);
+            }
+        });
+    }
+
+    @TearDown
+    public void tearDown() {
+        device.close();
+    }
+
+    @Benchmark
+    public void joystickFilter() {
+        joystickFilter.event(events.inputEvents[next++ & SyntheticEvents.MASK]);
+    }
+
+    @Benchmark
+    public void mouseFilter() {
+        mouseFilter.event(events.inputEvents[next++ & SyntheticEvents.MASK]);
+    }
+}
@@ -0,0 +1,80 @@
+/**
+ * This file is part of evdev-java - Java implementation.
+ *
+ * evdev-java - Java implementation is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * evdev-java - Java implementation is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with evdev-java - Java implementation.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.dgis.input.evdev;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of decoding one event with an InputEventAbi, from a heap and from a direct buffer. Compare with
+ * InputEventParseBenchmark for the legacy parser.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class InputEventAbiBenchmark {
+
+    @Param({"X86_64", "ARM32", "TIME64_32"})
+    public InputEventAbi abi;
+
+    @Param({"heap", "direct"})
+    public String buffer;
+
+    private final InputEventView view = new InputEventView();
+
+    private ByteBuffer structs;
+    private int offset;
+
+    @Setup
+    public void setUp() {
+        ByteBuffer heap = new SyntheticEvents().structs(abi);
+        if (buffer.equals("direct")) {
+            structs = ByteBuffer.allocateDirect(heap.capacity()).order(heap.order());
+            structs.put(heap);
+        } else {
+            structs = heap;
+        }
+    }
+
+    @Benchmark
+    public InputEventView decode() {
+        if (offset == structs.capacity()) offset = 0;
+        InputEventView event = abi.decode(structs, offset, 0, view);
+        offset += abi.getStructSize();
+        return event;
+    }
+
+    @Benchmark
+    public InputEvent decodeToInputEvent() {
+        return decode().toInputEvent("benchmark");
+    }
+}
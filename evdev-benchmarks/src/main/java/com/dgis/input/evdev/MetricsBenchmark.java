@@ -0,0 +1,92 @@
+/**
+ * This file is part of evdev-java - Java implementation.
+ *
+ * evdev-java - Java implementation is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * evdev-java - Java implementation is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with evdev-java - Java implementation.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.dgis.input.evdev;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost per event of the read path, decoding reads of 64 synthetic input_event structs and dispatching them to four
+ * listeners, with metrics disabled or enabled. The difference between the two is the cost of the metrics.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MetricsBenchmark {
+
+    private static final int READ_SIZE = EventDevice.DEFAULT_BATCH_CAPACITY;
+
+    @Param({"disabled", "enabled"})
+    public String metrics;
+
+    private EventDevice device;
+
+    /**
+     * The synthetic stream cut into reads.
+     */
+    private ByteBuffer[] reads;
+
+    private int next;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        device = new EventDevice("benchmark", SyntheticEvents.capabilities());
+        device.addListener((deviceId, timestampNanos, type, code, value) -> blackhole.consume(value));
+        device.addListener((deviceId, timestampNanos, type, code, value) -> blackhole.consume(code));
+        device.addListener((deviceId, timestampNanos, type, code, value) -> blackhole.consume(type));
+        device.addFrameListener(blackhole::consume);
+        if (metrics.equals("enabled")) device.enableMetrics();
+        InputEventAbi abi = InputEventAbi.host();
+        ByteBuffer structs = new SyntheticEvents().structs(abi);
+        reads = new ByteBuffer[SyntheticEvents.SIZE / READ_SIZE];
+        for (int i = 0; i < reads.length; i++) {
+            structs.limit((i + 1) * READ_SIZE * abi.getStructSize()).position(i * READ_SIZE * abi.getStructSize());
+            reads[i] = structs.slice();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        device.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(READ_SIZE)
+    public int read() {
+        ByteBuffer read = reads[next++ % reads.length];
+        read.clear();
+        return device.distributeRead(read);
+    }
+}
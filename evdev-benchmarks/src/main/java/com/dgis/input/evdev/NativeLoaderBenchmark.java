@@ -0,0 +1,108 @@
+/**
+ * This file is part of evdev-java - Java implementation.
+ *
+ * evdev-java - Java implementation is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * evdev-java - Java implementation is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with evdev-java - Java implementation.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.dgis.input.evdev;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to open the first device in a fresh JVM, native library loading included, and time to open and close N
+ * devices once it is loaded. Devices are read from named pipes, so no /dev/input access is needed.
+ */
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class NativeLoaderBenchmark {
+
+    @Param({"1", "16", "100"})
+    public int devices;
+
+    private final DeviceInfo info = DeviceInfo.builder("Benchmark Pipe")
+            .capabilities(DeviceCapabilities.builder().add(InputEvent.EV_KEY, InputEvent.BTN_LEFT).build())
+            .build();
+
+    private File directory;
+    private File[] pipes;
+    private RandomAccessFile[] writers;
+
+    @Setup
+    public void setUp() throws IOException, InterruptedException {
+        directory = Files.createTempDirectory("evdev-bench").toFile();
+        pipes = new File[devices];
+        writers = new RandomAccessFile[devices];
+        for (int i = 0; i < devices; i++) {
+            pipes[i] = new File(directory, "event" + i);
+            Process mkfifo = new ProcessBuilder("mkfifo", pipes[i].getAbsolutePath()).start();
+            if (mkfifo.waitFor() != 0) {
+                throw new IOException("mkfifo failed for " + pipes[i]);
+            }
+            /* Opened read-write, so that neither end blocks waiting for the other */
+            writers[i] = new RandomAccessFile(pipes[i], "rw");
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        for (int i = 0; i < devices; i++) {
+            writers[i].close();
+            Files.delete(pipes[i].toPath());
+        }
+        Files.delete(directory.toPath());
+    }
+
+    /**
+     * One invocation per fork: the first device of the JVM pays for loading the native library.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    @Fork(10)
+    public void firstDevice() throws IOException {
+        new EventDevice(new NamedPipeSource(pipes[0], info)).close();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @Warmup(iterations = 3, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    @Fork(1)
+    public void openDevices() throws IOException {
+        EventDevice[] opened = new EventDevice[devices];
+        for (int i = 0; i < devices; i++) {
+            opened[i] = new EventDevice(new NamedPipeSource(pipes[i], info));
+        }
+        for (EventDevice device : opened) {
+            device.close();
+        }
+    }
+}
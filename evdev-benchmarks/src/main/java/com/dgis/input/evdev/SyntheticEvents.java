@@ -0,0 +1,105 @@
+/**
+ * This file is part of evdev-java - Java implementation.
+ *
+ * evdev-java - Java implementation is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * evdev-java - Java implementation is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with evdev-java - Java implementation.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.dgis.input.evdev;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A repeating stream of mouse and gamepad frames, generated in memory so that benchmarks need no hardware. Events are
+ * kept as parallel arrays, and as input_event structs in any layout.
+ */
+final class SyntheticEvents {
+
+    /**
+     * Number of events in the stream, a power of two so that benchmarks can wrap around with a mask.
+     */
+    static final int SIZE = 1024;
+    static final int MASK = SIZE - 1;
+
+    final int[] types = new int[SIZE];
+    final int[] codes = new int[SIZE];
+    final int[] values = new int[SIZE];
+    final long[] timestampNanos = new long[SIZE];
+
+    /**
+     * Every event of the stream as an InputEvent.
+     */
+    final InputEvent[] inputEvents = new InputEvent[SIZE];
+
+    SyntheticEvents() {
+        int i = 0;
+        int frame = 0;
+        while (i < SIZE) {
+            if (frame % 16 == 0 && i + 2 <= SIZE) {
+                i = add(i, frame, InputEvent.EV_KEY, InputEvent.BTN_LEFT, frame % 32 == 0 ? 1 : 0);
+            } else if (frame % 16 == 8 && i + 2 <= SIZE) {
+                i = add(i, frame, InputEvent.EV_ABS, InputEvent.ABS_X, frame % 256);
+            }
+            if (i + 3 > SIZE) {
+                i = add(i, frame, InputEvent.EV_SYN, InputEvent.SYN_REPORT, 0);
+                continue;
+            }
+            i = add(i, frame, InputEvent.EV_REL, InputEvent.REL_X, frame % 7 - 3);
+            i = add(i, frame, InputEvent.EV_REL, InputEvent.REL_Y, frame % 5 - 2);
+            i = add(i, frame, InputEvent.EV_SYN, InputEvent.SYN_REPORT, 0);
+            frame++;
+        }
+        for (int j = 0; j < SIZE; j++) {
+            inputEvents[j] = InputEvent.of(timestampNanos[j], types[j], codes[j], values[j], "synthetic");
+        }
+    }
+
+    private int add(int i, int frame, int type, int code, int value) {
+        types[i] = type;
+        codes[i] = code;
+        values[i] = value;
+        /* one frame every 8ms, the rate of a 125Hz mouse */
+        timestampNanos[i] = 1000000000L + frame * 8000000L;
+        return i + 1;
+    }
+
+    /**
+     * @return the stream as input_event structs, using the 16 byte arm layout if arm is true and the 24 byte amd64
+     * layout otherwise.
+     */
+    ByteBuffer structs(boolean arm) {
+        return structs(arm ? InputEventAbi.ARM32 : InputEventAbi.X86_64);
+    }
+
+    /**
+     * @return the stream as input_event structs in the layout of abi.
+     */
+    ByteBuffer structs(InputEventAbi abi) {
+        ByteBuffer buffer = ByteBuffer.allocate(abi.getStructSize() * SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < SIZE; i++) {
+            abi.encode(buffer, i * abi.getStructSize(), timestampNanos[i], types[i], codes[i], values[i]);
+        }
+        return buffer;
+    }
+
+    /**
+     * @return capabilities matching the stream.
+     */
+    static DeviceCapabilities capabilities() {
+        return DeviceCapabilities.builder()
+                .add(InputEvent.EV_KEY, InputEvent.BTN_LEFT, InputEvent.BTN_RIGHT, InputEvent.BTN_MIDDLE)
+                .add(InputEvent.EV_REL, InputEvent.REL_X, InputEvent.REL_Y, InputEvent.REL_WHEEL)
+                .add(InputEvent.EV_ABS, InputEvent.ABS_X, InputEvent.ABS_Y)
+                .build();
+    }
+}
@@ -16,8 +16,20 @@
  */
 package com.dgis.input.evdev;
 
+import java.nio.ByteBuffer;
+
 public class NativeEventDevice {
 
+    /* errno values, returned negated by the fd based calls below */
+    static final int EINTR = 4;
+    static final int EAGAIN = 11;
+    static final int ENODEV = 19;
+
+    /* poll() result bits */
+    static final int POLL_READABLE = 1;
+    static final int POLL_WAKEUP = 2;
+    static final int POLL_HANGUP = 4;
+
     native boolean ioctlGetID(String device, short[] resp);
 
     native int ioctlGetEvdevVersion(String device);
@@ -30,4 +42,120 @@ public class NativeEventDevice {
 
     native int ioctlEVIOCGRAB(int fd, int flags);
 
+    /*
+     * Same ioctls on an already open fd, saving an open/close pair per call.
+     */
+
+    native boolean ioctlGetID(int fd, short[] resp);
+
+    native int ioctlGetEvdevVersion(int fd);
+
+    native boolean ioctlGetDeviceName(int fd, byte[] resp);
+
+    native boolean ioctlEVIOCGBIT(int fd, long[] resp, int start, int stop);
+
+    native boolean ioctlEVIOCGABS(int fd, int[] resp, int axis);
+
+    /**
+     * Replace the value, minimum, maximum, fuzz, flat and resolution of an axis, in that order in absinfo. Returns
+     * 0, or -errno.
+     */
+    native int ioctlEVIOCSABS(int fd, int axis, int[] absinfo);
+
+    /**
+     * Set the mask of the codes of a type this client receives, as a bitmap. The mask of type 0 holds event types.
+     * Returns 0, or -errno, EINVAL meaning the kernel predates EVIOCSMASK.
+     */
+    native int ioctlEVIOCSMASK(int fd, int type, long[] codes);
+
+    /** Read back the mask set by ioctlEVIOCSMASK(). Returns 0, or -errno. */
+    native int ioctlEVIOCGMASK(int fd, int type, long[] codes);
+
+    /*
+     * Layout of the array filled by probe(). Strings are NUL terminated, bitmaps are arrays of native longs and
+     * absinfo holds value, minimum, maximum, fuzz, flat and resolution for each axis.
+     */
+    static final int PROBE_STRING_SIZE = 256;
+    static final int PROBE_TYPE_COUNT = 0x20;
+    static final int PROBE_BITMAP_SIZE = 0x300 / 8;
+    static final int PROBE_AXIS_COUNT = 0x40;
+    static final int PROBE_ABSINFO_SIZE = 6 * 4;
+    static final int PROBE_ID_OFFSET = 0;
+    static final int PROBE_VERSION_OFFSET = 8;
+    static final int PROBE_NAME_OFFSET = 16;
+    static final int PROBE_PHYS_OFFSET = PROBE_NAME_OFFSET + PROBE_STRING_SIZE;
+    static final int PROBE_UNIQ_OFFSET = PROBE_PHYS_OFFSET + PROBE_STRING_SIZE;
+    /** EVIOCGBIT(type) bitmaps, the one of type 0 being the bitmap of supported types. */
+    static final int PROBE_BITMAPS_OFFSET = PROBE_UNIQ_OFFSET + PROBE_STRING_SIZE;
+    static final int PROBE_ABSINFO_OFFSET = PROBE_BITMAPS_OFFSET + PROBE_TYPE_COUNT * PROBE_BITMAP_SIZE;
+    static final int PROBE_SIZE = PROBE_ABSINFO_OFFSET + PROBE_AXIS_COUNT * PROBE_ABSINFO_SIZE;
+    /** id, version, name, phys and uniq, the part of a probe filled by identify(). */
+    static final int PROBE_IDENTITY_SIZE = PROBE_BITMAPS_OFFSET;
+
+    /**
+     * Read id, version, name, phys, uniq, every capability bitmap and the absinfo of every supported axis of an open
+     * device in a single call, into an array of at least PROBE_SIZE bytes. Returns false if fd is not an evdev device.
+     */
+    native boolean probe(int fd, byte[] out);
+
+    /**
+     * Read only id, version, name, phys and uniq of an open device, into an array of at least PROBE_IDENTITY_SIZE
+     * bytes laid out as for probe(). Five ioctls instead of one per capability bitmap and axis. Returns false if fd
+     * is not an evdev device.
+     */
+    native boolean identify(int fd, byte[] out);
+
+    /*
+     * Layout of the array filled by readState(): key, LED and switch bitmaps as in probe(), the value of every axis,
+     * then the value of every MT code in every slot, slots numbered from 0.
+     */
+    static final int STATE_MT_FIRST_CODE = 0x30;
+    static final int STATE_MT_CODE_COUNT = PROBE_AXIS_COUNT - STATE_MT_FIRST_CODE;
+    static final int STATE_MT_SLOT_COUNT = 64;
+    static final int STATE_KEY_OFFSET = 0;
+    static final int STATE_LED_OFFSET = STATE_KEY_OFFSET + PROBE_BITMAP_SIZE;
+    static final int STATE_SW_OFFSET = STATE_LED_OFFSET + PROBE_BITMAP_SIZE;
+    static final int STATE_ABS_OFFSET = STATE_SW_OFFSET + PROBE_BITMAP_SIZE;
+    static final int STATE_MT_OFFSET = STATE_ABS_OFFSET + PROBE_AXIS_COUNT * 4;
+    static final int STATE_SIZE = STATE_MT_OFFSET + STATE_MT_CODE_COUNT * STATE_MT_SLOT_COUNT * 4;
+
+    /**
+     * Read the current key, LED and switch states, axis values and MT slot values of an open device in a single
+     * call, with EVIOCGKEY, EVIOCGLED, EVIOCGSW, EVIOCGABS and EVIOCGMTSLOTS, into an array of at least STATE_SIZE
+     * bytes. Returns false if fd is not an evdev device.
+     */
+    native boolean readState(int fd, byte[] out);
+
+    /*
+     * Plain file descriptor calls. They return -errno on failure.
+     */
+
+    native int open(String device, boolean nonBlocking);
+
+    native int close(int fd);
+
+    /** Read at most length bytes into the direct buffer, starting at position. Returns 0 on end of file. */
+    native int read(int fd, ByteBuffer buffer, int position, int length);
+
+    /**
+     * Wait until fd or wakeFd is readable, or fd hung up. A negative fd is ignored. Returns a combination of the
+     * POLL_* bits.
+     */
+    native int poll(int fd, int wakeFd, int timeoutMillis);
+
+    native int epollCreate();
+
+    native int epollAdd(int epfd, int fd);
+
+    native int epollRemove(int epfd, int fd);
+
+    /** Wait for readable fds, storing them in readyFds. Returns the number of ready fds. */
+    native int epollWait(int epfd, int[] readyFds, int timeoutMillis);
+
+    native int eventfdCreate();
+
+    native int eventfdSignal(int fd);
+
+    native int eventfdClear(int fd);
+
 }
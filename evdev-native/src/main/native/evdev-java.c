@@ -19,8 +19,13 @@
 #include <linux/input.h>
 
 #include <string.h>
+#include <errno.h>
 #include <fcntl.h>
 #include <unistd.h>
+#include <poll.h>
+#include <sys/ioctl.h>
+#include <sys/epoll.h>
+#include <sys/eventfd.h>
 
 #include <jni.h>
 #include "com_dgis_input_evdev_NativeEventDevice.h"
@@ -30,7 +35,7 @@
  * Method:    ioctlGetID
  * Signature: (Ljava/lang/String;[S)V
  */
-JNIEXPORT jboolean JNICALL Java_com_dgis_input_evdev_NativeEventDevice_ioctlGetID
+JNIEXPORT jboolean JNICALL Java_com_dgis_input_evdev_NativeEventDevice_ioctlGetID__Ljava_lang_String_2_3S
 	(JNIEnv *env, jobject obj, jstring device_name, jshortArray out) {
   
 	/* Get C references to Java objects */
@@ -59,7 +64,7 @@ JNIEXPORT jboolean JNICALL Java_com_dgis_input_evdev_NativeEventDevice_ioctlGetI
  * Method:    ioctlGetEvdevVersion
  * Signature: (Ljava/lang/String;)I
  */
-JNIEXPORT jint JNICALL Java_com_dgis_input_evdev_NativeEventDevice_ioctlGetEvdevVersion
+JNIEXPORT jint JNICALL Java_com_dgis_input_evdev_NativeEventDevice_ioctlGetEvdevVersion__Ljava_lang_String_2
 	(JNIEnv *env, jobject obj, jstring device_name) {
   
 	/* Get C references to Java objects */
@@ -87,7 +92,7 @@ JNIEXPORT jint JNICALL Java_com_dgis_input_evdev_NativeEventDevice_ioctlGetEvdev
  * Method:    ioctlGetDeviceName
  * Signature: ([BI)V
  */
-JNIEXPORT jboolean JNICALL Java_com_dgis_input_evdev_NativeEventDevice_ioctlGetDeviceName
+JNIEXPORT jboolean JNICALL Java_com_dgis_input_evdev_NativeEventDevice_ioctlGetDeviceName__Ljava_lang_String_2_3B
 	(JNIEnv *env, jobject obj, jstring device_name, jbyteArray name) {
 
 	/* Get C references to Java objects */
@@ -116,7 +121,7 @@ JNIEXPORT jboolean JNICALL Java_com_dgis_input_evdev_NativeEventDevice_ioctlGetD
  * Method:    ioctrlEVIOCGBIT
  * Signature: (Ljava/lang/String;[J)Z
  */
-JNIEXPORT jboolean JNICALL Java_com_dgis_input_evdev_NativeEventDevice_ioctlEVIOCGBIT
+JNIEXPORT jboolean JNICALL Java_com_dgis_input_evdev_NativeEventDevice_ioctlEVIOCGBIT__Ljava_lang_String_2_3JII
 	(JNIEnv *env, jobject obj, jstring device_name, jlongArray out, jint start, jint stop) {
 	/* Get C references to Java objects */
 	const char* device_name_str = (*env)->GetStringUTFChars (env, device_name, NULL);
@@ -139,32 +144,44 @@ JNIEXPORT jboolean JNICALL Java_com_dgis_input_evdev_NativeEventDevice_ioctlEVIO
 	return retval;
 }
 
+/*
+ * The kernel always writes a whole struct input_absinfo, which may be longer than the array: go through a local
+ * struct and copy as many fields as the array holds.
+ */
+static jboolean absinfo_get(JNIEnv *env, int fd, jintArray out, jint axis) {
+	struct input_absinfo absinfo;
+	memset(&absinfo, 0, sizeof(absinfo));
+	if (ioctl(fd, EVIOCGABS(axis), &absinfo) < 0) return 0;
+	jint fields[6] = { absinfo.value, absinfo.minimum, absinfo.maximum, absinfo.fuzz, absinfo.flat,
+			absinfo.resolution };
+	jsize length = (*env)->GetArrayLength(env, out);
+	(*env)->SetIntArrayRegion(env, out, 0, length < 6 ? length : 6, fields);
+	return 1;
+}
+
 /*
  * Class:     com_dgis_input_evdev_NativeEventDevice
  * Method:    ioctlEVIOCGABS
  * Signature: (Ljava/lang/String;[II)Z
  */
-JNIEXPORT jboolean JNICALL Java_com_dgis_input_evdev_NativeEventDevice_ioctlEVIOCGABS
+JNIEXPORT jboolean JNICALL Java_com_dgis_input_evdev_NativeEventDevice_ioctlEVIOCGABS__Ljava_lang_String_2_3II
 	(JNIEnv *env, jobject obj, jstring device_name, jintArray out, jint axis) {
 	
 	if((*env)->GetArrayLength(env, out) < 5) return 0;
 	
 	/* Get C references to Java objects */
 	const char* device_name_str = (*env)->GetStringUTFChars (env, device_name, NULL);
-	int* resp = (*env)->GetIntArrayElements (env, out, NULL);
 
 	/* Do the ioctl */
 	int fd, retval;
 	if ((fd = open(device_name_str, O_RDONLY)) < 0) {
 		retval=0;
 	} else {
-		ioctl(fd, EVIOCGABS(axis), resp);
+		retval = absinfo_get(env, fd, out, axis);
 		close(fd);
-		retval=1;
 	}
 
 	/* Release C references to Java objects */
-	(*env)->ReleaseIntArrayElements (env, out, resp, 0);
 	(*env)->ReleaseStringUTFChars (env, device_name, device_name_str);
 
 	return retval;
@@ -181,3 +198,441 @@ JNIEXPORT jint JNICALL Java_com_dgis_input_evdev_NativeEventDevice_ioctlEVIOCGRA
     return ioctl(fd, EVIOCGRAB, flags);
 
 }
+
+/*
+ * Class:     com_dgis_input_evdev_NativeEventDevice
+ * Method:    ioctlGetID
+ * Signature: (I[S)Z
+ */
+JNIEXPORT jboolean JNICALL Java_com_dgis_input_evdev_NativeEventDevice_ioctlGetID__I_3S
+	(JNIEnv *env, jobject obj, jint fd, jshortArray out) {
+
+	short* id = (*env)->GetShortArrayElements (env, out, NULL);
+	int retval = ioctl(fd, EVIOCGID, id) >= 0;
+	(*env)->ReleaseShortArrayElements (env, out, id, 0);
+
+	return retval;
+}
+
+/*
+ * Class:     com_dgis_input_evdev_NativeEventDevice
+ * Method:    ioctlGetEvdevVersion
+ * Signature: (I)I
+ */
+JNIEXPORT jint JNICALL Java_com_dgis_input_evdev_NativeEventDevice_ioctlGetEvdevVersion__I
+	(JNIEnv *env, jobject obj, jint fd) {
+
+	int version;
+	if (ioctl(fd, EVIOCGVERSION, &version)) {
+		version = 0;
+	}
+	return version;
+}
+
+/*
+ * Class:     com_dgis_input_evdev_NativeEventDevice
+ * Method:    ioctlGetDeviceName
+ * Signature: (I[B)Z
+ */
+JNIEXPORT jboolean JNICALL Java_com_dgis_input_evdev_NativeEventDevice_ioctlGetDeviceName__I_3B
+	(JNIEnv *env, jobject obj, jint fd, jbyteArray name) {
+
+	signed char* name_str = (*env)->GetByteArrayElements (env, name, NULL);
+	int retval = ioctl(fd, EVIOCGNAME((*env)->GetArrayLength(env, name)), name_str) >= 0;
+	(*env)->ReleaseByteArrayElements (env, name, name_str, 0);
+
+	return retval;
+}
+
+/*
+ * Class:     com_dgis_input_evdev_NativeEventDevice
+ * Method:    ioctlEVIOCGBIT
+ * Signature: (I[JII)Z
+ */
+JNIEXPORT jboolean JNICALL Java_com_dgis_input_evdev_NativeEventDevice_ioctlEVIOCGBIT__I_3JII
+	(JNIEnv *env, jobject obj, jint fd, jlongArray out, jint start, jint stop) {
+
+	long* resp = (*env)->GetLongArrayElements (env, out, NULL);
+	int retval = ioctl(fd, EVIOCGBIT(start, stop), resp) >= 0;
+	(*env)->ReleaseLongArrayElements (env, out, resp, 0);
+
+	return retval;
+}
+
+/*
+ * Class:     com_dgis_input_evdev_NativeEventDevice
+ * Method:    ioctlEVIOCGABS
+ * Signature: (I[II)Z
+ */
+JNIEXPORT jboolean JNICALL Java_com_dgis_input_evdev_NativeEventDevice_ioctlEVIOCGABS__I_3II
+	(JNIEnv *env, jobject obj, jint fd, jintArray out, jint axis) {
+
+	if((*env)->GetArrayLength(env, out) < 5) return 0;
+
+	return absinfo_get(env, fd, out, axis);
+}
+
+/*
+ * Class:     com_dgis_input_evdev_NativeEventDevice
+ * Method:    ioctlEVIOCSABS
+ * Signature: (II[I)I
+ */
+JNIEXPORT jint JNICALL Java_com_dgis_input_evdev_NativeEventDevice_ioctlEVIOCSABS
+	(JNIEnv *env, jobject obj, jint fd, jint axis, jintArray in) {
+
+	if((*env)->GetArrayLength(env, in) < 6) return -EINVAL;
+
+	jint fields[6];
+	(*env)->GetIntArrayRegion(env, in, 0, 6, fields);
+	struct input_absinfo absinfo;
+	absinfo.value = fields[0];
+	absinfo.minimum = fields[1];
+	absinfo.maximum = fields[2];
+	absinfo.fuzz = fields[3];
+	absinfo.flat = fields[4];
+	absinfo.resolution = fields[5];
+	return ioctl(fd, EVIOCSABS(axis), &absinfo) < 0 ? -errno : 0;
+}
+
+#ifdef EVIOCSMASK
+/* EVIOCSMASK and EVIOCGMASK take the same struct, only the direction differs */
+static jint ioctl_mask(JNIEnv *env, jint fd, unsigned long request, jint type, jlongArray codes, jint mode) {
+	struct input_mask mask;
+	jlong* bits = (*env)->GetLongArrayElements (env, codes, NULL);
+	mask.type = type;
+	mask.codes_size = (*env)->GetArrayLength(env, codes) * sizeof(jlong);
+	mask.codes_ptr = (uint64_t) (uintptr_t) bits;
+	int retval = ioctl(fd, request, &mask) < 0 ? -errno : 0;
+	(*env)->ReleaseLongArrayElements (env, codes, bits, mode);
+	return retval;
+}
+#endif
+
+/*
+ * Class:     com_dgis_input_evdev_NativeEventDevice
+ * Method:    ioctlEVIOCSMASK
+ * Signature: (II[J)I
+ */
+JNIEXPORT jint JNICALL Java_com_dgis_input_evdev_NativeEventDevice_ioctlEVIOCSMASK
+	(JNIEnv *env, jobject obj, jint fd, jint type, jlongArray codes) {
+
+#ifdef EVIOCSMASK
+	return ioctl_mask(env, fd, EVIOCSMASK, type, codes, JNI_ABORT);
+#else
+	return -EINVAL;
+#endif
+}
+
+/*
+ * Class:     com_dgis_input_evdev_NativeEventDevice
+ * Method:    ioctlEVIOCGMASK
+ * Signature: (II[J)I
+ */
+JNIEXPORT jint JNICALL Java_com_dgis_input_evdev_NativeEventDevice_ioctlEVIOCGMASK
+	(JNIEnv *env, jobject obj, jint fd, jint type, jlongArray codes) {
+
+#ifdef EVIOCSMASK
+	return ioctl_mask(env, fd, EVIOCGMASK, type, codes, 0);
+#else
+	return -EINVAL;
+#endif
+}
+
+#define PROBE(name) com_dgis_input_evdev_NativeEventDevice_PROBE_##name
+
+/* Bitmaps are arrays of little endian longs, test bits byte by byte to stay clear of alignment issues */
+static int probe_test_bit(const signed char* bitmap, int bit) {
+	return (((const unsigned char*) bitmap)[bit / 8] >> (bit % 8)) & 1;
+}
+
+/* Fill id, version, name, phys and uniq, the part of a probe identifying a device. Returns 0 if fd is not evdev. */
+static int probe_identity(int fd, signed char* probe) {
+	if (ioctl(fd, EVIOCGID, probe + PROBE(ID_OFFSET)) < 0) return 0;
+	ioctl(fd, EVIOCGVERSION, probe + PROBE(VERSION_OFFSET));
+	ioctl(fd, EVIOCGNAME(PROBE(STRING_SIZE) - 1), probe + PROBE(NAME_OFFSET));
+	ioctl(fd, EVIOCGPHYS(PROBE(STRING_SIZE) - 1), probe + PROBE(PHYS_OFFSET));
+	ioctl(fd, EVIOCGUNIQ(PROBE(STRING_SIZE) - 1), probe + PROBE(UNIQ_OFFSET));
+	return 1;
+}
+
+/*
+ * Class:     com_dgis_input_evdev_NativeEventDevice
+ * Method:    identify
+ * Signature: (I[B)Z
+ */
+JNIEXPORT jboolean JNICALL Java_com_dgis_input_evdev_NativeEventDevice_identify
+	(JNIEnv *env, jobject obj, jint fd, jbyteArray out) {
+
+	if ((*env)->GetArrayLength(env, out) < PROBE(IDENTITY_SIZE)) return 0;
+
+	signed char* probe = (*env)->GetByteArrayElements (env, out, NULL);
+	memset(probe, 0, PROBE(IDENTITY_SIZE));
+
+	int retval = probe_identity(fd, probe);
+
+	(*env)->ReleaseByteArrayElements (env, out, probe, 0);
+
+	return retval;
+}
+
+/*
+ * Class:     com_dgis_input_evdev_NativeEventDevice
+ * Method:    probe
+ * Signature: (I[B)Z
+ */
+JNIEXPORT jboolean JNICALL Java_com_dgis_input_evdev_NativeEventDevice_probe
+	(JNIEnv *env, jobject obj, jint fd, jbyteArray out) {
+
+	if ((*env)->GetArrayLength(env, out) < PROBE(SIZE)) return 0;
+
+	signed char* probe = (*env)->GetByteArrayElements (env, out, NULL);
+	memset(probe, 0, PROBE(SIZE));
+
+	int retval = probe_identity(fd, probe);
+	if (retval) {
+		signed char* bitmaps = probe + PROBE(BITMAPS_OFFSET);
+		ioctl(fd, EVIOCGBIT(0, PROBE(BITMAP_SIZE)), bitmaps);
+		int type, axis;
+		for (type = 1; type < PROBE(TYPE_COUNT); type++) {
+			if (probe_test_bit(bitmaps, type)) {
+				ioctl(fd, EVIOCGBIT(type, PROBE(BITMAP_SIZE)), bitmaps + type * PROBE(BITMAP_SIZE));
+			}
+		}
+		if (probe_test_bit(bitmaps, EV_ABS)) {
+			signed char* abs_bitmap = bitmaps + EV_ABS * PROBE(BITMAP_SIZE);
+			for (axis = 0; axis < PROBE(AXIS_COUNT); axis++) {
+				if (probe_test_bit(abs_bitmap, axis)) {
+					ioctl(fd, EVIOCGABS(axis), probe + PROBE(ABSINFO_OFFSET) + axis * PROBE(ABSINFO_SIZE));
+				}
+			}
+		}
+	}
+
+	(*env)->ReleaseByteArrayElements (env, out, probe, 0);
+
+	return retval;
+}
+
+#define STATE(name) com_dgis_input_evdev_NativeEventDevice_STATE_##name
+
+/*
+ * Class:     com_dgis_input_evdev_NativeEventDevice
+ * Method:    readState
+ * Signature: (I[B)Z
+ */
+JNIEXPORT jboolean JNICALL Java_com_dgis_input_evdev_NativeEventDevice_readState
+	(JNIEnv *env, jobject obj, jint fd, jbyteArray out) {
+
+	if((*env)->GetArrayLength(env, out) < STATE(SIZE)) return 0;
+
+	jbyte* state = (*env)->GetByteArrayElements (env, out, NULL);
+	memset(state, 0, STATE(SIZE));
+
+	if (ioctl(fd, EVIOCGKEY(PROBE(BITMAP_SIZE)), state + STATE(KEY_OFFSET)) < 0) {
+		(*env)->ReleaseByteArrayElements (env, out, state, JNI_ABORT);
+		return 0;
+	}
+	ioctl(fd, EVIOCGLED(PROBE(BITMAP_SIZE)), state + STATE(LED_OFFSET));
+	ioctl(fd, EVIOCGSW(PROBE(BITMAP_SIZE)), state + STATE(SW_OFFSET));
+
+	/* only query the axes the device has */
+	signed char axes[PROBE(BITMAP_SIZE)];
+	memset(axes, 0, sizeof(axes));
+	ioctl(fd, EVIOCGBIT(EV_ABS, sizeof(axes)), axes);
+
+	int axis;
+	struct input_absinfo absinfo;
+	for (axis = 0; axis < PROBE(AXIS_COUNT); axis++) {
+		if (probe_test_bit(axes, axis) && ioctl(fd, EVIOCGABS(axis), &absinfo) >= 0) {
+			memcpy(state + STATE(ABS_OFFSET) + axis * 4, &absinfo.value, 4);
+		}
+	}
+
+#ifdef ABS_MT_SLOT
+	if (probe_test_bit(axes, ABS_MT_SLOT) && ioctl(fd, EVIOCGABS(ABS_MT_SLOT), &absinfo) >= 0) {
+		int32_t request[1 + STATE(MT_SLOT_COUNT)];
+		int slots = absinfo.maximum + 1;
+		if (slots > STATE(MT_SLOT_COUNT)) slots = STATE(MT_SLOT_COUNT);
+		int i;
+		for (i = 0; slots > 0 && i < STATE(MT_CODE_COUNT); i++) {
+			int code = STATE(MT_FIRST_CODE) + i;
+			if (!probe_test_bit(axes, code)) continue;
+			request[0] = code;
+			if (ioctl(fd, EVIOCGMTSLOTS(sizeof(int32_t) * (1 + slots)), request) >= 0) {
+				memcpy(state + STATE(MT_OFFSET) + i * STATE(MT_SLOT_COUNT) * 4, request + 1, slots * 4);
+			}
+		}
+	}
+#endif
+
+	(*env)->ReleaseByteArrayElements (env, out, state, 0);
+	return 1;
+}
+
+/*
+ * Class:     com_dgis_input_evdev_NativeEventDevice
+ * Method:    open
+ * Signature: (Ljava/lang/String;Z)I
+ */
+JNIEXPORT jint JNICALL Java_com_dgis_input_evdev_NativeEventDevice_open
+	(JNIEnv *env, jobject obj, jstring device_name, jboolean non_blocking) {
+
+	const char* device_name_str = (*env)->GetStringUTFChars (env, device_name, NULL);
+	int fd = open(device_name_str, O_RDONLY | O_CLOEXEC | (non_blocking ? O_NONBLOCK : 0));
+	int retval = fd < 0 ? -errno : fd;
+	(*env)->ReleaseStringUTFChars (env, device_name, device_name_str);
+
+	return retval;
+}
+
+/*
+ * Class:     com_dgis_input_evdev_NativeEventDevice
+ * Method:    close
+ * Signature: (I)I
+ */
+JNIEXPORT jint JNICALL Java_com_dgis_input_evdev_NativeEventDevice_close
+	(JNIEnv *env, jobject obj, jint fd) {
+
+	return close(fd) < 0 ? -errno : 0;
+}
+
+/*
+ * Class:     com_dgis_input_evdev_NativeEventDevice
+ * Method:    read
+ * Signature: (ILjava/nio/ByteBuffer;II)I
+ */
+JNIEXPORT jint JNICALL Java_com_dgis_input_evdev_NativeEventDevice_read
+	(JNIEnv *env, jobject obj, jint fd, jobject buffer, jint position, jint length) {
+
+	char* address = (*env)->GetDirectBufferAddress (env, buffer);
+	if (address == NULL) return -EINVAL;
+
+	ssize_t n = read(fd, address + position, length);
+	return n < 0 ? -errno : (jint) n;
+}
+
+/*
+ * Class:     com_dgis_input_evdev_NativeEventDevice
+ * Method:    poll
+ * Signature: (III)I
+ */
+JNIEXPORT jint JNICALL Java_com_dgis_input_evdev_NativeEventDevice_poll
+	(JNIEnv *env, jobject obj, jint fd, jint wake_fd, jint timeout) {
+
+	struct pollfd fds[2];
+	fds[0].fd = fd;
+	fds[0].events = POLLIN;
+	fds[0].revents = 0;
+	fds[1].fd = wake_fd;
+	fds[1].events = POLLIN;
+	fds[1].revents = 0;
+
+	if (poll(fds, 2, timeout) < 0) return -errno;
+
+	int ready = 0;
+	if (fds[0].revents & POLLIN) ready |= com_dgis_input_evdev_NativeEventDevice_POLL_READABLE;
+	if (fds[0].revents & (POLLHUP | POLLERR | POLLNVAL)) ready |= com_dgis_input_evdev_NativeEventDevice_POLL_HANGUP;
+	if (fds[1].revents & POLLIN) ready |= com_dgis_input_evdev_NativeEventDevice_POLL_WAKEUP;
+	return ready;
+}
+
+/*
+ * Class:     com_dgis_input_evdev_NativeEventDevice
+ * Method:    epollCreate
+ * Signature: ()I
+ */
+JNIEXPORT jint JNICALL Java_com_dgis_input_evdev_NativeEventDevice_epollCreate
+	(JNIEnv *env, jobject obj) {
+
+	int epfd = epoll_create1(EPOLL_CLOEXEC);
+	return epfd < 0 ? -errno : epfd;
+}
+
+/*
+ * Class:     com_dgis_input_evdev_NativeEventDevice
+ * Method:    epollAdd
+ * Signature: (II)I
+ */
+JNIEXPORT jint JNICALL Java_com_dgis_input_evdev_NativeEventDevice_epollAdd
+	(JNIEnv *env, jobject obj, jint epfd, jint fd) {
+
+	struct epoll_event event;
+	memset(&event, 0, sizeof(event));
+	event.events = EPOLLIN;
+	event.data.fd = fd;
+	return epoll_ctl(epfd, EPOLL_CTL_ADD, fd, &event) < 0 ? -errno : 0;
+}
+
+/*
+ * Class:     com_dgis_input_evdev_NativeEventDevice
+ * Method:    epollRemove
+ * Signature: (II)I
+ */
+JNIEXPORT jint JNICALL Java_com_dgis_input_evdev_NativeEventDevice_epollRemove
+	(JNIEnv *env, jobject obj, jint epfd, jint fd) {
+
+	struct epoll_event event;
+	memset(&event, 0, sizeof(event));
+	return epoll_ctl(epfd, EPOLL_CTL_DEL, fd, &event) < 0 ? -errno : 0;
+}
+
+#define MAX_EPOLL_EVENTS 64
+
+/*
+ * Class:     com_dgis_input_evdev_NativeEventDevice
+ * Method:    epollWait
+ * Signature: (I[II)I
+ */
+JNIEXPORT jint JNICALL Java_com_dgis_input_evdev_NativeEventDevice_epollWait
+	(JNIEnv *env, jobject obj, jint epfd, jintArray ready_fds, jint timeout) {
+
+	struct epoll_event events[MAX_EPOLL_EVENTS];
+	jint fds[MAX_EPOLL_EVENTS];
+	int max = (*env)->GetArrayLength(env, ready_fds);
+	if (max > MAX_EPOLL_EVENTS) max = MAX_EPOLL_EVENTS;
+
+	int n = epoll_wait(epfd, events, max, timeout);
+	if (n < 0) return -errno;
+
+	int i;
+	for (i = 0; i < n; i++) fds[i] = events[i].data.fd;
+	(*env)->SetIntArrayRegion (env, ready_fds, 0, n, fds);
+
+	return n;
+}
+
+/*
+ * Class:     com_dgis_input_evdev_NativeEventDevice
+ * Method:    eventfdCreate
+ * Signature: ()I
+ */
+JNIEXPORT jint JNICALL Java_com_dgis_input_evdev_NativeEventDevice_eventfdCreate
+	(JNIEnv *env, jobject obj) {
+
+	int fd = eventfd(0, EFD_NONBLOCK | EFD_CLOEXEC);
+	return fd < 0 ? -errno : fd;
+}
+
+/*
+ * Class:     com_dgis_input_evdev_NativeEventDevice
+ * Method:    eventfdSignal
+ * Signature: (I)I
+ */
+JNIEXPORT jint JNICALL Java_com_dgis_input_evdev_NativeEventDevice_eventfdSignal
+	(JNIEnv *env, jobject obj, jint fd) {
+
+	uint64_t one = 1;
+	return write(fd, &one, sizeof(one)) < 0 ? -errno : 0;
+}
+
+/*
+ * Class:     com_dgis_input_evdev_NativeEventDevice
+ * Method:    eventfdClear
+ * Signature: (I)I
+ */
+JNIEXPORT jint JNICALL Java_com_dgis_input_evdev_NativeEventDevice_eventfdClear
+	(JNIEnv *env, jobject obj, jint fd) {
+
+	uint64_t value;
+	return read(fd, &value, sizeof(value)) < 0 ? -errno : 0;
+}
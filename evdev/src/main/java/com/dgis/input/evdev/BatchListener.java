@@ -0,0 +1,52 @@
+/**
+ * This file is part of evdev-java - Java implementation.
+ *
+ * evdev-java - Java implementation is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * evdev-java - Java implementation is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with evdev-java - Java implementation.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.dgis.input.evdev;
+
+/**
+ * Listener receiving every event of a read at once, rather than event by event: one call per read and listener,
+ * instead of one per event and listener. Suits listeners going through many events, such as recorders or counters.
+ * <p/>
+ * Implementations must not keep references to the batch, which is overwritten by the next one, and should return
+ * quickly: they are called on the thread reading the device. Batches hold every event delivered by the device, those
+ * of SYN_DROPPED recovery included, whatever the mask the listener declares.
+ *
+ * @see EventDevice#addBatchListener(BatchListener)
+ */
+public interface BatchListener {
+
+    /**
+     * Called by an EventDevice after every read which delivered events.
+     *
+     * @param batch The events of the read, in order.
+     */
+    void events(EventBatch batch);
+
+    /**
+     * @return a batch listener handing every event to a per-event listener, in order.
+     */
+    static BatchListener adapt(RawInputListener listener) {
+        return batch -> batch.forEach(listener);
+    }
+
+    /**
+     * @return a batch listener handing every event to an InputListener, as an InputEvent.
+     * @param source The source reported by the InputEvents, usually the device path.
+     */
+    static BatchListener adapt(InputListener listener, String source) {
+        return adapt(new InputListenerAdapter(listener, source));
+    }
+}
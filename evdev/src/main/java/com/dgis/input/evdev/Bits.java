@@ -0,0 +1,79 @@
+/**
+ * This file is part of evdev-java - Java implementation.
+ *
+ * evdev-java - Java implementation is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * evdev-java - Java implementation is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with evdev-java - Java implementation.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.dgis.input.evdev;
+
+/**
+ * Helpers for kernel style bitmaps, stored as arrays of longs with bit n in long n / 64.
+ */
+final class Bits {
+
+    private Bits() {
+    }
+
+    /**
+     * @return the number of longs needed to hold bits bits.
+     */
+    static int longs(int bits) {
+        return (bits + 63) >>> 6;
+    }
+
+    static boolean test(long[] bitmap, int bit) {
+        int index = bit >>> 6;
+        return bit >= 0 && index < bitmap.length && (bitmap[index] & (1L << bit)) != 0;
+    }
+
+    static void set(long[] bitmap, int bit) {
+        bitmap[bit >>> 6] |= 1L << bit;
+    }
+
+    static void clear(long[] bitmap, int bit) {
+        bitmap[bit >>> 6] &= ~(1L << bit);
+    }
+
+    /**
+     * @return the index of the first set bit at or after from, or -1 if there is none.
+     */
+    static int nextSetBit(long[] bitmap, int from) {
+        if (from < 0) from = 0;
+        int index = from >>> 6;
+        if (index >= bitmap.length) return -1;
+        long word = bitmap[index] & (-1L << from);
+        while (true) {
+            if (word != 0) return (index << 6) + Long.numberOfTrailingZeros(word);
+            if (++index == bitmap.length) return -1;
+            word = bitmap[index];
+        }
+    }
+
+    static int cardinality(long[] bitmap) {
+        int count = 0;
+        for (long word : bitmap) count += Long.bitCount(word);
+        return count;
+    }
+
+    /**
+     * @return a copy of bitmap without its trailing zero longs, or null if no bit is set.
+     */
+    static long[] trim(long[] bitmap) {
+        int length = bitmap.length;
+        while (length > 0 && bitmap[length - 1] == 0) length--;
+        if (length == 0) return null;
+        long[] trimmed = new long[length];
+        System.arraycopy(bitmap, 0, trimmed, 0, length);
+        return trimmed;
+    }
+}
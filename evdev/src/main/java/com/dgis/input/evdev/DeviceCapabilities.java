@@ -0,0 +1,212 @@
+/**
+ * This file is part of evdev-java - Java implementation.
+ *
+ * evdev-java - Java implementation is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * evdev-java - Java implementation is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with evdev-java - Java implementation.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.dgis.input.evdev;
+
+import javax.annotation.concurrent.Immutable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/**
+ * The event types and codes a device supports, kept as the bitmaps reported by EVIOCGBIT. Lookups are a shift and a
+ * mask, and iterating over the supported codes of a type only visits set bits.
+ * <p/>
+ * Bitmaps are trimmed to their last set bit, and not kept at all for unsupported types, so a typical keyboard or
+ * mouse costs a few hundred bytes.
+ */
+@Immutable
+public final class DeviceCapabilities {
+
+    /**
+     * A device supporting nothing at all.
+     */
+    public static final DeviceCapabilities NONE = new Builder().build();
+
+    /**
+     * Bitmap of supported codes, indexed by type. null for unsupported types.
+     */
+    private final long[][] codes;
+
+    /**
+     * Bitmap of types with at least one supported code, EV_SYN excluded.
+     */
+    private final long types;
+
+    private DeviceCapabilities(long[][] bitmaps) {
+        codes = new long[InputEvent.EV_CNT][];
+        long supportedTypes = 0;
+        for (int type = 1; type < InputEvent.EV_CNT && type < bitmaps.length; type++) {
+            if (bitmaps[type] != null) {
+                codes[type] = Bits.trim(bitmaps[type]);
+                if (codes[type] != null) supportedTypes |= 1L << type;
+            }
+        }
+        types = supportedTypes;
+    }
+
+    /**
+     * Build capabilities out of EVIOCGBIT bitmaps, indexed by event type. Types missing from the bitmap of type 0
+     * are ignored, as the kernel does.
+     */
+    static DeviceCapabilities fromBitmaps(long[][] bitmaps) {
+        long[][] supported = new long[bitmaps.length][];
+        for (int type = 1; type < bitmaps.length; type++) {
+            if (Bits.test(bitmaps[0], type)) supported[type] = bitmaps[type];
+        }
+        return new DeviceCapabilities(supported);
+    }
+
+    /**
+     * @return true if the device reports at least one code of this type.
+     */
+    public boolean supports(int type) {
+        return type > 0 && type < InputEvent.EV_CNT && (types & (1L << type)) != 0;
+    }
+
+    /**
+     * @return true if the device reports this code for this type.
+     */
+    public boolean supports(int type, int code) {
+        return supports(type) && Bits.test(codes[type], code);
+    }
+
+    /**
+     * @return the first code of this type supported at or after from, or -1 if there is none.
+     */
+    public int nextCode(int type, int from) {
+        return supports(type) ? Bits.nextSetBit(codes[type], from) : -1;
+    }
+
+    /**
+     * Call action with each supported code of this type, in increasing order.
+     */
+    public void forEachCode(int type, IntConsumer action) {
+        if (!supports(type)) return;
+        long[] bitmap = codes[type];
+        for (int code = Bits.nextSetBit(bitmap, 0); code >= 0; code = Bits.nextSetBit(bitmap, code + 1)) {
+            action.accept(code);
+        }
+    }
+
+    /**
+     * @return the supported codes of this type, in increasing order.
+     */
+    public int[] getCodes(int type) {
+        int[] result = new int[getCodeCount(type)];
+        int i = 0;
+        for (int code = nextCode(type, 0); code >= 0; code = nextCode(type, code + 1)) {
+            result[i++] = code;
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of supported codes of this type.
+     */
+    public int getCodeCount(int type) {
+        return supports(type) ? Bits.cardinality(codes[type]) : 0;
+    }
+
+    /**
+     * @return a copy of the bitmap of supported codes of this type, empty if the type is not supported.
+     */
+    public long[] getBitmap(int type) {
+        return supports(type) ? codes[type].clone() : new long[0];
+    }
+
+    /**
+     * @return an estimate of the heap used by this instance, in bytes.
+     */
+    public long getFootprintBytes() {
+        /* object header and fields, then the outer array */
+        long bytes = 16 + 8 + 8 + 16 + 8L * codes.length;
+        for (long[] bitmap : codes) {
+            if (bitmap != null) bytes += 16 + 8L * bitmap.length;
+        }
+        return bytes;
+    }
+
+    /**
+     * @return the supported events as a map of event types to lists of supported codes, the way
+     * {@link EventDevice#getSupportedEvents()} always reported them.
+     */
+    public Map<Integer, List<Integer>> toMap() {
+        HashMap<Integer, List<Integer>> map = new HashMap<>();
+        for (int type = 1; type < InputEvent.EV_MAX; type++) {
+            if (!supports(type)) continue;
+            List<Integer> list = new ArrayList<>();
+            forEachCode(type, list::add);
+            map.put(type, list);
+        }
+        return map;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder buf = new StringBuilder("DeviceCapabilities(");
+        for (int type = 1; type < InputEvent.EV_CNT; type++) {
+            if (supports(type)) buf.append(" type ").append(type).append(": ").append(getCodeCount(type)).append(" codes");
+        }
+        return buf.append(" )").toString();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Builds synthetic capabilities, for devices which cannot be probed.
+     */
+    public static final class Builder {
+
+        private final long[][] bitmaps = new long[InputEvent.EV_CNT][];
+
+        private Builder() {
+        }
+
+        /**
+         * Declare codes of a type as supported.
+         */
+        public Builder add(int type, int... codes) {
+            if (type <= 0 || type >= InputEvent.EV_CNT) {
+                throw new IllegalArgumentException("Invalid event type: " + type);
+            }
+            if (bitmaps[type] == null) bitmaps[type] = new long[Bits.longs(InputEvent.KEY_CNT)];
+            for (int code : codes) {
+                if (code < 0 || code >= InputEvent.KEY_CNT) {
+                    throw new IllegalArgumentException("Invalid event code: " + code);
+                }
+                Bits.set(bitmaps[type], code);
+            }
+            return this;
+        }
+
+        /**
+         * Declare codes from first to last inclusive of a type as supported.
+         */
+        public Builder addRange(int type, int first, int last) {
+            for (int code = first; code <= last; code++) add(type, code);
+            return this;
+        }
+
+        public DeviceCapabilities build() {
+            return new DeviceCapabilities(bitmaps);
+        }
+    }
+}
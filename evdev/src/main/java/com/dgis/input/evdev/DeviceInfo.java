@@ -0,0 +1,200 @@
+/**
+ * This file is part of evdev-java - Java implementation.
+ *
+ * evdev-java - Java implementation is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * evdev-java - Java implementation is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with evdev-java - Java implementation.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.dgis.input.evdev;
+
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Identity, capabilities and axis parameters of a device: what an evdev node reports when probed, or what a
+ * synthetic {@link EventSource} claims to be.
+ */
+@Immutable
+public final class DeviceInfo {
+
+    /**
+     * Fields of each absinfo array, in the order of struct input_absinfo.
+     */
+    public static final int ABSINFO_VALUE = DeviceProbe.ABSINFO_VALUE;
+    public static final int ABSINFO_MIN = DeviceProbe.ABSINFO_MIN;
+    public static final int ABSINFO_MAX = DeviceProbe.ABSINFO_MAX;
+    public static final int ABSINFO_FUZZ = DeviceProbe.ABSINFO_FUZZ;
+    public static final int ABSINFO_FLAT = DeviceProbe.ABSINFO_FLAT;
+    public static final int ABSINFO_RESOLUTION = DeviceProbe.ABSINFO_RESOLUTION;
+
+    private static final int[] NO_ABSINFO = new int[DeviceProbe.ABSINFO_FIELDS];
+
+    private final String name;
+    private final String phys;
+    private final String uniq;
+    private final short[] id;
+    private final int evdevVersion;
+    private final DeviceCapabilities capabilities;
+
+    /**
+     * absinfo indexed by axis, null for axes without parameters.
+     */
+    private final int[][] absInfo;
+
+    private DeviceInfo(Builder builder) {
+        name = builder.name;
+        phys = builder.phys;
+        uniq = builder.uniq;
+        id = builder.id.clone();
+        evdevVersion = builder.evdevVersion;
+        capabilities = builder.capabilities;
+        absInfo = new int[InputEvent.ABS_CNT][];
+        for (int axis = 0; axis < absInfo.length; axis++) {
+            if (builder.absInfo[axis] != null) absInfo[axis] = builder.absInfo[axis].clone();
+        }
+    }
+
+    /**
+     * Everything a probe of an evdev node found, keeping absinfo for supported axes only.
+     */
+    static DeviceInfo fromProbe(DeviceProbe probe) {
+        DeviceCapabilities capabilities = DeviceCapabilities.fromBitmaps(probe.bitmaps);
+        Builder builder = builder(probe.name)
+                .phys(probe.phys)
+                .uniq(probe.uniq)
+                .id(probe.id[InputEvent.ID_BUS], probe.id[InputEvent.ID_VENDOR], probe.id[InputEvent.ID_PRODUCT],
+                        probe.id[InputEvent.ID_VERSION])
+                .evdevVersion(probe.version)
+                .capabilities(capabilities);
+        for (int axis = capabilities.nextCode(InputEvent.EV_ABS, 0); axis >= 0 && axis < InputEvent.ABS_CNT;
+             axis = capabilities.nextCode(InputEvent.EV_ABS, axis + 1)) {
+            builder.absInfo(axis, probe.absInfo[axis]);
+        }
+        return builder.build();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getPhys() {
+        return phys;
+    }
+
+    public String getUniq() {
+        return uniq;
+    }
+
+    /**
+     * @return bus type, vendor, product and version, indexed by InputEvent.ID_*.
+     */
+    public short[] getId() {
+        return id.clone();
+    }
+
+    public int getEvdevVersion() {
+        return evdevVersion;
+    }
+
+    public DeviceCapabilities getCapabilities() {
+        return capabilities;
+    }
+
+    /**
+     * Copy the parameters of an axis into out, indexed by the ABSINFO_* constants. All zeroes for an axis without
+     * parameters.
+     *
+     * @return false if the device has no parameters for this axis.
+     */
+    public boolean getAbsInfo(int axis, int[] out) {
+        int[] info = axis >= 0 && axis < absInfo.length && absInfo[axis] != null ? absInfo[axis] : NO_ABSINFO;
+        System.arraycopy(info, 0, out, 0, Math.min(out.length, info.length));
+        return info != NO_ABSINFO;
+    }
+
+    /**
+     * @return the number of MT slots of the device, 0 if it does not report ABS_MT_SLOT.
+     */
+    int getSlotCount() {
+        int[] slot = absInfo[InputEvent.ABS_MT_SLOT];
+        return slot == null || !capabilities.supports(InputEvent.EV_ABS, InputEvent.ABS_MT_SLOT)
+                ? 0 : slot[ABSINFO_MAX] + 1;
+    }
+
+    @Override
+    public String toString() {
+        return "DeviceInfo(name=" + name + ", phys=" + phys + ", " + capabilities + ")";
+    }
+
+    public static Builder builder(String name) {
+        return new Builder(name);
+    }
+
+    public static final class Builder {
+
+        private final String name;
+        private String phys = "";
+        private String uniq = "";
+        private final short[] id = new short[4];
+        private int evdevVersion;
+        private DeviceCapabilities capabilities = DeviceCapabilities.NONE;
+        private final int[][] absInfo = new int[InputEvent.ABS_CNT][];
+
+        private Builder(String name) {
+            this.name = name;
+        }
+
+        public Builder phys(String phys) {
+            this.phys = phys;
+            return this;
+        }
+
+        public Builder uniq(String uniq) {
+            this.uniq = uniq;
+            return this;
+        }
+
+        public Builder id(short bus, short vendor, short product, short version) {
+            id[InputEvent.ID_BUS] = bus;
+            id[InputEvent.ID_VENDOR] = vendor;
+            id[InputEvent.ID_PRODUCT] = product;
+            id[InputEvent.ID_VERSION] = version;
+            return this;
+        }
+
+        public Builder evdevVersion(int evdevVersion) {
+            this.evdevVersion = evdevVersion;
+            return this;
+        }
+
+        public Builder capabilities(DeviceCapabilities capabilities) {
+            this.capabilities = capabilities;
+            return this;
+        }
+
+        /**
+         * Set the parameters of an axis, as value, minimum, maximum, fuzz, flat and resolution. Missing trailing
+         * fields are 0.
+         */
+        public Builder absInfo(int axis, int... info) {
+            if (axis < 0 || axis >= InputEvent.ABS_CNT) {
+                throw new IllegalArgumentException("Invalid axis: " + axis);
+            }
+            absInfo[axis] = new int[DeviceProbe.ABSINFO_FIELDS];
+            System.arraycopy(info, 0, absInfo[axis], 0, Math.min(info.length, DeviceProbe.ABSINFO_FIELDS));
+            return this;
+        }
+
+        public DeviceInfo build() {
+            return new DeviceInfo(this);
+        }
+    }
+}
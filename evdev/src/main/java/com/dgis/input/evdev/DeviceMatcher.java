@@ -0,0 +1,75 @@
+/**
+ * This file is part of evdev-java - Java implementation.
+ *
+ * evdev-java - Java implementation is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * evdev-java - Java implementation is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with evdev-java - Java implementation.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.dgis.input.evdev;
+
+import java.util.regex.Pattern;
+
+/**
+ * A rule selecting devices from what they claim to be, before anything is read from them.
+ *
+ * @see DeviceRegistry.Builder#match(DeviceMatcher)
+ */
+@FunctionalInterface
+public interface DeviceMatcher {
+
+    boolean matches(DeviceInfo info);
+
+    default DeviceMatcher and(DeviceMatcher other) {
+        return info -> matches(info) && other.matches(info);
+    }
+
+    default DeviceMatcher or(DeviceMatcher other) {
+        return info -> matches(info) || other.matches(info);
+    }
+
+    static DeviceMatcher any() {
+        return info -> true;
+    }
+
+    /**
+     * @return a matcher of the devices supporting the given event type, and every one of the given codes of that type.
+     */
+    static DeviceMatcher supports(int type, int... codes) {
+        int[] required = codes.clone();
+        return info -> {
+            DeviceCapabilities capabilities = info.getCapabilities();
+            if (!capabilities.supports(type)) return false;
+            for (int code : required) {
+                if (!capabilities.supports(type, code)) return false;
+            }
+            return true;
+        };
+    }
+
+    /**
+     * @return a matcher of the devices whose name contains a match of regex.
+     */
+    static DeviceMatcher name(String regex) {
+        Pattern pattern = Pattern.compile(regex);
+        return info -> pattern.matcher(info.getName()).find();
+    }
+
+    /**
+     * @return a matcher of the devices with the given USB vendor and product IDs.
+     */
+    static DeviceMatcher id(short vendor, short product) {
+        return info -> {
+            short[] id = info.getId();
+            return id[InputEvent.ID_VENDOR] == vendor && id[InputEvent.ID_PRODUCT] == product;
+        };
+    }
+}
@@ -0,0 +1,99 @@
+/**
+ * This file is part of evdev-java - Java implementation.
+ *
+ * evdev-java - Java implementation is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * evdev-java - Java implementation is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with evdev-java - Java implementation.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.dgis.input.evdev;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * An evdev node, usually one of /dev/input/event*. Identity, capabilities and axis parameters are probed from the
+ * kernel when the node is opened.
+ */
+public class DeviceNodeSource extends FdEventSource {
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    /**
+     * DeviceInfo of the devices probed so far, by identity, or null to always probe.
+     */
+    private final Map<String, DeviceInfo> known;
+
+    private DeviceInfo info;
+
+    /**
+     * @param device The path to the device file.
+     * @throws IOException If the native library cannot be loaded.
+     */
+    public DeviceNodeSource(File device) throws IOException {
+        this(device, null);
+    }
+
+    /**
+     * @param device The path to the device file.
+     * @param known  DeviceInfo of the devices already probed, by identity. A device found there is only identified,
+     *               not probed again, and a device probed is added.
+     * @throws IOException If the native library cannot be loaded.
+     */
+    DeviceNodeSource(File device, Map<String, DeviceInfo> known) throws IOException {
+        super(device);
+        this.known = known;
+    }
+
+    @Override
+    public void open() throws IOException {
+        super.open();
+        String identity = known != null ? DeviceProbe.identify(nativeEventDevice, fd) : null;
+        if (identity != null) {
+            info = known.get(identity);
+            if (info != null) {
+                logger.debug("{} identified as {}, not probed again", getPath(), info.getName());
+                return;
+            }
+        }
+        DeviceProbe probe = DeviceProbe.probe(nativeEventDevice, fd);
+        if (probe != null) {
+            info = DeviceInfo.fromProbe(probe);
+            if (identity != null) known.put(identity, info);
+        } else {
+            logger.error("WARN: couldn't probe device: {}", getPath());
+            info = DeviceInfo.builder("Unknown Device").build();
+        }
+    }
+
+    @Override
+    public DeviceInfo getInfo() {
+        return info;
+    }
+
+    @Override
+    public boolean readAbsInfo(int axis, int[] out) {
+        return nativeEventDevice.ioctlEVIOCGABS(fd, out, axis);
+    }
+
+    @Override
+    public boolean writeAbsInfo(int axis, int[] in) {
+        int result = nativeEventDevice.ioctlEVIOCSABS(fd, axis, in);
+        if (result < 0) {
+            logger.debug("Cannot set absinfo of axis {} on {}, errno {}", axis, getPath(), -result);
+        }
+        return result == 0;
+    }
+}
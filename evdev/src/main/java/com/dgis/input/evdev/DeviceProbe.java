@@ -0,0 +1,136 @@
+/**
+ * This file is part of evdev-java - Java implementation.
+ *
+ * evdev-java - Java implementation is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * evdev-java - Java implementation is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with evdev-java - Java implementation.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.dgis.input.evdev;
+
+import javax.annotation.concurrent.Immutable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+import static com.dgis.input.evdev.NativeEventDevice.PROBE_ABSINFO_OFFSET;
+import static com.dgis.input.evdev.NativeEventDevice.PROBE_ABSINFO_SIZE;
+import static com.dgis.input.evdev.NativeEventDevice.PROBE_AXIS_COUNT;
+import static com.dgis.input.evdev.NativeEventDevice.PROBE_BITMAPS_OFFSET;
+import static com.dgis.input.evdev.NativeEventDevice.PROBE_BITMAP_SIZE;
+import static com.dgis.input.evdev.NativeEventDevice.PROBE_IDENTITY_SIZE;
+import static com.dgis.input.evdev.NativeEventDevice.PROBE_ID_OFFSET;
+import static com.dgis.input.evdev.NativeEventDevice.PROBE_NAME_OFFSET;
+import static com.dgis.input.evdev.NativeEventDevice.PROBE_PHYS_OFFSET;
+import static com.dgis.input.evdev.NativeEventDevice.PROBE_SIZE;
+import static com.dgis.input.evdev.NativeEventDevice.PROBE_STRING_SIZE;
+import static com.dgis.input.evdev.NativeEventDevice.PROBE_TYPE_COUNT;
+import static com.dgis.input.evdev.NativeEventDevice.PROBE_UNIQ_OFFSET;
+import static com.dgis.input.evdev.NativeEventDevice.PROBE_VERSION_OFFSET;
+
+/**
+ * Everything the kernel tells about a device at open time, decoded from the array filled by a single
+ * NativeEventDevice.probe() call.
+ */
+@Immutable
+final class DeviceProbe {
+
+    /**
+     * Number of longs in the bitmap of a single event type.
+     */
+    static final int BITMAP_LONGS = PROBE_BITMAP_SIZE / 8;
+
+    static final int ABSINFO_VALUE = 0;
+    static final int ABSINFO_MIN = 1;
+    static final int ABSINFO_MAX = 2;
+    static final int ABSINFO_FUZZ = 3;
+    static final int ABSINFO_FLAT = 4;
+    static final int ABSINFO_RESOLUTION = 5;
+    static final int ABSINFO_FIELDS = PROBE_ABSINFO_SIZE / 4;
+
+    final short[] id = new short[4];
+    final int version;
+    final String name;
+    final String phys;
+    final String uniq;
+
+    /**
+     * EVIOCGBIT bitmaps indexed by event type, the one of type 0 holding the supported types.
+     */
+    final long[][] bitmaps = new long[PROBE_TYPE_COUNT][BITMAP_LONGS];
+
+    /**
+     * absinfo of each axis, all zeroes for unsupported axes.
+     */
+    final int[][] absInfo = new int[PROBE_AXIS_COUNT][ABSINFO_FIELDS];
+
+    private DeviceProbe(byte[] probe) {
+        ByteBuffer buffer = ByteBuffer.wrap(probe).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < id.length; i++) {
+            id[i] = buffer.getShort(PROBE_ID_OFFSET + 2 * i);
+        }
+        version = buffer.getInt(PROBE_VERSION_OFFSET);
+        name = string(probe, PROBE_NAME_OFFSET);
+        phys = string(probe, PROBE_PHYS_OFFSET);
+        uniq = string(probe, PROBE_UNIQ_OFFSET);
+        for (int type = 0; type < PROBE_TYPE_COUNT; type++) {
+            for (int i = 0; i < BITMAP_LONGS; i++) {
+                bitmaps[type][i] = buffer.getLong(PROBE_BITMAPS_OFFSET + type * PROBE_BITMAP_SIZE + 8 * i);
+            }
+        }
+        for (int axis = 0; axis < PROBE_AXIS_COUNT; axis++) {
+            for (int field = 0; field < ABSINFO_FIELDS; field++) {
+                absInfo[axis][field] = buffer.getInt(PROBE_ABSINFO_OFFSET + axis * PROBE_ABSINFO_SIZE + 4 * field);
+            }
+        }
+    }
+
+    /**
+     * Probe an open device with a single native call.
+     *
+     * @return the probe result, or null if fd is not an evdev device.
+     */
+    static DeviceProbe probe(NativeEventDevice nativeEventDevice, int fd) {
+        byte[] probe = new byte[PROBE_SIZE];
+        if (!nativeEventDevice.probe(fd, probe)) {
+            return null;
+        }
+        return new DeviceProbe(probe);
+    }
+
+    /**
+     * Read what identifies an open device, without its capabilities: id, version, name, phys and uniq.
+     *
+     * @return a key equal for the same hardware on the same port, or null if fd is not an evdev device.
+     */
+    static String identify(NativeEventDevice nativeEventDevice, int fd) {
+        byte[] identity = new byte[PROBE_IDENTITY_SIZE];
+        if (!nativeEventDevice.identify(fd, identity)) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(identity).order(ByteOrder.LITTLE_ENDIAN);
+        StringBuilder key = new StringBuilder();
+        for (int i = 0; i < 4; i++) {
+            key.append(Integer.toHexString(buffer.getShort(PROBE_ID_OFFSET + 2 * i) & 0xffff)).append(':');
+        }
+        return key.append(Integer.toHexString(buffer.getInt(PROBE_VERSION_OFFSET)))
+                .append('\0').append(string(identity, PROBE_NAME_OFFSET))
+                .append('\0').append(string(identity, PROBE_PHYS_OFFSET))
+                .append('\0').append(string(identity, PROBE_UNIQ_OFFSET))
+                .toString();
+    }
+
+    private static String string(byte[] probe, int offset) {
+        int length = 0;
+        while (length < PROBE_STRING_SIZE && probe[offset + length] != 0) length++;
+        return new String(probe, offset, length, StandardCharsets.UTF_8);
+    }
+}
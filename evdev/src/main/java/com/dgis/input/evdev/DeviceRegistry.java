@@ -0,0 +1,433 @@
+/**
+ * This file is part of evdev-java - Java implementation.
+ *
+ * evdev-java - Java implementation is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * evdev-java - Java implementation is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with evdev-java - Java implementation.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.dgis.input.evdev;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps an EventDevice open for every node of an input directory matching the rules it was built with, while nodes
+ * come and go. The directory is watched with a WatchService, which relies on inotify on Linux: a new node is probed
+ * as soon as it appears, and opened only if it matches; a node which disappears is closed right away.
+ * <p/>
+ * A node which cannot be opened yet, as when udev has not granted access to it, is tried again on its next
+ * attribute change. Devices are remembered by identity, so that plugging the same hardware again only identifies it
+ * instead of probing every capability.
+ * <p/>
+ * Devices are opened, closed and reported to listeners on a single registry thread.
+ */
+public class DeviceRegistry implements Closeable {
+
+    private static final long CLOSE_TIMEOUT_MILLIS = 2000;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final File directory;
+    private final Pattern nodeNames;
+    private final DeviceMatcher matcher;
+    private final EventDeviceReactor reactor;
+    private final SourceFactory sources;
+
+    /**
+     * DeviceInfo of every evdev node probed so far, by identity.
+     */
+    private final Map<String, DeviceInfo> identities = new ConcurrentHashMap<>();
+
+    private final Map<String, EventDevice> devices = new ConcurrentHashMap<>();
+
+    /**
+     * Nodes which did not match. Only accessed by the registry thread.
+     */
+    private final Set<String> ignored = new HashSet<>();
+
+    private final List<DeviceRegistryListener> listeners = new CopyOnWriteArrayList<>();
+
+    private final ExecutorService executor;
+
+    private WatchService watchService;
+    private Thread watchThread;
+    private volatile boolean closed = false;
+
+    private DeviceRegistry(Builder builder) {
+        directory = builder.directory;
+        nodeNames = builder.nodeNames;
+        matcher = builder.matcher != null ? builder.matcher : DeviceMatcher.any();
+        reactor = builder.reactor;
+        sources = builder.sources != null ? builder.sources : node -> new DeviceNodeSource(node, identities);
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "evdev-registry-" + directory.getName());
+            thread.setDaemon(true); /* We don't want this thread to prevent the JVM from terminating */
+            return thread;
+        });
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Start watching the directory, and open the matching nodes already there. Nothing is opened before.
+     *
+     * @throws IOException If the directory cannot be watched.
+     */
+    public synchronized void start() throws IOException {
+        if (closed) {
+            throw new IOException("Registry is closed");
+        }
+        if (watchService != null) return;
+        watchService = FileSystems.getDefault().newWatchService();
+        directory.toPath().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+        executor.execute(this::scan);
+        watchThread = new Thread(this::watch, "evdev-registry-watch-" + directory.getName());
+        watchThread.setDaemon(true);
+        watchThread.start();
+    }
+
+    /**
+     * Register a listener told about devices opened and closed from now on.
+     */
+    public void addListener(DeviceRegistryListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(DeviceRegistryListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * @return the devices currently open.
+     */
+    public List<EventDevice> getDevices() {
+        return new ArrayList<>(devices.values());
+    }
+
+    /**
+     * @return the device open for the given node, or null.
+     */
+    public EventDevice getDevice(File node) {
+        return devices.get(node.getAbsolutePath());
+    }
+
+    /**
+     * @return how many distinct devices have been probed, and will only be identified if they appear again.
+     */
+    public int getKnownDeviceCount() {
+        return identities.size();
+    }
+
+    /**
+     * Stop watching, and close every device. Listeners are not told about these devices.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+        }
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                logger.warn("Cannot close the watch service of {}", directory, e);
+            }
+        }
+        executor.execute(() -> {
+            for (EventDevice device : devices.values()) {
+                device.close();
+            }
+            devices.clear();
+        });
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(CLOSE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                logger.warn("Timed out closing the devices of {}", directory);
+            }
+        } catch (InterruptedException e) {
+            logger.error("Interrupted in close", e);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Body of the watch thread: hand every batch of directory changes over to the registry thread.
+     */
+    private void watch() {
+        try {
+            while (!closed) {
+                WatchKey key = watchService.take();
+                List<WatchEvent<?>> events = key.pollEvents();
+                key.reset();
+                submit(() -> {
+                    for (WatchEvent<?> event : events) {
+                        changed(event);
+                    }
+                });
+            }
+        } catch (ClosedWatchServiceException e) {
+            /* closed */
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void submit(Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            /* closed */
+        }
+    }
+
+    private void changed(WatchEvent<?> event) {
+        if (closed) return;
+        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+            logger.warn("Missed changes of {}, scanning it again", directory);
+            scan();
+            return;
+        }
+        Path name = (Path) event.context();
+        if (!nodeNames.matcher(name.toString()).matches()) return;
+        File node = new File(directory, name.toString());
+        if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+            ignored.remove(node.getAbsolutePath());
+            remove(node.getAbsolutePath(), null);
+        } else {
+            /* a node created, or one whose permissions changed and which may be readable now */
+            add(node);
+        }
+    }
+
+    /**
+     * Open every matching node not open yet, and close the devices whose node is gone.
+     */
+    private void scan() {
+        for (String path : new ArrayList<>(devices.keySet())) {
+            if (!new File(path).exists()) remove(path, null);
+        }
+        ignored.removeIf(path -> !new File(path).exists());
+        File[] nodes = directory.listFiles((dir, name) -> nodeNames.matcher(name).matches());
+        if (nodes == null) {
+            logger.warn("Cannot list {}", directory);
+            return;
+        }
+        for (File node : nodes) {
+            add(node);
+        }
+    }
+
+    private void add(File node) {
+        String path = node.getAbsolutePath();
+        if (closed || devices.containsKey(path) || ignored.contains(path)) return;
+        EventSource source;
+        try {
+            source = sources.create(node);
+            source.open();
+        } catch (IOException e) {
+            logger.debug("Cannot open {} yet: {}", path, e.getMessage());
+            return;
+        }
+        DeviceInfo info = source.getInfo();
+        if (!matcher.matches(info)) {
+            logger.debug("Ignoring {}, {}", path, info.getName());
+            ignored.add(path);
+            close(source);
+            return;
+        }
+        EventDevice device;
+        try {
+            device = new EventDevice(new OpenSource(source), EventDevice.DEFAULT_BATCH_CAPACITY, reactor);
+        } catch (IOException e) {
+            logger.warn("Cannot read {}", path, e);
+            close(source);
+            return;
+        }
+        devices.put(path, device);
+        device.addDeviceRemovedListener(removed -> submit(() -> remove(path, removed)));
+        logger.info("Device {} added, {}", path, info.getName());
+        for (DeviceRegistryListener listener : listeners) {
+            listener.deviceAdded(device);
+        }
+    }
+
+    /**
+     * Close the device of a node, if it is still the given one, or any device if null.
+     */
+    private void remove(String path, EventDevice expected) {
+        EventDevice device = devices.get(path);
+        if (device == null || (expected != null && device != expected)) return;
+        devices.remove(path);
+        device.close();
+        logger.info("Device {} removed", path);
+        for (DeviceRegistryListener listener : listeners) {
+            listener.deviceRemoved(device);
+        }
+    }
+
+    private void close(EventSource source) {
+        try {
+            source.close();
+        } catch (IOException e) {
+            logger.warn("Cannot close {}", source.getPath(), e);
+        }
+    }
+
+    /**
+     * Creates the source reading a node. Lets a registry watch nodes other than evdev ones, such as named pipes.
+     */
+    @FunctionalInterface
+    public interface SourceFactory {
+        EventSource create(File node) throws IOException;
+    }
+
+    public static final class Builder {
+
+        private File directory = new File("/dev/input");
+        private Pattern nodeNames = Pattern.compile("event[0-9]+");
+        private DeviceMatcher matcher;
+        private EventDeviceReactor reactor;
+        private SourceFactory sources;
+
+        private Builder() {
+        }
+
+        /**
+         * Watch the given directory instead of /dev/input.
+         */
+        public Builder directory(File directory) {
+            this.directory = directory.getAbsoluteFile();
+            return this;
+        }
+
+        /**
+         * Only consider the nodes whose whole name matches regex, event[0-9]+ by default.
+         */
+        public Builder nodeNames(String regex) {
+            nodeNames = Pattern.compile(regex);
+            return this;
+        }
+
+        /**
+         * Only open the devices matching the given rule. Called several times, devices matching any of the rules are
+         * opened. Without a rule, every device is.
+         */
+        public Builder match(DeviceMatcher rule) {
+            matcher = matcher == null ? rule : matcher.or(rule);
+            return this;
+        }
+
+        /**
+         * Read the devices with the given reactor, instead of a thread per device.
+         */
+        public Builder reactor(EventDeviceReactor reactor) {
+            this.reactor = reactor;
+            return this;
+        }
+
+        /**
+         * Create sources with the given factory, instead of opening evdev nodes.
+         */
+        public Builder sources(SourceFactory sources) {
+            this.sources = sources;
+            return this;
+        }
+
+        public DeviceRegistry build() {
+            return new DeviceRegistry(this);
+        }
+    }
+
+    /**
+     * A source the registry already opened to match it, handed over to its EventDevice.
+     */
+    private static final class OpenSource implements EventSource {
+
+        private final EventSource source;
+
+        OpenSource(EventSource source) {
+            this.source = source;
+        }
+
+        @Override
+        public String getPath() {
+            return source.getPath();
+        }
+
+        @Override
+        public void open() {
+        }
+
+        @Override
+        public DeviceInfo getInfo() {
+            return source.getInfo();
+        }
+
+        @Override
+        public int getFd() {
+            return source.getFd();
+        }
+
+        @Override
+        public InputEventAbi getAbi() {
+            return source.getAbi();
+        }
+
+        @Override
+        public int read(ByteBuffer buffer, int position, int length) throws IOException {
+            return source.read(buffer, position, length);
+        }
+
+        @Override
+        public boolean readAbsInfo(int axis, int[] out) {
+            return source.readAbsInfo(axis, out);
+        }
+
+        @Override
+        public boolean writeAbsInfo(int axis, int[] in) {
+            return source.writeAbsInfo(axis, in);
+        }
+
+        @Override
+        public void close() throws IOException {
+            source.close();
+        }
+    }
+}
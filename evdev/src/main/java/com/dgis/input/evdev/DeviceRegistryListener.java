@@ -0,0 +1,36 @@
+/**
+ * This file is part of evdev-java - Java implementation.
+ *
+ * evdev-java - Java implementation is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * evdev-java - Java implementation is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with evdev-java - Java implementation.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.dgis.input.evdev;
+
+/**
+ * Notified when a DeviceRegistry opens a matching device, and when it closes it again.
+ *
+ * @see DeviceRegistry#addListener(DeviceRegistryListener)
+ */
+public interface DeviceRegistryListener {
+
+    /**
+     * Called from the registry thread once the device is open and reading. Listeners added to the device from here
+     * may miss the first events.
+     */
+    void deviceAdded(EventDevice device);
+
+    /**
+     * Called once the node of the device disappeared, or reading it failed. The device is already closed.
+     */
+    void deviceRemoved(EventDevice device);
+}
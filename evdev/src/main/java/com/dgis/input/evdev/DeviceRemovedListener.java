@@ -0,0 +1,31 @@
+/**
+ * This file is part of evdev-java - Java implementation.
+ *
+ * evdev-java - Java implementation is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * evdev-java - Java implementation is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with evdev-java - Java implementation.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.dgis.input.evdev;
+
+/**
+ * Notified when the device behind an EventDevice disappears, typically when it is unplugged.
+ *
+ * @see com.dgis.input.evdev.EventDevice#addDeviceRemovedListener(DeviceRemovedListener)
+ */
+public interface DeviceRemovedListener {
+    /**
+     * Called once, from the thread reading the device, when reading fails with ENODEV or hits end of file.
+     *
+     * @param device The device which disappeared. It still has to be closed.
+     */
+    void deviceRemoved(EventDevice device);
+}
@@ -0,0 +1,234 @@
+/**
+ * This file is part of evdev-java - Java implementation.
+ *
+ * evdev-java - Java implementation is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * evdev-java - Java implementation is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with evdev-java - Java implementation.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.dgis.input.evdev;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static com.dgis.input.evdev.NativeEventDevice.STATE_ABS_OFFSET;
+import static com.dgis.input.evdev.NativeEventDevice.STATE_KEY_OFFSET;
+import static com.dgis.input.evdev.NativeEventDevice.STATE_LED_OFFSET;
+import static com.dgis.input.evdev.NativeEventDevice.STATE_MT_CODE_COUNT;
+import static com.dgis.input.evdev.NativeEventDevice.STATE_MT_FIRST_CODE;
+import static com.dgis.input.evdev.NativeEventDevice.STATE_MT_OFFSET;
+import static com.dgis.input.evdev.NativeEventDevice.STATE_MT_SLOT_COUNT;
+import static com.dgis.input.evdev.NativeEventDevice.STATE_SIZE;
+import static com.dgis.input.evdev.NativeEventDevice.STATE_SW_OFFSET;
+
+/**
+ * Tracks the key, LED and switch states, axis values and MT slots of a device as its events are read, so that the
+ * stream can be repaired after the kernel dropped events.
+ * <p/>
+ * On SYN_DROPPED, events are discarded up to and including the next SYN_REPORT, as they belong to an incomplete
+ * frame. The current state is then read from the kernel in a single native call, and every difference with the
+ * tracked state is replayed as a synthetic event, followed by a SYN_REPORT. Listeners end up in the same state as if
+ * nothing had been lost, except for relative motion, which cannot be recovered.
+ */
+@NotThreadSafe
+final class DeviceState {
+
+    /**
+     * What to do with an event once tracked.
+     */
+    static final int DELIVER = 0;
+    static final int DISCARD = 1;
+    static final int RESYNC = 2;
+
+    private final NativeEventDevice nativeEventDevice;
+    private final int fd;
+
+    /**
+     * Number of MT slots tracked, 0 if the device does not use slots.
+     */
+    private final int slots;
+
+    private final byte[] state = new byte[STATE_SIZE];
+    private final ByteBuffer stateBuffer = ByteBuffer.wrap(state).order(ByteOrder.LITTLE_ENDIAN);
+
+    private final long[] keys = new long[DeviceProbe.BITMAP_LONGS];
+    private final long[] leds = new long[DeviceProbe.BITMAP_LONGS];
+    private final long[] switches = new long[DeviceProbe.BITMAP_LONGS];
+    private final int[] axes = new int[InputEvent.ABS_CNT];
+
+    /**
+     * Values of each MT code, indexed by code - STATE_MT_FIRST_CODE, then slot.
+     */
+    private final int[][] mt;
+
+    private int slot;
+
+    private boolean dropping;
+
+    private volatile long dropCount;
+
+    /**
+     * @param nativeEventDevice Native calls on fd, or null if the state of the source cannot be read back.
+     * @param slots             The number of MT slots of the device, 0 if it does not report ABS_MT_SLOT.
+     */
+    DeviceState(NativeEventDevice nativeEventDevice, int fd, int slots) {
+        this.nativeEventDevice = nativeEventDevice;
+        this.fd = fd;
+        this.slots = Math.min(slots, STATE_MT_SLOT_COUNT);
+        mt = new int[STATE_MT_CODE_COUNT][this.slots];
+    }
+
+    /**
+     * Record an event read from the device.
+     *
+     * @return DELIVER if the event should reach the listeners, DISCARD if it belongs to a frame broken by
+     * SYN_DROPPED, or RESYNC if it ends such a frame and the state should be read back with
+     * {@link #resync(int, long, EventMask, RawInputListener)}.
+     */
+    int track(int type, int code, int value) {
+        if (type == InputEvent.EV_SYN) {
+            if (code == InputEvent.SYN_DROPPED) {
+                dropping = true;
+                dropCount++;
+                return DISCARD;
+            }
+            if (dropping && code == InputEvent.SYN_REPORT) {
+                dropping = false;
+                return RESYNC;
+            }
+        }
+        if (dropping) return DISCARD;
+
+        switch (type) {
+            case InputEvent.EV_KEY:
+                update(keys, code, value != 0);
+                break;
+            case InputEvent.EV_LED:
+                update(leds, code, value != 0);
+                break;
+            case InputEvent.EV_SW:
+                update(switches, code, value != 0);
+                break;
+            case InputEvent.EV_ABS:
+                if (code < 0 || code >= InputEvent.ABS_CNT) break;
+                axes[code] = value;
+                if (code == InputEvent.ABS_MT_SLOT) {
+                    slot = value;
+                } else if (isSlotted(code) && slot >= 0 && slot < slots) {
+                    mt[code - STATE_MT_FIRST_CODE][slot] = value;
+                }
+                break;
+            default:
+                break;
+        }
+        return DELIVER;
+    }
+
+    private static void update(long[] bitmap, int code, boolean on) {
+        if (code < 0 || code >= bitmap.length * 64) return;
+        if (on) {
+            Bits.set(bitmap, code);
+        } else {
+            Bits.clear(bitmap, code);
+        }
+    }
+
+    private boolean isSlotted(int code) {
+        return slots > 0 && code >= STATE_MT_FIRST_CODE;
+    }
+
+    /**
+     * @return true while events are being discarded after SYN_DROPPED.
+     */
+    boolean isDropping() {
+        return dropping;
+    }
+
+    /**
+     * @return the number of SYN_DROPPED seen so far.
+     */
+    long getDropCount() {
+        return dropCount;
+    }
+
+    /**
+     * Read the current state of the device, and send every difference with the tracked state to sink as a synthetic
+     * event. The caller is expected to end the frame with a SYN_REPORT.
+     *
+     * @param mask Events outside of this mask are tracked but not sent, as the kernel would not report them either.
+     * @param sink Receives the synthetic events, or null to only load the state, as done when opening the device.
+     * @return the number of synthetic events sent, or -1 if the state of the device cannot be read.
+     */
+    int resync(int deviceId, long timestampNanos, EventMask mask, RawInputListener sink) {
+        if (nativeEventDevice == null || !nativeEventDevice.readState(fd, state)) {
+            return -1;
+        }
+        int count = 0;
+        count += syncBits(keys, STATE_KEY_OFFSET, InputEvent.EV_KEY, deviceId, timestampNanos, mask, sink);
+        count += syncBits(switches, STATE_SW_OFFSET, InputEvent.EV_SW, deviceId, timestampNanos, mask, sink);
+        count += syncBits(leds, STATE_LED_OFFSET, InputEvent.EV_LED, deviceId, timestampNanos, mask, sink);
+
+        for (int code = 0; code < InputEvent.ABS_CNT; code++) {
+            if (code == InputEvent.ABS_MT_SLOT || isSlotted(code)) continue;
+            int value = stateBuffer.getInt(STATE_ABS_OFFSET + 4 * code);
+            if (value == axes[code]) continue;
+            axes[code] = value;
+            count += emit(sink, mask, deviceId, timestampNanos, InputEvent.EV_ABS, code, value);
+        }
+
+        if (slots == 0) return count;
+        /* the slot listeners last heard of */
+        int selected = slot;
+        for (int s = 0; s < slots; s++) {
+            for (int i = 0; i < STATE_MT_CODE_COUNT; i++) {
+                int value = stateBuffer.getInt(STATE_MT_OFFSET + 4 * (i * STATE_MT_SLOT_COUNT + s));
+                if (value == mt[i][s]) continue;
+                mt[i][s] = value;
+                if (selected != s) {
+                    count += emit(sink, mask, deviceId, timestampNanos, InputEvent.EV_ABS, InputEvent.ABS_MT_SLOT, s);
+                    selected = s;
+                }
+                count += emit(sink, mask, deviceId, timestampNanos, InputEvent.EV_ABS, STATE_MT_FIRST_CODE + i, value);
+            }
+        }
+        int current = stateBuffer.getInt(STATE_ABS_OFFSET + 4 * InputEvent.ABS_MT_SLOT);
+        if (current != selected) {
+            count += emit(sink, mask, deviceId, timestampNanos, InputEvent.EV_ABS, InputEvent.ABS_MT_SLOT, current);
+        }
+        slot = axes[InputEvent.ABS_MT_SLOT] = current;
+        return count;
+    }
+
+    private int syncBits(long[] tracked, int offset, int type, int deviceId, long timestampNanos, EventMask mask,
+                         RawInputListener sink) {
+        int count = 0;
+        for (int i = 0; i < tracked.length; i++) {
+            long current = stateBuffer.getLong(offset + 8 * i);
+            long changed = tracked[i] ^ current;
+            tracked[i] = current;
+            while (changed != 0) {
+                int bit = Long.numberOfTrailingZeros(changed);
+                changed &= changed - 1;
+                int value = (int) (current >>> bit) & 1;
+                count += emit(sink, mask, deviceId, timestampNanos, type, i * 64 + bit, value);
+            }
+        }
+        return count;
+    }
+
+    private static int emit(RawInputListener sink, EventMask mask, int deviceId, long timestampNanos, int type,
+                            int code, int value) {
+        if (sink == null || !mask.includes(type, code)) return 0;
+        sink.onEvent(deviceId, timestampNanos, type, code, value);
+        return 1;
+    }
+}
@@ -0,0 +1,597 @@
+/**
+ * This file is part of evdev-java - Java implementation.
+ *
+ * evdev-java - Java implementation is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * evdev-java - Java implementation is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with evdev-java - Java implementation.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.dgis.input.evdev;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.Closeable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Calls a listener away from the thread reading the device. Registered on an EventDevice in place of the listener,
+ * a lane only copies each event into a bounded queue, and the listener is called from the lane's own thread, or
+ * from a shared executor. A slow listener then only delays itself, and an exception it throws is logged and
+ * counted without reaching the reader.
+ * <p/>
+ * When the queue is full, the {@link Overflow} policy decides between stalling the reader and losing events. Queue
+ * storage is allocated once: queuing an event allocates nothing.
+ * <p/>
+ * Remove the lane from the device, then close it, to stop it.
+ */
+@ThreadSafe
+public final class DispatchLane implements RawInputListener, EventMaskProvider, Closeable {
+
+    /**
+     * What a full lane does with a new event.
+     */
+    public enum Overflow {
+        /**
+         * Wait until the listener catches up. Nothing is lost, but the reader stalls, and the kernel may drop
+         * events of the device.
+         */
+        BLOCK,
+        /**
+         * Drop the oldest queued event.
+         */
+        DROP_OLDEST,
+        /**
+         * Merge relative motion into the latest queued event of the same axis, replace the value of the latest
+         * queued event of the same absolute axis, and drop repeated empty frames. Key, switch and other events are
+         * never merged, nor is motion merged across them: when nothing can be merged, the oldest event is dropped.
+         */
+        COALESCE_MOTION,
+        /**
+         * Never lose a key, switch or frame boundary, and keep motion from delaying them. Motion is merged as with
+         * {@link #COALESCE_MOTION} as soon as it is queued behind motion of the same axis, full or not, so that a
+         * listener falling behind gets one event per axis between two key events rather than every stale move. When
+         * the queue is full, new motion makes room by folding the oldest queued motion into a later event of the same
+         * axis, relative deltas being added up and absolute values overridden, so that the sum of relative motion is
+         * never lost. If no queued motion can be folded, and for any other event, it waits for room as with
+         * {@link #BLOCK}.
+         */
+        PRIORITIZE_DISCRETE
+    }
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * Events taken out of the queue at once, and delivered by a drain task before it makes way for other tasks of a
+     * shared executor.
+     */
+    private static final int DRAIN_BATCH = 256;
+
+    private static final AtomicInteger laneNumber = new AtomicInteger();
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final RawInputListener listener;
+    private final Overflow overflow;
+    private final Executor executor;
+
+    /**
+     * The dedicated thread of the lane, or null if it runs on a shared executor.
+     */
+    private final ExecutorService ownExecutor;
+
+    private final Runnable drain = this::drain;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+
+    /**
+     * Queued events, as a ring of parallel arrays. Guarded by lock.
+     */
+    private final int capacity;
+    private final int[] deviceIds;
+    private final long[] timestamps;
+    private final int[] types;
+    private final int[] codes;
+    private final int[] values;
+    private final long[] enqueuedNanos;
+    private int head;
+    private int size;
+
+    /**
+     * Events taken out of the queue by the running drain task.
+     */
+    private final int[] batchDeviceIds;
+    private final long[] batchTimestamps;
+    private final int[] batchTypes;
+    private final int[] batchCodes;
+    private final int[] batchValues;
+
+    /**
+     * Set while a drain task is submitted or running, so that a single one runs at a time. Guarded by lock.
+     */
+    private boolean scheduled;
+    private boolean closed;
+
+    private volatile int maxQueueDepth;
+    private volatile long droppedCount;
+    private volatile long coalescedCount;
+    private volatile long blockedCount;
+
+    /**
+     * Only written by the running drain task.
+     */
+    private volatile long deliveredCount;
+    private volatile long failureCount;
+    private volatile long maxLagNanos;
+
+    private DispatchLane(Builder builder) {
+        listener = builder.listener;
+        overflow = builder.overflow;
+        capacity = builder.capacity;
+        if (builder.executor != null) {
+            executor = builder.executor;
+            ownExecutor = null;
+        } else {
+            String name = "evdev-lane-" + laneNumber.incrementAndGet();
+            ownExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true); /* We don't want this thread to prevent the JVM from terminating */
+                return thread;
+            });
+            executor = ownExecutor;
+        }
+        deviceIds = new int[capacity];
+        timestamps = new long[capacity];
+        types = new int[capacity];
+        codes = new int[capacity];
+        values = new int[capacity];
+        enqueuedNanos = new long[capacity];
+        int batch = Math.min(capacity, DRAIN_BATCH);
+        batchDeviceIds = new int[batch];
+        batchTimestamps = new long[batch];
+        batchTypes = new int[batch];
+        batchCodes = new int[batch];
+        batchValues = new int[batch];
+    }
+
+    /**
+     * @param listener The listener to call away from the reader.
+     */
+    public static Builder builder(RawInputListener listener) {
+        return new Builder(listener);
+    }
+
+    /**
+     * @param listener The listener to call away from the reader.
+     * @param source   The source reported by the InputEvents, usually the device path.
+     */
+    public static Builder builder(InputListener listener, String source) {
+        return new Builder(new InputListenerAdapter(listener, source));
+    }
+
+    public RawInputListener getListener() {
+        return listener;
+    }
+
+    /**
+     * The mask of the listener, so that a lane does not widen the mask of the device.
+     */
+    @Override
+    public EventMask getEventMask() {
+        Object declaring = listener instanceof InputListenerAdapter
+                ? ((InputListenerAdapter) listener).getListener() : listener;
+        return declaring instanceof EventMaskProvider ? ((EventMaskProvider) declaring).getEventMask() : EventMask.ALL;
+    }
+
+    /**
+     * Queue an event for the listener. Only blocks with {@link Overflow#BLOCK}, while the queue is full.
+     */
+    @Override
+    public void onEvent(int deviceId, long timestampNanos, int type, int code, int value) {
+        boolean schedule = false;
+        lock.lock();
+        try {
+            if (closed) return;
+            if (overflow == Overflow.PRIORITIZE_DISCRETE && size > 0 && coalesce(type, code, value)) {
+                coalescedCount++;
+                return;
+            }
+            if (size == capacity && overflow == Overflow.PRIORITIZE_DISCRETE && isMotion(type, code)) {
+                value += makeRoomForMotion(type, code);
+            }
+            if (size == capacity && !makeRoom(type, code, value)) return;
+            int tail = (head + size) % capacity;
+            deviceIds[tail] = deviceId;
+            timestamps[tail] = timestampNanos;
+            types[tail] = type;
+            codes[tail] = code;
+            values[tail] = value;
+            enqueuedNanos[tail] = System.nanoTime();
+            size++;
+            if (size > maxQueueDepth) maxQueueDepth = size;
+            if (!scheduled) {
+                scheduled = true;
+                schedule = true;
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (schedule) submit();
+    }
+
+    /**
+     * Apply the overflow policy to a full queue. Called with lock held.
+     *
+     * @return true if there is room for the event now, false if it was merged or dropped.
+     */
+    private boolean makeRoom(int type, int code, int value) {
+        switch (overflow) {
+            case BLOCK:
+                return awaitRoom();
+            case PRIORITIZE_DISCRETE:
+                /* motion only gets here when nothing could be folded */
+                return awaitRoom();
+            case COALESCE_MOTION:
+                if (coalesce(type, code, value)) {
+                    coalescedCount++;
+                    return false;
+                }
+                /* nothing to merge with */
+                return dropOldest();
+            default:
+                return dropOldest();
+        }
+    }
+
+    /**
+     * Free a slot of a full queue for incoming motion without losing any: take out the oldest queued motion which is
+     * followed by a later event of the same axis, queued or incoming, adding a relative delta to that event and
+     * letting an absolute value be overridden by it. Called with lock held.
+     *
+     * @return the relative motion taken out of the queue that the incoming event has to carry, 0 if none. The queue
+     * is still full if no queued motion could be folded.
+     */
+    private int makeRoomForMotion(int type, int code) {
+        for (int i = 0; i < size; i++) {
+            int index = (head + i) % capacity;
+            int queuedType = types[index];
+            int queuedCode = codes[index];
+            if (!isMotion(queuedType, queuedCode)) continue;
+            for (int j = i + 1; j < size; j++) {
+                int later = (head + j) % capacity;
+                if (types[later] == queuedType && codes[later] == queuedCode) {
+                    if (queuedType == InputEvent.EV_REL) values[later] += values[index];
+                    remove(i);
+                    coalescedCount++;
+                    return 0;
+                }
+            }
+            if (queuedType == type && queuedCode == code) {
+                int carried = type == InputEvent.EV_REL ? values[index] : 0;
+                remove(i);
+                coalescedCount++;
+                return carried;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Make room by dropping the oldest queued event. Called with lock held.
+     *
+     * @return true, there is room now.
+     */
+    private boolean dropOldest() {
+        head = (head + 1) % capacity;
+        size--;
+        droppedCount++;
+        return true;
+    }
+
+    /**
+     * Wait for the drain task to make room in a full queue. Called with lock held.
+     *
+     * @return false if the lane was closed or the reader interrupted meanwhile.
+     */
+    private boolean awaitRoom() {
+        if (size == capacity) blockedCount++;
+        while (size == capacity && !closed) {
+            try {
+                notFull.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                droppedCount++;
+                return false;
+            }
+        }
+        return !closed;
+    }
+
+    /**
+     * Merge an event into the queue, looking back from the newest event no further than the last non-motion event.
+     * Called with lock held.
+     */
+    private boolean coalesce(int type, int code, int value) {
+        int newest = (head + size - 1) % capacity;
+        if (type == InputEvent.EV_SYN) {
+            /* a frame with nothing left in it */
+            return code == InputEvent.SYN_REPORT && types[newest] == InputEvent.EV_SYN
+                    && codes[newest] == InputEvent.SYN_REPORT;
+        }
+        if (!isMotion(type, code)) return false;
+        for (int i = size - 1; i >= 0; i--) {
+            int index = (head + i) % capacity;
+            int queuedType = types[index];
+            int queuedCode = codes[index];
+            if (queuedType == type && queuedCode == code) {
+                values[index] = type == InputEvent.EV_REL ? values[index] + value : value;
+                return true;
+            }
+            if (!isMotion(queuedType, queuedCode) && queuedType != InputEvent.EV_MSC
+                    && !(queuedType == InputEvent.EV_SYN && queuedCode == InputEvent.SYN_REPORT)) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether an event only updates the position of an axis, and can be merged into an earlier event of the same
+     * axis. Multitouch slot and tracking id changes are not motion: they tell which contact the next axes belong to.
+     */
+    private static boolean isMotion(int type, int code) {
+        return type == InputEvent.EV_REL
+                || type == InputEvent.EV_ABS && code != InputEvent.ABS_MT_SLOT && code != InputEvent.ABS_MT_TRACKING_ID;
+    }
+
+    /**
+     * Take the i-th queued event out of the queue, moving the older ones up by one. Called with lock held.
+     */
+    private void remove(int i) {
+        for (; i > 0; i--) {
+            int to = (head + i) % capacity;
+            int from = (head + i - 1) % capacity;
+            deviceIds[to] = deviceIds[from];
+            timestamps[to] = timestamps[from];
+            types[to] = types[from];
+            codes[to] = codes[from];
+            values[to] = values[from];
+            enqueuedNanos[to] = enqueuedNanos[from];
+        }
+        head = (head + 1) % capacity;
+        size--;
+    }
+
+    private void submit() {
+        try {
+            executor.execute(drain);
+        } catch (RejectedExecutionException e) {
+            logger.warn("Executor of {} rejected it, events are not delivered", this);
+            lock.lock();
+            try {
+                scheduled = false;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Deliver queued events to the listener, taking them out of the queue up to DRAIN_BATCH at a time, and
+     * submitting itself again after each batch while events are left, so that lanes sharing an executor take turns.
+     */
+    private void drain() {
+        int count;
+        lock.lock();
+        try {
+            count = Math.min(size, batchTypes.length);
+            if (count == 0) {
+                drained();
+                return;
+            }
+            for (int i = 0; i < count; i++) {
+                int index = (head + i) % capacity;
+                batchDeviceIds[i] = deviceIds[index];
+                batchTimestamps[i] = timestamps[index];
+                batchTypes[i] = types[index];
+                batchCodes[i] = codes[index];
+                batchValues[i] = values[index];
+            }
+            long lag = System.nanoTime() - enqueuedNanos[head];
+            if (lag > maxLagNanos) maxLagNanos = lag;
+            head = (head + count) % capacity;
+            size -= count;
+            if (overflow == Overflow.BLOCK || overflow == Overflow.PRIORITIZE_DISCRETE) notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        for (int i = 0; i < count; i++) {
+            try {
+                listener.onEvent(batchDeviceIds[i], batchTimestamps[i], batchTypes[i], batchCodes[i], batchValues[i]);
+            } catch (RuntimeException e) {
+                failureCount++;
+                logger.warn("Listener {} failed", listener, e);
+            }
+        }
+        deliveredCount += count;
+        boolean more;
+        lock.lock();
+        try {
+            more = size > 0;
+            if (!more) drained();
+        } finally {
+            lock.unlock();
+        }
+        if (more) submit();
+    }
+
+    /**
+     * Note that no drain task is pending anymore, and stop the dedicated thread if the lane was closed meanwhile.
+     * Called with lock held.
+     */
+    private void drained() {
+        scheduled = false;
+        if (closed && ownExecutor != null) ownExecutor.shutdown();
+    }
+
+    /**
+     * @return the number of events waiting for the listener.
+     */
+    public int getQueueDepth() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return the largest number of events that ever waited for the listener.
+     */
+    public int getMaxQueueDepth() {
+        return maxQueueDepth;
+    }
+
+    /**
+     * @return how long the oldest event still queued has been waiting, 0 if none is.
+     */
+    public long getLagNanos() {
+        lock.lock();
+        try {
+            return size == 0 ? 0 : System.nanoTime() - enqueuedNanos[head];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the longest any event waited before being taken out of the queue for delivery.
+     */
+    public long getMaxLagNanos() {
+        return maxLagNanos;
+    }
+
+    public long getDeliveredCount() {
+        return deliveredCount;
+    }
+
+    /**
+     * @return the number of events lost to the overflow policy.
+     */
+    public long getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * @return the number of events merged into a queued one by {@link Overflow#COALESCE_MOTION} or
+     * {@link Overflow#PRIORITIZE_DISCRETE}.
+     */
+    public long getCoalescedCount() {
+        return coalescedCount;
+    }
+
+    /**
+     * @return how many times the reader waited for room in a full queue, with {@link Overflow#BLOCK} or
+     * {@link Overflow#PRIORITIZE_DISCRETE}.
+     */
+    public long getBlockedCount() {
+        return blockedCount;
+    }
+
+    /**
+     * @return the number of events whose delivery threw.
+     */
+    public long getFailureCount() {
+        return failureCount;
+    }
+
+    /**
+     * Stop queuing events, and release a reader blocked on a full queue. Events already queued are still delivered,
+     * then the dedicated thread, if any, stops.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notFull.signalAll();
+            /* otherwise the running drain task stops the thread once the queue is empty */
+            if (!scheduled && ownExecutor != null) ownExecutor.shutdown();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "DispatchLane[" + listener + "]";
+    }
+
+    public static final class Builder {
+
+        private final RawInputListener listener;
+        private int capacity = DEFAULT_CAPACITY;
+        private Overflow overflow = Overflow.DROP_OLDEST;
+        private Executor executor;
+
+        private Builder(RawInputListener listener) {
+            if (listener == null) {
+                throw new NullPointerException("listener");
+            }
+            this.listener = listener;
+        }
+
+        /**
+         * Queue up to capacity events, {@link #DEFAULT_CAPACITY} by default.
+         */
+        public Builder capacity(int capacity) {
+            if (capacity < 1) {
+                throw new IllegalArgumentException("A lane holds at least one event");
+            }
+            this.capacity = capacity;
+            return this;
+        }
+
+        /**
+         * What to do when the queue is full, {@link Overflow#DROP_OLDEST} by default.
+         */
+        public Builder overflow(Overflow overflow) {
+            this.overflow = overflow;
+            return this;
+        }
+
+        /**
+         * Deliver events from tasks of the given executor, shared with other lanes, instead of a thread of the lane.
+         * Events of one lane are still delivered one at a time, in order.
+         */
+        public Builder executor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        public DispatchLane build() {
+            return new DispatchLane(this);
+        }
+    }
+}
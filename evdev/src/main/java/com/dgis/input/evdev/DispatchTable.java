@@ -0,0 +1,124 @@
+/**
+ * This file is part of evdev-java - Java implementation.
+ *
+ * evdev-java - Java implementation is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * evdev-java - Java implementation is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with evdev-java - Java implementation.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.dgis.input.evdev;
+
+import javax.annotation.concurrent.Immutable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * The listeners of a device indexed by event type and code, so that dispatching an event is one lookup and a loop
+ * over the listeners which asked for it. Listeners keep the order they were registered in. Rebuilt whenever a
+ * listener is added or removed.
+ */
+@Immutable
+final class DispatchTable {
+
+    private static final RawInputListener[] NO_LISTENERS = new RawInputListener[0];
+
+    static final DispatchTable EMPTY = build(new ArrayList<>(), null);
+
+    /**
+     * Listeners taking every event, for types out of range.
+     */
+    private final RawInputListener[] catchAll;
+
+    /**
+     * Listeners taking every code of each type.
+     */
+    private final RawInputListener[][] byType;
+
+    /**
+     * Listeners of each code, indexed by type then code. null for a type no listener takes only some codes of, as
+     * byType then has the answer.
+     */
+    private final RawInputListener[][][] byCode;
+
+    private DispatchTable(RawInputListener[] catchAll, RawInputListener[][] byType, RawInputListener[][][] byCode) {
+        this.catchAll = catchAll;
+        this.byType = byType;
+        this.byCode = byCode;
+    }
+
+    /**
+     * @param listeners The listeners in registration order. Those registered with a mask are MaskedListeners.
+     * @param metrics   The metrics timing each listener, or null to call listeners directly.
+     */
+    static DispatchTable build(List<RawInputListener> listeners, EventDeviceMetrics metrics) {
+        RawInputListener[] registered = listeners.toArray(new RawInputListener[0]);
+        RawInputListener[] targets = new RawInputListener[registered.length];
+        EventMask[] masks = new EventMask[registered.length];
+        for (int i = 0; i < registered.length; i++) {
+            RawInputListener listener = registered[i];
+            if (listener instanceof MaskedListener) {
+                targets[i] = ((MaskedListener) listener).getListener();
+                masks[i] = ((MaskedListener) listener).getEventMask();
+            } else {
+                targets[i] = listener;
+                masks[i] = EventMask.ALL;
+            }
+            if (metrics != null) targets[i] = metrics.timed(targets[i]);
+        }
+        RawInputListener[] catchAll = select(targets, masks, mask -> mask == EventMask.ALL);
+        RawInputListener[][] byType = new RawInputListener[InputEvent.EV_CNT][];
+        RawInputListener[][][] byCode = new RawInputListener[InputEvent.EV_CNT][][];
+        for (int type = 0; type < InputEvent.EV_CNT; type++) {
+            int t = type;
+            byType[type] = select(targets, masks, mask -> mask.includesAllCodes(t));
+            boolean partial = false;
+            for (EventMask mask : masks) {
+                if (mask.includes(type) && !mask.includesAllCodes(type)) partial = true;
+            }
+            if (!partial) continue;
+            byCode[type] = new RawInputListener[InputEvent.KEY_CNT][];
+            for (int code = 0; code < InputEvent.KEY_CNT; code++) {
+                int c = code;
+                RawInputListener[] selected = select(targets, masks, mask -> mask.includes(t, c));
+                /* neighbouring codes usually have the same listeners: share the array */
+                byCode[type][code] = code > 0 && Arrays.equals(selected, byCode[type][code - 1])
+                        ? byCode[type][code - 1] : selected;
+            }
+        }
+        return new DispatchTable(catchAll, byType, byCode);
+    }
+
+    private static RawInputListener[] select(RawInputListener[] targets, EventMask[] masks, Predicate<EventMask> test) {
+        int count = 0;
+        for (EventMask mask : masks) {
+            if (test.test(mask)) count++;
+        }
+        if (count == 0) return NO_LISTENERS;
+        RawInputListener[] selected = new RawInputListener[count];
+        count = 0;
+        for (int i = 0; i < targets.length; i++) {
+            if (test.test(masks[i])) selected[count++] = targets[i];
+        }
+        return selected;
+    }
+
+    /**
+     * @return the listeners of an event, in registration order. Not to be modified.
+     */
+    RawInputListener[] get(int type, int code) {
+        if (type < 0 || type >= InputEvent.EV_CNT) return catchAll;
+        RawInputListener[][] codes = byCode[type];
+        if (codes == null || code < 0 || code >= codes.length) return byType[type];
+        return codes[code];
+    }
+}
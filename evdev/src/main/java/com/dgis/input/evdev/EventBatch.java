@@ -0,0 +1,129 @@
+/**
+ * This file is part of evdev-java - Java implementation.
+ *
+ * evdev-java - Java implementation is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * evdev-java - Java implementation is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with evdev-java - Java implementation.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.dgis.input.evdev;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.Arrays;
+
+/**
+ * The events delivered by one read of a device, as parallel arrays of timestamps, types, codes and values, read
+ * through indexes.
+ * <p/>
+ * An EventDevice fills every batch into the same instance, which only grows while it meets reads bigger than any
+ * before. Its content is only valid during {@link BatchListener#events(EventBatch)}.
+ */
+@NotThreadSafe
+public final class EventBatch {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final int deviceId;
+    private int size;
+
+    private long[] timestamps = new long[INITIAL_CAPACITY];
+    private int[] types = new int[INITIAL_CAPACITY];
+    private int[] codes = new int[INITIAL_CAPACITY];
+    private int[] values = new int[INITIAL_CAPACITY];
+
+    EventBatch(int deviceId) {
+        this.deviceId = deviceId;
+    }
+
+    /**
+     * @return The id of the EventDevice reporting the events, see {@link EventDevice#getDeviceId()}.
+     */
+    public int getDeviceId() {
+        return deviceId;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return The kernel timestamp of an event, in nanoseconds.
+     */
+    public long getTimestampNanos(int index) {
+        checkIndex(index);
+        return timestamps[index];
+    }
+
+    public int getType(int index) {
+        checkIndex(index);
+        return types[index];
+    }
+
+    public int getCode(int index) {
+        checkIndex(index);
+        return codes[index];
+    }
+
+    public int getValue(int index) {
+        checkIndex(index);
+        return values[index];
+    }
+
+    /**
+     * Hand every event of the batch to listener, in order.
+     */
+    public void forEach(RawInputListener listener) {
+        for (int i = 0; i < size; i++) {
+            listener.onEvent(deviceId, timestamps[i], types[i], codes[i], values[i]);
+        }
+    }
+
+    void add(long timestampNanos, int type, int code, int value) {
+        if (size == types.length) {
+            timestamps = Arrays.copyOf(timestamps, 2 * size);
+            types = Arrays.copyOf(types, 2 * size);
+            codes = Arrays.copyOf(codes, 2 * size);
+            values = Arrays.copyOf(values, 2 * size);
+        }
+        timestamps[size] = timestampNanos;
+        types[size] = type;
+        codes[size] = code;
+        values[size] = value;
+        size++;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    /**
+     * @return The number of events the batch holds without growing.
+     */
+    int capacity() {
+        return types.length;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of batch of " + size + " events");
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("EventBatch(deviceId=").append(deviceId).append(", events=[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) builder.append(", ");
+            builder.append(types[i]).append('/').append(codes[i]).append('=').append(values[i]);
+        }
+        return builder.append("])").toString();
+    }
+}
@@ -19,24 +19,16 @@ package com.dgis.input.evdev;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import java.nio.channels.FileChannel;
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CopyOnWriteArrayList;
-
-import static sun.misc.SharedSecrets.getJavaIOFileDescriptorAccess;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Represents a connection to a Linux Evdev device.
@@ -52,15 +44,61 @@ public class EventDevice {
 
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
-    private final NativeEventDevice nativeEventDevice;
+    private static final AtomicInteger NEXT_DEVICE_ID = new AtomicInteger();
+
+    /**
+     * Native calls on fd. null if the source is not backed by a file descriptor.
+     */
+    private NativeEventDevice nativeEventDevice;
+
+    /**
+     * Where events are read from.
+     */
+    private final EventSource source;
+
+    /**
+     * Process-wide unique id of this device, passed to RawInputListeners.
+     */
+    private final int deviceId = NEXT_DEVICE_ID.incrementAndGet();
+
+    /**
+     * Notify these guys about input events. InputListeners are wrapped in an InputListenerAdapter.
+     */
+    private final List<RawInputListener> listeners = new CopyOnWriteArrayList<>();
 
-    /** system architecture, for arch-specific struct handling */
-    private String arch = "amd64";
+    /**
+     * The listeners indexed by the events they take, rebuilt from listeners whenever it changes. Written under
+     * listeners.
+     */
+    private volatile DispatchTable dispatch = DispatchTable.EMPTY;
+
+    /**
+     * Notify these guys about whole frames.
+     */
+    private final List<FrameListener> frameListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Frame being assembled by the reader thread, while there are FrameListeners.
+     */
+    private final EventFrame frame = new EventFrame(deviceId);
+
+    private final List<BatchListener> batchListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Events of the current read, for the BatchListeners. Only used by the reading thread.
+     */
+    private final EventBatch batch = new EventBatch(deviceId);
 
     /**
-     * Notify these guys about input events.
+     * Flyweight the reader thread decodes every event into.
      */
-    private final List<InputListener> listeners = new CopyOnWriteArrayList<>();
+    private final InputEventView currentEvent = new InputEventView();
+
+    /**
+     * Distributes the synthetic events of a resync through currentEvent.
+     */
+    private final RawInputListener resyncSink = (deviceId, timestampNanos, type, code, value) ->
+            distributeEvent(currentEvent.set(deviceId, timestampNanos, type, code, value));
 
     /**
      * Device filename we're using.
@@ -68,11 +106,74 @@ public class EventDevice {
     private final String device;
 
     /**
-     * Attached to device we're using.
+     * Default number of input_event structs pulled from the kernel by a single read().
+     */
+    public static final int DEFAULT_BATCH_CAPACITY = 64;
+
+    /**
+     * How long close() waits for the reader thread to stop.
+     */
+    private static final long CLOSE_TIMEOUT_MILLIS = 1000;
+
+    /**
+     * How long the reader of a source without fd waits before reading again, when nothing was available.
+     */
+    private static final long IDLE_PARK_NANOS = 100000;
+
+    /**
+     * Non-blocking fd of the source, or -1 if it is not backed by one.
+     */
+    private int fd = -1;
+
+    /**
+     * eventfd waking up the reader thread, so that it notices terminate without waiting for device input.
+     */
+    private int wakeFd = -1;
+
+    /**
+     * Layout of the input_event structs produced by the source, chosen once.
+     */
+    private final InputEventAbi abi;
+
+    /**
+     * Size in bytes of one input_event struct in that layout.
+     */
+    private final int structSize;
+
+    /**
+     * Reusable direct buffer holding up to batchCapacity structs. The native read() fills it in place.
      */
-    private FileChannel deviceInput;
     private final ByteBuffer inputBuffer;
-    private int fd;
+
+    /**
+     * Number of read() calls issued on the device, and number of events decoded from them.
+     * Only written by the reader thread.
+     */
+    private volatile long readCount;
+    private volatile long eventCount;
+
+    /**
+     * Number of times the reader thread woke up, and how many of those wakeups found nothing to read.
+     */
+    private volatile long wakeupCount;
+    private volatile long emptyWakeupCount;
+
+    /**
+     * Number of times a listener threw instead of returning.
+     */
+    private volatile long listenerFailureCount;
+
+    /**
+     * Counters and histograms, null while metrics are disabled.
+     */
+    private volatile EventDeviceMetrics metrics;
+
+    /**
+     * Set once the device has disappeared. The reader then parks until close().
+     */
+    private volatile boolean removed = false;
+
+    private final List<DeviceRemovedListener> removedListeners = new CopyOnWriteArrayList<>();
 
 
     /**
@@ -81,27 +182,83 @@ public class EventDevice {
     private volatile boolean terminate = false;
 
     /**
-     * This thread repeatedly calls readEvent().
+     * This thread repeatedly calls readEvent(). Not used when the device is read by a reactor.
      */
     private Thread readerThread;
 
+    /**
+     * The reactor reading this device, or null if it has its own reader thread.
+     */
+    private final EventDeviceReactor reactor;
+
     private final short[] idResponse = new short[4];
 
     private int evdevVersionResponse;
 
     private String deviceNameResponse;
 
+    private String physResponse = "";
+
+    private String uniqResponse = "";
+
+    /**
+     * Supported event types and codes.
+     */
+    private DeviceCapabilities capabilities = DeviceCapabilities.NONE;
+
     /**
-     * Maps supported event types (keys) to lists of supported event codes.
+     * What the source reported when opened.
      */
-    private final HashMap<Integer, List<Integer>> supportedEvents = new HashMap<>();
+    private DeviceInfo info;
 
+    /**
+     * Maps supported event types (keys) to lists of supported event codes. Derived from capabilities on first use.
+     */
+    private volatile Map<Integer, List<Integer>> supportedEvents;
+
+
+    /**
+     * State of the device as tracked from its events, to recover from SYN_DROPPED. Only used by the reading thread
+     * once the device is open.
+     */
+    private DeviceState state;
+
+    /**
+     * Number of MT slots of the device, 0 if it does not report ABS_MT_SLOT.
+     */
+    private int slotCount;
+
+    /**
+     * Latest state for pollers, created on first request. Guarded by listeners.
+     */
+    private volatile InputStateView inputState;
+
+    /**
+     * Mask set by setEventMask(), or null while the mask is derived from the listeners.
+     */
+    private EventMask explicitMask;
+
+    /**
+     * Mask currently applied by the kernel. Guarded by listeners.
+     */
+    private volatile EventMask kernelMask = EventMask.ALL;
+
+    /**
+     * Cleared once the kernel turned EVIOCSMASK down, so that listener changes do not retry it.
+     */
+    private boolean kernelMaskSupported = true;
 
     /**
      * Ensures only one instance of InputAxisParameters is created for each axis (more would be wasteful).
      */
     private final HashMap<Integer, InputAxisParameters> axisParams = new HashMap<>();
 
+    /**
+     * Incremented whenever axis parameters may have changed behind the back of the InputAxisParameters, so that
+     * they read them again.
+     */
+    private volatile long absInfoGeneration;
+
     /**
      * Create an EventDevice by connecting to the provided device filename.
      * If the device file is accessible, open it and begin listening for events.
@@ -110,74 +267,169 @@ public class EventDevice {
      * @throws IOException If the device is not found, or is otherwise inaccessible.
      */
     public EventDevice(File device) throws IOException {
-        // check for embedded library:
-        arch = System.getProperty("os.arch");
-        logger.info("EventDevice: System: {}", arch);
-        if (arch.equals("arm")) {
-            inputBuffer = ByteBuffer.allocate(InputEvent.STRUCT_SIZE_BYTES_ARM);
-        } else {
-            inputBuffer = ByteBuffer.allocate(InputEvent.STRUCT_SIZE_BYTES);
-        }
-        String libPath = "/evdev-native.so";
-        logger.info("EventDevice: libPath: {}", libPath);
-        InputStream in = EventDevice.class.getResourceAsStream(libPath);
-        logger.info("EventDevice: in: {}", in);
-        if (in != null) {
-            final File nativeLibFile = File.createTempFile("libevdev-java", ".so");
-            nativeLibFile.deleteOnExit();
-
-            final OutputStream out = new BufferedOutputStream(new FileOutputStream(nativeLibFile));
-
-            int len;
-            byte[] buffer = new byte[8192];
-            while ((len = in.read(buffer)) > -1) {
-                out.write(buffer, 0, len);
-            }
-            out.close();
-            in.close();
+        this(device, DEFAULT_BATCH_CAPACITY);
+    }
 
-            System.load(nativeLibFile.getAbsolutePath());
-        } else {
-            logger.warn("EventDevice: falling back to java.library.path.");
-            System.loadLibrary("evdev-java");
+    /**
+     * Create an EventDevice by connecting to the provided device filename, reading up to batchCapacity events per
+     * read() call.
+     *
+     * @param device        The path to the device file. Usually one of /dev/input/event*
+     * @param batchCapacity The maximum number of events fetched from the kernel by a single read.
+     * @throws IOException If the device is not found, or is otherwise inaccessible.
+     */
+    public EventDevice(File device, int batchCapacity) throws IOException {
+        this(device, batchCapacity, null);
+    }
+
+    /**
+     * Create an EventDevice by connecting to the provided device filename. Instead of starting a dedicated reader
+     * thread, the device is read by the given reactor.
+     *
+     * @param device  The path to the device file. Usually one of /dev/input/event*
+     * @param reactor The reactor reading the device.
+     * @throws IOException If the device is not found, or is otherwise inaccessible.
+     */
+    public EventDevice(File device, EventDeviceReactor reactor) throws IOException {
+        this(device, DEFAULT_BATCH_CAPACITY, reactor);
+    }
+
+    /**
+     * Create an EventDevice by connecting to the provided device filename, reading up to batchCapacity events per
+     * read() call.
+     *
+     * @param device        The path to the device file. Usually one of /dev/input/event*
+     * @param batchCapacity The maximum number of events fetched from the kernel by a single read.
+     * @param reactor       The reactor reading the device, or null to start a dedicated reader thread.
+     * @throws IOException If the device is not found, or is otherwise inaccessible.
+     */
+    public EventDevice(File device, int batchCapacity, EventDeviceReactor reactor) throws IOException {
+        this(new DeviceNodeSource(device), batchCapacity, reactor);
+    }
+
+    /**
+     * Create an EventDevice reading events from the given source, and begin listening for events.
+     *
+     * @param source Where events come from.
+     * @throws IOException If the source cannot be opened.
+     */
+    public EventDevice(EventSource source) throws IOException {
+        this(source, DEFAULT_BATCH_CAPACITY, null);
+    }
+
+    /**
+     * Create an EventDevice reading events from the given source, up to batchCapacity events per read() call.
+     *
+     * @param source        Where events come from.
+     * @param batchCapacity The maximum number of events fetched from the source by a single read.
+     * @param reactor       The reactor reading the device, or null to start a dedicated reader thread. Only sources
+     *                      backed by a file descriptor can be read by a reactor.
+     * @throws IOException If the source cannot be opened.
+     */
+    public EventDevice(EventSource source, int batchCapacity, EventDeviceReactor reactor) throws IOException {
+        if (batchCapacity < 1) {
+            throw new IllegalArgumentException("Batch capacity has to be at least 1");
         }
-        this.device = device.getAbsolutePath();
-        this.nativeEventDevice = new NativeEventDevice();
+        logger.info("EventDevice: System: {}", System.getProperty("os.arch"));
+        abi = source.getAbi();
+        structSize = abi.getStructSize();
+        inputBuffer = ByteBuffer.allocateDirect(structSize * batchCapacity);
+        this.device = source.getPath();
+        this.source = source;
+        this.reactor = reactor;
         inputBuffer.order(ByteOrder.LITTLE_ENDIAN);
         initDevice();
     }
 
     /**
-     * Get various ID info. Then, open the file, get the channel, and start the reader thread.
+     * Create an EventDevice which is not connected to anything, and does not need the native library. Events only
+     * come from the caller, through distributeEvent(). Lets benchmarks measure dispatch without hardware.
+     *
+     * @param name         The name and path reported by the device.
+     * @param capabilities What the device claims to support.
+     */
+    EventDevice(String name, DeviceCapabilities capabilities) {
+        abi = InputEventAbi.host();
+        structSize = abi.getStructSize();
+        inputBuffer = ByteBuffer.allocateDirect(structSize * DEFAULT_BATCH_CAPACITY).order(ByteOrder.LITTLE_ENDIAN);
+        device = name;
+        deviceNameResponse = name;
+        source = null;
+        reactor = null;
+        this.capabilities = capabilities;
+        info = DeviceInfo.builder(name).capabilities(capabilities).build();
+        state = new DeviceState(null, -1, 0);
+    }
+
+    /**
+     * Open the source and get various ID info. Then, start the reader thread or register with the reactor.
      *
      * @throws IOException
      */
     private void initDevice() throws IOException {
-        if (!nativeEventDevice.ioctlGetID(device, idResponse)) {
-            logger.error("WARN: couldn't get device ID: {}", device);
-            Arrays.fill(idResponse, (short) 0);
-        }
-        evdevVersionResponse = nativeEventDevice.ioctlGetEvdevVersion(device);
-        byte[] devName = new byte[255];
-        if (nativeEventDevice.ioctlGetDeviceName(device, devName)) {
-            deviceNameResponse = new String(devName);
+        source.open();
+        try {
+            startReading();
+        } catch (IOException | RuntimeException | Error e) {
+            /* nothing reads the source yet: release it, and the wakeup fd if there is one */
+            closeSource();
+            if (wakeFd >= 0) nativeEventDevice.close(wakeFd);
+            throw e;
+        }
+    }
+
+    /**
+     * Get the ID info of the open source, then start the reader thread or register with the reactor.
+     *
+     * @throws IOException If the device cannot be read.
+     */
+    private void startReading() throws IOException {
+        fd = source.getFd();
+
+        info = source.getInfo();
+        System.arraycopy(info.getId(), 0, idResponse, 0, idResponse.length);
+        evdevVersionResponse = info.getEvdevVersion();
+        deviceNameResponse = info.getName();
+        physResponse = info.getPhys();
+        uniqResponse = info.getUniq();
+        capabilities = info.getCapabilities();
+
+        if (fd >= 0) {
+            if (source instanceof FdEventSource) {
+                nativeEventDevice = ((FdEventSource) source).nativeEventDevice;
+            } else {
+                NativeLoader.load();
+                nativeEventDevice = new NativeEventDevice();
+            }
+            slotCount = info.getSlotCount();
+            state = new DeviceState(nativeEventDevice, fd, slotCount);
+            state.resync(deviceId, 0, EventMask.ALL, null);
         } else {
-            logger.error("WARN: couldn't get device name: {}", device);
-            deviceNameResponse = "Unknown Device";
+            state = new DeviceState(null, -1, 0);
         }
 
-        readSupportedEvents();
+        if (reactor != null) {
+            if (fd < 0) {
+                throw new IOException("A reactor can only read sources backed by a file descriptor: " + device);
+            }
+            reactor.register(this);
+            return;
+        }
 
-        FileInputStream fis = new FileInputStream(device);
-        deviceInput = fis.getChannel();
-        fd = getJavaIOFileDescriptorAccess().get(fis.getFD());
+        if (fd >= 0) {
+            wakeFd = nativeEventDevice.eventfdCreate();
+            if (wakeFd < 0) {
+                throw new IOException("Cannot create wakeup fd for " + device + ", errno " + -wakeFd);
+            }
+        }
 
-        readerThread = new Thread() {
+        readerThread = new Thread("evdev-reader-" + device) {
             @Override
             public void run() {
-                while (!terminate) {
-                    InputEvent ev = readEvent();
-                    distributeEvent(ev);
+                if (fd >= 0) {
+                    readLoop();
+                } else {
+                    streamLoop();
                 }
             }
         };
@@ -187,94 +439,425 @@ public class EventDevice {
     }
 
     /**
-     * Get supported events from device, and place into supportedEvents.
-     * Adapted from evtest.c.
-     */
-    private void readSupportedEvents() {
-        //System.out.println("Detecting device capabilities...");
-        long[][] bit = new long[InputEvent.EV_MAX][NBITS(InputEvent.KEY_MAX)];
-        nativeEventDevice.ioctlEVIOCGBIT(device, bit[0], 0, bit[0].length);
-        /* Loop over event types */
-        for (int i = 0; i < InputEvent.EV_MAX; i++) {
-            if (testBit(bit[0], i)) { /* Is this event supported? */
-                //System.out.printf("  Event type %d\n", i);
-                if (i == 0) continue;
-                ArrayList<Integer> supportedTypes = new ArrayList<>();
-                nativeEventDevice.ioctlEVIOCGBIT(device, bit[i], i, InputEvent.KEY_MAX);
-                /* Loop over event codes for type */
-                for (int j = 0; j < InputEvent.KEY_MAX; j++)
-                    if (testBit(bit[i], j)) { /* Is this event code supported? */
-                        //System.out.printf("    Event code %d\n", j);
-                        supportedTypes.add(j);
-                    }
-                supportedEvents.put(i, supportedTypes);
+     * Body of the reader thread: wait in poll() for input or a wakeup, and read what is available. Once the device
+     * is gone, only wait for the wakeup sent by close().
+     */
+    private void readLoop() {
+        while (!terminate) {
+            int ready = nativeEventDevice.poll(removed ? -1 : fd, wakeFd, -1);
+            wakeupCount++;
+            if (ready == -NativeEventDevice.EINTR) continue;
+            if (ready < 0) {
+                logger.error("poll failed on {}, errno {}", device, -ready);
+                return;
+            }
+            if ((ready & NativeEventDevice.POLL_WAKEUP) != 0) {
+                nativeEventDevice.eventfdClear(wakeFd);
+            }
+            if (terminate) return;
+            if ((ready & (NativeEventDevice.POLL_READABLE | NativeEventDevice.POLL_HANGUP)) == 0 || removed) {
+                emptyWakeupCount++;
+                continue;
+            }
+            if (readAvailable() == 0) {
+                emptyWakeupCount++;
             }
         }
     }
 
-    private boolean testBit(long[] array, int bit) {
-        return ((array[LONG(bit)] >>> OFF(bit)) & 1) != 0;
+    /**
+     * Body of the reader thread of a source without fd: read again as soon as listeners are done with the previous
+     * batch, resting a little when the source has nothing. Once the source is exhausted, park until close().
+     */
+    private void streamLoop() {
+        while (!terminate) {
+            if (removed) {
+                LockSupport.park(this);
+            } else if (readAvailable() == 0) {
+                wakeupCount++;
+                emptyWakeupCount++;
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+        }
     }
 
-    private int LONG(int x) {
-        return x / (64);
+    /**
+     * Decode the input_event struct found at offset in the input buffer into the reusable currentEvent, reading the
+     * fields straight out of the buffer.
+     *
+     * @param offset The position of the struct in inputBuffer.
+     * @return currentEvent
+     */
+    private InputEventView decode(int offset) {
+        return abi.decode(inputBuffer, offset, deviceId, currentEvent);
     }
 
-    private int OFF(int x) {
-        return x % (64);
+    /**
+     * Distribute an event to the registered listeners taking it.
+     *
+     * @param event The event to distribute.
+     */
+    void distributeEvent(InputEventView event) {
+        for (RawInputListener listener : dispatch.get(event.getType(), event.getCode())) {
+            try {
+                listener.onEvent(event.getDeviceId(), event.getTimestampNanos(), event.getType(), event.getCode(),
+                        event.getValue());
+            } catch (RuntimeException e) {
+                listenerFailed(listener, e);
+            }
+        }
+        if (!batchListeners.isEmpty()) {
+            batch.add(event.getTimestampNanos(), event.getType(), event.getCode(), event.getValue());
+        }
+        if (!frameListeners.isEmpty()) {
+            assembleFrame(event);
+        } else if (frame.size() != 0) {
+            /* The last FrameListener left in the middle of a frame */
+            frame.clear();
+        }
     }
 
-    private int NBITS(int x) {
-        return ((((x) - 1) / (8 * 8)) + 1);
+    /**
+     * Add an event to the current frame, or hand the frame to the FrameListeners on SYN_REPORT.
+     */
+    private void assembleFrame(InputEventView event) {
+        if (event.getType() != InputEvent.EV_SYN || event.getCode() != InputEvent.SYN_REPORT) {
+            frame.add(event.getType(), event.getCode(), event.getValue());
+            return;
+        }
+        frame.close(event.getTimestampNanos());
+        EventDeviceMetrics metrics = this.metrics;
+        for (FrameListener listener : frameListeners) {
+            long start = metrics == null ? 0 : System.nanoTime();
+            try {
+                listener.onFrame(frame);
+            } catch (RuntimeException e) {
+                listenerFailed(listener, e);
+            }
+            if (metrics != null) metrics.listenerCalled(metrics.listener(listener), System.nanoTime() - start);
+        }
+        frame.clear();
     }
 
     /**
-     * Distribute an event to all registered listeners.
-     *
-     * @param inputEvent The event to distribute.
+     * Hand the events gathered since the last call to the BatchListeners.
      */
-    private void distributeEvent(InputEvent inputEvent) {
-        for (InputListener listener : listeners) {
-            listener.event(inputEvent);
+    void flushBatch() {
+        if (batch.size() == 0) return;
+        EventDeviceMetrics metrics = this.metrics;
+        for (BatchListener listener : batchListeners) {
+            long start = metrics == null ? 0 : System.nanoTime();
+            try {
+                listener.events(batch);
+            } catch (RuntimeException e) {
+                listenerFailed(listener, e);
+            }
+            if (metrics != null) metrics.listenerCalled(metrics.listener(listener), System.nanoTime() - start);
         }
+        batch.clear();
+    }
+
+    /**
+     * Keep a failing listener from stopping the reader, and from depriving the other listeners of the event.
+     */
+    private void listenerFailed(Object listener, RuntimeException e) {
+        listenerFailureCount++;
+        logger.error("Listener {} of {} failed", listener, device, e);
     }
 
     /**
-     * Obtain an InputEvent from the input channel. Delegate to InputEvent for parsing.
+     * Read whatever the non-blocking device has ready, up to the batch capacity, with a single read() and distribute
+     * it. Called by the reader thread or the reactor when the device is readable.
      *
-     * @return
+     * @return the number of events distributed, or -1 if the device cannot be read anymore.
      */
-    private InputEvent readEvent() {
+    int readAvailable() {
+        int n;
         try {
-            /* Read exactly the amount of bytes specified by InputEvent.STRUCT_SIZE_BYTES (intrinsic size of inputBuffer)*/
+            n = source.read(inputBuffer, inputBuffer.position(), inputBuffer.remaining());
+        } catch (IOException e) {
+            logger.error("Cannot read events from {}", device, e);
             inputBuffer.clear();
-            while (inputBuffer.hasRemaining()) deviceInput.read(inputBuffer);
+            deviceRemoved();
+            return -1;
+        }
+        readCount++;
+        if (n == 0) {
+            return 0;
+        }
+        if (n < 0) {
+            inputBuffer.clear();
+            logger.info("Device {} was removed", device);
+            deviceRemoved();
+            return -1;
+        }
+        inputBuffer.position(inputBuffer.position() + n);
+        return distributeBuffered();
+    }
+
+    /**
+     * Decode and distribute every whole struct in the input buffer, keeping any trailing partial struct for the next
+     * read.
+     *
+     * @return the number of events distributed.
+     */
+    private int distributeBuffered() {
+        /* We want to read now */
+        inputBuffer.flip();
 
-            /* We want to read now */
-            inputBuffer.flip();
+        EventDeviceMetrics metrics = this.metrics;
+        long start = metrics == null ? 0 : metrics.readStarted();
+        int count = 0;
+        while (inputBuffer.remaining() >= structSize) {
+            int offset = inputBuffer.position();
+            InputEventView event = decode(offset);
+            if (metrics != null) metrics.eventRead(event.getType());
+            switch (state.track(event.getType(), event.getCode(), event.getValue())) {
+                case DeviceState.DELIVER:
+                    distributeEvent(event);
+                    break;
+                case DeviceState.RESYNC:
+                    resync(event.getTimestampNanos());
+                    break;
+                default:
+                    break;
+            }
+            inputBuffer.position(offset + structSize);
+            count++;
+        }
+        eventCount += count;
+        flushBatch();
+        if (metrics != null) metrics.readFinished(count, start, count == getBatchCapacity());
 
-            /* Delegate parsing to InputEvent.parse() */
-            return InputEvent.parse(inputBuffer.asShortBuffer(), device, arch);
-        } catch (IOException e) {
-            logger.error("Cannot read event", e);
-            return null;
+        inputBuffer.compact();
+        return count;
+    }
+
+    /**
+     * Decode and distribute structs as if a read() had returned them. Lets benchmarks measure the whole read path of a
+     * device which is not connected to anything.
+     *
+     * @return the number of events distributed.
+     */
+    int distributeRead(ByteBuffer structs) {
+        inputBuffer.put(structs);
+        return distributeBuffered();
+    }
+
+    /**
+     * Bring the listeners back in sync with the device after the kernel dropped events: send them whatever changed
+     * while events were lost, then end the frame.
+     */
+    private void resync(long timestampNanos) {
+        absInfoGeneration++;
+        if (state.resync(deviceId, timestampNanos, kernelMask, resyncSink) < 0) {
+            logger.warn("Events were lost on {}, and its state cannot be read back", device);
         }
+        distributeEvent(currentEvent.set(deviceId, timestampNanos, InputEvent.EV_SYN, InputEvent.SYN_REPORT, 0));
     }
 
+    /**
+     * Stop reading and notify the DeviceRemovedListeners, once.
+     */
+    private void deviceRemoved() {
+        if (removed) return;
+        removed = true;
+        for (DeviceRemovedListener listener : removedListeners) {
+            listener.deviceRemoved(this);
+        }
+    }
+
+    int getFd() {
+        return fd;
+    }
+
+    /**
+     * Stop reading the device and release it. Returns within a bounded time, even if the device never reports
+     * anything.
+     */
     public void close() {
+        if (terminate) return;
         terminate = true;
+        EventDeviceMetrics published = metrics;
+        if (published != null) published.unregister();
+        if (source == null) {
+            /* never connected */
+            return;
+        }
+        if (reactor != null) {
+            /* the fd is only closed once the reactor no longer watches it, later if its loop is late to let go */
+            reactor.unregister(this, this::closeSource);
+            return;
+        }
+        if (fd >= 0) {
+            nativeEventDevice.eventfdSignal(wakeFd);
+        } else {
+            LockSupport.unpark(readerThread);
+        }
         try {
-            readerThread.join();
+            readerThread.join(CLOSE_TIMEOUT_MILLIS);
         } catch (InterruptedException e) {
             logger.error("Interrupted in close", e);
+            Thread.currentThread().interrupt();
         }
+        if (readerThread.isAlive()) {
+            logger.warn("Reader thread of {} did not stop in time", device);
+            return;
+        }
+        closeSource();
+        if (wakeFd >= 0) nativeEventDevice.close(wakeFd);
+    }
+
+    private void closeSource() {
         try {
-            deviceInput.close();
+            source.close();
         } catch (IOException e) {
-            logger.error("Error in close", e);
+            logger.warn("Cannot close {}", device, e);
         }
     }
 
+    /**
+     * @return true once the device has been unplugged, or has otherwise stopped being readable.
+     */
+    public boolean isRemoved() {
+        return removed;
+    }
+
+    /**
+     * Register a callback notified once, from the reading thread, when the device disappears.
+     */
+    public void addDeviceRemovedListener(DeviceRemovedListener listener) {
+        removedListeners.add(listener);
+    }
+
+    public void removeDeviceRemovedListener(DeviceRemovedListener listener) {
+        removedListeners.remove(listener);
+    }
+
+    /**
+     * @return The number of times the reader thread woke up from poll().
+     */
+    public long getWakeupCount() {
+        return wakeupCount;
+    }
+
+    /**
+     * @return The number of reader thread wakeups which did not deliver any event. Stays flat while the device is
+     * idle or removed; a steadily growing value would mean the reader spins.
+     */
+    public long getEmptyWakeupCount() {
+        return emptyWakeupCount;
+    }
+
+    /**
+     * @return The number of times the kernel reported lost events with SYN_DROPPED. Each time, the listeners were
+     * resynchronized with the state of the device.
+     */
+    public long getDropCount() {
+        return state.getDropCount();
+    }
+
+    /**
+     * @return The number of times a listener threw. The exception is logged, and the other listeners still get the
+     * event.
+     */
+    public long getListenerFailureCount() {
+        return listenerFailureCount;
+    }
+
+    /**
+     * Start keeping counters and histograms of what the device reads and how long its listeners take, and publish
+     * them as a JMX MXBean until metrics are disabled or the device is closed. Costs two System.nanoTime() calls per
+     * listener call, plus a few per read.
+     *
+     * @return the metrics of the device, the same until they are disabled.
+     */
+    public EventDeviceMetrics enableMetrics() {
+        synchronized (listeners) {
+            if (metrics == null) {
+                EventDeviceMetrics enabled = new EventDeviceMetrics(this);
+                if (!terminate) enabled.register();
+                metrics = enabled;
+                dispatch = DispatchTable.build(listeners, enabled);
+            }
+            return metrics;
+        }
+    }
+
+    /**
+     * Stop keeping metrics, and withdraw them from JMX.
+     */
+    public void disableMetrics() {
+        synchronized (listeners) {
+            if (metrics == null) return;
+            metrics.unregister();
+            metrics = null;
+            dispatch = DispatchTable.build(listeners, null);
+        }
+    }
+
+    /**
+     * @return the metrics of the device, or null if they are disabled.
+     */
+    public EventDeviceMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Get the latest state of the device, kept up to date by the reader thread from then on, for threads which
+     * would rather poll than listen. The view starts with the state read from the kernel if the source is a device
+     * node, and empty otherwise.
+     *
+     * @return the same view on every call.
+     */
+    public InputStateView getInputState() {
+        InputStateView view = inputState;
+        if (view != null) return view;
+        synchronized (listeners) {
+            if (inputState != null) return inputState;
+            view = new InputStateView(slotCount);
+            addFrameListener(view::apply);
+            if (nativeEventDevice != null && fd >= 0 && !terminate) {
+                /* Registered first, and read under the write lock of the view: a frame the reader applies in the
+                   meantime waits for the load, so that every frame applied after it is newer than the kernel state.
+                   Replaying frames already reflected by that state only sets the same values again. */
+                byte[] kernelState = new byte[NativeEventDevice.STATE_SIZE];
+                view.load(() -> nativeEventDevice.readState(fd, kernelState) ? kernelState : null);
+            }
+            inputState = view;
+            return view;
+        }
+    }
+
+    /**
+     * @return The maximum number of events fetched by a single read() call.
+     */
+    public int getBatchCapacity() {
+        return inputBuffer.capacity() / structSize;
+    }
+
+    /**
+     * @return The number of read() calls issued on the device so far.
+     */
+    public long getReadCount() {
+        return readCount;
+    }
+
+    /**
+     * @return The number of events read from the device so far.
+     */
+    public long getEventCount() {
+        return eventCount;
+    }
+
+    /**
+     * @return The average number of read() syscalls needed per event, 1.0 meaning no batching at all.
+     */
+    public double getSyscallsPerEvent() {
+        long events = eventCount;
+        return events == 0 ? 0 : (double) readCount / events;
+    }
+
     public short getBusID() {
         return idResponse[InputEvent.ID_BUS];
     }
@@ -283,12 +866,49 @@ public class EventDevice {
         return deviceNameResponse;
     }
 
+    /**
+     * @return The physical location of the device, as reported by EVIOCGPHYS. Empty if unknown.
+     */
+    public String getPhys() {
+        return physResponse;
+    }
+
+    /**
+     * @return The unique identifier of the device, as reported by EVIOCGUNIQ. Usually empty.
+     */
+    public String getUniq() {
+        return uniqResponse;
+    }
+
     public short getProductID() {
         return idResponse[InputEvent.ID_PRODUCT];
     }
 
+    /**
+     * @return The event types and codes supported by the device.
+     */
+    public DeviceCapabilities getCapabilities() {
+        return capabilities;
+    }
+
+    /**
+     * @return Everything the source reported when the device was opened, including the parameters of every axis as
+     * they were then, so that they can be loaded at once.
+     */
+    public DeviceInfo getDeviceInfo() {
+        return info;
+    }
+
+    /**
+     * @return The supported events as a map of event types to lists of supported codes. Prefer
+     * {@link #getCapabilities()}, which answers lookups without scanning or boxing.
+     */
     public Map<Integer, List<Integer>> getSupportedEvents() {
-        return supportedEvents;
+        Map<Integer, List<Integer>> map = supportedEvents;
+        if (map == null) {
+            supportedEvents = map = capabilities.toMap();
+        }
+        return map;
     }
 
     public short getVendorID() {
@@ -303,21 +923,240 @@ public class EventDevice {
         return idResponse[InputEvent.ID_VERSION];
     }
 
+    /**
+     * @return The parameters of an axis, read once and cached, and writable with EVIOCSABS.
+     */
     public InputAxisParameters getAxisParameters(int axis) {
-        InputAxisParameters params;
-        if ((params = axisParams.get(axis)) == null) {
-            params = new InputAxisParameters(this, axis);
-            axisParams.put(axis, params);
+        synchronized (axisParams) {
+            InputAxisParameters params;
+            if ((params = axisParams.get(axis)) == null) {
+                params = new InputAxisParameters(this, axis);
+                axisParams.put(axis, params);
+            }
+            return params;
         }
-        return params;
     }
 
+    long getAbsInfoGeneration() {
+        return absInfoGeneration;
+    }
+
+    /**
+     * Replace the parameters of an axis, in the order of the DeviceInfo.ABSINFO_* constants.
+     *
+     * @return false if the source refused them.
+     */
+    boolean setAbsInfo(int axis, int[] absInfo) {
+        return source != null && source.writeAbsInfo(axis, absInfo);
+    }
+
+    /**
+     * @return The process-wide unique id of this device, as passed to RawInputListeners.
+     */
+    public int getDeviceId() {
+        return deviceId;
+    }
+
+    /**
+     * Register a listener. An InputEvent is created for every event it receives; use
+     * {@link #addListener(RawInputListener)} to avoid that.
+     */
     public void addListener(InputListener listener) {
-        listeners.add(listener);
+        listeners.add(new InputListenerAdapter(listener, device));
+        listenersChanged();
     }
 
+    /**
+     * Register a listener for the events of mask only. Other events are not even looked at for it, and the kernel
+     * is asked for the union of the masks of the listeners.
+     */
+    public void addListener(InputListener listener, EventMask mask) {
+        listeners.add(new MaskedListener(new InputListenerAdapter(listener, device), mask));
+        listenersChanged();
+    }
+
+    /**
+     * Remove a listener, registered with or without a mask.
+     */
     public void removeListener(InputListener listener) {
-        listeners.remove(listener);
+        unsubscribe(new InputListenerAdapter(listener, device));
+    }
+
+    /**
+     * Register a listener receiving events as primitives. In steady state, events are dispatched to such listeners
+     * without any allocation. Listeners are called on the thread reading the device: register a slow one through a
+     * {@link DispatchLane} instead.
+     */
+    public void addListener(RawInputListener listener) {
+        listeners.add(listener);
+        listenersChanged();
+    }
+
+    /**
+     * Register a listener receiving the events of mask only, as primitives. Events are routed through a table
+     * indexed by type and code, so that a listener costs nothing for the events it did not ask for, and the kernel
+     * is asked for the union of the masks of the listeners.
+     */
+    public void addListener(RawInputListener listener, EventMask mask) {
+        listeners.add(new MaskedListener(listener, mask));
+        listenersChanged();
+    }
+
+    /**
+     * Remove a listener, registered with or without a mask.
+     */
+    public void removeListener(RawInputListener listener) {
+        unsubscribe(listener);
+    }
+
+    /**
+     * Remove the first registration of a listener.
+     */
+    private void unsubscribe(RawInputListener listener) {
+        for (RawInputListener registered : listeners) {
+            RawInputListener target = registered instanceof MaskedListener
+                    ? ((MaskedListener) registered).getListener() : registered;
+            if (target.equals(listener)) {
+                listeners.remove(registered);
+                EventDeviceMetrics metrics = this.metrics;
+                if (metrics != null) metrics.listenerRemoved(target);
+                break;
+            }
+        }
+        listenersChanged();
+    }
+
+    /**
+     * Rebuild the dispatch table, and update the kernel mask.
+     */
+    private void listenersChanged() {
+        synchronized (listeners) {
+            dispatch = DispatchTable.build(listeners, metrics);
+            updateEventMask();
+        }
+    }
+
+    /**
+     * Register a listener receiving every frame at once, on SYN_REPORT. In steady state, frames are assembled and
+     * dispatched without any allocation.
+     */
+    public void addFrameListener(FrameListener listener) {
+        frameListeners.add(listener);
+        updateEventMask();
+    }
+
+    public void removeFrameListener(FrameListener listener) {
+        frameListeners.remove(listener);
+        EventDeviceMetrics metrics = this.metrics;
+        if (metrics != null) metrics.listenerRemoved(listener);
+        updateEventMask();
+    }
+
+    /**
+     * Register a listener receiving the events of each read at once. In steady state, batches are filled and
+     * dispatched without any allocation.
+     */
+    public void addBatchListener(BatchListener listener) {
+        batchListeners.add(listener);
+        listenersChanged();
+    }
+
+    public void removeBatchListener(BatchListener listener) {
+        batchListeners.remove(listener);
+        EventDeviceMetrics metrics = this.metrics;
+        if (metrics != null) metrics.listenerRemoved(listener);
+        listenersChanged();
+    }
+
+    /**
+     * Have the kernel drop every event outside of mask, so that they are neither read nor decoded. This replaces the
+     * mask otherwise derived from the listeners implementing {@link EventMaskProvider}.
+     *
+     * @param mask The events to receive, or null to go back to the union of what the listeners declare.
+     * @return false if the kernel does not support event masks (before Linux 4.4), in which case every event is
+     * still delivered.
+     */
+    public boolean setEventMask(EventMask mask) {
+        synchronized (listeners) {
+            explicitMask = mask;
+            kernelMaskSupported = true;
+            return updateEventMask();
+        }
+    }
+
+    /**
+     * @return The events the device asks the kernel for: the mask given to {@link #setEventMask(EventMask)}, or the
+     * union of the masks of the listeners. {@link EventMask#ALL} if any listener does not declare a mask.
+     */
+    public EventMask getEventMask() {
+        synchronized (listeners) {
+            return explicitMask != null ? explicitMask : listenerMask();
+        }
+    }
+
+    /**
+     * Read back the mask applied by the kernel with EVIOCGMASK.
+     *
+     * @return The mask, or null if the kernel does not support event masks.
+     */
+    public EventMask getKernelEventMask() {
+        if (nativeEventDevice == null) return null;
+        long[][] bitmaps = new long[InputEvent.EV_CNT][];
+        for (int type = 0; type < InputEvent.EV_CNT; type++) {
+            if (EventMask.kernelCodeCount(type) == 0) continue;
+            bitmaps[type] = new long[Bits.longs(InputEvent.KEY_CNT)];
+            if (nativeEventDevice.ioctlEVIOCGMASK(fd, type, bitmaps[type]) < 0) return null;
+        }
+        return EventMask.fromKernelBitmaps(bitmaps);
+    }
+
+    /**
+     * @return the union of the masks of the listeners, or EventMask.ALL if there are none.
+     */
+    private EventMask listenerMask() {
+        EventMask mask = null;
+        for (RawInputListener listener : listeners) {
+            Object declaring = listener instanceof InputListenerAdapter
+                    ? ((InputListenerAdapter) listener).getListener() : listener;
+            EventMask declared = declaring instanceof EventMaskProvider
+                    ? ((EventMaskProvider) declaring).getEventMask() : EventMask.ALL;
+            mask = mask == null ? declared : mask.union(declared);
+        }
+        for (BatchListener listener : batchListeners) {
+            EventMask declared = listener instanceof EventMaskProvider
+                    ? ((EventMaskProvider) listener).getEventMask() : EventMask.ALL;
+            mask = mask == null ? declared : mask.union(declared);
+        }
+        for (FrameListener listener : frameListeners) {
+            EventMask declared = listener instanceof EventMaskProvider
+                    ? ((EventMaskProvider) listener).getEventMask() : EventMask.ALL;
+            mask = mask == null ? declared : mask.union(declared);
+        }
+        return mask == null ? EventMask.ALL : mask;
+    }
+
+    /**
+     * Push the wanted mask to the kernel if it changed, one EVIOCSMASK per maskable type. If the kernel refuses it,
+     * the device goes back to receiving every event.
+     *
+     * @return false if the kernel refused the mask.
+     */
+    private boolean updateEventMask() {
+        synchronized (listeners) {
+            EventMask mask = getEventMask();
+            if (mask.equals(kernelMask)) return true;
+            if (!kernelMaskSupported || fd < 0 || terminate) return false;
+            int result = mask.writeTo(nativeEventDevice, fd);
+            if (result < 0) {
+                logger.debug("Kernel rejected the event mask of {}, errno {}", device, -result);
+                kernelMaskSupported = false;
+                /* the types written before the refusal were unmasked again */
+                kernelMask = EventMask.ALL;
+                return false;
+            }
+            kernelMask = mask;
+            return true;
+        }
     }
 
     public String getDevicePath() {
@@ -325,16 +1164,21 @@ public class EventDevice {
     }
 
     public boolean ioctlEVIOCGABS(String device, int[] resp, int axis) {
+        if (device.equals(this.device) && source != null) {
+            /* no need to open the node again, and works for synthetic sources too */
+            return source.readAbsInfo(axis, resp);
+        }
+        if (nativeEventDevice == null) return false;
         return nativeEventDevice.ioctlEVIOCGABS(device, resp, axis);
     }
 
     public void grab() {
-        if (nativeEventDevice.ioctlEVIOCGRAB(fd, 1) == 0) return;
+        if (nativeEventDevice != null && nativeEventDevice.ioctlEVIOCGRAB(fd, 1) == 0) return;
         throw new RuntimeException("Could not grab device");
     }
 
     public void unGrab() {
-        if (nativeEventDevice.ioctlEVIOCGRAB(fd, 0) == 0) return;
+        if (nativeEventDevice != null && nativeEventDevice.ioctlEVIOCGRAB(fd, 0) == 0) return;
         throw new RuntimeException("Could not ungrab device");
     }
 
@@ -0,0 +1,180 @@
+/**
+ * This file is part of evdev-java - Java implementation.
+ *
+ * evdev-java - Java implementation is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * evdev-java - Java implementation is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with evdev-java - Java implementation.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.dgis.input.evdev;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A reference to an EventDevice shared through an EventDevicePool. Listeners registered through the handle are
+ * removed from the device when the handle is closed; the device itself is only closed once every handle is.
+ */
+@ThreadSafe
+public final class EventDeviceHandle implements Closeable {
+
+    private final EventDevice device;
+    private final Runnable release;
+
+    /**
+     * Listeners registered through this handle, with how to remove them. Guarded by this, null once closed.
+     */
+    private List<Registration> registrations = new ArrayList<>();
+
+    EventDeviceHandle(EventDevice device, Runnable release) {
+        this.device = device;
+        this.release = release;
+    }
+
+    /**
+     * @return the shared device. Closing it directly would close it for every handle, and listeners added to it
+     * directly are not removed with the handle: go through the handle instead.
+     */
+    public EventDevice getDevice() {
+        return device;
+    }
+
+    public void addListener(InputListener listener) {
+        register(InputListener.class, listener, () -> device.removeListener(listener));
+        device.addListener(listener);
+    }
+
+    /**
+     * @see EventDevice#addListener(InputListener, EventMask)
+     */
+    public void addListener(InputListener listener, EventMask mask) {
+        register(InputListener.class, listener, () -> device.removeListener(listener));
+        device.addListener(listener, mask);
+    }
+
+    /**
+     * Remove a listener registered through this handle, with or without a mask. Listeners registered otherwise are
+     * left alone.
+     */
+    public void removeListener(InputListener listener) {
+        unregister(InputListener.class, listener);
+    }
+
+    public void addListener(RawInputListener listener) {
+        register(RawInputListener.class, listener, () -> device.removeListener(listener));
+        device.addListener(listener);
+    }
+
+    /**
+     * @see EventDevice#addListener(RawInputListener, EventMask)
+     */
+    public void addListener(RawInputListener listener, EventMask mask) {
+        register(RawInputListener.class, listener, () -> device.removeListener(listener));
+        device.addListener(listener, mask);
+    }
+
+    /**
+     * Remove a listener registered through this handle, with or without a mask. Listeners registered otherwise are
+     * left alone.
+     */
+    public void removeListener(RawInputListener listener) {
+        unregister(RawInputListener.class, listener);
+    }
+
+    public void addFrameListener(FrameListener listener) {
+        register(FrameListener.class, listener, () -> device.removeFrameListener(listener));
+        device.addFrameListener(listener);
+    }
+
+    public void removeFrameListener(FrameListener listener) {
+        unregister(FrameListener.class, listener);
+    }
+
+    public void addBatchListener(BatchListener listener) {
+        register(BatchListener.class, listener, () -> device.removeBatchListener(listener));
+        device.addBatchListener(listener);
+    }
+
+    public void removeBatchListener(BatchListener listener) {
+        unregister(BatchListener.class, listener);
+    }
+
+    public void addDeviceRemovedListener(DeviceRemovedListener listener) {
+        register(DeviceRemovedListener.class, listener, () -> device.removeDeviceRemovedListener(listener));
+        device.addDeviceRemovedListener(listener);
+    }
+
+    public void removeDeviceRemovedListener(DeviceRemovedListener listener) {
+        unregister(DeviceRemovedListener.class, listener);
+    }
+
+    private synchronized void register(Class<?> kind, Object listener, Runnable removal) {
+        if (registrations == null) {
+            throw new IllegalStateException("Handle on " + device.getDevicePath() + " is closed");
+        }
+        registrations.add(new Registration(kind, listener, removal));
+    }
+
+    /**
+     * Remove the first registration of listener as kind through this handle, if there is one.
+     */
+    private void unregister(Class<?> kind, Object listener) {
+        Registration found = null;
+        synchronized (this) {
+            if (registrations == null) return;
+            for (Registration registration : registrations) {
+                if (registration.kind == kind && registration.listener.equals(listener)) {
+                    found = registration;
+                    break;
+                }
+            }
+            if (found == null) return;
+            registrations.remove(found);
+        }
+        found.removal.run();
+    }
+
+    public synchronized boolean isClosed() {
+        return registrations == null;
+    }
+
+    /**
+     * Remove the listeners registered through this handle, and release the device. Closing twice has no effect.
+     */
+    @Override
+    public void close() {
+        List<Registration> removals;
+        synchronized (this) {
+            if (registrations == null) return;
+            removals = registrations;
+            registrations = null;
+        }
+        for (Registration registration : removals) {
+            registration.removal.run();
+        }
+        release.run();
+    }
+
+    private static final class Registration {
+
+        private final Class<?> kind;
+        private final Object listener;
+        private final Runnable removal;
+
+        private Registration(Class<?> kind, Object listener, Runnable removal) {
+            this.kind = kind;
+            this.listener = listener;
+            this.removal = removal;
+        }
+    }
+}
@@ -0,0 +1,416 @@
+/**
+ * This file is part of evdev-java - Java implementation.
+ *
+ * evdev-java - Java implementation is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * evdev-java - Java implementation is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with evdev-java - Java implementation.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.dgis.input.evdev;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counters and histograms of an EventDevice: events read by type, events per read, time spent decoding each read, and
+ * time spent in each listener. Kept while metrics are enabled on the device, and published as a JMX MXBean.
+ * <p/>
+ * Everything is recorded by the thread reading the device, the only writer, so recording takes no lock and no atomic
+ * read-modify-write. Listener durations cost two System.nanoTime() calls per listener call. With metrics disabled,
+ * the device only checks a field once per read and per event.
+ *
+ * @see EventDevice#enableMetrics()
+ */
+@ThreadSafe
+public final class EventDeviceMetrics implements EventDeviceMetricsMXBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(EventDeviceMetrics.class);
+
+    private final EventDevice device;
+
+    private final AtomicLongArray eventsByType = new AtomicLongArray(InputEvent.EV_CNT);
+
+    private final Histogram eventsPerRead = new Histogram();
+    private final Histogram decodeNanos = new Histogram();
+    private final Histogram dispatchNanos = new Histogram();
+
+    /**
+     * Time per call of each listener, by the listener as registered.
+     */
+    private final ConcurrentMap<Object, Histogram> listenerNanos = new ConcurrentHashMap<>();
+
+    /**
+     * Only written by the reader.
+     */
+    private volatile long fullReadCount;
+
+    /**
+     * Time spent in listeners since the current read started. Only accessed by the reader.
+     */
+    private long readListenerNanos;
+
+    private ObjectName objectName;
+
+    EventDeviceMetrics(EventDevice device) {
+        this.device = device;
+    }
+
+    /**
+     * Publish the metrics in the platform MBean server. A failure is logged, as metrics are still available through
+     * {@link #snapshot()}.
+     */
+    synchronized void register() {
+        try {
+            ObjectName name = new ObjectName("com.dgis.input.evdev:type=EventDevice,id=" + device.getDeviceId()
+                    + ",path=" + ObjectName.quote(device.getDevicePath()));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+            objectName = name;
+        } catch (JMException e) {
+            logger.warn("Cannot publish the metrics of {} over JMX", device.getDevicePath(), e);
+        }
+    }
+
+    synchronized void unregister() {
+        if (objectName == null) return;
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.unregisterMBean(objectName);
+        } catch (JMException e) {
+            logger.warn("Cannot withdraw the metrics of {} from JMX", device.getDevicePath(), e);
+        }
+        objectName = null;
+    }
+
+    /**
+     * @return the name of the MXBean, or null if it is not published.
+     */
+    public synchronized ObjectName getObjectName() {
+        return objectName;
+    }
+
+    /**
+     * @return the time the read starts at.
+     */
+    long readStarted() {
+        readListenerNanos = 0;
+        return System.nanoTime();
+    }
+
+    void eventRead(int type) {
+        if (type >= 0 && type < InputEvent.EV_CNT) eventsByType.lazySet(type, eventsByType.get(type) + 1);
+    }
+
+    /**
+     * @param events    The number of events of the read.
+     * @param startNanos What readStarted() returned.
+     * @param full      Whether the read filled the whole batch.
+     */
+    void readFinished(int events, long startNanos, boolean full) {
+        long listeners = readListenerNanos;
+        eventsPerRead.record(events);
+        dispatchNanos.record(listeners);
+        decodeNanos.record(System.nanoTime() - startNanos - listeners);
+        if (full) fullReadCount++;
+    }
+
+    Histogram listener(Object listener) {
+        return listenerNanos.computeIfAbsent(listener, key -> new Histogram());
+    }
+
+    void listenerCalled(Histogram histogram, long nanos) {
+        histogram.record(nanos);
+        readListenerNanos += nanos;
+    }
+
+    /**
+     * Stop reporting a listener which was removed.
+     */
+    void listenerRemoved(Object listener) {
+        listenerNanos.remove(listener);
+    }
+
+    /**
+     * @return a listener timing each call of the given one.
+     */
+    RawInputListener timed(RawInputListener listener) {
+        return new TimedListener(listener, listener(listener));
+    }
+
+    private final class TimedListener implements RawInputListener {
+
+        private final RawInputListener listener;
+        private final Histogram histogram;
+
+        TimedListener(RawInputListener listener, Histogram histogram) {
+            this.listener = listener;
+            this.histogram = histogram;
+        }
+
+        @Override
+        public void onEvent(int deviceId, long timestampNanos, int type, int code, int value) {
+            long start = System.nanoTime();
+            try {
+                listener.onEvent(deviceId, timestampNanos, type, code, value);
+            } finally {
+                listenerCalled(histogram, System.nanoTime() - start);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return listener.toString();
+        }
+    }
+
+    /**
+     * @return a copy of every metric.
+     */
+    public Snapshot snapshot() {
+        long[] byType = new long[InputEvent.EV_CNT];
+        for (int type = 0; type < byType.length; type++) {
+            byType[type] = eventsByType.get(type);
+        }
+        Map<String, Histogram.Snapshot> listeners = new LinkedHashMap<>();
+        listenerNanos.forEach((listener, histogram) -> listeners.put(name(listener), histogram.snapshot()));
+        return new Snapshot(this, byType, listeners);
+    }
+
+    /**
+     * @return a name telling listeners apart: class of the listener, unwrapped from any adapter, and identity.
+     */
+    private static String name(Object listener) {
+        Object target = listener instanceof InputListenerAdapter ? ((InputListenerAdapter) listener).getListener()
+                : listener;
+        return target.getClass().getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(target));
+    }
+
+    @Override
+    public String getDevicePath() {
+        return device.getDevicePath();
+    }
+
+    @Override
+    public String getDeviceName() {
+        return device.getDeviceName();
+    }
+
+    @Override
+    public long getEventCount() {
+        return device.getEventCount();
+    }
+
+    @Override
+    public long getReadCount() {
+        return device.getReadCount();
+    }
+
+    @Override
+    public long getFullReadCount() {
+        return fullReadCount;
+    }
+
+    @Override
+    public long getDropCount() {
+        return device.getDropCount();
+    }
+
+    @Override
+    public long getWakeupCount() {
+        return device.getWakeupCount();
+    }
+
+    @Override
+    public long getEmptyWakeupCount() {
+        return device.getEmptyWakeupCount();
+    }
+
+    @Override
+    public long getListenerFailureCount() {
+        return device.getListenerFailureCount();
+    }
+
+    @Override
+    public Map<String, Long> getEventsByType() {
+        Map<String, Long> byType = new LinkedHashMap<>();
+        for (int type = 0; type < InputEvent.EV_CNT; type++) {
+            long count = eventsByType.get(type);
+            if (count != 0) byType.put(typeName(type), count);
+        }
+        return byType;
+    }
+
+    private static String typeName(int type) {
+        try {
+            return EventType.valueOf((short) type).name();
+        } catch (IllegalArgumentException e) {
+            return "0x" + Integer.toHexString(type);
+        }
+    }
+
+    @Override
+    public double getMeanEventsPerRead() {
+        return eventsPerRead.snapshot().getMean();
+    }
+
+    @Override
+    public long getDecodeNanosMedian() {
+        return decodeNanos.snapshot().getPercentile(50);
+    }
+
+    @Override
+    public long getDecodeNanos99thPercentile() {
+        return decodeNanos.snapshot().getPercentile(99);
+    }
+
+    @Override
+    public long getDispatchNanosMedian() {
+        return dispatchNanos.snapshot().getPercentile(50);
+    }
+
+    @Override
+    public long getDispatchNanos99thPercentile() {
+        return dispatchNanos.snapshot().getPercentile(99);
+    }
+
+    @Override
+    public Map<String, Long> getListenerNanos99thPercentile() {
+        Map<String, Long> percentiles = new LinkedHashMap<>();
+        listenerNanos.forEach((listener, histogram) ->
+                percentiles.put(name(listener), histogram.snapshot().getPercentile(99)));
+        return percentiles;
+    }
+
+    @Override
+    public String toString() {
+        return "EventDeviceMetrics[" + device.getDevicePath() + "]";
+    }
+
+    /**
+     * Every metric of a device at some point.
+     */
+    @Immutable
+    public static final class Snapshot {
+
+        private final String devicePath;
+        private final long eventCount;
+        private final long readCount;
+        private final long fullReadCount;
+        private final long dropCount;
+        private final long wakeupCount;
+        private final long emptyWakeupCount;
+        private final long listenerFailureCount;
+        private final long[] eventsByType;
+        private final Histogram.Snapshot eventsPerRead;
+        private final Histogram.Snapshot decodeNanos;
+        private final Histogram.Snapshot dispatchNanos;
+        private final Map<String, Histogram.Snapshot> listenerNanos;
+
+        private Snapshot(EventDeviceMetrics metrics, long[] eventsByType, Map<String, Histogram.Snapshot> listeners) {
+            devicePath = metrics.getDevicePath();
+            eventCount = metrics.getEventCount();
+            readCount = metrics.getReadCount();
+            fullReadCount = metrics.fullReadCount;
+            dropCount = metrics.getDropCount();
+            wakeupCount = metrics.getWakeupCount();
+            emptyWakeupCount = metrics.getEmptyWakeupCount();
+            listenerFailureCount = metrics.getListenerFailureCount();
+            this.eventsByType = eventsByType;
+            eventsPerRead = metrics.eventsPerRead.snapshot();
+            decodeNanos = metrics.decodeNanos.snapshot();
+            dispatchNanos = metrics.dispatchNanos.snapshot();
+            listenerNanos = Collections.unmodifiableMap(listeners);
+        }
+
+        public String getDevicePath() {
+            return devicePath;
+        }
+
+        public long getEventCount() {
+            return eventCount;
+        }
+
+        public long getReadCount() {
+            return readCount;
+        }
+
+        public long getFullReadCount() {
+            return fullReadCount;
+        }
+
+        public long getDropCount() {
+            return dropCount;
+        }
+
+        public long getWakeupCount() {
+            return wakeupCount;
+        }
+
+        public long getEmptyWakeupCount() {
+            return emptyWakeupCount;
+        }
+
+        public long getListenerFailureCount() {
+            return listenerFailureCount;
+        }
+
+        /**
+         * @return the number of events read of a type since metrics were enabled.
+         */
+        public long getEventCount(int type) {
+            return type >= 0 && type < eventsByType.length ? eventsByType[type] : 0;
+        }
+
+        public Histogram.Snapshot getEventsPerRead() {
+            return eventsPerRead;
+        }
+
+        /**
+         * @return the time spent decoding and routing the events of each read, listeners excluded.
+         */
+        public Histogram.Snapshot getDecodeNanos() {
+            return decodeNanos;
+        }
+
+        /**
+         * @return the time spent in listeners for the events of each read.
+         */
+        public Histogram.Snapshot getDispatchNanos() {
+            return dispatchNanos;
+        }
+
+        /**
+         * @return the time each listener takes per call, by listener class and identity.
+         */
+        public Map<String, Histogram.Snapshot> getListenerNanos() {
+            return listenerNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "EventDeviceMetrics.Snapshot[" + devicePath + ", events=" + eventCount + ", reads=" + readCount
+                    + ", drops=" + dropCount + ", eventsPerRead=" + eventsPerRead + ", decodeNanos=" + decodeNanos
+                    + ", dispatchNanos=" + dispatchNanos + "]";
+        }
+    }
+}
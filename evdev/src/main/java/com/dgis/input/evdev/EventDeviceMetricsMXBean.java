@@ -0,0 +1,79 @@
+/**
+ * This file is part of evdev-java - Java implementation.
+ *
+ * evdev-java - Java implementation is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * evdev-java - Java implementation is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with evdev-java - Java implementation.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.dgis.input.evdev;
+
+import java.util.Map;
+
+/**
+ * What an EventDevice with metrics enabled publishes over JMX, under
+ * com.dgis.input.evdev:type=EventDevice,id=&lt;device id&gt;,path=&lt;device path&gt;. Durations are in nanoseconds,
+ * percentiles rounded up to a power of two minus one.
+ *
+ * @see EventDevice#enableMetrics()
+ */
+public interface EventDeviceMetricsMXBean {
+
+    String getDevicePath();
+
+    String getDeviceName();
+
+    long getEventCount();
+
+    long getReadCount();
+
+    /**
+     * @return the number of reads filling the whole batch: the kernel had more queued, and may soon overflow.
+     */
+    long getFullReadCount();
+
+    /**
+     * @return the number of SYN_DROPPED, the kernel having overflowed.
+     */
+    long getDropCount();
+
+    long getWakeupCount();
+
+    long getEmptyWakeupCount();
+
+    long getListenerFailureCount();
+
+    /**
+     * @return the events read of each type seen, by type name.
+     */
+    Map<String, Long> getEventsByType();
+
+    double getMeanEventsPerRead();
+
+    /**
+     * Time spent decoding and routing the events of a read, listeners excluded.
+     */
+    long getDecodeNanosMedian();
+
+    long getDecodeNanos99thPercentile();
+
+    /**
+     * Time spent in listeners for the events of a read.
+     */
+    long getDispatchNanosMedian();
+
+    long getDispatchNanos99thPercentile();
+
+    /**
+     * @return the 99th percentile of the time each listener takes per call, by listener.
+     */
+    Map<String, Long> getListenerNanos99thPercentile();
+}
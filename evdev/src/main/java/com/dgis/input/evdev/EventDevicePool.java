@@ -0,0 +1,175 @@
+/**
+ * This file is part of evdev-java - Java implementation.
+ *
+ * evdev-java - Java implementation is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * evdev-java - Java implementation is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with evdev-java - Java implementation.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.dgis.input.evdev;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Shares one EventDevice between everything using the same node. The first acquire() of a node opens it, later ones
+ * get a handle on the same device, read by a single thread and decoded once whatever the number of handles, and the
+ * device is closed once the last handle is released.
+ * <p/>
+ * Nodes are told apart by canonical path, so that a /dev/input/by-id or by-path link and the node it points to share
+ * a device. A device which has been unplugged is not handed out anymore: the next acquire() opens the node again.
+ * <p/>
+ * Nodes are opened outside the lock of the pool, so that a slow node only holds up those acquiring it.
+ */
+@ThreadSafe
+public class EventDevicePool {
+
+    private static final EventDevicePool SHARED = new EventDevicePool();
+
+    private final EventDeviceReactor reactor;
+    private final DeviceRegistry.SourceFactory sources;
+
+    /**
+     * Open devices, and those being opened, by canonical path. Guarded by this.
+     */
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    public EventDevicePool() {
+        this(null);
+    }
+
+    /**
+     * @param reactor The reactor reading the devices, or null to start a reader thread per device.
+     */
+    public EventDevicePool(EventDeviceReactor reactor) {
+        this(reactor, DeviceNodeSource::new);
+    }
+
+    EventDevicePool(EventDeviceReactor reactor, DeviceRegistry.SourceFactory sources) {
+        this.reactor = reactor;
+        this.sources = sources;
+    }
+
+    /**
+     * @return the pool used by the filters opening devices by path.
+     */
+    public static EventDevicePool shared() {
+        return SHARED;
+    }
+
+    /**
+     * Get a handle on the device of a node, opening it unless some other handle holds it already.
+     *
+     * @param node The path to the device file, or to a link to it.
+     * @return a handle to close once done with the device.
+     * @throws IOException If the device is not found, or is otherwise inaccessible.
+     */
+    public EventDeviceHandle acquire(File node) throws IOException {
+        String key = node.getCanonicalPath();
+        Entry entry;
+        boolean opening = false;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry == null || entry.isRemoved()) {
+                entry = new Entry(key);
+                entries.put(key, entry);
+                opening = true;
+            }
+            entry.references++;
+        }
+        if (opening) {
+            open(entry);
+        }
+        Entry acquired = entry;
+        return new EventDeviceHandle(await(entry), () -> release(acquired));
+    }
+
+    /**
+     * Open the device of an entry, dropping the entry if that fails.
+     */
+    private void open(Entry entry) throws IOException {
+        try {
+            entry.device.complete(new EventDevice(sources.create(new File(entry.key)),
+                    EventDevice.DEFAULT_BATCH_CAPACITY, reactor));
+        } catch (IOException | RuntimeException e) {
+            synchronized (this) {
+                entries.remove(entry.key, entry);
+            }
+            entry.device.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * @return the device of an entry, once opened by whichever acquire() created the entry.
+     * @throws IOException If it could not be opened.
+     */
+    private static EventDevice await(Entry entry) throws IOException {
+        try {
+            return entry.device.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw new IOException("Could not open " + entry.key, cause);
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @return the number of devices open, which at least one handle holds.
+     */
+    public synchronized int getOpenCount() {
+        return entries.size();
+    }
+
+    /**
+     * @return the number of handles held on the device of a node.
+     */
+    public synchronized int getReferenceCount(File node) throws IOException {
+        Entry entry = entries.get(node.getCanonicalPath());
+        return entry != null ? entry.references : 0;
+    }
+
+    private void release(Entry entry) {
+        synchronized (this) {
+            if (--entry.references > 0) return;
+            entries.remove(entry.key, entry);
+        }
+        entry.device.join().close();
+    }
+
+    private static final class Entry {
+        final String key;
+        /**
+         * Completed once the node is open. An entry is dropped before failing it.
+         */
+        final CompletableFuture<EventDevice> device = new CompletableFuture<>();
+        int references;
+
+        Entry(String key) {
+            this.key = key;
+        }
+
+        boolean isRemoved() {
+            EventDevice opened = device.getNow(null);
+            return opened != null && opened.isRemoved();
+        }
+    }
+}
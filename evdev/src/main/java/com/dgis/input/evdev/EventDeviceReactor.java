@@ -0,0 +1,370 @@
+/**
+ * This file is part of evdev-java - Java implementation.
+ *
+ * evdev-java - Java implementation is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * evdev-java - Java implementation is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with evdev-java - Java implementation.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.dgis.input.evdev;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reads many EventDevices with a small, fixed number of threads. Each thread runs an epoll loop over the
+ * non-blocking file descriptors of the devices assigned to it, and reads and dispatches one batch per ready device
+ * and wakeup. Devices are assigned to the thread serving the fewest devices when they register.
+ * <p/>
+ * Listeners of devices sharing a thread are called on that thread, so a slow listener delays the other devices of
+ * the same thread.
+ *
+ * @see EventDevice#EventDevice(java.io.File, EventDeviceReactor)
+ */
+public class EventDeviceReactor implements Closeable {
+
+    private static final int MAX_READY_FDS = 64;
+
+    /**
+     * How long unregistering a device waits for its loop to acknowledge.
+     */
+    private static final long UNREGISTER_TIMEOUT_MILLIS = 1000;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final NativeEventDevice nativeEventDevice;
+
+    private final Loop[] loops;
+
+    /**
+     * The loop reading each registered device.
+     */
+    private final Map<EventDevice, Loop> assignments = new IdentityHashMap<>();
+
+    private volatile boolean closed = false;
+
+    /**
+     * Create a reactor with a single thread.
+     *
+     * @throws IOException If the native library cannot be loaded or epoll is not available.
+     */
+    public EventDeviceReactor() throws IOException {
+        this(1);
+    }
+
+    /**
+     * Create a reactor running the given number of epoll threads.
+     *
+     * @param threads The number of threads reading devices.
+     * @throws IOException If the native library cannot be loaded or epoll is not available.
+     */
+    public EventDeviceReactor(int threads) throws IOException {
+        if (threads < 1) {
+            throw new IllegalArgumentException("A reactor needs at least one thread");
+        }
+        NativeLoader.load();
+        nativeEventDevice = new NativeEventDevice();
+        loops = new Loop[threads];
+        try {
+            for (int i = 0; i < threads; i++) {
+                loops[i] = new Loop(i);
+            }
+        } catch (IOException e) {
+            for (Loop loop : loops) {
+                if (loop != null) loop.closeFds();
+            }
+            throw e;
+        }
+        for (Loop loop : loops) {
+            loop.thread.start();
+        }
+    }
+
+    public int getThreadCount() {
+        return loops.length;
+    }
+
+    /**
+     * @return The number of devices currently read by each thread.
+     */
+    public int[] getDeviceCounts() {
+        int[] counts = new int[loops.length];
+        for (int i = 0; i < loops.length; i++) {
+            counts[i] = loops[i].deviceCount.get();
+        }
+        return counts;
+    }
+
+    /**
+     * Start reading the non-blocking fd of a device on the least loaded thread.
+     */
+    synchronized void register(EventDevice device) throws IOException {
+        if (closed) {
+            throw new IOException("Reactor is closed");
+        }
+        Loop target = loops[0];
+        for (Loop loop : loops) {
+            if (loop.deviceCount.get() < target.deviceCount.get()) target = loop;
+        }
+        assignments.put(device, target);
+        target.add(device);
+    }
+
+    /**
+     * Stop reading a device, then run release, which closes its fd. Waits a bounded time for the loop reading the
+     * device to let go of it. If it does not in time, release runs later on that loop, at the latest when it stops,
+     * and never while the fd may still be watched, so that a reused fd is not routed to the device.
+     *
+     * @return false if the loop did not let go of the device in time, and release has not run yet.
+     */
+    boolean unregister(EventDevice device, Runnable release) {
+        Loop owner;
+        synchronized (this) {
+            owner = assignments.remove(device);
+        }
+        if (owner == null) {
+            release.run();
+            return true;
+        }
+        return owner.remove(device, release);
+    }
+
+    /**
+     * Stop every thread. Devices still registered are not closed, but are not read anymore.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+        }
+        for (Loop loop : loops) {
+            nativeEventDevice.eventfdSignal(loop.wakeFd);
+        }
+        for (Loop loop : loops) {
+            if (loop.thread != Thread.currentThread()) {
+                try {
+                    loop.thread.join();
+                } catch (InterruptedException e) {
+                    logger.error("Interrupted in close", e);
+                    Thread.currentThread().interrupt();
+                }
+            }
+            loop.closeFds();
+        }
+    }
+
+    /**
+     * One epoll thread and the devices it reads, indexed by fd.
+     */
+    private final class Loop implements Runnable {
+
+        private final int epfd;
+        private final int wakeFd;
+        private final Thread thread;
+
+        /**
+         * Registrations and removals to run on the loop thread, between two waits.
+         */
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+        /**
+         * Devices by fd. Only accessed by the loop thread.
+         */
+        private EventDevice[] devices = new EventDevice[16];
+
+        private final AtomicInteger deviceCount = new AtomicInteger();
+
+        Loop(int index) throws IOException {
+            epfd = nativeEventDevice.epollCreate();
+            if (epfd < 0) {
+                throw new IOException("Cannot create epoll instance, errno " + -epfd);
+            }
+            wakeFd = nativeEventDevice.eventfdCreate();
+            if (wakeFd < 0 || nativeEventDevice.epollAdd(epfd, wakeFd) < 0) {
+                nativeEventDevice.close(epfd);
+                throw new IOException("Cannot create reactor wakeup fd");
+            }
+            thread = new Thread(this, "evdev-reactor-" + index);
+            thread.setDaemon(true); /* We don't want this thread to prevent the JVM from terminating */
+        }
+
+        @Override
+        public void run() {
+            try {
+                poll();
+            } finally {
+                /* whatever was queued while the loop was stopping still runs, so that no release is lost */
+                runTasks();
+            }
+        }
+
+        private void poll() {
+            int[] ready = new int[MAX_READY_FDS];
+            while (!closed) {
+                int n = nativeEventDevice.epollWait(epfd, ready, -1);
+                if (n == -NativeEventDevice.EINTR) continue;
+                if (n < 0) {
+                    logger.error("epoll_wait failed, errno {}, stopping {}", -n, thread.getName());
+                    return;
+                }
+                for (int i = 0; i < n; i++) {
+                    int fd = ready[i];
+                    if (fd == wakeFd) {
+                        nativeEventDevice.eventfdClear(wakeFd);
+                        continue;
+                    }
+                    EventDevice device = fd < devices.length ? devices[fd] : null;
+                    if (device != null && device.readAvailable() < 0) {
+                        logger.warn("Device {} cannot be read anymore, no longer watching it", device.getDevicePath());
+                        detach(device);
+                    }
+                }
+                runTasks();
+            }
+        }
+
+        private void runTasks() {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                task.run();
+            }
+        }
+
+        void add(EventDevice device) {
+            deviceCount.incrementAndGet();
+            tasks.add(() -> {
+                int fd = device.getFd();
+                if (fd >= devices.length) {
+                    devices = Arrays.copyOf(devices, Math.max(fd + 1, devices.length * 2));
+                }
+                devices[fd] = device;
+                int result = nativeEventDevice.epollAdd(epfd, fd);
+                if (result < 0) {
+                    logger.error("Cannot watch {}, errno {}", device.getDevicePath(), -result);
+                    devices[fd] = null;
+                    deviceCount.decrementAndGet();
+                }
+            });
+            nativeEventDevice.eventfdSignal(wakeFd);
+        }
+
+        boolean remove(EventDevice device, Runnable release) {
+            if (closed) return forgetOnceStopped(device, release);
+            /* claimed by whichever of the loop or this thread runs it first */
+            AtomicBoolean claimed = new AtomicBoolean();
+            CountDownLatch done = new CountDownLatch(1);
+            Runnable task = () -> {
+                if (claimed.compareAndSet(false, true)) {
+                    detach(device);
+                    release.run();
+                }
+                done.countDown();
+            };
+            if (Thread.currentThread() == thread) {
+                task.run();
+                return true;
+            }
+            tasks.add(task);
+            nativeEventDevice.eventfdSignal(wakeFd);
+            try {
+                if (!closed && thread.isAlive() && done.await(UNREGISTER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            if (closed || !thread.isAlive()) {
+                /* the loop may have drained its tasks for the last time before this one was queued */
+                if (!awaitStopped(device)) return false;
+                if (claimed.compareAndSet(false, true)) {
+                    forget(device);
+                    release.run();
+                }
+                return true;
+            }
+            logger.warn("Timed out waiting for {} to release {}, closing it once it does", thread.getName(),
+                    device.getDevicePath());
+            return false;
+        }
+
+        private void detach(EventDevice device) {
+            int fd = device.getFd();
+            if (fd < devices.length && devices[fd] == device) {
+                nativeEventDevice.epollRemove(epfd, fd);
+                devices[fd] = null;
+                deviceCount.decrementAndGet();
+            }
+        }
+
+        /**
+         * Forget a device of a closed reactor, then run release. The epoll instance is closed or about to be, so the
+         * device is not removed from it, and the devices are only touched once the loop thread is done with them.
+         *
+         * @return false if the loop thread did not stop in time, in which case the device is left alone.
+         */
+        private boolean forgetOnceStopped(EventDevice device, Runnable release) {
+            if (!awaitStopped(device)) return false;
+            forget(device);
+            release.run();
+            return true;
+        }
+
+        /**
+         * Wait for the loop thread to stop, unless called from it.
+         *
+         * @return false if it did not stop in time.
+         */
+        private boolean awaitStopped(EventDevice device) {
+            if (Thread.currentThread() == thread) return true;
+            try {
+                thread.join(UNREGISTER_TIMEOUT_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (thread.isAlive()) {
+                logger.warn("Timed out waiting for {} to stop, not releasing {}", thread.getName(),
+                        device.getDevicePath());
+                return false;
+            }
+            return true;
+        }
+
+        /**
+         * Drop a device from the devices of a stopped loop, leaving its epoll instance alone.
+         */
+        private synchronized void forget(EventDevice device) {
+            int fd = device.getFd();
+            if (fd < devices.length && devices[fd] == device) {
+                devices[fd] = null;
+                deviceCount.decrementAndGet();
+            }
+        }
+
+        void closeFds() {
+            nativeEventDevice.close(wakeFd);
+            nativeEventDevice.close(epfd);
+        }
+    }
+}
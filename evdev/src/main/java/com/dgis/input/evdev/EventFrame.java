@@ -0,0 +1,145 @@
+/**
+ * This file is part of evdev-java - Java implementation.
+ *
+ * evdev-java - Java implementation is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * evdev-java - Java implementation is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with evdev-java - Java implementation.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.dgis.input.evdev;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.Arrays;
+
+/**
+ * The events of a device between two SYN_REPORTs, as parallel arrays of types, codes and values. The closing
+ * SYN_REPORT is not part of the frame, its timestamp is the one of the frame.
+ * <p/>
+ * An EventDevice assembles every frame into the same instance, which only grows while it meets frames bigger than
+ * any before. Its content is only valid during {@link FrameListener#onFrame(EventFrame)}.
+ */
+@NotThreadSafe
+public final class EventFrame {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final int deviceId;
+    private long timestampNanos;
+    private int size;
+
+    private int[] types = new int[INITIAL_CAPACITY];
+    private int[] codes = new int[INITIAL_CAPACITY];
+    private int[] values = new int[INITIAL_CAPACITY];
+
+    EventFrame(int deviceId) {
+        this.deviceId = deviceId;
+    }
+
+    /**
+     * @return The id of the EventDevice reporting the frame, see {@link EventDevice#getDeviceId()}.
+     */
+    public int getDeviceId() {
+        return deviceId;
+    }
+
+    /**
+     * @return The kernel timestamp of the SYN_REPORT closing the frame, in nanoseconds.
+     */
+    public long getTimestampNanos() {
+        return timestampNanos;
+    }
+
+    /**
+     * @return The number of events in the frame, the SYN_REPORT excluded.
+     */
+    public int size() {
+        return size;
+    }
+
+    public int getType(int index) {
+        checkIndex(index);
+        return types[index];
+    }
+
+    public int getCode(int index) {
+        checkIndex(index);
+        return codes[index];
+    }
+
+    public int getValue(int index) {
+        checkIndex(index);
+        return values[index];
+    }
+
+    /**
+     * @return The index of the last event of the frame with the given type and code, or -1 if there is none.
+     */
+    public int lastIndexOf(int type, int code) {
+        for (int i = size - 1; i >= 0; i--) {
+            if (types[i] == type && codes[i] == code) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Hand every event of the frame to listener, in order, followed by the SYN_REPORT.
+     */
+    public void forEach(RawInputListener listener) {
+        for (int i = 0; i < size; i++) {
+            listener.onEvent(deviceId, timestampNanos, types[i], codes[i], values[i]);
+        }
+        listener.onEvent(deviceId, timestampNanos, InputEvent.EV_SYN, InputEvent.SYN_REPORT, 0);
+    }
+
+    void add(int type, int code, int value) {
+        if (size == types.length) {
+            types = Arrays.copyOf(types, 2 * size);
+            codes = Arrays.copyOf(codes, 2 * size);
+            values = Arrays.copyOf(values, 2 * size);
+        }
+        types[size] = type;
+        codes[size] = code;
+        values[size] = value;
+        size++;
+    }
+
+    void close(long timestampNanos) {
+        this.timestampNanos = timestampNanos;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    /**
+     * @return The number of events the frame holds without growing.
+     */
+    int capacity() {
+        return types.length;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of frame of " + size + " events");
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("EventFrame(deviceId=").append(deviceId)
+                .append(", timestampNanos=").append(timestampNanos).append(", events=[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) builder.append(", ");
+            builder.append(types[i]).append('/').append(codes[i]).append('=').append(values[i]);
+        }
+        return builder.append("])").toString();
+    }
+}
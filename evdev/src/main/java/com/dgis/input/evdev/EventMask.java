@@ -0,0 +1,295 @@
+/**
+ * This file is part of evdev-java - Java implementation.
+ *
+ * evdev-java - Java implementation is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * evdev-java - Java implementation is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with evdev-java - Java implementation.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.dgis.input.evdev;
+
+import javax.annotation.concurrent.Immutable;
+import java.util.Arrays;
+
+/**
+ * A set of event types and codes, used to tell the kernel which events a client of a device wants to receive. Events
+ * outside of the mask are dropped by the evdev driver, before they are queued for the client.
+ * <p/>
+ * A type is either left out, included with every code, or included with an explicit set of codes. EV_SYN is always
+ * delivered, as frames could not be told apart without it.
+ *
+ * @see EventDevice#setEventMask(EventMask)
+ */
+@Immutable
+public final class EventMask {
+
+    private static final long ALL_TYPES = -1L >>> (64 - InputEvent.EV_CNT);
+
+    /**
+     * Every event the device reports.
+     */
+    public static final EventMask ALL = new EventMask(ALL_TYPES, new long[InputEvent.EV_CNT][]);
+
+    /**
+     * Nothing but EV_SYN.
+     */
+    public static final EventMask NONE = new EventMask(1L << InputEvent.EV_SYN, new long[InputEvent.EV_CNT][]);
+
+    /**
+     * Bitmap of included types.
+     */
+    private final long types;
+
+    /**
+     * Bitmap of included codes, indexed by type. null for an included type means every code.
+     */
+    private final long[][] codes;
+
+    private EventMask(long types, long[][] codes) {
+        this.types = types | 1L << InputEvent.EV_SYN;
+        this.codes = codes;
+    }
+
+    /**
+     * @return true if at least one code of this type is included.
+     */
+    public boolean includes(int type) {
+        return type >= 0 && type < InputEvent.EV_CNT && (types & (1L << type)) != 0;
+    }
+
+    public boolean includes(int type, int code) {
+        return includes(type) && (codes[type] == null || Bits.test(codes[type], code));
+    }
+
+    /**
+     * @return true if this type is included with every code.
+     */
+    public boolean includesAllCodes(int type) {
+        return includes(type) && codes[type] == null;
+    }
+
+    /**
+     * @return a mask including the events of both this mask and other.
+     */
+    public EventMask union(EventMask other) {
+        if (other == this || other == NONE || this == ALL) return this;
+        if (this == NONE || other == ALL) return other;
+        long[][] merged = new long[InputEvent.EV_CNT][];
+        for (int type = 0; type < InputEvent.EV_CNT; type++) {
+            if (!includes(type) || !other.includes(type)) {
+                merged[type] = includes(type) ? codes[type] : other.codes[type];
+            } else if (codes[type] != null && other.codes[type] != null) {
+                long[] bitmap = Arrays.copyOf(codes[type], Math.max(codes[type].length, other.codes[type].length));
+                for (int i = 0; i < other.codes[type].length; i++) bitmap[i] |= other.codes[type][i];
+                merged[type] = bitmap;
+            }
+        }
+        return new EventMask(types | other.types, merged);
+    }
+
+    /**
+     * Fill bitmap the way EVIOCSMASK expects it for this type: the included types for EV_SYN, the included codes
+     * otherwise.
+     */
+    void toKernelBitmap(int type, long[] bitmap) {
+        Arrays.fill(bitmap, 0);
+        if (type == InputEvent.EV_SYN) {
+            bitmap[0] = types;
+        } else if (includesAllCodes(type)) {
+            Arrays.fill(bitmap, -1L);
+        } else if (includes(type)) {
+            System.arraycopy(codes[type], 0, bitmap, 0, Math.min(codes[type].length, bitmap.length));
+        }
+    }
+
+    /**
+     * Apply this mask to fd, with one EVIOCSMASK per maskable type. If the kernel refuses one of them, every type is
+     * set back to {@link #ALL}, best effort, so that no type is left masked by part of this mask or by a previous one.
+     *
+     * @return 0, or the -errno of the refused call.
+     */
+    int writeTo(NativeEventDevice nativeEventDevice, int fd) {
+        long[] bitmap = new long[Bits.longs(InputEvent.KEY_CNT)];
+        for (int type = 0; type < InputEvent.EV_CNT; type++) {
+            if (kernelCodeCount(type) == 0) continue;
+            toKernelBitmap(type, bitmap);
+            int result = nativeEventDevice.ioctlEVIOCSMASK(fd, type, bitmap);
+            if (result < 0) {
+                for (int unmasked = 0; unmasked < InputEvent.EV_CNT; unmasked++) {
+                    if (kernelCodeCount(unmasked) == 0) continue;
+                    ALL.toKernelBitmap(unmasked, bitmap);
+                    nativeEventDevice.ioctlEVIOCSMASK(fd, unmasked, bitmap);
+                }
+                return result;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Build a mask out of EVIOCGMASK bitmaps, indexed by type, the one of EV_SYN holding the included types. A type
+     * whose bitmap covers all of its {@link #kernelCodeCount(int)} codes includes every code.
+     */
+    static EventMask fromKernelBitmaps(long[][] bitmaps) {
+        long types = bitmaps[InputEvent.EV_SYN][0] & ALL_TYPES;
+        long[][] codes = new long[InputEvent.EV_CNT][];
+        for (int type = 1; type < InputEvent.EV_CNT; type++) {
+            int count = kernelCodeCount(type);
+            if ((types & (1L << type)) == 0 || count == 0 || bitmaps[type] == null) continue;
+            boolean all = true;
+            for (int code = 0; code < count && all; code++) all = Bits.test(bitmaps[type], code);
+            if (all) continue;
+            long[] bitmap = Bits.trim(bitmaps[type]);
+            if (bitmap == null) {
+                types &= ~(1L << type);
+            } else {
+                codes[type] = bitmap;
+            }
+        }
+        return new EventMask(types, codes);
+    }
+
+    /**
+     * @return the number of codes the kernel keeps a mask for with this type, 0 if codes of this type cannot be
+     * masked one by one. The mask of EV_SYN holds event types.
+     */
+    static int kernelCodeCount(int type) {
+        switch (type) {
+            case InputEvent.EV_SYN:
+                return InputEvent.EV_CNT;
+            case InputEvent.EV_KEY:
+                return InputEvent.KEY_CNT;
+            case InputEvent.EV_REL:
+                return InputEvent.REL_CNT;
+            case InputEvent.EV_ABS:
+                return InputEvent.ABS_CNT;
+            case InputEvent.EV_MSC:
+                return InputEvent.MSC_CNT;
+            case InputEvent.EV_SW:
+                return InputEvent.SW_CNT;
+            case InputEvent.EV_LED:
+                return InputEvent.LED_CNT;
+            case InputEvent.EV_SND:
+                return InputEvent.SND_CNT;
+            case InputEvent.EV_FF:
+                return InputEvent.FF_CNT;
+            default:
+                return 0;
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof EventMask)) return false;
+        EventMask other = (EventMask) o;
+        if (types != other.types) return false;
+        for (int type = 0; type < InputEvent.EV_CNT; type++) {
+            if (includes(type) && !Arrays.equals(codes[type], other.codes[type])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = Long.hashCode(types);
+        for (int type = 0; type < InputEvent.EV_CNT; type++) {
+            if (includes(type)) hash = 31 * hash + Arrays.hashCode(codes[type]);
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder buf = new StringBuilder("EventMask(");
+        for (int type = 0; type < InputEvent.EV_CNT; type++) {
+            if (!includes(type)) continue;
+            buf.append(" type ").append(type).append(": ");
+            buf.append(codes[type] == null ? "all" : Bits.cardinality(codes[type])).append(" codes");
+        }
+        return buf.append(" )").toString();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static final class Builder {
+
+        private long types;
+        private final long[][] codes = new long[InputEvent.EV_CNT][];
+
+        private Builder() {
+        }
+
+        /**
+         * Include every code of these types.
+         */
+        public Builder type(int... types) {
+            for (int type : types) {
+                check(type);
+                this.types |= 1L << type;
+                codes[type] = null;
+            }
+            return this;
+        }
+
+        /**
+         * Include these codes of a type, unless every code of the type is already included. EV_SYN is always
+         * included as a whole.
+         */
+        public Builder add(int type, int... codes) {
+            check(type);
+            if (type == InputEvent.EV_SYN || includesAllCodes(type)) return this;
+            if (this.codes[type] == null) this.codes[type] = new long[Bits.longs(InputEvent.KEY_CNT)];
+            for (int code : codes) {
+                if (code < 0 || code >= InputEvent.KEY_CNT) {
+                    throw new IllegalArgumentException("Invalid event code: " + code);
+                }
+                Bits.set(this.codes[type], code);
+            }
+            types |= 1L << type;
+            return this;
+        }
+
+        /**
+         * Include codes from first to last inclusive of a type.
+         */
+        public Builder addRange(int type, int first, int last) {
+            for (int code = first; code <= last; code++) add(type, code);
+            return this;
+        }
+
+        private boolean includesAllCodes(int type) {
+            return (types & (1L << type)) != 0 && codes[type] == null;
+        }
+
+        private static void check(int type) {
+            if (type < 0 || type >= InputEvent.EV_CNT) {
+                throw new IllegalArgumentException("Invalid event type: " + type);
+            }
+        }
+
+        public EventMask build() {
+            long included = types;
+            long[][] trimmed = new long[InputEvent.EV_CNT][];
+            for (int type = 0; type < InputEvent.EV_CNT; type++) {
+                if (codes[type] == null) continue;
+                trimmed[type] = Bits.trim(codes[type]);
+                /* a type added without any code is left out, rather than meaning every code */
+                if (trimmed[type] == null) included &= ~(1L << type);
+            }
+            return new EventMask(included, trimmed);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+/**
+ * This file is part of evdev-java - Java implementation.
+ *
+ * evdev-java - Java implementation is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * evdev-java - Java implementation is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with evdev-java - Java implementation.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.dgis.input.evdev;
+
+/**
+ * Implemented by listeners which only need some of the events of a device. While every listener of an
+ * {@link EventDevice} declares a mask, the device asks the kernel for the union of those masks and nothing else.
+ * Listeners which do not implement this interface receive every event.
+ */
+public interface EventMaskProvider {
+
+    /**
+     * @return The events this listener wants. Asked whenever listeners are added to or removed from the device, so
+     * it should not change while the listener is registered.
+     */
+    EventMask getEventMask();
+}
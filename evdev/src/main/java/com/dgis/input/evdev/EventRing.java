@@ -0,0 +1,565 @@
+/**
+ * This file is part of evdev-java - Java implementation.
+ *
+ * evdev-java - Java implementation is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * evdev-java - Java implementation is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with evdev-java - Java implementation.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.dgis.input.evdev;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.Closeable;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Broadcasts the events of a device to several consumers, each reading at its own pace on its own thread. Registered
+ * on an EventDevice, the ring copies every event into a preallocated ring of primitive slots and publishes it by
+ * advancing a sequence; each {@link Consumer} follows with a sequence of its own, and sees every event published after
+ * it was added, in order.
+ * <p/>
+ * Consumers gate the reader: a slot is only overwritten once every consumer has read it, so a consumer never sees an
+ * overwritten event, and a consumer a whole ring behind stalls the reader until it catches up or is closed. Publishing
+ * and reading allocate nothing and take no lock, except to wake consumers waiting with {@link WaitStrategy#BLOCKING}.
+ * <p/>
+ * The ring has a single publisher: register it on one device, either as a BatchListener, publishing each read at
+ * once, or as a RawInputListener, but not both.
+ */
+@ThreadSafe
+public final class EventRing implements RawInputListener, BatchListener, Closeable {
+
+    /**
+     * How a consumer waits for the next event.
+     */
+    public enum WaitStrategy {
+        /**
+         * Sleep on a condition signalled by the publisher. Costs no CPU while idle, but each wakeup takes a few
+         * microseconds, and the publisher takes a lock whenever a consumer sleeps.
+         */
+        BLOCKING,
+        /**
+         * Spin briefly, then yield the CPU between checks. Reacts within a scheduler slice, and uses a whole CPU
+         * only when others have nothing to run.
+         */
+        YIELDING,
+        /**
+         * Spin on the published sequence. Lowest latency, but the consumer thread uses a whole CPU, even idle.
+         */
+        BUSY_SPIN
+    }
+
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    /**
+     * Checks a yielding consumer, or a publisher waiting for consumers, makes before yielding.
+     */
+    private static final int SPIN_TRIES = 100;
+
+    /**
+     * How long a publisher waiting for consumers parks between checks, once done yielding.
+     */
+    private static final long PUBLISHER_PARK_NANOS = 10_000;
+
+    private static final AtomicInteger consumerNumber = new AtomicInteger();
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final int capacity;
+    private final int mask;
+
+    /**
+     * Event slots, as parallel arrays indexed by sequence & mask.
+     */
+    private final int[] deviceIds;
+    private final long[] timestamps;
+    private final int[] types;
+    private final int[] codes;
+    private final int[] values;
+
+    /**
+     * Sequence of the last published event, -1 before the first one.
+     */
+    private final Sequence cursor = new Sequence(-1);
+
+    /**
+     * Sequences of the consumers, replaced on every change.
+     */
+    private volatile Sequence[] gates = new Sequence[0];
+
+    /**
+     * The highest sequence the publisher can write without checking the consumers again. Only accessed by the
+     * publisher.
+     */
+    private long gateLimit;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition published = lock.newCondition();
+
+    /**
+     * Number of consumers sleeping on published, checked by the publisher after each publication.
+     */
+    private final AtomicInteger sleepers = new AtomicInteger();
+
+    private volatile boolean closed = false;
+
+    /**
+     * Only written by the publisher.
+     */
+    private volatile long publisherWaitCount;
+
+    /**
+     * Create a ring of DEFAULT_CAPACITY slots.
+     */
+    public EventRing() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity The number of slots, a power of two: how far the slowest consumer may fall behind the reader.
+     */
+    public EventRing(int capacity) {
+        if (capacity < 1 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        this.capacity = capacity;
+        mask = capacity - 1;
+        deviceIds = new int[capacity];
+        timestamps = new long[capacity];
+        types = new int[capacity];
+        codes = new int[capacity];
+        values = new int[capacity];
+        gateLimit = capacity - 1;
+    }
+
+    /**
+     * Add a consumer reading every event published from now on. The caller reads with {@link Consumer#poll} or
+     * {@link Consumer#take}, from a single thread.
+     */
+    public Consumer addConsumer(WaitStrategy waitStrategy) {
+        return register(waitStrategy, null);
+    }
+
+    /**
+     * Add a consumer delivering every event published from now on to a listener, on a new thread. An exception
+     * thrown by the listener is logged and counted, and the consumer goes on with the next event.
+     */
+    public Consumer startConsumer(RawInputListener listener, WaitStrategy waitStrategy) {
+        return register(waitStrategy, listener);
+    }
+
+    /**
+     * Add a consumer delivering every event published from now on to an InputListener, on a new thread.
+     *
+     * @param source The source reported by the InputEvents, usually the device path.
+     */
+    public Consumer startConsumer(InputListener listener, String source, WaitStrategy waitStrategy) {
+        return register(waitStrategy, new InputListenerAdapter(listener, source));
+    }
+
+    private Consumer register(WaitStrategy waitStrategy, RawInputListener listener) {
+        Consumer consumer;
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("Ring is closed");
+            }
+            /* starting at the cursor, the consumer is at least gateLimit - capacity: the limit of the publisher holds */
+            consumer = new Consumer(waitStrategy, cursor.get());
+            Sequence[] updated = Arrays.copyOf(gates, gates.length + 1);
+            updated[gates.length] = consumer.sequence;
+            gates = updated;
+        }
+        if (listener != null) consumer.start(listener);
+        return consumer;
+    }
+
+    private synchronized void removeGate(Sequence sequence) {
+        Sequence[] current = gates;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == sequence) {
+                Sequence[] updated = new Sequence[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, i);
+                System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                gates = updated;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Publish an event. Waits while the slowest consumer is a whole ring behind.
+     */
+    @Override
+    public void onEvent(int deviceId, long timestampNanos, int type, int code, int value) {
+        if (closed) return;
+        long next = cursor.value + 1;
+        if (next > gateLimit && !awaitGate(next)) return;
+        int index = (int) next & mask;
+        deviceIds[index] = deviceId;
+        timestamps[index] = timestampNanos;
+        types[index] = type;
+        codes[index] = code;
+        values[index] = value;
+        publish(next);
+    }
+
+    /**
+     * Publish the events of a read, at once when they fit in the ring.
+     */
+    @Override
+    public void events(EventBatch batch) {
+        if (closed) return;
+        int size = batch.size();
+        int deviceId = batch.getDeviceId();
+        for (int done = 0; done < size; ) {
+            int count = Math.min(size - done, capacity);
+            long first = cursor.value + 1;
+            long last = first + count - 1;
+            if (last > gateLimit && !awaitGate(last)) return;
+            for (int i = 0; i < count; i++) {
+                int index = (int) (first + i) & mask;
+                deviceIds[index] = deviceId;
+                timestamps[index] = batch.getTimestampNanos(done + i);
+                types[index] = batch.getType(done + i);
+                codes[index] = batch.getCode(done + i);
+                values[index] = batch.getValue(done + i);
+            }
+            publish(last);
+            done += count;
+        }
+    }
+
+    /**
+     * Wait until every consumer has read the slot sequence overwrites.
+     *
+     * @return false if the ring was closed meanwhile.
+     */
+    private boolean awaitGate(long sequence) {
+        long wrap = sequence - capacity;
+        long minimum;
+        int tries = 0;
+        while ((minimum = minimumGate()) < wrap) {
+            if (closed) return false;
+            if (tries == 0) publisherWaitCount++;
+            if (++tries < SPIN_TRIES) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(PUBLISHER_PARK_NANOS);
+            }
+        }
+        gateLimit = minimum + capacity;
+        return true;
+    }
+
+    /**
+     * @return the sequence of the slowest consumer, or the cursor if there is none.
+     */
+    private long minimumGate() {
+        long minimum = cursor.value;
+        for (Sequence gate : gates) {
+            minimum = Math.min(minimum, gate.get());
+        }
+        return minimum;
+    }
+
+    private void publish(long sequence) {
+        /* a volatile store, so that the check of sleepers below cannot miss a consumer about to sleep */
+        cursor.set(sequence);
+        if (sleepers.get() > 0) wakeConsumers();
+    }
+
+    private void wakeConsumers() {
+        lock.lock();
+        try {
+            published.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stop the ring: consumers return once they read what was published, and the publisher drops further events.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+        }
+        wakeConsumers();
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return the sequence of the last published event, -1 before the first one.
+     */
+    public long getCursor() {
+        return cursor.get();
+    }
+
+    public int getConsumerCount() {
+        return gates.length;
+    }
+
+    /**
+     * @return the number of events the reader can publish before waiting for the slowest consumer.
+     */
+    public int getRemainingCapacity() {
+        long cursorValue = cursor.get();
+        long minimum = cursorValue;
+        for (Sequence gate : gates) {
+            minimum = Math.min(minimum, gate.get());
+        }
+        return (int) (capacity - (cursorValue - minimum));
+    }
+
+    /**
+     * @return how many times the reader had to wait for the slowest consumer.
+     */
+    public long getPublisherWaitCount() {
+        return publisherWaitCount;
+    }
+
+    @Override
+    public String toString() {
+        return "EventRing[capacity=" + capacity + ", cursor=" + getCursor() + ", consumers=" + getConsumerCount() + "]";
+    }
+
+    /**
+     * A reader of the ring, following the publisher with a sequence of its own. A consumer is read from a single
+     * thread: the one it started, or the caller of poll and take.
+     */
+    @NotThreadSafe
+    public final class Consumer implements Closeable {
+
+        private final WaitStrategy waitStrategy;
+
+        /**
+         * Sequence of the last event read, gating the publisher.
+         */
+        private final Sequence sequence;
+
+        private volatile boolean consumerClosed = false;
+
+        private Thread thread;
+
+        /**
+         * Only written by the consumer thread.
+         */
+        private volatile long failureCount;
+
+        private Consumer(WaitStrategy waitStrategy, long start) {
+            this.waitStrategy = waitStrategy;
+            sequence = new Sequence(start);
+        }
+
+        private void start(RawInputListener listener) {
+            thread = new Thread(() -> run(listener), "evdev-ring-" + consumerNumber.incrementAndGet());
+            thread.setDaemon(true); /* We don't want this thread to prevent the JVM from terminating */
+            thread.start();
+        }
+
+        private void run(RawInputListener listener) {
+            while (true) {
+                try {
+                    if (take(listener) < 0) return;
+                } catch (InterruptedException e) {
+                    return;
+                } catch (RuntimeException e) {
+                    failureCount++;
+                    logger.warn("Listener {} failed", listener, e);
+                }
+            }
+        }
+
+        /**
+         * Deliver every event published since the last call, without waiting. If the listener throws, the event it
+         * threw on counts as read, and the exception is rethrown.
+         *
+         * @return the number of events delivered.
+         */
+        public int poll(RawInputListener listener) {
+            if (consumerClosed) return 0;
+            long current = sequence.value;
+            long available = cursor.get();
+            if (available <= current) return 0;
+            long next = current;
+            try {
+                while (next < available) {
+                    int index = (int) ++next & mask;
+                    listener.onEvent(deviceIds[index], timestamps[index], types[index], codes[index], values[index]);
+                }
+            } finally {
+                /* release the slots once read */
+                sequence.lazySet(next);
+            }
+            return (int) (available - current);
+        }
+
+        /**
+         * Wait for at least one event with the wait strategy of the consumer, then deliver every published one.
+         *
+         * @return the number of events delivered, or -1 once the ring or the consumer is closed and read to its end.
+         * @throws InterruptedException If interrupted while waiting with {@link WaitStrategy#BLOCKING}.
+         */
+        public int take(RawInputListener listener) throws InterruptedException {
+            if (consumerClosed || !waitFor(sequence.value + 1)) return -1;
+            return poll(listener);
+        }
+
+        /**
+         * @return false if closed before sequence was published.
+         */
+        private boolean waitFor(long target) throws InterruptedException {
+            if (cursor.get() >= target) return true;
+            switch (waitStrategy) {
+                case BLOCKING:
+                    lock.lockInterruptibly();
+                    try {
+                        sleepers.incrementAndGet();
+                        try {
+                            while (cursor.get() < target) {
+                                if (isStopped()) return false;
+                                published.await();
+                            }
+                        } finally {
+                            sleepers.decrementAndGet();
+                        }
+                    } finally {
+                        lock.unlock();
+                    }
+                    return true;
+                case YIELDING:
+                    for (int tries = 0; cursor.get() < target; tries++) {
+                        if (isStopped()) return false;
+                        if (tries >= SPIN_TRIES) Thread.yield();
+                    }
+                    return true;
+                default:
+                    while (cursor.get() < target) {
+                        if (isStopped()) return false;
+                    }
+                    return true;
+            }
+        }
+
+        private boolean isStopped() {
+            return closed || consumerClosed;
+        }
+
+        public WaitStrategy getWaitStrategy() {
+            return waitStrategy;
+        }
+
+        /**
+         * @return the sequence of the last event read.
+         */
+        public long getSequence() {
+            return sequence.get();
+        }
+
+        /**
+         * @return the number of published events this consumer has not read yet.
+         */
+        public long getLag() {
+            return cursor.get() - sequence.get();
+        }
+
+        /**
+         * @return the number of events whose delivery threw, for a consumer with its own thread.
+         */
+        public long getFailureCount() {
+            return failureCount;
+        }
+
+        /**
+         * Stop gating the publisher, and stop the thread of the consumer if it has one.
+         */
+        @Override
+        public void close() {
+            if (consumerClosed) return;
+            consumerClosed = true;
+            removeGate(sequence);
+            wakeConsumers();
+            if (thread != null && thread != Thread.currentThread()) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    logger.error("Interrupted in close", e);
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "EventRing.Consumer[" + waitStrategy + ", sequence=" + getSequence() + ", lag=" + getLag() + "]";
+        }
+    }
+
+    /**
+     * Padding before the value of a Sequence, so that sequences written by different threads do not share a cache
+     * line.
+     */
+    @SuppressWarnings("unused")
+    private static class LeftPadding {
+        protected long p1, p2, p3, p4, p5, p6, p7;
+    }
+
+    private static class SequenceValue extends LeftPadding {
+        static final AtomicLongFieldUpdater<SequenceValue> VALUE =
+                AtomicLongFieldUpdater.newUpdater(SequenceValue.class, "value");
+
+        protected volatile long value;
+    }
+
+    /**
+     * A volatile long alone on its cache line.
+     */
+    @SuppressWarnings("unused")
+    private static final class Sequence extends SequenceValue {
+        protected long p9, p10, p11, p12, p13, p14, p15;
+
+        Sequence(long initial) {
+            value = initial;
+        }
+
+        long get() {
+            return value;
+        }
+
+        void set(long sequence) {
+            value = sequence;
+        }
+
+        /**
+         * Store without waiting for the write to be visible, still ordered after the preceding reads and writes.
+         */
+        void lazySet(long sequence) {
+            VALUE.lazySet(this, sequence);
+        }
+    }
+}
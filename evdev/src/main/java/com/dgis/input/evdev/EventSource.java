@@ -0,0 +1,98 @@
+/**
+ * This file is part of evdev-java - Java implementation.
+ *
+ * evdev-java - Java implementation is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * evdev-java - Java implementation is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with evdev-java - Java implementation.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.dgis.input.evdev;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Where an {@link EventDevice} reads its events from: an evdev node, or anything producing input_event structs, like
+ * a named pipe, a recording or an in-memory generator.
+ * <p/>
+ * Sources backed by a file descriptor are polled by the device, or by an {@link EventDeviceReactor}, and read when
+ * ready. Other sources are read in a loop by the reader thread of the device, so they are consumed as fast as the
+ * listeners keep up.
+ *
+ * @see EventDevice#EventDevice(EventSource)
+ */
+public interface EventSource extends Closeable {
+
+    /**
+     * @return the path or name of the source, reported as the source of the InputEvents.
+     */
+    String getPath();
+
+    /**
+     * Open the source. Called once by the EventDevice, before anything else.
+     *
+     * @throws IOException If the source cannot be opened.
+     */
+    void open() throws IOException;
+
+    /**
+     * @return what the source claims to be. Only called once open.
+     */
+    DeviceInfo getInfo();
+
+    /**
+     * @return the non-blocking file descriptor to poll before reading, or -1 if the source is not backed by one.
+     */
+    int getFd();
+
+    /**
+     * @return the layout of the structs returned by read(). Defaults to the layout of the running JVM.
+     */
+    default InputEventAbi getAbi() {
+        return InputEventAbi.host();
+    }
+
+    /**
+     * Read input_event structs into buffer, without moving its position or limit. A struct cut short is completed
+     * by the next read.
+     *
+     * @param position Where to store the structs in buffer.
+     * @param length   The maximum number of bytes to store.
+     * @return the number of bytes read, 0 if nothing is available right now, or -1 once the source is exhausted or
+     * the device is gone.
+     * @throws IOException If the source failed, and cannot be read anymore.
+     */
+    int read(ByteBuffer buffer, int position, int length) throws IOException;
+
+    /**
+     * Read the current parameters of an axis, as value, minimum, maximum, fuzz, flat and resolution.
+     *
+     * @return false if the axis has no parameters.
+     */
+    boolean readAbsInfo(int axis, int[] out);
+
+    /**
+     * Replace the parameters of an axis, in the same order as {@link #readAbsInfo(int, int[])}. Only evdev nodes
+     * support it.
+     *
+     * @return false if the parameters cannot be changed.
+     */
+    default boolean writeAbsInfo(int axis, int[] in) {
+        return false;
+    }
+
+    /**
+     * Release the source. Only called once the device stopped reading it.
+     */
+    @Override
+    void close() throws IOException;
+}
@@ -18,9 +18,6 @@ package com.dgis.input.evdev;
 
 import lombok.Getter;
 
-import java.util.HashMap;
-import java.util.Map;
-
 import static java.lang.String.format;
 
 public enum EventType {
@@ -40,11 +37,15 @@ public enum EventType {
     EV_MAX((short) 0x1f),
     EV_CNT((short) (0x1f + 1));
 
-    private static final Map<Short, EventType> VALUE_LOOKUP = new HashMap<>();
+    /**
+     * Indexed by event type value, so that lookups neither hash nor box. One past EV_CNT, which is a constant here
+     * too.
+     */
+    private static final EventType[] VALUE_LOOKUP = new EventType[InputEvent.EV_CNT + 1];
 
     static {
         for (EventType eventType : EventType.values()) {
-            VALUE_LOOKUP.put(eventType.value, eventType);
+            VALUE_LOOKUP[eventType.value] = eventType;
         }
     }
 
@@ -56,7 +57,7 @@ public enum EventType {
     }
 
     public static EventType valueOf(short value) {
-        if (VALUE_LOOKUP.containsKey(value)) return VALUE_LOOKUP.get(value);
+        if (value >= 0 && value < VALUE_LOOKUP.length && VALUE_LOOKUP[value] != null) return VALUE_LOOKUP[value];
         throw new IllegalArgumentException(format("Unknown event type: %s", value));
     }
 
@@ -0,0 +1,73 @@
+/**
+ * This file is part of evdev-java - Java implementation.
+ *
+ * evdev-java - Java implementation is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * evdev-java - Java implementation is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with evdev-java - Java implementation.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.dgis.input.evdev;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A source read through a non-blocking file descriptor with the native library.
+ */
+abstract class FdEventSource implements EventSource {
+
+    private final String path;
+
+    final NativeEventDevice nativeEventDevice;
+
+    int fd = -1;
+
+    FdEventSource(File file) throws IOException {
+        path = file.getAbsolutePath();
+        NativeLoader.load();
+        nativeEventDevice = new NativeEventDevice();
+    }
+
+    @Override
+    public String getPath() {
+        return path;
+    }
+
+    @Override
+    public void open() throws IOException {
+        fd = nativeEventDevice.open(path, true);
+        if (fd < 0) {
+            throw new IOException("Cannot open " + path + ", errno " + -fd);
+        }
+    }
+
+    @Override
+    public int getFd() {
+        return fd;
+    }
+
+    @Override
+    public int read(ByteBuffer buffer, int position, int length) throws IOException {
+        int n = nativeEventDevice.read(fd, buffer, position, length);
+        if (n == -NativeEventDevice.EAGAIN || n == -NativeEventDevice.EINTR) return 0;
+        if (n == 0 || n == -NativeEventDevice.ENODEV) return -1;
+        if (n < 0) {
+            throw new IOException("Cannot read events from " + path + ", errno " + -n);
+        }
+        return n;
+    }
+
+    @Override
+    public void close() {
+        if (fd >= 0) nativeEventDevice.close(fd);
+    }
+}
@@ -0,0 +1,37 @@
+/**
+ * This file is part of evdev-java - Java implementation.
+ *
+ * evdev-java - Java implementation is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * evdev-java - Java implementation is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with evdev-java - Java implementation.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.dgis.input.evdev;
+
+/**
+ * Listener receiving the events of a device a frame at a time, once per SYN_REPORT, rather than event by event.
+ * Frames are assembled without allocating once the device has seen its biggest frame.
+ * <p/>
+ * Implementations must not keep references to the frame, which is overwritten by the next one, and should return
+ * quickly: they are called on the thread reading the device. A listener added in the middle of a frame may first
+ * receive only the end of that frame.
+ *
+ * @see EventDevice#addFrameListener(FrameListener)
+ */
+public interface FrameListener {
+
+    /**
+     * Called by an EventDevice on every SYN_REPORT.
+     *
+     * @param frame The events since the previous SYN_REPORT.
+     */
+    void onFrame(EventFrame frame);
+}
@@ -0,0 +1,143 @@
+/**
+ * This file is part of evdev-java - Java implementation.
+ *
+ * evdev-java - Java implementation is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * evdev-java - Java implementation is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with evdev-java - Java implementation.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.dgis.input.evdev;
+
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Distribution of non-negative values, such as durations in nanoseconds or event counts, over fixed power-of-two
+ * buckets: bucket 0 counts zeroes, and bucket b values from 2^(b-1) to 2^b - 1. Recording is a few plain stores, with
+ * no allocation, lock nor atomic read-modify-write, which only holds with a single thread recording. Any thread can
+ * take snapshots.
+ */
+@ThreadSafe
+public final class Histogram {
+
+    public static final int BUCKETS = 64;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    /**
+     * Only written by the recording thread.
+     */
+    private volatile long sum;
+    private volatile long max;
+
+    Histogram() {
+    }
+
+    /**
+     * Add a value. Only called by a single thread.
+     */
+    void record(long value) {
+        if (value < 0) value = 0;
+        int bucket = bucket(value);
+        counts.lazySet(bucket, counts.get(bucket) + 1);
+        sum += value;
+        if (value > max) max = value;
+    }
+
+    static int bucket(long value) {
+        return 64 - Long.numberOfLeadingZeros(value);
+    }
+
+    /**
+     * @return the highest value counted by a bucket.
+     */
+    public static long upperBound(int bucket) {
+        return bucket == BUCKETS - 1 ? Long.MAX_VALUE : (1L << bucket) - 1;
+    }
+
+    public Snapshot snapshot() {
+        long[] bucketCounts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            bucketCounts[i] = counts.get(i);
+        }
+        return new Snapshot(bucketCounts, sum, max);
+    }
+
+    /**
+     * The values recorded up to some point. Recording goes on while a snapshot is taken, so the sum and the maximum
+     * may already account for a few values the buckets do not.
+     */
+    @Immutable
+    public static final class Snapshot {
+
+        private final long[] bucketCounts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        private Snapshot(long[] bucketCounts, long sum, long max) {
+            this.bucketCounts = bucketCounts;
+            long total = 0;
+            for (long bucketCount : bucketCounts) {
+                total += bucketCount;
+            }
+            this.count = total;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getSum() {
+            return sum;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public double getMean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * @param percentile From 0 to 100.
+         * @return a value at least as high as the given share of the values, the upper bound of the bucket holding it,
+         * and never above the maximum. 0 if nothing was recorded.
+         */
+        public long getPercentile(double percentile) {
+            if (count == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+            long seen = 0;
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                seen += bucketCounts[bucket];
+                if (seen >= rank) return Math.min(upperBound(bucket), max);
+            }
+            return max;
+        }
+
+        /**
+         * @return the number of values in each bucket, see {@link Histogram#upperBound(int)}.
+         */
+        public long[] getBucketCounts() {
+            return bucketCounts.clone();
+        }
+
+        @Override
+        public String toString() {
+            return "Histogram[count=" + count + ", mean=" + String.format("%.1f", getMean()) + ", p50="
+                    + getPercentile(50) + ", p99=" + getPercentile(99) + ", max=" + max + "]";
+        }
+    }
+}
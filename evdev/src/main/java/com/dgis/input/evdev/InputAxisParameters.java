@@ -21,61 +21,164 @@ import javax.annotation.concurrent.ThreadSafe;
 /**
  * Represents configurable parameters of an input axis. set*() should affect the value in the device.
  * <p/>
+ * Minimum, maximum, fuzz, flat and resolution are read from the device once, and then served from that snapshot
+ * until the device reports lost events, or refresh() is called. The value changes with every event, so it is always
+ * read from the device.
+ * <p/>
  * Copyright (C) 2009 Giacomo Ferrari
  *
  * @author Giacomo Ferrari
  */
 @ThreadSafe
-class InputAxisParameters {
+public class InputAxisParameters {
 
     private final EventDevice device;
     private final int axis;
 
-    private static final int VALUE_INDEX = 0;
-    private static final int MIN_INDEX = 1;
-    private static final int MAX_INDEX = 2;
-    private static final int FUZZ_INDEX = 3;
-    private static final int FLAT_INDEX = 4;
+    /**
+     * Last absinfo read from the device, with the absinfo generation it was read in. Replaced as a whole, null until
+     * first needed.
+     */
+    private volatile Snapshot snapshot;
+
+    /**
+     * Scratch array of getValue(). Guarded by this.
+     */
+    private final int[] valueInfo = new int[DeviceProbe.ABSINFO_FIELDS];
 
     public InputAxisParameters(EventDevice device, int axis) {
         this.device = device;
         this.axis = axis;
     }
 
-    private int readStatus(int i) {
-        if (i < 0 || i > 4) {
-            throw new IllegalArgumentException("Field index has to be between 0 and 4");
+    private int[] snapshot() {
+        Snapshot current = snapshot;
+        long deviceGeneration = device.getAbsInfoGeneration();
+        if (current != null && current.generation == deviceGeneration) {
+            return current.info;
         }
-        int[] resp = new int[5];
-        synchronized (this) {
-            device.ioctlEVIOCGABS(device.getDevicePath(), resp, axis);
+        return read(deviceGeneration);
+    }
+
+    /**
+     * Read the parameters, and keep them unless the device could not be read.
+     *
+     * @return the parameters read, or the previous ones, or zeros, if the device could not be read.
+     */
+    private synchronized int[] read(long deviceGeneration) {
+        int[] info = new int[DeviceProbe.ABSINFO_FIELDS];
+        if (!device.ioctlEVIOCGABS(device.getDevicePath(), info, axis)) {
+            Snapshot previous = snapshot;
+            return previous != null ? previous.info : new int[DeviceProbe.ABSINFO_FIELDS];
         }
-        return resp[i];
+        snapshot = new Snapshot(info, deviceGeneration);
+        return info;
+    }
+
+    /**
+     * Read the parameters of the axis from the device again.
+     */
+    public void refresh() {
+        read(device.getAbsInfoGeneration());
     }
 
-    public int getValue() {
-        return readStatus(VALUE_INDEX);
+    /**
+     * @return The current value of the axis, read from the device.
+     */
+    public synchronized int getValue() {
+        valueInfo[DeviceInfo.ABSINFO_VALUE] = 0;
+        device.ioctlEVIOCGABS(device.getDevicePath(), valueInfo, axis);
+        return valueInfo[DeviceInfo.ABSINFO_VALUE];
     }
 
     public int getMin() {
-        return readStatus(MIN_INDEX);
+        return snapshot()[DeviceInfo.ABSINFO_MIN];
     }
 
     public int getMax() {
-        return readStatus(MAX_INDEX);
+        return snapshot()[DeviceInfo.ABSINFO_MAX];
     }
 
     public int getFuzz() {
-        return readStatus(FUZZ_INDEX);
+        return snapshot()[DeviceInfo.ABSINFO_FUZZ];
     }
 
     public int getFlat() {
-        return readStatus(FLAT_INDEX);
+        return snapshot()[DeviceInfo.ABSINFO_FLAT];
+    }
+
+    /**
+     * @return The resolution of the axis in units per millimeter, or per radian for rotations, 0 if unknown.
+     */
+    public int getResolution() {
+        return snapshot()[DeviceInfo.ABSINFO_RESOLUTION];
+    }
+
+    /**
+     * Have the kernel drop changes of the axis smaller than fuzz, cutting the event rate of noisy axes.
+     *
+     * @return false if the device refused the change, or is not an evdev node.
+     */
+    public boolean setFuzz(int fuzz) {
+        return write(DeviceInfo.ABSINFO_FUZZ, fuzz);
+    }
+
+    /**
+     * Change the size of the dead zone reported for the center of the axis.
+     *
+     * @return false if the device refused the change, or is not an evdev node.
+     */
+    public boolean setFlat(int flat) {
+        return write(DeviceInfo.ABSINFO_FLAT, flat);
+    }
+
+    /**
+     * Change the resolution reported for the axis.
+     *
+     * @return false if the device refused the change, or is not an evdev node.
+     */
+    public boolean setResolution(int resolution) {
+        return write(DeviceInfo.ABSINFO_RESOLUTION, resolution);
+    }
+
+    /**
+     * Change one field with EVIOCSABS. That ioctl replaces the whole absinfo, value included, so the others are read
+     * again first rather than taken from the snapshot.
+     */
+    private synchronized boolean write(int field, int value) {
+        long deviceGeneration = device.getAbsInfoGeneration();
+        int[] info = new int[DeviceProbe.ABSINFO_FIELDS];
+        if (!device.ioctlEVIOCGABS(device.getDevicePath(), info, axis)) {
+            return false;
+        }
+        info[field] = value;
+        if (!device.setAbsInfo(axis, info)) {
+            return false;
+        }
+        snapshot = new Snapshot(info, deviceGeneration);
+        return true;
     }
 
     @Override
     public String toString() {
-        return "Value: " + getValue() + " Min: " + getMin() + " Max: "
-                + getMax() + " Fuzz: " + getFuzz() + " Flat: " + getFlat();
+        int[] info = snapshot();
+        return "Value: " + getValue() + " Min: " + info[DeviceInfo.ABSINFO_MIN] + " Max: "
+                + info[DeviceInfo.ABSINFO_MAX] + " Fuzz: " + info[DeviceInfo.ABSINFO_FUZZ] + " Flat: "
+                + info[DeviceInfo.ABSINFO_FLAT] + " Resolution: " + info[DeviceInfo.ABSINFO_RESOLUTION];
+    }
+
+    /**
+     * Absinfo indexed by the DeviceInfo.ABSINFO_* constants, and the absinfo generation of the device it was read in,
+     * published together.
+     */
+    private static final class Snapshot {
+
+        private final int[] info;
+        private final long generation;
+
+        private Snapshot(int[] info, long generation) {
+            this.info = info;
+            this.generation = generation;
+        }
     }
 }
@@ -65,6 +65,8 @@ public class InputEvent {
     public static final short SYN_REPORT = 0;
     public static final short SYN_CONFIG = 1;
     public static final short SYN_MT_REPORT = 2;
+    /** The kernel buffer overflowed and events were lost */
+    public static final short SYN_DROPPED = 3;
 
     /*
      * Keys and buttons
@@ -680,6 +682,8 @@ public class InputEvent {
     public static final short ABS_VOLUME = 0x20;
     public static final short ABS_MISC = 0x28;
 
+    /** MT slot being modified */
+    public static final short ABS_MT_SLOT = 0x2f;
     /** Major axis of touching ellipse */
     public static final short ABS_MT_TOUCH_MAJOR = 0x30;
     /** Minor axis (omit if circular) */
@@ -700,6 +704,14 @@ public class InputEvent {
     public static final short ABS_MT_BLOB_ID = 0x38;
     /** Unique ID of initiated contact */
     public static final short ABS_MT_TRACKING_ID = 0x39;
+    /** Pressure on contact area */
+    public static final short ABS_MT_PRESSURE = 0x3a;
+    /** Contact hover distance */
+    public static final short ABS_MT_DISTANCE = 0x3b;
+    /** Center X tool position */
+    public static final short ABS_MT_TOOL_X = 0x3c;
+    /** Center Y tool position */
+    public static final short ABS_MT_TOOL_Y = 0x3d;
 
     public static final short ABS_MAX = 0x3f;
     public static final short ABS_CNT = (ABS_MAX + 1);
@@ -804,6 +816,10 @@ public class InputEvent {
     public static final short FF_STATUS_PLAYING = 0x01;
     public static final short FF_STATUS_MAX = 0x01;
 
+    /* Force feedback effect types and properties */
+    public static final short FF_MAX = 0x7f;
+    public static final short FF_CNT = (FF_MAX + 1);
+
 
     @Getter public final long timeSec;
     @Getter public final long timeMicroSec;
@@ -821,6 +837,21 @@ public class InputEvent {
         this.source = source;
     }
 
+    /**
+     * Create an InputEvent out of primitive event fields.
+     *
+     * @param timestampNanos the event timestamp, in nanoseconds
+     * @param type           the event type
+     * @param code           the event code
+     * @param value          the event value
+     * @param source         the event source, usually the device path
+     * @return the new InputEvent
+     */
+    public static InputEvent of(long timestampNanos, int type, int code, int value, String source) {
+        return new InputEvent(timestampNanos / 1000000000L, (timestampNanos % 1000000000L) / 1000L,
+                valueOf((short) type), (short) code, value, source);
+    }
+
     /**
      * Parse an InputEvent out of a ShortBuffer.
      *
@@ -835,43 +866,44 @@ public class InputEvent {
 
     /**
      * Parse an InputEvent out of a ShortBuffer.
+     * <p/>
+     * Prefer decoding with an {@link InputEventAbi}, which reads whole fields out of a ByteBuffer and knows more
+     * layouts.
      *
      * @param shortBuffer
      * @param source
-     * @param arch
+     * @param arch        "arm" for the 16 bytes layout, anything else for the 24 bytes one, or null for the layout of
+     *                    the running JVM.
      * @return the parsed InputEvent
-     * @throws IOException
      */
     public static InputEvent parse(ShortBuffer shortBuffer, String source, String arch) {
-        short a, b, c, d;
-        a = shortBuffer.get();
-        b = shortBuffer.get();
-        long timeSec;
-        if (arch.equals("arm")) {
-            timeSec = (b << 16) | a;
-        } else {
-            c = shortBuffer.get();
-            d = shortBuffer.get();
-            timeSec = ((long)d << 48) | ((long)c << 32) | ((long)b << 16) | a;
-        }
-        a = shortBuffer.get();
-        b = shortBuffer.get();
-        long timeMicroSec;
-        if (arch.equals("arm")) {
-            timeMicroSec = (b << 16) | a;
-        } else {
-            c = shortBuffer.get();
-            d = shortBuffer.get();
-            // fixme : longs are signed, so this is probably not doing what we expect it to do
-            timeMicroSec = (d << 48) | (c << 32) | (b << 16) | a;
-        }
+        boolean shortTime = arch == null
+                ? InputEventAbi.host().getStructSize() == STRUCT_SIZE_BYTES_ARM
+                : "arm".equals(arch);
+        long timeSec = shortTime ? readInt(shortBuffer) : readLong(shortBuffer);
+        long timeMicroSec = shortTime ? readInt(shortBuffer) : readLong(shortBuffer);
         short type = shortBuffer.get();
         short code = shortBuffer.get();
-        c = shortBuffer.get();
-        d = shortBuffer.get();
-        int value = (d << 16) | c;
+        int value = readInt(shortBuffer);
 
         return new InputEvent(timeSec, timeMicroSec, valueOf(type), code, value, source);
     }
 
+    private static int readInt(ShortBuffer shortBuffer) {
+        int low = shortBuffer.get() & 0xffff;
+        return (shortBuffer.get() << 16) | low;
+    }
+
+    private static long readLong(ShortBuffer shortBuffer) {
+        long low = readInt(shortBuffer) & 0xffffffffL;
+        return ((long) readInt(shortBuffer) << 32) | low;
+    }
+
+    /**
+     * @return the event timestamp, in nanoseconds.
+     */
+    public long getTimestampNanos() {
+        return timeSec * 1000000000L + timeMicroSec * 1000L;
+    }
+
 }
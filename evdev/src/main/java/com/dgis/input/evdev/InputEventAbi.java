@@ -0,0 +1,161 @@
+/**
+ * This file is part of evdev-java - Java implementation.
+ *
+ * evdev-java - Java implementation is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * evdev-java - Java implementation is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with evdev-java - Java implementation.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.dgis.input.evdev;
+
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Layout of struct input_event for one ABI, decoding and encoding events straight from and to a ByteBuffer in the
+ * byte order of the buffer. Every field is read as a whole long or int at a fixed offset.
+ * <p/>
+ * The struct is a timeval followed by type, code and value. The timeval is two longs on 64 bit ABIs, and two 32 bit
+ * words on 32 bit ones. 32 bit userlands built with a 64 bit time_t kept the same 16 byte struct, but read the
+ * seconds as unsigned, so that they last past 2038.
+ */
+public enum InputEventAbi {
+
+    X86_64(8, false),
+    AARCH64(8, false),
+    ARM32(4, false),
+    I386(4, false),
+    /**
+     * 32 bit userland with a 64 bit time_t, on any architecture.
+     */
+    TIME64_32(4, true);
+
+    /**
+     * Overrides the ABI detected from os.arch, e.g. -Devdev.abi=TIME64_32.
+     */
+    public static final String ABI_PROPERTY = "evdev.abi";
+
+    private static final InputEventAbi HOST = detect(System.getProperty(ABI_PROPERTY), System.getProperty("os.arch"));
+
+    /**
+     * Size of one of the two timeval fields.
+     */
+    private final int timeFieldSize;
+    private final boolean unsignedTime;
+    private final int structSize;
+    private final int typeOffset;
+
+    InputEventAbi(int timeFieldSize, boolean unsignedTime) {
+        this.timeFieldSize = timeFieldSize;
+        this.unsignedTime = unsignedTime;
+        this.typeOffset = 2 * timeFieldSize;
+        this.structSize = typeOffset + 8;
+    }
+
+    /**
+     * @return the ABI of the running JVM.
+     */
+    public static InputEventAbi host() {
+        return HOST;
+    }
+
+    /**
+     * @param override value of evdev.abi, null if unset. Ignored, with a warning, if it names no ABI.
+     */
+    static InputEventAbi detect(String override, String arch) {
+        if (override != null) {
+            try {
+                return valueOf(override);
+            } catch (IllegalArgumentException e) {
+                LoggerFactory.getLogger(InputEventAbi.class).warn("Unknown ABI {}={}, detecting it from {}",
+                        ABI_PROPERTY, override, arch);
+            }
+        }
+        switch (String.valueOf(arch)) {
+            case "aarch64":
+                return AARCH64;
+            case "arm":
+                return ARM32;
+            case "x86":
+            case "i386":
+            case "i686":
+                return I386;
+            case "amd64":
+            case "x86_64":
+                return X86_64;
+            default:
+                LoggerFactory.getLogger(InputEventAbi.class).warn("Unknown architecture {}, assuming 64 bit", arch);
+                return X86_64;
+        }
+    }
+
+    public int getStructSize() {
+        return structSize;
+    }
+
+    /**
+     * @return the timestamp of the struct at offset, in nanoseconds.
+     */
+    public long timestampNanos(ByteBuffer buffer, int offset) {
+        long sec;
+        long usec;
+        if (timeFieldSize == 8) {
+            sec = buffer.getLong(offset);
+            usec = buffer.getLong(offset + 8);
+        } else if (unsignedTime) {
+            sec = buffer.getInt(offset) & 0xffffffffL;
+            usec = buffer.getInt(offset + 4) & 0xffffffffL;
+        } else {
+            sec = buffer.getInt(offset);
+            usec = buffer.getInt(offset + 4);
+        }
+        return sec * 1000000000L + usec * 1000L;
+    }
+
+    public int type(ByteBuffer buffer, int offset) {
+        return buffer.getShort(offset + typeOffset) & 0xffff;
+    }
+
+    public int code(ByteBuffer buffer, int offset) {
+        return buffer.getShort(offset + typeOffset + 2) & 0xffff;
+    }
+
+    public int value(ByteBuffer buffer, int offset) {
+        return buffer.getInt(offset + typeOffset + 4);
+    }
+
+    /**
+     * Decode the struct at offset into view.
+     *
+     * @return view
+     */
+    public InputEventView decode(ByteBuffer buffer, int offset, int deviceId, InputEventView view) {
+        return view.set(deviceId, timestampNanos(buffer, offset), type(buffer, offset), code(buffer, offset),
+                value(buffer, offset));
+    }
+
+    /**
+     * Write an event as a struct at offset.
+     */
+    public void encode(ByteBuffer buffer, int offset, long timestampNanos, int type, int code, int value) {
+        long sec = timestampNanos / 1000000000L;
+        long usec = timestampNanos % 1000000000L / 1000L;
+        if (timeFieldSize == 8) {
+            buffer.putLong(offset, sec).putLong(offset + 8, usec);
+        } else {
+            buffer.putInt(offset, (int) sec).putInt(offset + 4, (int) usec);
+        }
+        buffer.putShort(offset + typeOffset, (short) type)
+                .putShort(offset + typeOffset + 2, (short) code)
+                .putInt(offset + typeOffset + 4, value);
+    }
+}
@@ -0,0 +1,83 @@
+/**
+ * This file is part of evdev-java - Java implementation.
+ *
+ * evdev-java - Java implementation is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * evdev-java - Java implementation is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with evdev-java - Java implementation.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.dgis.input.evdev;
+
+/**
+ * Mutable, reusable view of a single input event. Unlike {@link InputEvent}, an instance is meant to be overwritten
+ * for every event, so that event fields can be carried around as one object without allocating per event.
+ * <p/>
+ * Instances are not thread safe, and their content is only valid until the next call to
+ * {@link #set(int, long, int, int, int)}.
+ */
+public final class InputEventView {
+
+    private int deviceId;
+    private long timestampNanos;
+    private int type;
+    private int code;
+    private int value;
+
+    /**
+     * Overwrite every field of this view.
+     *
+     * @return this view.
+     */
+    public InputEventView set(int deviceId, long timestampNanos, int type, int code, int value) {
+        this.deviceId = deviceId;
+        this.timestampNanos = timestampNanos;
+        this.type = type;
+        this.code = code;
+        this.value = value;
+        return this;
+    }
+
+    public int getDeviceId() {
+        return deviceId;
+    }
+
+    public long getTimestampNanos() {
+        return timestampNanos;
+    }
+
+    public int getType() {
+        return type;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    public int getValue() {
+        return value;
+    }
+
+    /**
+     * Copy the current content of this view into a new immutable InputEvent.
+     *
+     * @param source The source reported by the InputEvent, usually the device path.
+     * @return a new InputEvent.
+     */
+    public InputEvent toInputEvent(String source) {
+        return InputEvent.of(timestampNanos, type, code, value, source);
+    }
+
+    @Override
+    public String toString() {
+        return "InputEventView(deviceId=" + deviceId + ", timestampNanos=" + timestampNanos + ", type=" + type
+                + ", code=" + code + ", value=" + value + ")";
+    }
+}
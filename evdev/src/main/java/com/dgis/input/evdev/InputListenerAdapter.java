@@ -0,0 +1,58 @@
+/**
+ * This file is part of evdev-java - Java implementation.
+ *
+ * evdev-java - Java implementation is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * evdev-java - Java implementation is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with evdev-java - Java implementation.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.dgis.input.evdev;
+
+/**
+ * Adapts an {@link InputListener} to the {@link RawInputListener} contract, creating one {@link InputEvent} per
+ * event. Two adapters are equal when they wrap the same listener.
+ */
+public final class InputListenerAdapter implements RawInputListener {
+
+    private final InputListener listener;
+    private final String source;
+
+    /**
+     * @param listener The listener to notify.
+     * @param source   The source reported by the InputEvents, usually the device path.
+     */
+    public InputListenerAdapter(InputListener listener, String source) {
+        if (listener == null) {
+            throw new NullPointerException("listener");
+        }
+        this.listener = listener;
+        this.source = source;
+    }
+
+    public InputListener getListener() {
+        return listener;
+    }
+
+    @Override
+    public void onEvent(int deviceId, long timestampNanos, int type, int code, int value) {
+        listener.event(InputEvent.of(timestampNanos, type, code, value, source));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof InputListenerAdapter && ((InputListenerAdapter) o).listener.equals(listener);
+    }
+
+    @Override
+    public int hashCode() {
+        return listener.hashCode();
+    }
+}
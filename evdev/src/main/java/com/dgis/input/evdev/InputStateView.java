@@ -0,0 +1,336 @@
+/**
+ * This file is part of evdev-java - Java implementation.
+ *
+ * evdev-java - Java implementation is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * evdev-java - Java implementation is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with evdev-java - Java implementation.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.dgis.input.evdev;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import javax.annotation.concurrent.ThreadSafe;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+
+import static com.dgis.input.evdev.NativeEventDevice.STATE_ABS_OFFSET;
+import static com.dgis.input.evdev.NativeEventDevice.STATE_KEY_OFFSET;
+import static com.dgis.input.evdev.NativeEventDevice.STATE_MT_CODE_COUNT;
+import static com.dgis.input.evdev.NativeEventDevice.STATE_MT_FIRST_CODE;
+import static com.dgis.input.evdev.NativeEventDevice.STATE_MT_OFFSET;
+import static com.dgis.input.evdev.NativeEventDevice.STATE_MT_SLOT_COUNT;
+
+/**
+ * Latest state of a device, for threads which poll rather than listen: keys held, absolute axes, relative motion and
+ * MT slots. The reader thread of the device applies every frame at once, so that pollers never see half a frame.
+ * <p/>
+ * Pollers copy the state into a {@link Snapshot} of their own. The copy is an optimistic read of a StampedLock, which
+ * only falls back to a read lock if the reader keeps updating the state while the copy runs, so neither side blocks
+ * the other in practice and nothing is allocated. Each snapshot also tells what happened since it was last filled:
+ * keys pressed or released, even briefly, and relative motion.
+ *
+ * @see EventDevice#getInputState()
+ */
+@ThreadSafe
+public final class InputStateView {
+
+    /**
+     * Optimistic copies attempted before taking the read lock.
+     */
+    private static final int OPTIMISTIC_ATTEMPTS = 4;
+
+    private static final int KEY_LONGS = Bits.longs(InputEvent.KEY_CNT);
+
+    private final StampedLock lock = new StampedLock();
+
+    private final int slots;
+
+    /* Guarded by lock, only written by the reader thread of the device */
+
+    private final long[] keys = new long[KEY_LONGS];
+
+    /**
+     * Number of times each key went up or down.
+     */
+    private final int[] keyTransitions = new int[InputEvent.KEY_CNT];
+
+    private final int[] axes = new int[InputEvent.ABS_CNT];
+
+    /**
+     * Sum of every relative event, by code.
+     */
+    private final long[] motion = new long[InputEvent.REL_CNT];
+
+    /**
+     * MT values indexed by slot, then code - ABS_MT_TOUCH_MAJOR.
+     */
+    private final int[][] mt;
+
+    private int slot;
+    private long timestampNanos;
+    private long frameCount;
+
+    /**
+     * @param slots The number of MT slots of the device, 0 if it does not report ABS_MT_SLOT.
+     */
+    InputStateView(int slots) {
+        this.slots = Math.min(slots, STATE_MT_SLOT_COUNT);
+        mt = new int[this.slots][STATE_MT_CODE_COUNT];
+    }
+
+    public int getSlotCount() {
+        return slots;
+    }
+
+    /**
+     * @return a snapshot sized for this view, to be filled with {@link #read(Snapshot)}.
+     */
+    public Snapshot newSnapshot() {
+        return new Snapshot(slots);
+    }
+
+    /**
+     * Copy the current state into snapshot, keeping what it held before to report changes since then.
+     *
+     * @param snapshot A snapshot created by {@link #newSnapshot()} on this view.
+     * @return snapshot
+     */
+    public Snapshot read(Snapshot snapshot) {
+        if (snapshot.mt.length != slots) {
+            throw new IllegalArgumentException("Snapshot of " + snapshot.mt.length + " slots for a view of " + slots);
+        }
+        snapshot.rotate();
+        for (int attempt = 0; attempt < OPTIMISTIC_ATTEMPTS; attempt++) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp == 0) continue;
+            snapshot.copy(this);
+            if (lock.validate(stamp)) return snapshot.settle();
+        }
+        long stamp = lock.readLock();
+        try {
+            snapshot.copy(this);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        return snapshot.settle();
+    }
+
+    /**
+     * Apply a frame. Only called by the reader thread of the device.
+     */
+    void apply(EventFrame frame) {
+        long stamp = lock.writeLock();
+        try {
+            for (int i = 0; i < frame.size(); i++) {
+                int code = frame.getCode(i);
+                int value = frame.getValue(i);
+                switch (frame.getType(i)) {
+                    case InputEvent.EV_KEY:
+                        if (code < InputEvent.KEY_CNT && Bits.test(keys, code) != (value != 0)) {
+                            keys[code >>> 6] ^= 1L << code;
+                            keyTransitions[code]++;
+                        }
+                        break;
+                    case InputEvent.EV_REL:
+                        if (code < InputEvent.REL_CNT) motion[code] += value;
+                        break;
+                    case InputEvent.EV_ABS:
+                        applyAxis(code, value);
+                        break;
+                    default:
+                        break;
+                }
+            }
+            timestampNanos = frame.getTimestampNanos();
+            frameCount++;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private void applyAxis(int code, int value) {
+        if (code >= InputEvent.ABS_CNT) return;
+        axes[code] = value;
+        if (code == InputEvent.ABS_MT_SLOT) {
+            slot = value;
+        } else if (code >= STATE_MT_FIRST_CODE && slot >= 0 && slot < slots) {
+            mt[slot][code - STATE_MT_FIRST_CODE] = value;
+        }
+    }
+
+    /**
+     * Load the keys, axes and slots read from the kernel with NativeEventDevice.readState(). Does not count as key
+     * transitions. The state is read while holding the write lock, so that a frame applied concurrently waits for
+     * the load, and is never overwritten by an older state.
+     *
+     * @param reader Reads the state, or returns null if it cannot.
+     * @return false if reader returned null, in which case the view is left alone.
+     */
+    boolean load(Supplier<byte[]> reader) {
+        long stamp = lock.writeLock();
+        try {
+            byte[] state = reader.get();
+            if (state == null) return false;
+            ByteBuffer buffer = ByteBuffer.wrap(state).order(ByteOrder.LITTLE_ENDIAN);
+            for (int i = 0; i < KEY_LONGS; i++) {
+                keys[i] = buffer.getLong(STATE_KEY_OFFSET + 8 * i);
+            }
+            for (int code = 0; code < InputEvent.ABS_CNT; code++) {
+                axes[code] = buffer.getInt(STATE_ABS_OFFSET + 4 * code);
+            }
+            for (int s = 0; s < slots; s++) {
+                for (int i = 0; i < STATE_MT_CODE_COUNT; i++) {
+                    mt[s][i] = buffer.getInt(STATE_MT_OFFSET + 4 * (i * STATE_MT_SLOT_COUNT + s));
+                }
+            }
+            slot = axes[InputEvent.ABS_MT_SLOT];
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * A copy of the state of a device at some point, owned by a single poller. Reused from one poll to the next.
+     */
+    @NotThreadSafe
+    public static final class Snapshot {
+
+        private long[] keys = new long[KEY_LONGS];
+        private long[] previousKeys = new long[KEY_LONGS];
+        private int[] keyTransitions = new int[InputEvent.KEY_CNT];
+        private int[] previousKeyTransitions = new int[InputEvent.KEY_CNT];
+        private long[] motion = new long[InputEvent.REL_CNT];
+        private long[] previousMotion = new long[InputEvent.REL_CNT];
+        private final int[] axes = new int[InputEvent.ABS_CNT];
+        private final int[][] mt;
+        private int slot;
+        private long timestampNanos;
+        private long frameCount;
+        private long previousFrameCount;
+
+        /**
+         * Whether the snapshot was never filled, so that there is nothing to compare with.
+         */
+        private boolean empty = true;
+
+        private Snapshot(int slots) {
+            mt = new int[slots][STATE_MT_CODE_COUNT];
+        }
+
+        private void rotate() {
+            long[] keys = previousKeys;
+            previousKeys = this.keys;
+            this.keys = keys;
+            int[] transitions = previousKeyTransitions;
+            previousKeyTransitions = keyTransitions;
+            keyTransitions = transitions;
+            long[] motion = previousMotion;
+            previousMotion = this.motion;
+            this.motion = motion;
+            previousFrameCount = frameCount;
+        }
+
+        private void copy(InputStateView view) {
+            System.arraycopy(view.keys, 0, keys, 0, KEY_LONGS);
+            System.arraycopy(view.keyTransitions, 0, keyTransitions, 0, keyTransitions.length);
+            System.arraycopy(view.motion, 0, motion, 0, motion.length);
+            System.arraycopy(view.axes, 0, axes, 0, axes.length);
+            for (int s = 0; s < mt.length; s++) {
+                System.arraycopy(view.mt[s], 0, mt[s], 0, STATE_MT_CODE_COUNT);
+            }
+            slot = view.slot;
+            timestampNanos = view.timestampNanos;
+            frameCount = view.frameCount;
+        }
+
+        private Snapshot settle() {
+            if (empty) {
+                System.arraycopy(keys, 0, previousKeys, 0, KEY_LONGS);
+                System.arraycopy(keyTransitions, 0, previousKeyTransitions, 0, keyTransitions.length);
+                System.arraycopy(motion, 0, previousMotion, 0, motion.length);
+                previousFrameCount = frameCount;
+                empty = false;
+            }
+            return this;
+        }
+
+        /**
+         * @return The timestamp of the last frame applied, in nanoseconds.
+         */
+        public long getTimestampNanos() {
+            return timestampNanos;
+        }
+
+        /**
+         * @return The number of frames applied since the previous read into this snapshot.
+         */
+        public long getNewFrames() {
+            return frameCount - previousFrameCount;
+        }
+
+        public boolean isKeyDown(int code) {
+            return Bits.test(keys, code);
+        }
+
+        /**
+         * @return true if the key went down since the previous read into this snapshot, even if it was released
+         * again before this one.
+         */
+        public boolean wasPressed(int code) {
+            if (code < 0 || code >= InputEvent.KEY_CNT) return false;
+            int transitions = keyTransitions[code] - previousKeyTransitions[code];
+            return transitions > 1 || transitions == 1 && Bits.test(keys, code);
+        }
+
+        /**
+         * @return true if the key went up since the previous read into this snapshot, even if it was pressed again
+         * before this one.
+         */
+        public boolean wasReleased(int code) {
+            if (code < 0 || code >= InputEvent.KEY_CNT) return false;
+            int transitions = keyTransitions[code] - previousKeyTransitions[code];
+            return transitions > 1 || transitions == 1 && !Bits.test(keys, code);
+        }
+
+        public int getAxis(int code) {
+            return axes[code];
+        }
+
+        /**
+         * @return The sum of the relative events of that code since the previous read into this snapshot.
+         */
+        public long getRelative(int code) {
+            return motion[code] - previousMotion[code];
+        }
+
+        public int getSlotCount() {
+            return mt.length;
+        }
+
+        /**
+         * @return The slot selected by the last ABS_MT_SLOT.
+         */
+        public int getCurrentSlot() {
+            return slot;
+        }
+
+        /**
+         * @param code One of the ABS_MT_* codes.
+         * @return The value of code in the given slot.
+         */
+        public int getSlotValue(int slot, int code) {
+            return mt[slot][code - STATE_MT_FIRST_CODE];
+        }
+    }
+}
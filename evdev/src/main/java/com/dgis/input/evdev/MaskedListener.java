@@ -0,0 +1,57 @@
+/**
+ * This file is part of evdev-java - Java implementation.
+ *
+ * evdev-java - Java implementation is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * evdev-java - Java implementation is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with evdev-java - Java implementation.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.dgis.input.evdev;
+
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * A listener registered with the events it wants. Only lives in the listener list of an EventDevice: the dispatch
+ * table calls the listener itself, and the mask joins the kernel mask of the device.
+ *
+ * @see EventDevice#addListener(RawInputListener, EventMask)
+ */
+@Immutable
+final class MaskedListener implements RawInputListener, EventMaskProvider {
+
+    private final RawInputListener listener;
+    private final EventMask mask;
+
+    MaskedListener(RawInputListener listener, EventMask mask) {
+        if (listener == null) {
+            throw new NullPointerException("listener");
+        }
+        if (mask == null) {
+            throw new NullPointerException("mask");
+        }
+        this.listener = listener;
+        this.mask = mask;
+    }
+
+    RawInputListener getListener() {
+        return listener;
+    }
+
+    @Override
+    public EventMask getEventMask() {
+        return mask;
+    }
+
+    @Override
+    public void onEvent(int deviceId, long timestampNanos, int type, int code, int value) {
+        if (mask.includes(type, code)) listener.onEvent(deviceId, timestampNanos, type, code, value);
+    }
+}
@@ -0,0 +1,181 @@
+/**
+ * This file is part of evdev-java - Java implementation.
+ *
+ * evdev-java - Java implementation is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * evdev-java - Java implementation is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with evdev-java - Java implementation.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.dgis.input.evdev;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Generates a scripted sequence of events from memory, as many times as asked and as fast as the listeners keep up.
+ * Timestamps keep increasing from one pass to the next. Meant for load tests and benchmarks of listeners and filters,
+ * without hardware.
+ */
+public class MemorySource implements EventSource {
+
+    private static final long START_NANOS = 1000000000L;
+
+    private final String name;
+    private final DeviceInfo info;
+    private final InputEventAbi abi = InputEventAbi.host();
+    private final int structSize = abi.getStructSize();
+
+    private final int[] types;
+    private final int[] codes;
+    private final int[] values;
+
+    /**
+     * Timestamp of each event relative to the start of its pass.
+     */
+    private final long[] offsets;
+
+    /**
+     * Duration of one pass.
+     */
+    private final long period;
+
+    private final long passes;
+
+    private long pass;
+    private int next;
+
+    private MemorySource(Builder builder) {
+        name = builder.info.getName();
+        info = builder.info;
+        types = Arrays.copyOf(builder.types, builder.count);
+        codes = Arrays.copyOf(builder.codes, builder.count);
+        values = Arrays.copyOf(builder.values, builder.count);
+        offsets = Arrays.copyOf(builder.offsets, builder.count);
+        period = builder.time;
+        passes = builder.passes;
+    }
+
+    @Override
+    public String getPath() {
+        return "memory:" + name;
+    }
+
+    @Override
+    public void open() {
+    }
+
+    @Override
+    public DeviceInfo getInfo() {
+        return info;
+    }
+
+    @Override
+    public int getFd() {
+        return -1;
+    }
+
+    @Override
+    public int read(ByteBuffer buffer, int position, int length) {
+        if (pass >= passes || types.length == 0) return -1;
+        int offset = position;
+        while (offset + structSize <= position + length && pass < passes) {
+            abi.encode(buffer, offset, START_NANOS + pass * period + offsets[next], types[next], codes[next],
+                    values[next]);
+            offset += structSize;
+            if (++next == types.length) {
+                next = 0;
+                pass++;
+            }
+        }
+        return offset - position;
+    }
+
+    @Override
+    public boolean readAbsInfo(int axis, int[] out) {
+        return info.getAbsInfo(axis, out);
+    }
+
+    @Override
+    public void close() {
+    }
+
+    /**
+     * @param info What the generated device claims to be.
+     */
+    public static Builder builder(DeviceInfo info) {
+        return new Builder(info);
+    }
+
+    public static final class Builder {
+
+        private final DeviceInfo info;
+        private int[] types = new int[16];
+        private int[] codes = new int[16];
+        private int[] values = new int[16];
+        private long[] offsets = new long[16];
+        private int count;
+        private long time;
+        private long frameNanos = 8000000L;
+        private long passes = 1;
+
+        private Builder(DeviceInfo info) {
+            this.info = info;
+        }
+
+        /**
+         * Append an event to the current frame.
+         */
+        public Builder event(int type, int code, int value) {
+            if (count == types.length) {
+                types = Arrays.copyOf(types, count * 2);
+                codes = Arrays.copyOf(codes, count * 2);
+                values = Arrays.copyOf(values, count * 2);
+                offsets = Arrays.copyOf(offsets, count * 2);
+            }
+            types[count] = type;
+            codes[count] = code;
+            values[count] = value;
+            offsets[count] = time;
+            count++;
+            return this;
+        }
+
+        /**
+         * End the current frame with a SYN_REPORT. The next frame is stamped one frame interval later.
+         */
+        public Builder sync() {
+            event(InputEvent.EV_SYN, InputEvent.SYN_REPORT, 0);
+            time += frameNanos;
+            return this;
+        }
+
+        /**
+         * Set the time between two frames, 8ms by default.
+         */
+        public Builder frameInterval(long nanos) {
+            frameNanos = nanos;
+            return this;
+        }
+
+        /**
+         * Generate the script this many times, Long.MAX_VALUE meaning forever. Once by default.
+         */
+        public Builder repeat(long passes) {
+            this.passes = passes;
+            return this;
+        }
+
+        public MemorySource build() {
+            if (time == 0) time = frameNanos;
+            return new MemorySource(this);
+        }
+    }
+}
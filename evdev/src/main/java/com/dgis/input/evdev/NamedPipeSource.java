@@ -0,0 +1,50 @@
+/**
+ * This file is part of evdev-java - Java implementation.
+ *
+ * evdev-java - Java implementation is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * evdev-java - Java implementation is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with evdev-java - Java implementation.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.dgis.input.evdev;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * A named pipe fed with input_event structs by another process, for instance a recording being replayed or a
+ * device forwarded from another machine. The pipe cannot be probed, so the device it stands for is described by
+ * the caller.
+ */
+public class NamedPipeSource extends FdEventSource {
+
+    private final DeviceInfo info;
+
+    /**
+     * @param pipe The path to the pipe, created with mkfifo.
+     * @param info What the pipe stands for.
+     * @throws IOException If the native library cannot be loaded.
+     */
+    public NamedPipeSource(File pipe, DeviceInfo info) throws IOException {
+        super(pipe);
+        this.info = info;
+    }
+
+    @Override
+    public DeviceInfo getInfo() {
+        return info;
+    }
+
+    @Override
+    public boolean readAbsInfo(int axis, int[] out) {
+        return info.getAbsInfo(axis, out);
+    }
+}
@@ -0,0 +1,216 @@
+/**
+ * This file is part of evdev-java - Java implementation.
+ *
+ * evdev-java - Java implementation is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * evdev-java - Java implementation is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with evdev-java - Java implementation.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.dgis.input.evdev;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Loads the evdev-java native library once per JVM, on first use.
+ * <p/>
+ * The library embedded in the jar is extracted to a cache directory under a name derived from the SHA-256 of its
+ * content, so that JVMs running the same jar share one file, and a later JVM finds it there instead of writing it
+ * again. The cached file is hashed again before it is loaded, and rewritten if it does not match.
+ * <p/>
+ * The cache directory is the one given by the evdev.native.cache system property, or evdev-java in the user cache
+ * directory ($XDG_CACHE_HOME or ~/.cache), falling back to the temporary directory. A cache directory is created
+ * readable by its owner only, and an existing one is refused unless it belongs to the user and only the user can write
+ * to it, as anyone else able to write there could swap the library before it is loaded.
+ */
+final class NativeLoader {
+
+    /**
+     * System property overriding the cache directory.
+     */
+    static final String CACHE_PROPERTY = "evdev.native.cache";
+
+    private static final String RESOURCE = "/evdev-native.so";
+    private static final String LIBRARY_NAME = "evdev-java";
+
+    /**
+     * Number of hex digits of the hash kept in the file name.
+     */
+    private static final int NAME_HASH_LENGTH = 16;
+
+    private static final Set<PosixFilePermission> OWNER_ONLY = PosixFilePermissions.fromString("rwx------");
+
+    private static final Logger logger = LoggerFactory.getLogger(NativeLoader.class);
+
+    private static volatile boolean loaded = false;
+
+    private NativeLoader() {
+    }
+
+    /**
+     * Load the native library, preferably the one embedded in the jar, unless already done.
+     *
+     * @throws IOException If the embedded library cannot be extracted.
+     */
+    static void load() throws IOException {
+        if (loaded) return;
+        synchronized (NativeLoader.class) {
+            if (loaded) return;
+            byte[] library = readResource();
+            if (library == null) {
+                logger.warn("No embedded native library, falling back to java.library.path.");
+                System.loadLibrary(LIBRARY_NAME);
+            } else {
+                File file = extract(library);
+                logger.debug("Loading native library from {}", file);
+                System.load(file.getAbsolutePath());
+            }
+            loaded = true;
+        }
+    }
+
+    static boolean isLoaded() {
+        return loaded;
+    }
+
+    private static byte[] readResource() throws IOException {
+        try (InputStream in = NativeLoader.class.getResourceAsStream(RESOURCE)) {
+            if (in == null) return null;
+            ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+            byte[] buffer = new byte[64 * 1024];
+            int len;
+            while ((len = in.read(buffer)) > -1) {
+                out.write(buffer, 0, len);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    /**
+     * @return a file holding library, in the first usable cache directory, or in a temporary file deleted on exit
+     * if none is usable.
+     */
+    private static File extract(byte[] library) throws IOException {
+        String hash = sha256(library);
+        for (File directory : cacheDirectories()) {
+            try {
+                return extract(library, hash, directory);
+            } catch (IOException e) {
+                logger.debug("Cannot cache the native library in {}", directory, e);
+            }
+        }
+        File file = File.createTempFile("lib" + LIBRARY_NAME, ".so");
+        file.deleteOnExit();
+        Files.write(file.toPath(), library);
+        return file;
+    }
+
+    /**
+     * @return the cached copy of library in directory, written there first unless an intact copy exists.
+     */
+    static File extract(byte[] library, String hash, File directory) throws IOException {
+        Path dir = privateDirectory(directory.toPath());
+        Path target = dir.resolve("lib" + LIBRARY_NAME + "-" + hash.substring(0, NAME_HASH_LENGTH) + ".so");
+        if (Files.isRegularFile(target) && hash.equals(sha256(Files.readAllBytes(target)))) {
+            return target.toFile();
+        }
+        /* written aside then renamed, so that concurrent JVMs never load a partial file */
+        Path temp = Files.createTempFile(dir, "lib" + LIBRARY_NAME, ".tmp");
+        try {
+            Files.write(temp, library);
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return target.toFile();
+    }
+
+    /**
+     * @return directory, created with rwx------ unless it exists.
+     * @throws IOException If the directory cannot be created, or someone other than the user owns it or can write
+     *                     to it.
+     */
+    static Path privateDirectory(Path directory) throws IOException {
+        Path dir = directory.toAbsolutePath();
+        if (!Files.exists(dir, LinkOption.NOFOLLOW_LINKS)) {
+            Files.createDirectories(dir.getParent());
+            try {
+                Files.createDirectory(dir, PosixFilePermissions.asFileAttribute(OWNER_ONLY));
+            } catch (FileAlreadyExistsException e) {
+                /* created meanwhile, checked below like any existing one */
+            }
+        }
+        PosixFileAttributes attributes =
+                Files.readAttributes(dir, PosixFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        if (!attributes.isDirectory()) {
+            throw new IOException(dir + " is not a directory");
+        }
+        if (!attributes.owner().getName().equals(System.getProperty("user.name"))) {
+            throw new IOException(dir + " belongs to " + attributes.owner().getName());
+        }
+        if (attributes.permissions().contains(PosixFilePermission.GROUP_WRITE)
+                || attributes.permissions().contains(PosixFilePermission.OTHERS_WRITE)) {
+            throw new IOException(dir + " is writable by others: "
+                    + PosixFilePermissions.toString(attributes.permissions()));
+        }
+        return dir;
+    }
+
+    private static List<File> cacheDirectories() {
+        String configured = System.getProperty(CACHE_PROPERTY);
+        if (configured != null) {
+            return Collections.singletonList(new File(configured));
+        }
+        String xdgCache = System.getenv("XDG_CACHE_HOME");
+        File userCache = xdgCache != null && !xdgCache.isEmpty()
+                ? new File(xdgCache) : new File(System.getProperty("user.home"), ".cache");
+        return Arrays.asList(new File(userCache, LIBRARY_NAME),
+                new File(System.getProperty("java.io.tmpdir"), LIBRARY_NAME + "-" + System.getProperty("user.name")));
+    }
+
+    static String sha256(byte[] content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+            StringBuilder hex = new StringBuilder(2 * digest.length);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            /* every JVM has to provide SHA-256 */
+            throw new IllegalStateException(e);
+        }
+    }
+}
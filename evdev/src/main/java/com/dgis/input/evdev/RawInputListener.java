@@ -0,0 +1,41 @@
+/**
+ * This file is part of evdev-java - Java implementation.
+ *
+ * evdev-java - Java implementation is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * evdev-java - Java implementation is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with evdev-java - Java implementation.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.dgis.input.evdev;
+
+/**
+ * Allocation-free listener for Evdev events. The event fields are handed over as primitives, so that an EventDevice
+ * can dispatch events without creating any object.
+ * <p/>
+ * Implementations must not keep references to anything passed in, and should return quickly: they are called on the
+ * thread reading the device.
+ *
+ * @see com.dgis.input.evdev.EventDevice
+ * @see com.dgis.input.evdev.InputListenerAdapter
+ */
+public interface RawInputListener {
+    /**
+     * This method is called by a EventDevice when an event is reported by
+     * the event device under its watch.
+     *
+     * @param deviceId       The id of the EventDevice reporting the event, see {@link EventDevice#getDeviceId()}.
+     * @param timestampNanos The kernel timestamp of the event, in nanoseconds.
+     * @param type           The event type, one of the InputEvent.EV_* constants.
+     * @param code           The event code, meaning depends on the type.
+     * @param value          The event value.
+     */
+    void onEvent(int deviceId, long timestampNanos, int type, int code, int value);
+}
@@ -0,0 +1,124 @@
+/**
+ * This file is part of evdev-java - Java implementation.
+ *
+ * evdev-java - Java implementation is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * evdev-java - Java implementation is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with evdev-java - Java implementation.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.dgis.input.evdev;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A file of input_event structs, as recorded with <code>cat /dev/input/eventN &gt; file</code>. The recording has the
+ * layout of the running JVM, unless another ABI is given. The file is read as fast as the listeners keep up,
+ * regardless of the recorded timestamps.
+ */
+public class RecordingSource implements EventSource {
+
+    private final File file;
+    private final DeviceInfo info;
+    private final boolean loop;
+    private final InputEventAbi abi;
+    private final int structSize;
+
+    private FileChannel channel;
+
+    /**
+     * Where the last whole struct of the file ends.
+     */
+    private long end;
+
+    /**
+     * Reusable view of the buffer handed to read().
+     */
+    private ByteBuffer buffer;
+    private ByteBuffer view;
+
+    /**
+     * @param recording The file to replay.
+     * @param info      What the recorded device was.
+     * @param loop      Whether to start over at the end of the file, rather than reporting the device as removed.
+     */
+    public RecordingSource(File recording, DeviceInfo info, boolean loop) {
+        this(recording, info, loop, InputEventAbi.host());
+    }
+
+    /**
+     * @param recording The file to replay.
+     * @param info      What the recorded device was.
+     * @param loop      Whether to start over at the end of the file, rather than reporting the device as removed.
+     * @param abi       The layout of the machine the file was recorded on.
+     */
+    public RecordingSource(File recording, DeviceInfo info, boolean loop, InputEventAbi abi) {
+        this.file = recording;
+        this.info = info;
+        this.loop = loop;
+        this.abi = abi;
+        this.structSize = abi.getStructSize();
+    }
+
+    @Override
+    public String getPath() {
+        return file.getAbsolutePath();
+    }
+
+    @Override
+    public void open() throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        end = channel.size() - channel.size() % structSize;
+    }
+
+    @Override
+    public DeviceInfo getInfo() {
+        return info;
+    }
+
+    @Override
+    public InputEventAbi getAbi() {
+        return abi;
+    }
+
+    @Override
+    public int getFd() {
+        return -1;
+    }
+
+    @Override
+    public int read(ByteBuffer buffer, int position, int length) throws IOException {
+        if (channel.position() >= end) {
+            if (!loop || end == 0) return -1;
+            channel.position(0);
+        }
+        if (buffer != this.buffer) {
+            this.buffer = buffer;
+            view = buffer.duplicate();
+        }
+        view.clear();
+        view.limit(position + (int) Math.min(length, end - channel.position())).position(position);
+        return channel.read(view);
+    }
+
+    @Override
+    public boolean readAbsInfo(int axis, int[] out) {
+        return info.getAbsInfo(axis, out);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) channel.close();
+    }
+}
@@ -0,0 +1,40 @@
+/**
+ * This file is part of evdev-java - Java implementation.
+ *
+ * evdev-java - Java implementation is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * evdev-java - Java implementation is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with evdev-java - Java implementation.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.dgis.input.evdev.devices;
+
+/**
+ * Calibration curve applied to a normalized joystick axis, after the deadzone. Called on the thread reading the
+ * device for every change of the axis, so it should be cheap and must not allocate.
+ *
+ * @see EvdevJoystickFilter#setCurve(int, AxisCurve)
+ */
+public interface AxisCurve {
+
+    /**
+     * @param value The normalized axis value, between -1 and 1.
+     * @return the calibrated value, between -1 and 1.
+     */
+    float apply(float value);
+
+    /**
+     * @return a curve raising the magnitude of values to the given power, keeping their sign. Exponents above 1 give
+     * finer control around the center.
+     */
+    static AxisCurve power(float exponent) {
+        return value -> Math.copySign((float) Math.pow(Math.abs(value), exponent), value);
+    }
+}
@@ -16,100 +16,316 @@
  */
 package com.dgis.input.evdev.devices;
 
+import com.dgis.input.evdev.DeviceCapabilities;
+import com.dgis.input.evdev.DeviceInfo;
 import com.dgis.input.evdev.EventDevice;
+import com.dgis.input.evdev.EventDeviceHandle;
+import com.dgis.input.evdev.EventDevicePool;
+import com.dgis.input.evdev.EventFrame;
+import com.dgis.input.evdev.EventMask;
+import com.dgis.input.evdev.EventMaskProvider;
+import com.dgis.input.evdev.EventType;
+import com.dgis.input.evdev.FrameListener;
 import com.dgis.input.evdev.InputEvent;
 import com.dgis.input.evdev.InputListener;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
-import java.util.Map;
 
 /**
  * This class simplifies using "joystick" type input device (read: anything generating absolute axis and button events)
  * when dealing with an evdev EventDevice.
  * Consolidates multiple events between EV_SYN events, and can tell you how many buttons and axes exist, and which changed.
  * <p/>
+ * Buttons and axes are numbered in the order of their event codes. Event codes are mapped to those numbers with
+ * lookup tables, and changes are collected as lists of numbers, so that handling an event and dispatching a frame
+ * do not depend on the number of buttons and axes.
+ * <p/>
+ * Axis parameters are loaded once from the device info. Besides raw values, JoystickState holds every axis
+ * normalized to [-1, 1], with a dead zone derived from the flat of the axis and an optional calibration curve. Only
+ * the axes changed by a frame are normalized again, on the reader thread, before the listeners are called.
+ * <p/>
  * Copyright (C) 2009 Giacomo Ferrari
  *
  * @author Giacomo Ferrari
  */
 
-public class EvdevJoystickFilter implements InputListener {
+public class EvdevJoystickFilter implements InputListener, FrameListener, EventMaskProvider {
+
+    /**
+     * Only buttons and axes are looked at.
+     */
+    private static final EventMask EVENT_MASK = EventMask.builder().type(InputEvent.EV_KEY, InputEvent.EV_ABS).build();
 
-    private final Logger logger = LoggerFactory.getLogger(getClass());
 
     private final EventDevice device;
+
+    /**
+     * The handle the device was acquired with, or null if the device was given.
+     */
+    private final EventDeviceHandle handle;
     private JoystickState state;
 
     private final ArrayList<JoystickListener> listeners = new ArrayList<>();
+    private final ArrayList<RawJoystickListener> rawListeners = new ArrayList<>();
 
     /**
      * Holds the event codes for each joystick button, in order. That is, if
      * event code 288 is button one, it is the first entry here.
      */
-    private final ArrayList<Integer> buttonEventCodes = new ArrayList<>();
+    private int[] buttonEventCodes;
 
     /**
      * Holds the event codes for each joystick axis, in order. That is, if
      * event code 0 is axis one, it is the first entry here.
      */
-    private final ArrayList<Integer> axisEventCodes = new ArrayList<>();
+    private int[] axisEventCodes;
+
+    /**
+     * Button and axis number of each event code, -1 for codes the device does not report.
+     */
+    private final int[] buttonIndex = new int[InputEvent.KEY_CNT];
+    private final int[] axisIndex = new int[InputEvent.ABS_CNT];
 
     private boolean[] buttonChanged, axisChanged;
 
+    /**
+     * How the dead zone of an axis is applied.
+     */
+    public enum Deadzone {
+        /**
+         * Axes are only scaled.
+         */
+        NONE,
+        /**
+         * Each axis is zero within its flat around the center, and scaled so that it still reaches -1 and 1.
+         */
+        AXIAL,
+        /**
+         * Sticks, made of ABS_X and ABS_Y or of ABS_RX and ABS_RY, are zero while the distance of the stick to the
+         * center is within their flat, and scaled along that direction. Other axes are handled as AXIAL.
+         */
+        RADIAL
+    }
+
+    /**
+     * Dead zones above this share of the half range are capped, so that the axis keeps some travel.
+     */
+    private static final float MAX_DEADZONE = 0.95f;
+
+    private volatile Deadzone deadzone = Deadzone.AXIAL;
+
+    /**
+     * Calibration curve of each axis, null for linear. Replaced as a whole when changed.
+     */
+    private volatile AxisCurve[] curves;
+
+    /**
+     * Normalization of each axis: normalized = (value - center) * scale, and the dead zone on that scale.
+     */
+    private float[] center, scale, dead;
+
+    /**
+     * The other axis of the stick each axis belongs to, -1 for axes which are not part of a stick.
+     */
+    private int[] stickPartner;
+
+    /**
+     * Numbers of the buttons and axes which changed since the last dispatch, in the order they changed. Only the
+     * first changedButtonCount and changedAxisCount entries are used.
+     */
+    private int[] changedButtons, changedAxes;
+    private int changedButtonCount, changedAxisCount;
+
     /**
      * Constructs an EvdevJoystickFilter using the provided EventDevice as input.
      */
     public EvdevJoystickFilter(EventDevice dev) {
-        this.device = dev;
-        setupDevice();
+        this(dev, null);
     }
 
     /**
-     * Constructs an EvdevJoystickFilter using the provided event device as input.
+     * Constructs an EvdevJoystickFilter using the provided event device as input, shared through
+     * {@link EventDevicePool#shared()} with anything else using it.
      */
     public EvdevJoystickFilter(File device) throws IOException {
-        this(new EventDevice(device));
+        this(EventDevicePool.shared().acquire(device));
     }
 
-    private void setupDevice() {
-        Map<Integer, List<Integer>> supportedEvents = device.getSupportedEvents();
-        List<Integer> supportedAxes = supportedEvents.get((int) InputEvent.EV_ABS);
-        List<Integer> supportedKeys = supportedEvents.get((int) InputEvent.EV_KEY);
+    private EvdevJoystickFilter(EventDeviceHandle handle) {
+        this(handle.getDevice(), handle);
+    }
+
+    private EvdevJoystickFilter(EventDevice dev, EventDeviceHandle handle) {
+        this.device = dev;
+        this.handle = handle;
+        setupDevice();
+    }
 
-        int numAxes = supportedAxes == null ? 0 : supportedAxes.size();
-        int numButtons = supportedKeys == null ? 0 : supportedKeys.size();
+    private void setupDevice() {
+        DeviceCapabilities capabilities = device.getCapabilities();
+        buttonEventCodes = capabilities.getCodes(InputEvent.EV_KEY);
+        axisEventCodes = capabilities.getCodes(InputEvent.EV_ABS);
+        index(buttonEventCodes, buttonIndex);
+        index(axisEventCodes, axisIndex);
 
-        if (supportedKeys != null) buttonEventCodes.addAll(supportedKeys);
-        if (supportedAxes != null) axisEventCodes.addAll(supportedAxes);
+        int numAxes = axisEventCodes.length;
+        int numButtons = buttonEventCodes.length;
 
-        System.out.println("Detected " + buttonEventCodes.size() + " buttons and " + axisEventCodes.size() + " axes.");
+        System.out.println("Detected " + numButtons + " buttons and " + numAxes + " axes.");
 
         buttonChanged = new boolean[numButtons];
         axisChanged = new boolean[numAxes];
+        changedButtons = new int[numButtons];
+        changedAxes = new int[numAxes];
 
         state = new JoystickState(numButtons, numAxes);
-        device.addListener(this);
+        loadAxes(device.getDeviceInfo());
+        if (handle != null) {
+            handle.addFrameListener(this);
+        } else {
+            device.addFrameListener(this);
+        }
+    }
+
+    /**
+     * Load the parameters and values of every axis from the device info, and normalize them.
+     */
+    private void loadAxes(DeviceInfo info) {
+        int numAxes = axisEventCodes.length;
+        center = new float[numAxes];
+        scale = new float[numAxes];
+        dead = new float[numAxes];
+        curves = new AxisCurve[numAxes];
+        stickPartner = new int[numAxes];
+        int[] absInfo = new int[DeviceInfo.ABSINFO_RESOLUTION + 1];
+        for (int i = 0; i < numAxes; i++) {
+            if (info != null && info.getAbsInfo(axisEventCodes[i], absInfo)) {
+                state.setAxisState(i, absInfo[DeviceInfo.ABSINFO_VALUE]);
+                state.setAxisMinValue(i, absInfo[DeviceInfo.ABSINFO_MIN]);
+                state.setAxisMaxValue(i, absInfo[DeviceInfo.ABSINFO_MAX]);
+                state.setAxisInfo(i, absInfo[DeviceInfo.ABSINFO_FUZZ], absInfo[DeviceInfo.ABSINFO_FLAT],
+                        absInfo[DeviceInfo.ABSINFO_RESOLUTION]);
+            }
+            updateScale(i);
+            stickPartner[i] = -1;
+        }
+        pairStick(InputEvent.ABS_X, InputEvent.ABS_Y);
+        pairStick(InputEvent.ABS_RX, InputEvent.ABS_RY);
+        for (int i = 0; i < numAxes; i++) {
+            normalize(i);
+        }
+    }
+
+    private void pairStick(int xCode, int yCode) {
+        int x = axisIndex[xCode];
+        int y = axisIndex[yCode];
+        if (x < 0 || y < 0) return;
+        stickPartner[x] = y;
+        stickPartner[y] = x;
+    }
+
+    /**
+     * Compute the scale of an axis from its range.
+     */
+    private void updateScale(int axis) {
+        int min = state.getAxisMinValue(axis);
+        int max = state.getAxisMaxValue(axis);
+        if (max <= min) {
+            center[axis] = min;
+            scale[axis] = 0;
+            dead[axis] = 0;
+            return;
+        }
+        center[axis] = (min + (float) max) / 2;
+        scale[axis] = 2f / ((float) max - min);
+        dead[axis] = Math.min(state.getAxisFlat(axis) * scale[axis], MAX_DEADZONE);
+    }
+
+    /**
+     * Normalize an axis, along with the other axis of its stick for a radial dead zone.
+     */
+    private void normalize(int axis) {
+        Deadzone mode = deadzone;
+        AxisCurve[] axisCurves = curves;
+        int partner = stickPartner[axis];
+        if (mode == Deadzone.RADIAL && partner >= 0) {
+            float x = scaled(axis);
+            float y = scaled(partner);
+            float zone = Math.max(dead[axis], dead[partner]);
+            float length = (float) Math.sqrt(x * x + y * y);
+            float factor = length <= zone ? 0 : Math.min(1f, (length - zone) / (1 - zone)) / length;
+            state.setNormalizedAxisState(axis, curve(axisCurves[axis], x * factor));
+            state.setNormalizedAxisState(partner, curve(axisCurves[partner], y * factor));
+            return;
+        }
+        float value = scaled(axis);
+        if (mode != Deadzone.NONE) {
+            float magnitude = Math.abs(value);
+            float zone = dead[axis];
+            value = magnitude <= zone ? 0 : Math.copySign((magnitude - zone) / (1 - zone), value);
+        }
+        state.setNormalizedAxisState(axis, curve(axisCurves[axis], value));
+    }
+
+    /**
+     * @return the axis scaled to [-1, 1], without dead zone.
+     */
+    private float scaled(int axis) {
+        float value = (state.getAxisState(axis) - center[axis]) * scale[axis];
+        return value > 1 ? 1 : value < -1 ? -1 : value;
+    }
+
+    private static float curve(AxisCurve curve, float value) {
+        return curve == null ? value : curve.apply(value);
+    }
+
+    private static void index(int[] codes, int[] index) {
+        Arrays.fill(index, -1);
+        for (int i = 0; i < codes.length; i++) {
+            if (codes[i] < index.length) index[codes[i]] = i;
+        }
+    }
+
+    @Override
+    public EventMask getEventMask() {
+        return EVENT_MASK;
     }
 
+    @Override
+    public void onFrame(EventFrame frame) {
+        for (int i = 0; i < frame.size(); i++) {
+            handleEvent(frame.getType(i), frame.getCode(i), frame.getValue(i));
+        }
+        dispatchEvents();
+    }
+
+    /**
+     * Handle a single event. The filter receives frames from its device; this lets events be fed by hand.
+     */
     @Override
     public void event(InputEvent e) {
-        switch (e.type) {
-            case EV_KEY:
-                handleButton(e.code, e.value > 0);
+        if (e.type == EventType.EV_SYN) {
+            if (e.code == InputEvent.SYN_REPORT) dispatchEvents();
+            return;
+        }
+        handleEvent(e.type.getValue(), e.code & 0xffff, e.value);
+    }
+
+    private void handleEvent(int type, int code, int value) {
+        switch (type) {
+            case InputEvent.EV_KEY:
+                handleButton(code, value > 0);
                 break;
-            case EV_ABS:
-                handleAxis(e.code, e.value);
+            case InputEvent.EV_ABS:
+                handleAxis(code, value);
                 break;
-            case EV_SYN:
-                dispatchEvents();
             default:
-                logger.warn("Unknown event {}", e);
+                /* outside EVENT_MASK, but still delivered with the frame whenever the kernel mask is wider, such
+                   as MSC_SCAN on most pads: not worth a log line per event */
+                break;
         }
     }
 
@@ -117,43 +333,106 @@ public class EvdevJoystickFilter implements InputListener {
      * Broadcast events for what changed since the last dispatchEvents().
      */
     private void dispatchEvents() {
-        boolean anyAxisChanged = false;
-        boolean anyButtonChanged = false;
-        for (boolean x : buttonChanged) anyButtonChanged |= x;
-        for (boolean x : axisChanged) anyAxisChanged |= x;
+        boolean anyButtonChanged = changedButtonCount > 0;
+        boolean anyAxisChanged = changedAxisCount > 0;
+        if (!anyButtonChanged && !anyAxisChanged) return;
+        String source = device.getDevicePath();
+        for (int i = 0; i < changedAxisCount; i++) {
+            normalize(changedAxes[i]);
+        }
 
         for (JoystickListener l : listeners) {
             if (anyButtonChanged)
-                l.buttonChanged(buttonChanged, state, device.getDevicePath());
+                l.buttonChanged(buttonChanged, state, source);
             if (anyAxisChanged)
-                l.joystickMoved(axisChanged, state, device.getDevicePath());
+                l.joystickMoved(axisChanged, state, source);
+        }
+        for (RawJoystickListener l : rawListeners) {
+            if (anyButtonChanged)
+                l.buttonChanged(changedButtons, changedButtonCount, state, source);
+            if (anyAxisChanged)
+                l.joystickMoved(changedAxes, changedAxisCount, state, source);
         }
 
-        Arrays.fill(axisChanged, false);
-        Arrays.fill(buttonChanged, false);
+        for (int i = 0; i < changedButtonCount; i++) buttonChanged[changedButtons[i]] = false;
+        for (int i = 0; i < changedAxisCount; i++) axisChanged[changedAxes[i]] = false;
+        changedButtonCount = 0;
+        changedAxisCount = 0;
     }
 
-    private void handleAxis(short axisNumber, int value) {
-        int axisNumber2 = axisEventCodes.indexOf((int) axisNumber);
+    private void handleAxis(int axisNumber, int value) {
+        int axisNumber2 = axisNumber < axisIndex.length ? axisIndex[axisNumber] : -1;
         if (axisNumber2 < 0) {
             System.err.println("WARN: Couldn't find axis " + axisNumber + " in mapping! Perhaps device reported capabilities improperly!");
             return;
         }
-        axisChanged[axisNumber2] = (value != state.getAxisState(axisNumber2)); //only flag as changed if _actually_ changed.
+        //only flag as changed if _actually_ changed.
+        if (value != state.getAxisState(axisNumber2) && !axisChanged[axisNumber2]) {
+            axisChanged[axisNumber2] = true;
+            changedAxes[changedAxisCount++] = axisNumber2;
+        }
         state.setAxisState(axisNumber2, value);
-
+        if (value < state.getAxisMinValue(axisNumber2)) {
+            state.setAxisMinValue(axisNumber2, value);
+            updateScale(axisNumber2);
+        } else if (value > state.getAxisMaxValue(axisNumber2)) {
+            state.setAxisMaxValue(axisNumber2, value);
+            updateScale(axisNumber2);
+        }
     }
 
-    private void handleButton(short buttonNumber, boolean buttonState) {
-        int buttonNumber2 = buttonEventCodes.indexOf((int) buttonNumber);
+    private void handleButton(int buttonNumber, boolean buttonState) {
+        int buttonNumber2 = buttonNumber < buttonIndex.length ? buttonIndex[buttonNumber] : -1;
         if (buttonNumber2 < 0) {
             System.err.println("WARN: Couldn't find button " + buttonNumber + " in mapping! Perhaps device reported capabilities improperly!");
             return;
         }
-        buttonChanged[buttonNumber2] = (buttonState != state.getButtonState(buttonNumber2)); //only flag as changed if _actually_ changed.
+        //only flag as changed if _actually_ changed.
+        if (buttonState != state.getButtonState(buttonNumber2) && !buttonChanged[buttonNumber2]) {
+            buttonChanged[buttonNumber2] = true;
+            changedButtons[changedButtonCount++] = buttonNumber2;
+        }
         state.setButtonState(buttonNumber2, buttonState);
     }
 
+    /**
+     * @return The event code of a button, as numbered in JoystickState.
+     */
+    public int getButtonEventCode(int button) {
+        return buttonEventCodes[button];
+    }
+
+    /**
+     * @return The event code of an axis, as numbered in JoystickState.
+     */
+    public int getAxisEventCode(int axis) {
+        return axisEventCodes[axis];
+    }
+
+    /**
+     * Choose how dead zones are applied to normalized axes. Takes effect with the next change of each axis.
+     */
+    public void setDeadzone(Deadzone deadzone) {
+        this.deadzone = deadzone;
+    }
+
+    public Deadzone getDeadzone() {
+        return deadzone;
+    }
+
+    /**
+     * Set the calibration curve of an axis, applied to its normalized value after the dead zone. Takes effect with
+     * the next change of the axis.
+     *
+     * @param axis  The axis number, as in JoystickState.
+     * @param curve The curve, or null to keep the axis linear.
+     */
+    public synchronized void setCurve(int axis, AxisCurve curve) {
+        AxisCurve[] updated = curves.clone();
+        updated[axis] = curve;
+        curves = updated;
+    }
+
     /**
      * Adds an event listener to this device.
      * If the listener is already on the listener list,
@@ -176,7 +455,27 @@ public class EvdevJoystickFilter implements InputListener {
         listeners.remove(list);
     }
 
+    /**
+     * Adds a listener receiving the numbers of the buttons and axes which changed, rather than a flag for each.
+     *
+     * @param list The listener to add. Must not be null.
+     */
+    public void addListener(RawJoystickListener list) {
+        rawListeners.add(list);
+    }
+
+    public void removeListener(RawJoystickListener list) {
+        rawListeners.remove(list);
+    }
+
+    /**
+     * Close the device, or only release it if the filter got it from the shared pool.
+     */
     public void close() {
-        device.close();
+        if (handle != null) {
+            handle.close();
+        } else {
+            device.close();
+        }
     }
 }
@@ -16,21 +16,23 @@
  * */
 package com.dgis.input.evdev.devices;
 
-import java.awt.GraphicsDevice;
 import java.awt.MouseInfo;
 import java.awt.Point;
+import java.awt.PointerInfo;
 import java.awt.Rectangle;
 import java.awt.Robot;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.dgis.input.evdev.EventDevice;
+import com.dgis.input.evdev.EventDeviceHandle;
+import com.dgis.input.evdev.EventDevicePool;
+import com.dgis.input.evdev.EventMask;
+import com.dgis.input.evdev.EventMaskProvider;
 import com.dgis.input.evdev.InputEvent;
 import com.dgis.input.evdev.InputListener;
 import com.dgis.input.evdev.devices.IMouseListener.MouseButton;
@@ -42,10 +44,19 @@ import com.dgis.input.evdev.devices.IMouseListener.WheelDirection;
  * @author Alessio Iannone - Rheinmetall Italia S.p.A.
  *
  */
-public class EvdevMouseFilter implements InputListener {
+public class EvdevMouseFilter implements InputListener, EventMaskProvider {
     private final static Logger logger = LoggerFactory.getLogger(EvdevMouseFilter.class);
+    /**
+     * Only buttons and relative axes are looked at.
+     */
+    private static final EventMask EVENT_MASK = EventMask.builder().type(InputEvent.EV_KEY, InputEvent.EV_REL).build();
     private EventDevice device;
 
+    /**
+     * The handle the device was acquired with, or null if the device was given.
+     */
+    private final EventDeviceHandle handle;
+
     private ArrayList<IMoveMouseListener> listeners;
 
     private Point actualMousePosition;
@@ -59,35 +70,57 @@ public class EvdevMouseFilter implements InputListener {
     private Rectangle screenBounds;
 
     /**
-     * 
+     * Track the pointer within the screen it currently is on.
      */
     public EvdevMouseFilter(EventDevice dev) {
+        this(dev, null, MouseInfo.getPointerInfo());
+    }
+
+    private EvdevMouseFilter(EventDevice dev, EventDeviceHandle handle, PointerInfo pointer) {
+        this(dev, handle, pointer.getDevice().getDefaultConfiguration().getBounds(), pointer.getLocation());
+    }
+
+    /**
+     * Track the pointer within the given bounds, without looking at the screen. Works in headless environments.
+     *
+     * @param screenBounds The area the pointer is kept in.
+     * @param position     The initial position of the pointer.
+     */
+    public EvdevMouseFilter(EventDevice dev, Rectangle screenBounds, Point position) {
+        this(dev, null, screenBounds, position);
+    }
+
+    private EvdevMouseFilter(EventDevice dev, EventDeviceHandle handle, Rectangle screenBounds, Point position) {
         this.device = dev;
+        this.handle = handle;
         this.pressed = false;
         this.listeners = new ArrayList<>();
-        this.actualMousePosition = new Point(0, 0);
+        this.screenBounds = screenBounds;
+        this.actualMousePosition = new Point(position);
         setupDevice();
     }
 
+    /**
+     * Read the given device, shared through {@link EventDevicePool#shared()} with anything else using it.
+     */
     public EvdevMouseFilter(String device) throws IOException {
-        this(new EventDevice(new File(device)));
+        this(EventDevicePool.shared().acquire(new File(device)));
+    }
+
+    private EvdevMouseFilter(EventDeviceHandle handle) {
+        this(handle.getDevice(), handle, MouseInfo.getPointerInfo());
     }
 
     /**
      * 
      */
     private void setupDevice() {
-        Map<Integer, List<Integer>> supportedEvents = device.getSupportedEvents();
-        List<Integer> supportedKeys = supportedEvents.get((int) InputEvent.EV_KEY);
-        int numButtons = supportedKeys == null ? 0 : supportedKeys.size();
+        int numButtons = device.getCapabilities().getCodeCount(InputEvent.EV_KEY);
 
-        // Initialize actual mouse position
-        GraphicsDevice device = MouseInfo.getPointerInfo().getDevice();
-        screenBounds = device.getDefaultConfiguration().getBounds();
         minWidth = screenBounds.x;
         minHeight = screenBounds.y;
-        maxWidth = device.getDisplayMode().getWidth() + minWidth;
-        maxHeight = device.getDisplayMode().getHeight() + minHeight;
+        maxWidth = screenBounds.width + minWidth;
+        maxHeight = screenBounds.height + minHeight;
         robot = null;
 //        try {
 //            robot = new Robot();
@@ -95,15 +128,17 @@ public class EvdevMouseFilter implements InputListener {
 //        } catch (AWTException e) {
 //            e.printStackTrace();
 //        }
-        
-        
-        actualMousePosition = MouseInfo.getPointerInfo().getLocation();
+
 
         System.out.println("Max Width:" + maxWidth + " Max Height:" + maxHeight + " Bounds:" + screenBounds
                 + " Actual Mouse Position:" + actualMousePosition);
         System.out.println("Detected " + numButtons + " buttons.");
         //this.device.grab();
-        this.device.addListener(this);
+        if (handle != null) {
+            handle.addListener(this, EVENT_MASK);
+        } else {
+            this.device.addListener(this, EVENT_MASK);
+        }
     }
 
     /**
@@ -115,6 +150,25 @@ public class EvdevMouseFilter implements InputListener {
         return device;
     }
 
+    /**
+     * Stop listening to the device, and release it if the filter opened it. A given device is left open.
+     */
+    public void close() {
+        if (handle != null) {
+            handle.close();
+        } else {
+            device.removeListener(this);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public EventMask getEventMask() {
+        return EVENT_MASK;
+    }
+
     /**
      * {@inheritDoc}
      */
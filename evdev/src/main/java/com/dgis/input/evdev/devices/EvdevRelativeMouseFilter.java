@@ -19,13 +19,15 @@ package com.dgis.input.evdev.devices;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.dgis.input.evdev.EventDevice;
+import com.dgis.input.evdev.EventDeviceHandle;
+import com.dgis.input.evdev.EventDevicePool;
+import com.dgis.input.evdev.EventMask;
+import com.dgis.input.evdev.EventMaskProvider;
 import com.dgis.input.evdev.InputEvent;
 import com.dgis.input.evdev.InputListener;
 import com.dgis.input.evdev.devices.IMouseListener.MouseButton;
@@ -36,10 +38,19 @@ import com.dgis.input.evdev.devices.IMouseListener.MouseButton;
  * @author Andrea Picchiani - Rheinmetall Italia S.p.A.
  *
  */
-public class EvdevRelativeMouseFilter implements InputListener {
+public class EvdevRelativeMouseFilter implements InputListener, EventMaskProvider {
     private final static Logger logger = LoggerFactory.getLogger(EvdevRelativeMouseFilter.class);
+    /**
+     * Only buttons and relative axes are looked at.
+     */
+    private static final EventMask EVENT_MASK = EventMask.builder().type(InputEvent.EV_KEY, InputEvent.EV_REL).build();
     private EventDevice device;
 
+    /**
+     * The handle the device was acquired with, or null if the device was given.
+     */
+    private final EventDeviceHandle handle;
+
     private ArrayList<IRelativeMouseListener> listeners;
 
     private boolean pressed;
@@ -48,27 +59,41 @@ public class EvdevRelativeMouseFilter implements InputListener {
      * 
      */
     public EvdevRelativeMouseFilter(EventDevice dev) {
+        this(dev, null);
+    }
+
+    private EvdevRelativeMouseFilter(EventDevice dev, EventDeviceHandle handle) {
         this.device = dev;
+        this.handle = handle;
         this.pressed = false;
         this.listeners = new ArrayList<>();
         setupDevice();
     }
 
+    /**
+     * Read the given device, shared through {@link EventDevicePool#shared()} with anything else using it.
+     */
     public EvdevRelativeMouseFilter(String device) throws IOException {
-        this(new EventDevice(new File(device)));
+        this(EventDevicePool.shared().acquire(new File(device)));
+    }
+
+    private EvdevRelativeMouseFilter(EventDeviceHandle handle) {
+        this(handle.getDevice(), handle);
     }
 
     /**
      * 
      */
     private void setupDevice() {
-        Map<Integer, List<Integer>> supportedEvents = device.getSupportedEvents();
-        List<Integer> supportedKeys = supportedEvents.get((int) InputEvent.EV_KEY);
-        int numButtons = supportedKeys == null ? 0 : supportedKeys.size();
+        int numButtons = device.getCapabilities().getCodeCount(InputEvent.EV_KEY);
         System.out.println("Device " +device.getDeviceName());
         System.out.println("Detected " + numButtons + " buttons.");
         //this.device.grab();
-        this.device.addListener(this);
+        if (handle != null) {
+            handle.addListener(this, EVENT_MASK);
+        } else {
+            this.device.addListener(this, EVENT_MASK);
+        }
     }
 
     /**
@@ -80,6 +105,25 @@ public class EvdevRelativeMouseFilter implements InputListener {
         return device;
     }
 
+    /**
+     * Stop listening to the device, and release it if the filter opened it. A given device is left open.
+     */
+    public void close() {
+        if (handle != null) {
+            handle.close();
+        } else {
+            device.removeListener(this);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public EventMask getEventMask() {
+        return EVENT_MASK;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -19,6 +19,9 @@ package com.dgis.input.evdev.devices;
 /**
  * Represents the state of a joystick (buttons and axes)
  * <p/>
+ * Only meant to be read from JoystickListener callbacks. Threads polling a device should use
+ * {@link com.dgis.input.evdev.EventDevice#getInputState()} instead.
+ * <p/>
  * Copyright (C) 2009 Giacomo Ferrari
  *
  * @author Giacomo Ferrari
@@ -31,6 +34,10 @@ public class JoystickState {
     private final int axisStates[];
     private final int axisMinValue[];
     private final int axisMaxValue[];
+    private final int axisFuzz[];
+    private final int axisFlat[];
+    private final int axisResolution[];
+    private final float normalizedAxisStates[];
 
     JoystickState(int numButtons, int numAxes) {
         this.numButtons = numButtons;
@@ -39,6 +46,10 @@ public class JoystickState {
         axisStates = new int[numAxes];
         axisMinValue = new int[numAxes];
         axisMaxValue = new int[numAxes];
+        axisFuzz = new int[numAxes];
+        axisFlat = new int[numAxes];
+        axisResolution = new int[numAxes];
+        normalizedAxisStates = new float[numAxes];
     }
 
     /**
@@ -82,25 +93,63 @@ public class JoystickState {
     }
 
     /**
-     * Queries the smallest value ever seen on a given axis for calibration purposes.
+     * Queries the smallest value of a given axis for calibration purposes: the minimum reported by the device, or
+     * the smallest value ever seen if lower.
      *
-     * @param axis The axis to check. Valid ranges are 0 to getNumButtons()-1.
-     * @return The smallest value ever seen on this axis.
+     * @param axis The axis to check. Valid ranges are 0 to getNumAxes()-1.
+     * @return The smallest value of this axis.
      */
     public int getAxisMinValue(int axis) {
         return axisMinValue[axis];
     }
 
     /**
-     * Queries the largest value ever seen on a given axis for calibration purposes.
+     * Queries the largest value of a given axis for calibration purposes: the maximum reported by the device, or
+     * the largest value ever seen if higher.
      *
-     * @param axis The axis to check. Valid ranges are 0 to getNumButtons()-1.
-     * @return The largest value ever seen on this axis.
+     * @param axis The axis to check. Valid ranges are 0 to getNumAxes()-1.
+     * @return The largest value of this axis.
      */
     public int getAxisMaxValue(int axis) {
         return axisMaxValue[axis];
     }
 
+    /**
+     * @param axis The axis to check. Valid ranges are 0 to getNumAxes()-1.
+     * @return The noise the device filters out of this axis, as reported by the device.
+     */
+    public int getAxisFuzz(int axis) {
+        return axisFuzz[axis];
+    }
+
+    /**
+     * @param axis The axis to check. Valid ranges are 0 to getNumAxes()-1.
+     * @return The size of the dead zone around the center of this axis, as reported by the device.
+     */
+    public int getAxisFlat(int axis) {
+        return axisFlat[axis];
+    }
+
+    /**
+     * @param axis The axis to check. Valid ranges are 0 to getNumAxes()-1.
+     * @return The resolution of this axis in units per millimeter, or per radian for rotations, 0 if unknown.
+     */
+    public int getAxisResolution(int axis) {
+        return axisResolution[axis];
+    }
+
+    /**
+     * Queries the state of a joystick axis, scaled to [-1, 1] from its minimum and maximum, with the dead zone and
+     * calibration curve of the filter applied.
+     *
+     * @param axis The axis number to check. Valid ranges are 0 to getNumAxes()-1.
+     * @return The normalized state of the axis.
+     * @see EvdevJoystickFilter#setDeadzone(EvdevJoystickFilter.Deadzone)
+     */
+    public float getNormalizedAxisState(int axis) {
+        return normalizedAxisStates[axis];
+    }
+
     void setButtonState(int button, boolean state) {
         buttonStates[button] = state;
     }
@@ -117,6 +166,16 @@ public class JoystickState {
         axisMaxValue[axis] = max;
     }
 
+    void setAxisInfo(int axis, int fuzz, int flat, int resolution) {
+        axisFuzz[axis] = fuzz;
+        axisFlat[axis] = flat;
+        axisResolution[axis] = resolution;
+    }
+
+    void setNormalizedAxisState(int axis, float state) {
+        normalizedAxisStates[axis] = state;
+    }
+
     @Override
     public String toString() {
         StringBuilder buf = new StringBuilder("Buttons: [ ");
@@ -0,0 +1,45 @@
+/**
+ * This file is part of evdev-java - Java implementation.
+ *
+ * evdev-java - Java implementation is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * evdev-java - Java implementation is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with evdev-java - Java implementation.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.dgis.input.evdev.devices;
+
+/**
+ * Listener for Joystick events, told which buttons and axes changed as a list of their numbers, so that it does not
+ * have to scan a flag for every button and axis.
+ * <p/>
+ * The arrays are reused from one frame to the next: implementations must not keep references to them.
+ *
+ * @see EvdevJoystickFilter#addListener(RawJoystickListener)
+ */
+public interface RawJoystickListener {
+    /**
+     * Called whenever some of a joystick's axes change state.
+     *
+     * @param changedAxes The numbers of the axes which changed, in the first count entries.
+     * @param count       The number of axes which changed, at least 1.
+     * @param state       The updated joystick state.
+     */
+    void joystickMoved(int[] changedAxes, int count, JoystickState state, String source);
+
+    /**
+     * Called whenever some of a joystick's buttons change state.
+     *
+     * @param changedButtons The numbers of the buttons which changed, in the first count entries.
+     * @param count          The number of buttons which changed, at least 1.
+     * @param state          The updated joystick state.
+     */
+    void buttonChanged(int[] changedButtons, int count, JoystickState state, String source);
+}
@@ -0,0 +1,52 @@
+/**
+ * This file is part of evdev-java - Java implementation.
+ *
+ * evdev-java - Java implementation is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * evdev-java - Java implementation is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with evdev-java - Java implementation.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.dgis.input.evdev;
+
+/**
+ * An EventDevice connected to nothing, which tests feed the way its reader would: one event at a time through a
+ * reusable flyweight, then the end of the read.
+ */
+class DetachedDevice extends EventDevice {
+
+    private final InputEventView view = new InputEventView();
+
+    DetachedDevice(DeviceCapabilities capabilities) {
+        super("detached", capabilities);
+    }
+
+    void send(long timestampNanos, int type, int code, int value) {
+        distributeEvent(view.set(getDeviceId(), timestampNanos, type, code, value));
+    }
+
+    void send(int type, int code, int value) {
+        send(0, type, code, value);
+    }
+
+    /**
+     * End the current frame with SYN_REPORT.
+     */
+    void sync(long timestampNanos) {
+        send(timestampNanos, InputEvent.EV_SYN, InputEvent.SYN_REPORT, 0);
+    }
+
+    /**
+     * Hand the events sent since the last flush to the BatchListeners, as the end of a read does.
+     */
+    void flush() {
+        flushBatch();
+    }
+}
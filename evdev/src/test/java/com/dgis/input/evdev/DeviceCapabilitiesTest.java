@@ -0,0 +1,84 @@
+/**
+ * This file is part of evdev-java - Java implementation.
+ *
+ * evdev-java - Java implementation is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * evdev-java - Java implementation is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with evdev-java - Java implementation.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.dgis.input.evdev;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+public class DeviceCapabilitiesTest {
+
+    private final DeviceCapabilities mouse = DeviceCapabilities.builder()
+            .add(InputEvent.EV_KEY, InputEvent.BTN_LEFT, InputEvent.BTN_RIGHT, InputEvent.BTN_MIDDLE)
+            .add(InputEvent.EV_REL, InputEvent.REL_X, InputEvent.REL_Y, InputEvent.REL_WHEEL)
+            .build();
+
+    @Test
+    public void answersLookups() {
+        assertThat(mouse.supports(InputEvent.EV_KEY)).isTrue();
+        assertThat(mouse.supports(InputEvent.EV_ABS)).isFalse();
+        assertThat(mouse.supports(InputEvent.EV_KEY, InputEvent.BTN_RIGHT)).isTrue();
+        assertThat(mouse.supports(InputEvent.EV_KEY, InputEvent.KEY_A)).isFalse();
+        assertThat(mouse.supports(InputEvent.EV_KEY, InputEvent.KEY_MAX)).isFalse();
+        assertThat(mouse.supports(InputEvent.EV_ABS, InputEvent.ABS_X)).isFalse();
+        assertThat(mouse.supports(-1, 0)).isFalse();
+    }
+
+    @Test
+    public void iteratesOverSetBitsOnly() {
+        List<Integer> codes = new ArrayList<>();
+        mouse.forEachCode(InputEvent.EV_KEY, codes::add);
+        assertThat(codes).containsExactly((int) InputEvent.BTN_LEFT, (int) InputEvent.BTN_RIGHT, (int) InputEvent.BTN_MIDDLE);
+        assertThat(mouse.getCodes(InputEvent.EV_REL)).containsExactly(InputEvent.REL_X, InputEvent.REL_Y, InputEvent.REL_WHEEL);
+        assertThat(mouse.nextCode(InputEvent.EV_REL, InputEvent.REL_Y + 1)).isEqualTo(InputEvent.REL_WHEEL);
+        assertThat(mouse.nextCode(InputEvent.EV_REL, InputEvent.REL_WHEEL + 1)).isEqualTo(-1);
+        assertThat(mouse.getCodeCount(InputEvent.EV_ABS)).isZero();
+    }
+
+    @Test
+    public void derivesLegacyMap() {
+        assertThat(mouse.toMap()).containsOnly(
+                entry((int) InputEvent.EV_KEY, codes(InputEvent.BTN_LEFT, InputEvent.BTN_RIGHT, InputEvent.BTN_MIDDLE)),
+                entry((int) InputEvent.EV_REL, codes(InputEvent.REL_X, InputEvent.REL_Y, InputEvent.REL_WHEEL)));
+    }
+
+    @Test
+    public void honoursTypeBitmap() {
+        long[][] bitmaps = new long[InputEvent.EV_CNT][12];
+        bitmaps[0][0] = 1L << InputEvent.EV_KEY;
+        bitmaps[InputEvent.EV_KEY][0] = 1L << InputEvent.KEY_ESC;
+        bitmaps[InputEvent.EV_REL][0] = 1L << InputEvent.REL_X;
+        DeviceCapabilities capabilities = DeviceCapabilities.fromBitmaps(bitmaps);
+        assertThat(capabilities.supports(InputEvent.EV_KEY, InputEvent.KEY_ESC)).isTrue();
+        assertThat(capabilities.supports(InputEvent.EV_REL)).isFalse();
+    }
+
+    @Test
+    public void keepsFootprintSmall() {
+        assertThat(mouse.getFootprintBytes()).isLessThan(512);
+    }
+
+    private static List<Integer> codes(int... codes) {
+        List<Integer> list = new ArrayList<>();
+        for (int code : codes) list.add(code);
+        return list;
+    }
+}
@@ -0,0 +1,150 @@
+/**
+ * This file is part of evdev-java - Java implementation.
+ *
+ * evdev-java - Java implementation is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * evdev-java - Java implementation is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with evdev-java - Java implementation.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.dgis.input.evdev;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DeviceRegistryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final DeviceInfo keyboard = DeviceInfo.builder("Synthetic Keyboard")
+            .capabilities(DeviceCapabilities.builder().add(InputEvent.EV_KEY, InputEvent.KEY_A, InputEvent.KEY_B).build())
+            .build();
+
+    private final DeviceInfo mouse = DeviceInfo.builder("Synthetic Mouse")
+            .capabilities(DeviceCapabilities.builder()
+                    .add(InputEvent.EV_KEY, InputEvent.BTN_LEFT)
+                    .add(InputEvent.EV_REL, InputEvent.REL_X, InputEvent.REL_Y)
+                    .build())
+            .build();
+
+    private final BlockingQueue<EventDevice> added = new LinkedBlockingQueue<>();
+    private final BlockingQueue<EventDevice> removed = new LinkedBlockingQueue<>();
+    private final List<Fifo> fifos = new ArrayList<>();
+
+    private File staging;
+    private File input;
+    private DeviceRegistry registry;
+
+    @Before
+    public void setUp() throws Exception {
+        staging = folder.newFolder("staging");
+        input = folder.newFolder("input");
+        registry = DeviceRegistry.builder()
+                .directory(input)
+                .match(DeviceMatcher.supports(InputEvent.EV_KEY, InputEvent.KEY_A))
+                .sources(node -> new NamedPipeSource(node, node.getName().equals("event1") ? mouse : keyboard))
+                .build();
+        registry.addListener(new DeviceRegistryListener() {
+            @Override
+            public void deviceAdded(EventDevice device) {
+                added.add(device);
+            }
+
+            @Override
+            public void deviceRemoved(EventDevice device) {
+                removed.add(device);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        registry.close();
+        for (Fifo fifo : fifos) {
+            fifo.close();
+        }
+    }
+
+    /**
+     * Create a pipe aside with its write end open, then move it into the watched directory, the way a node appears
+     * in /dev/input once ready.
+     */
+    private File plug(String name) throws Exception {
+        Fifo fifo = new Fifo(new File(staging, name));
+        fifos.add(fifo);
+        File node = new File(input, name);
+        Files.move(fifo.getFile().toPath(), node.toPath());
+        return node;
+    }
+
+    @Test
+    public void opensMatchingNodesOnly() throws Exception {
+        File existing = plug("event0");
+        registry.start();
+        EventDevice device = added.poll(5, TimeUnit.SECONDS);
+        assertThat(device).isNotNull();
+        assertThat(device.getDevicePath()).isEqualTo(existing.getAbsolutePath());
+
+        plug("event1");
+        plug("js0");
+        File hotplugged = plug("event2");
+        device = added.poll(5, TimeUnit.SECONDS);
+        assertThat(device).isNotNull();
+        assertThat(device.getDevicePath()).isEqualTo(hotplugged.getAbsolutePath());
+        assertThat(device.getDeviceName()).isEqualTo("Synthetic Keyboard");
+
+        assertThat(added.poll(200, TimeUnit.MILLISECONDS)).isNull();
+        assertThat(registry.getDevices()).hasSize(2);
+        assertThat(registry.getDevice(new File(input, "event1"))).isNull();
+    }
+
+    @Test
+    public void closesDevicesWhoseNodeDisappears() throws Exception {
+        registry.start();
+        File node = plug("event0");
+        EventDevice device = added.poll(5, TimeUnit.SECONDS);
+        assertThat(device).isNotNull();
+
+        Files.delete(node.toPath());
+        assertThat(removed.poll(5, TimeUnit.SECONDS)).isSameAs(device);
+        assertThat(registry.getDevices()).isEmpty();
+
+        File replugged = plug("event0");
+        assertThat(added.poll(5, TimeUnit.SECONDS)).isNotNull().isNotSameAs(device);
+        assertThat(registry.getDevice(replugged)).isNotNull();
+    }
+
+    @Test
+    public void closesDevicesWhichStopReading() throws Exception {
+        registry.start();
+        plug("event0");
+        EventDevice device = added.poll(5, TimeUnit.SECONDS);
+        assertThat(device).isNotNull();
+
+        /* the last writer gone, reading the pipe hits end of file */
+        fifos.remove(0).close();
+        assertThat(removed.poll(5, TimeUnit.SECONDS)).isSameAs(device);
+        assertThat(registry.getDevices()).isEmpty();
+    }
+}
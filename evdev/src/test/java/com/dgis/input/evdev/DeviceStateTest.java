@@ -0,0 +1,123 @@
+/**
+ * This file is part of evdev-java - Java implementation.
+ *
+ * evdev-java - Java implementation is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * evdev-java - Java implementation is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with evdev-java - Java implementation.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.dgis.input.evdev;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class DeviceStateTest {
+
+    private final NativeEventDevice nativeEventDevice = mock(NativeEventDevice.class);
+
+    /**
+     * What the mocked readState() reports.
+     */
+    private final ByteBuffer kernelState = ByteBuffer.allocate(NativeEventDevice.STATE_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+    private final List<String> synthetic = new ArrayList<>();
+
+    private final RawInputListener sink = (deviceId, timestampNanos, type, code, value) ->
+            synthetic.add(type + ":" + code + "=" + value);
+
+    private DeviceState state;
+
+    @Before
+    public void openDevice() {
+        when(nativeEventDevice.readState(anyInt(), any(byte[].class))).thenAnswer(invocation -> {
+            byte[] out = invocation.getArgument(1);
+            System.arraycopy(kernelState.array(), 0, out, 0, out.length);
+            return true;
+        });
+        state = new DeviceState(nativeEventDevice, 3, 2);
+        assertThat(state.resync(1, 0, EventMask.ALL, null)).isZero();
+    }
+
+    @Test
+    public void tracksDeliveredEvents() {
+        assertThat(state.track(InputEvent.EV_KEY, InputEvent.KEY_A, 1)).isEqualTo(DeviceState.DELIVER);
+        assertThat(state.track(InputEvent.EV_SYN, InputEvent.SYN_REPORT, 0)).isEqualTo(DeviceState.DELIVER);
+
+        /* nothing changed behind our back */
+        setKey(InputEvent.KEY_A);
+        assertThat(state.resync(1, 0, EventMask.ALL, sink)).isZero();
+    }
+
+    @Test
+    public void discardsUpToTheNextReportAfterDrop() {
+        assertThat(state.track(InputEvent.EV_SYN, InputEvent.SYN_DROPPED, 0)).isEqualTo(DeviceState.DISCARD);
+        assertThat(state.isDropping()).isTrue();
+        assertThat(state.track(InputEvent.EV_KEY, InputEvent.KEY_B, 1)).isEqualTo(DeviceState.DISCARD);
+        assertThat(state.track(InputEvent.EV_SYN, InputEvent.SYN_REPORT, 0)).isEqualTo(DeviceState.RESYNC);
+        assertThat(state.track(InputEvent.EV_KEY, InputEvent.KEY_B, 0)).isEqualTo(DeviceState.DELIVER);
+        assertThat(state.getDropCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void replaysDifferencesAsSyntheticEvents() {
+        state.track(InputEvent.EV_KEY, InputEvent.KEY_A, 1);
+        state.track(InputEvent.EV_ABS, InputEvent.ABS_X, 100);
+        state.track(InputEvent.EV_ABS, InputEvent.ABS_MT_TRACKING_ID, 5);
+        state.track(InputEvent.EV_SYN, InputEvent.SYN_REPORT, 0);
+        state.track(InputEvent.EV_SYN, InputEvent.SYN_DROPPED, 0);
+        state.track(InputEvent.EV_SYN, InputEvent.SYN_REPORT, 0);
+
+        /* KEY_A released, KEY_B pressed, X moved and a second finger in slot 1 */
+        setKey(InputEvent.KEY_B);
+        kernelState.putInt(NativeEventDevice.STATE_ABS_OFFSET + 4 * InputEvent.ABS_X, 120);
+        kernelState.putInt(NativeEventDevice.STATE_ABS_OFFSET + 4 * InputEvent.ABS_MT_SLOT, 1);
+        setSlot(0, InputEvent.ABS_MT_TRACKING_ID, 5);
+        setSlot(1, InputEvent.ABS_MT_TRACKING_ID, 7);
+
+        assertThat(state.resync(1, 0, EventMask.ALL, sink)).isEqualTo(5);
+        assertThat(synthetic).containsExactly(
+                InputEvent.EV_KEY + ":" + InputEvent.KEY_A + "=0",
+                InputEvent.EV_KEY + ":" + InputEvent.KEY_B + "=1",
+                InputEvent.EV_ABS + ":" + InputEvent.ABS_X + "=120",
+                InputEvent.EV_ABS + ":" + InputEvent.ABS_MT_SLOT + "=1",
+                InputEvent.EV_ABS + ":" + InputEvent.ABS_MT_TRACKING_ID + "=7");
+    }
+
+    @Test
+    public void onlyReplaysMaskedInEvents() {
+        setKey(InputEvent.KEY_B);
+        kernelState.putInt(NativeEventDevice.STATE_ABS_OFFSET + 4 * InputEvent.ABS_X, 120);
+
+        EventMask keys = EventMask.builder().type(InputEvent.EV_KEY).build();
+        assertThat(state.resync(1, 0, keys, sink)).isEqualTo(1);
+        assertThat(synthetic).containsExactly(InputEvent.EV_KEY + ":" + InputEvent.KEY_B + "=1");
+    }
+
+    private void setKey(int code) {
+        kernelState.put(NativeEventDevice.STATE_KEY_OFFSET + code / 8, (byte) (1 << (code % 8)));
+    }
+
+    private void setSlot(int slot, int code, int value) {
+        int index = (code - NativeEventDevice.STATE_MT_FIRST_CODE) * NativeEventDevice.STATE_MT_SLOT_COUNT + slot;
+        kernelState.putInt(NativeEventDevice.STATE_MT_OFFSET + 4 * index, value);
+    }
+}
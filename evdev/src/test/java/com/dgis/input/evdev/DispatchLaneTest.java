@@ -0,0 +1,264 @@
+/**
+ * This file is part of evdev-java - Java implementation.
+ *
+ * evdev-java - Java implementation is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * evdev-java - Java implementation is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with evdev-java - Java implementation.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.dgis.input.evdev;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DispatchLaneTest {
+
+    private final DetachedDevice device = new DetachedDevice(DeviceCapabilities.builder()
+            .add(InputEvent.EV_KEY, InputEvent.BTN_LEFT)
+            .add(InputEvent.EV_REL, InputEvent.REL_X, InputEvent.REL_Y)
+            .build());
+
+    /**
+     * Holds the lane thread until released, then records what it gets.
+     */
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final List<String> received = new ArrayList<>();
+    private final RawInputListener gated = (deviceId, timestampNanos, type, code, value) -> {
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (received) {
+            received.add(type + ":" + code + ":" + value);
+        }
+    };
+
+    private DispatchLane lane;
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        if (lane != null) lane.close();
+    }
+
+    private List<String> awaitReceived(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (System.nanoTime() < deadline) {
+            synchronized (received) {
+                if (received.size() >= count) return new ArrayList<>(received);
+            }
+            Thread.sleep(1);
+        }
+        synchronized (received) {
+            return new ArrayList<>(received);
+        }
+    }
+
+    @Test
+    public void doesNotStallTheReader() throws Exception {
+        lane = DispatchLane.builder(gated).capacity(4).overflow(DispatchLane.Overflow.DROP_OLDEST).build();
+        device.addListener(lane);
+        /* the first event is taken by the lane thread, which then waits */
+        device.send(InputEvent.EV_KEY, InputEvent.BTN_LEFT, 1);
+        while (lane.getQueueDepth() != 0) Thread.yield();
+        for (int value = 0; value < 6; value++) {
+            device.send(InputEvent.EV_REL, InputEvent.REL_X, value);
+        }
+        assertThat(lane.getQueueDepth()).isEqualTo(4);
+        assertThat(lane.getDroppedCount()).isEqualTo(2);
+        assertThat(lane.getLagNanos()).isPositive();
+
+        release.countDown();
+        assertThat(awaitReceived(5)).containsExactly("1:272:1", "2:0:2", "2:0:3", "2:0:4", "2:0:5");
+        assertThat(lane.getMaxQueueDepth()).isEqualTo(4);
+    }
+
+    @Test
+    public void coalescesMotionUpToTheLastKey() throws Exception {
+        lane = DispatchLane.builder(gated).capacity(4).overflow(DispatchLane.Overflow.COALESCE_MOTION).build();
+        device.addListener(lane);
+        device.send(InputEvent.EV_SYN, InputEvent.SYN_REPORT, 0);
+        while (lane.getQueueDepth() != 0) Thread.yield();
+        device.send(InputEvent.EV_KEY, InputEvent.BTN_LEFT, 1);
+        device.send(InputEvent.EV_REL, InputEvent.REL_X, 2);
+        device.send(InputEvent.EV_REL, InputEvent.REL_Y, 3);
+        device.send(InputEvent.EV_SYN, InputEvent.SYN_REPORT, 0);
+        /* full from here on */
+        device.send(InputEvent.EV_REL, InputEvent.REL_X, 5);
+        device.send(InputEvent.EV_REL, InputEvent.REL_Y, -1);
+        device.send(InputEvent.EV_SYN, InputEvent.SYN_REPORT, 0);
+        assertThat(lane.getCoalescedCount()).isEqualTo(3);
+        assertThat(lane.getDroppedCount()).isZero();
+        /* a key is never merged: the oldest event goes */
+        device.send(InputEvent.EV_KEY, InputEvent.BTN_LEFT, 0);
+        assertThat(lane.getDroppedCount()).isEqualTo(1);
+
+        release.countDown();
+        assertThat(awaitReceived(5)).containsExactly("0:0:0", "2:0:7", "2:1:2", "0:0:0", "1:272:0");
+    }
+
+    @Test
+    public void neverDropsKeysBehindMotion() throws Exception {
+        lane = DispatchLane.builder(gated).capacity(4).overflow(DispatchLane.Overflow.PRIORITIZE_DISCRETE).build();
+        device.addListener(lane);
+        device.send(InputEvent.EV_SYN, InputEvent.SYN_REPORT, 0);
+        while (lane.getQueueDepth() != 0) Thread.yield();
+        device.send(InputEvent.EV_KEY, InputEvent.BTN_LEFT, 1);
+        device.send(InputEvent.EV_REL, InputEvent.REL_X, 2);
+        device.send(InputEvent.EV_SYN, InputEvent.SYN_REPORT, 0);
+        /* merged before the queue is full */
+        device.send(InputEvent.EV_REL, InputEvent.REL_X, 3);
+        device.send(InputEvent.EV_SYN, InputEvent.SYN_REPORT, 0);
+        assertThat(lane.getQueueDepth()).isEqualTo(3);
+        assertThat(lane.getCoalescedCount()).isEqualTo(2);
+        device.send(InputEvent.EV_KEY, InputEvent.BTN_LEFT, 0);
+        /* full: motion behind the key cannot be merged, and takes the queued motion of its axis along */
+        device.send(InputEvent.EV_REL, InputEvent.REL_X, 4);
+        assertThat(lane.getQueueDepth()).isEqualTo(4);
+        assertThat(lane.getCoalescedCount()).isEqualTo(3);
+
+        /* a key waits for room */
+        Thread reader = new Thread(() -> device.send(InputEvent.EV_KEY, InputEvent.BTN_LEFT, 1));
+        reader.start();
+        reader.join(100);
+        assertThat(reader.isAlive()).isTrue();
+        assertThat(lane.getBlockedCount()).isEqualTo(1);
+
+        release.countDown();
+        reader.join();
+        assertThat(awaitReceived(6)).containsExactly("0:0:0", "1:272:1", "0:0:0", "1:272:0", "2:0:9", "1:272:1");
+        assertThat(lane.getDroppedCount()).isZero();
+    }
+
+    @Test
+    public void keepsTheSumOfRelativeMotionAcrossAnOverflow() throws Exception {
+        lane = DispatchLane.builder(gated).capacity(4).overflow(DispatchLane.Overflow.PRIORITIZE_DISCRETE).build();
+        device.addListener(lane);
+        device.send(InputEvent.EV_SYN, InputEvent.SYN_REPORT, 0);
+        while (lane.getQueueDepth() != 0) Thread.yield();
+        device.send(InputEvent.EV_REL, InputEvent.REL_X, 1);
+        device.send(InputEvent.EV_KEY, InputEvent.BTN_LEFT, 1);
+        device.send(InputEvent.EV_REL, InputEvent.REL_X, 2);
+        device.send(InputEvent.EV_KEY, InputEvent.BTN_LEFT, 0);
+        /* full: the oldest motion is folded into the later one of its axis */
+        device.send(InputEvent.EV_REL, InputEvent.REL_X, 4);
+        device.send(InputEvent.EV_REL, InputEvent.REL_X, 8);
+        assertThat(lane.getQueueDepth()).isEqualTo(4);
+
+        release.countDown();
+        List<String> events = awaitReceived(5);
+        assertThat(events).containsExactly("0:0:0", "1:272:1", "2:0:3", "1:272:0", "2:0:12");
+        int sum = 0;
+        for (String event : events) {
+            if (event.startsWith("2:0:")) sum += Integer.parseInt(event.substring(4));
+        }
+        assertThat(sum).isEqualTo(1 + 2 + 4 + 8);
+        assertThat(lane.getDroppedCount()).isZero();
+    }
+
+    @Test
+    public void deliversWhatIsQueuedOnceClosed() throws Exception {
+        lane = DispatchLane.builder(gated).build();
+        device.addListener(lane);
+        device.send(InputEvent.EV_KEY, InputEvent.BTN_LEFT, 1);
+        while (lane.getQueueDepth() != 0) Thread.yield();
+        for (int value = 0; value < 600; value++) {
+            device.send(InputEvent.EV_REL, InputEvent.REL_X, value);
+        }
+        lane.close();
+        device.send(InputEvent.EV_REL, InputEvent.REL_X, -1);
+
+        release.countDown();
+        List<String> events = awaitReceived(601);
+        assertThat(events).hasSize(601).endsWith("2:0:599").doesNotContain("2:0:-1");
+        assertThat(lane.getDeliveredCount()).isEqualTo(601);
+        assertThat(lane.getDroppedCount()).isZero();
+    }
+
+    @Test
+    public void sharesAnExecutorAndKeepsOrder() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Integer> values = new ArrayList<>();
+            CountDownLatch done = new CountDownLatch(1);
+            lane = DispatchLane.builder((deviceId, timestampNanos, type, code, value) -> {
+                values.add(value);
+                if (value == 9999) done.countDown();
+            }).executor(executor).overflow(DispatchLane.Overflow.BLOCK).capacity(16).build();
+            device.addListener(lane);
+            for (int value = 0; value < 10000; value++) {
+                device.send(InputEvent.EV_REL, InputEvent.REL_X, value);
+            }
+            assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(values).hasSize(10000).isSorted();
+            assertThat(lane.getDroppedCount()).isZero();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void containsFailingListeners() throws Exception {
+        RawInputListener failing = (deviceId, timestampNanos, type, code, value) -> {
+            throw new IllegalStateException("listener bug");
+        };
+        List<Integer> inline = new ArrayList<>();
+        device.addListener(failing);
+        device.addListener((int deviceId, long timestampNanos, int type, int code, int value) -> inline.add(value));
+        lane = DispatchLane.builder(failing).build();
+        device.addListener(lane);
+
+        device.send(InputEvent.EV_REL, InputEvent.REL_X, 1);
+        device.send(InputEvent.EV_REL, InputEvent.REL_X, 2);
+
+        assertThat(inline).containsExactly(1, 2);
+        assertThat(device.getListenerFailureCount()).isEqualTo(2);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (lane.getFailureCount() < 2 && System.nanoTime() < deadline) Thread.sleep(1);
+        assertThat(lane.getFailureCount()).isEqualTo(2);
+        assertThat(lane.getDeliveredCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void keepsTheMaskOfItsListener() {
+        EventMask keys = EventMask.builder().type(InputEvent.EV_KEY).build();
+        InputListener keyListener = new KeyListener(keys);
+        lane = DispatchLane.builder(keyListener, "detached").build();
+        assertThat(lane.getEventMask()).isEqualTo(keys);
+    }
+
+    private static final class KeyListener implements InputListener, EventMaskProvider {
+        private final EventMask mask;
+
+        KeyListener(EventMask mask) {
+            this.mask = mask;
+        }
+
+        @Override
+        public void event(InputEvent e) {
+        }
+
+        @Override
+        public EventMask getEventMask() {
+            return mask;
+        }
+    }
+}
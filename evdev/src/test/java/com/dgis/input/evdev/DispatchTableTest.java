@@ -0,0 +1,92 @@
+/**
+ * This file is part of evdev-java - Java implementation.
+ *
+ * evdev-java - Java implementation is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * evdev-java - Java implementation is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with evdev-java - Java implementation.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.dgis.input.evdev;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DispatchTableTest {
+
+    private final DetachedDevice device = new DetachedDevice(DeviceCapabilities.builder()
+            .add(InputEvent.EV_KEY, InputEvent.KEY_A, InputEvent.BTN_LEFT)
+            .add(InputEvent.EV_REL, InputEvent.REL_X, InputEvent.REL_WHEEL)
+            .add(InputEvent.EV_MSC, InputEvent.MSC_SCAN)
+            .build());
+
+    private final List<String> received = new ArrayList<>();
+
+    private RawInputListener recorder(String name) {
+        return (deviceId, timestampNanos, type, code, value) -> received.add(name + ":" + type + ":" + code);
+    }
+
+    @Test
+    public void routesEventsToTheListenersAskingForThem() {
+        device.addListener(recorder("wheel"), EventMask.builder().add(InputEvent.EV_REL, InputEvent.REL_WHEEL).build());
+        device.addListener(recorder("all"));
+        device.addListener(recorder("keys"), EventMask.builder().type(InputEvent.EV_KEY).build());
+
+        device.send(InputEvent.EV_MSC, InputEvent.MSC_SCAN, 1);
+        device.send(InputEvent.EV_KEY, InputEvent.KEY_A, 1);
+        device.send(InputEvent.EV_REL, InputEvent.REL_X, 1);
+        device.send(InputEvent.EV_REL, InputEvent.REL_WHEEL, 1);
+        device.send(InputEvent.EV_SYN, InputEvent.SYN_REPORT, 1);
+
+        assertThat(received).containsExactly(
+                "all:4:4",
+                "all:1:30", "keys:1:30",
+                "all:2:0",
+                "wheel:2:8", "all:2:8",
+                "wheel:0:0", "all:0:0", "keys:0:0");
+    }
+
+    @Test
+    public void masksJoinTheKernelMask() {
+        RawInputListener wheel = recorder("wheel");
+        InputListener keys = e -> received.add("keys:" + e.code);
+        device.addListener(wheel, EventMask.builder().add(InputEvent.EV_REL, InputEvent.REL_WHEEL).build());
+        device.addListener(keys, EventMask.builder().add(InputEvent.EV_KEY, InputEvent.BTN_LEFT).build());
+
+        EventMask mask = device.getEventMask();
+        assertThat(mask.includes(InputEvent.EV_REL, InputEvent.REL_WHEEL)).isTrue();
+        assertThat(mask.includes(InputEvent.EV_REL, InputEvent.REL_X)).isFalse();
+        assertThat(mask.includes(InputEvent.EV_KEY, InputEvent.BTN_LEFT)).isTrue();
+        assertThat(mask.includes(InputEvent.EV_MSC)).isFalse();
+
+        device.send(InputEvent.EV_KEY, InputEvent.BTN_LEFT, 1);
+        device.send(InputEvent.EV_KEY, InputEvent.KEY_A, 1);
+        assertThat(received).containsExactly("keys:272");
+
+        device.removeListener(keys);
+        device.removeListener(wheel);
+        assertThat(device.getEventMask()).isEqualTo(EventMask.ALL);
+        device.send(InputEvent.EV_KEY, InputEvent.BTN_LEFT, 1);
+        assertThat(received).hasSize(1);
+    }
+
+    @Test
+    public void deliversCodesOutOfRangeToWholeTypeListeners() {
+        device.addListener(recorder("key"), EventMask.builder().add(InputEvent.EV_KEY, InputEvent.KEY_A).build());
+        device.addListener(recorder("keys"), EventMask.builder().type(InputEvent.EV_KEY).build());
+        device.send(InputEvent.EV_KEY, InputEvent.KEY_CNT + 1, 1);
+        device.send(InputEvent.EV_CNT + 1, 0, 1);
+        assertThat(received).containsExactly("keys:1:" + (InputEvent.KEY_CNT + 1));
+    }
+}
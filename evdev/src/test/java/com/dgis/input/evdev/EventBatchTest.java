@@ -0,0 +1,106 @@
+/**
+ * This file is part of evdev-java - Java implementation.
+ *
+ * evdev-java - Java implementation is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * evdev-java - Java implementation is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with evdev-java - Java implementation.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.dgis.input.evdev;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+public class EventBatchTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final DetachedDevice device = new DetachedDevice(DeviceCapabilities.builder()
+            .add(InputEvent.EV_REL, InputEvent.REL_X, InputEvent.REL_Y)
+            .build());
+
+    @Test
+    public void deliversEveryEventOfAReadAtOnce() {
+        List<String> batches = new ArrayList<>();
+        List<EventBatch> instances = new ArrayList<>();
+        device.addBatchListener(batch -> {
+            StringBuilder events = new StringBuilder();
+            for (int i = 0; i < batch.size(); i++) {
+                events.append(batch.getCode(i)).append('=').append(batch.getValue(i))
+                        .append('@').append(batch.getTimestampNanos(i)).append(' ');
+            }
+            batches.add(events.toString().trim());
+            instances.add(batch);
+        });
+
+        device.send(1, InputEvent.EV_REL, InputEvent.REL_X, 3);
+        device.send(1, InputEvent.EV_REL, InputEvent.REL_Y, 4);
+        device.send(1, InputEvent.EV_SYN, InputEvent.SYN_REPORT, 0);
+        device.flush();
+        device.flush();
+        device.send(2, InputEvent.EV_REL, InputEvent.REL_X, -1);
+        device.flush();
+
+        assertThat(batches).containsExactly("0=3@1 1=4@1 0=0@1", "0=-1@2");
+        assertThat(instances.get(0)).isSameAs(instances.get(1));
+        assertThat(instances.get(0).getDeviceId()).isEqualTo(device.getDeviceId());
+    }
+
+    @Test
+    public void adaptsPerEventListeners() {
+        List<Integer> values = new ArrayList<>();
+        device.addBatchListener(BatchListener.adapt(e -> values.add(e.value), "detached"));
+        device.addBatchListener(batch -> {
+            throw new IllegalStateException("listener bug");
+        });
+        device.addBatchListener(BatchListener.adapt(
+                (int deviceId, long timestampNanos, int type, int code, int value) -> values.add(-value)));
+
+        device.send(1, InputEvent.EV_REL, InputEvent.REL_X, 5);
+        device.send(1, InputEvent.EV_REL, InputEvent.REL_Y, 6);
+        device.flush();
+
+        assertThat(values).containsExactly(5, 6, -5, -6);
+        assertThat(device.getListenerFailureCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void receivesTheEventsOfOneReadInOneCall() throws Exception {
+        assumeTrue(System.getProperty("os.arch").equals("amd64"));
+        Fifo fifo = new Fifo(folder.getRoot().toPath().resolve("pipe").toFile());
+        EventDevice device = new EventDevice(new NamedPipeSource(fifo.getFile(), DeviceInfo.builder("Pipe").build()));
+        try {
+            List<Integer> sizes = new CopyOnWriteArrayList<>();
+            CountDownLatch received = new CountDownLatch(1);
+            device.addBatchListener(batch -> {
+                sizes.add(batch.size());
+                received.countDown();
+            });
+            fifo.writeBatch(40, InputEvent.EV_REL, InputEvent.REL_X);
+            assertThat(received.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(sizes).containsExactly(40);
+        } finally {
+            device.close();
+            fifo.close();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/**
+ * This file is part of evdev-java - Java implementation.
+ *
+ * evdev-java - Java implementation is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * evdev-java - Java implementation is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with evdev-java - Java implementation.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.dgis.input.evdev;
+
+import org.junit.After;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class EventDeviceMetricsTest {
+
+    private final DetachedDevice device = new DetachedDevice(DeviceCapabilities.builder()
+            .add(InputEvent.EV_KEY, InputEvent.BTN_LEFT)
+            .add(InputEvent.EV_REL, InputEvent.REL_X, InputEvent.REL_Y)
+            .build());
+
+    private final InputEventAbi abi = InputEventAbi.host();
+
+    @After
+    public void tearDown() {
+        device.close();
+    }
+
+    /**
+     * @param events type, code, value of each event.
+     */
+    private int read(int... events) {
+        int count = events.length / 3;
+        ByteBuffer structs = ByteBuffer.allocate(count * abi.getStructSize()).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < count; i++) {
+            abi.encode(structs, i * abi.getStructSize(), 1000, events[3 * i], events[3 * i + 1], events[3 * i + 2]);
+        }
+        return device.distributeRead(structs);
+    }
+
+    @Test
+    public void countsEventsByTypeAndTimesListeners() {
+        RawInputListener listener = (deviceId, timestampNanos, type, code, value) -> { };
+        device.addListener(listener, EventMask.builder().add(InputEvent.EV_REL).build());
+        device.addFrameListener(frame -> { });
+        read(InputEvent.EV_REL, InputEvent.REL_X, 1, InputEvent.EV_SYN, InputEvent.SYN_REPORT, 0);
+        assertThat(device.getMetrics()).isNull();
+
+        EventDeviceMetrics metrics = device.enableMetrics();
+        assertThat(device.enableMetrics()).isSameAs(metrics);
+        read(InputEvent.EV_REL, InputEvent.REL_X, 1, InputEvent.EV_REL, InputEvent.REL_Y, 2,
+                InputEvent.EV_SYN, InputEvent.SYN_REPORT, 0);
+        read(InputEvent.EV_KEY, InputEvent.BTN_LEFT, 1, InputEvent.EV_SYN, InputEvent.SYN_REPORT, 0);
+
+        EventDeviceMetrics.Snapshot snapshot = metrics.snapshot();
+        assertThat(snapshot.getEventCount()).isEqualTo(7);
+        assertThat(snapshot.getEventCount(InputEvent.EV_REL)).isEqualTo(2);
+        assertThat(snapshot.getEventCount(InputEvent.EV_KEY)).isEqualTo(1);
+        assertThat(snapshot.getEventCount(InputEvent.EV_SYN)).isEqualTo(2);
+        assertThat(snapshot.getEventsPerRead().getCount()).isEqualTo(2);
+        assertThat(snapshot.getEventsPerRead().getMax()).isEqualTo(3);
+        assertThat(snapshot.getDecodeNanos().getCount()).isEqualTo(2);
+        assertThat(snapshot.getListenerNanos()).hasSize(2);
+        assertThat(snapshot.getListenerNanos().values()).extracting(Histogram.Snapshot::getCount)
+                .containsExactlyInAnyOrder(2L, 2L);
+        assertThat(metrics.getEventsByType()).containsEntry("EV_REL", 2L).containsEntry("EV_SYN", 2L)
+                .containsEntry("EV_KEY", 1L).hasSize(3);
+
+        device.removeListener(listener);
+        assertThat(metrics.snapshot().getListenerNanos()).hasSize(1);
+        device.disableMetrics();
+        assertThat(device.getMetrics()).isNull();
+    }
+
+    @Test
+    public void publishesAnMXBeanWhileEnabled() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = device.enableMetrics().getObjectName();
+        assertThat(name).isNotNull();
+        assertThat(name.getKeyProperty("id")).isEqualTo(Integer.toString(device.getDeviceId()));
+
+        read(InputEvent.EV_REL, InputEvent.REL_X, 1, InputEvent.EV_SYN, InputEvent.SYN_REPORT, 0);
+        assertThat(server.getAttribute(name, "EventCount")).isEqualTo(2L);
+        assertThat(server.getAttribute(name, "DevicePath")).isEqualTo("detached");
+        assertThat(server.getAttribute(name, "MeanEventsPerRead")).isEqualTo(2.0);
+
+        device.close();
+        assertThat(server.isRegistered(name)).isFalse();
+    }
+
+    @Test
+    public void bucketsValuesByPowersOfTwo() {
+        Histogram histogram = new Histogram();
+        for (long value : new long[]{0, 1, 2, 3, 100, 1000}) {
+            histogram.record(value);
+        }
+        Histogram.Snapshot snapshot = histogram.snapshot();
+        assertThat(snapshot.getCount()).isEqualTo(6);
+        assertThat(snapshot.getBucketCounts()).startsWith(1, 1, 2);
+        assertThat(snapshot.getPercentile(50)).isEqualTo(3);
+        assertThat(snapshot.getPercentile(80)).isEqualTo(127);
+        assertThat(snapshot.getPercentile(100)).isEqualTo(1000);
+        assertThat(snapshot.getMean()).isEqualTo(1106 / 6.0);
+        assertThat(Histogram.upperBound(Histogram.bucket(1000))).isEqualTo(1023);
+    }
+}
@@ -0,0 +1,197 @@
+/**
+ * This file is part of evdev-java - Java implementation.
+ *
+ * evdev-java - Java implementation is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * evdev-java - Java implementation is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with evdev-java - Java implementation.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.dgis.input.evdev;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.junit.Assume.assumeTrue;
+
+public class EventDevicePoolTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final DeviceInfo keyboard = DeviceInfo.builder("Synthetic Keyboard")
+            .capabilities(DeviceCapabilities.builder().add(InputEvent.EV_KEY, InputEvent.KEY_A).build())
+            .build();
+
+    private final EventDevicePool pool = new EventDevicePool(null, node -> new NamedPipeSource(node, keyboard));
+
+    private Fifo fifo;
+
+    @Before
+    public void setUp() throws Exception {
+        fifo = new Fifo(folder.getRoot().toPath().resolve("event0").toFile());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        fifo.close();
+    }
+
+    @Test
+    public void sharesOneDevicePerNode() throws Exception {
+        File link = folder.getRoot().toPath().resolve("by-id-keyboard").toFile();
+        Files.createSymbolicLink(link.toPath(), fifo.getFile().toPath());
+
+        try (EventDeviceHandle first = pool.acquire(fifo.getFile());
+             EventDeviceHandle second = pool.acquire(link)) {
+            assertThat(second.getDevice()).isSameAs(first.getDevice());
+            assertThat(pool.getOpenCount()).isEqualTo(1);
+            assertThat(pool.getReferenceCount(fifo.getFile())).isEqualTo(2);
+        }
+        assertThat(pool.getOpenCount()).isZero();
+    }
+
+    @Test
+    public void fansOutAndRemovesListenersOfClosedHandles() throws Exception {
+        assumeTrue(System.getProperty("os.arch").equals("amd64"));
+        EventDeviceHandle first = pool.acquire(fifo.getFile());
+        EventDeviceHandle second = pool.acquire(fifo.getFile());
+        AtomicInteger firstEvents = new AtomicInteger();
+        CountDownLatch firstReceived = new CountDownLatch(1);
+        CountDownLatch secondReceived = new CountDownLatch(2);
+        first.addListener((int deviceId, long timestampNanos, int type, int code, int value) -> {
+            firstEvents.incrementAndGet();
+            firstReceived.countDown();
+        });
+        second.addListener((int deviceId, long timestampNanos, int type, int code, int value) ->
+                secondReceived.countDown());
+
+        fifo.write(1, 0, InputEvent.EV_KEY, InputEvent.KEY_A, 1);
+        assertThat(firstReceived.await(5, TimeUnit.SECONDS)).isTrue();
+
+        first.close();
+        fifo.write(1, 0, InputEvent.EV_KEY, InputEvent.KEY_A, 0);
+        assertThat(secondReceived.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(firstEvents.get()).isEqualTo(1);
+        /* once closed, the reader is done counting */
+        EventDevice device = second.getDevice();
+        second.close();
+        assertThat(device.getEventCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void removesMaskedAndBatchListenersOfClosedHandles() {
+        DetachedDevice device = new DetachedDevice(keyboard.getCapabilities());
+        EventDeviceHandle first = new EventDeviceHandle(device, () -> {
+        });
+        EventDeviceHandle second = new EventDeviceHandle(device, () -> {
+        });
+        AtomicInteger firstEvents = new AtomicInteger();
+        AtomicInteger secondEvents = new AtomicInteger();
+        RawInputListener listener = (deviceId, timestampNanos, type, code, value) -> firstEvents.incrementAndGet();
+        EventMask keys = EventMask.builder().type(InputEvent.EV_KEY).build();
+        first.addListener(listener, keys);
+        first.addBatchListener(batch -> firstEvents.addAndGet(batch.size()));
+        second.addListener(listener, keys);
+        second.addBatchListener(batch -> secondEvents.addAndGet(batch.size()));
+
+        device.send(InputEvent.EV_KEY, InputEvent.KEY_A, 1);
+        device.flush();
+        assertThat(firstEvents.get()).isEqualTo(3);
+        assertThat(secondEvents.get()).isEqualTo(1);
+
+        first.close();
+        device.send(InputEvent.EV_KEY, InputEvent.KEY_A, 0);
+        device.flush();
+        assertThat(firstEvents.get()).isEqualTo(4);
+        assertThat(secondEvents.get()).isEqualTo(2);
+
+        second.removeListener(listener);
+        device.send(InputEvent.EV_KEY, InputEvent.KEY_A, 1);
+        device.flush();
+        assertThat(firstEvents.get()).isEqualTo(4);
+        assertThat(secondEvents.get()).isEqualTo(3);
+        second.close();
+    }
+
+    @Test
+    public void opensAgainOnceEveryHandleIsReleased() throws Exception {
+        EventDeviceHandle handle = pool.acquire(fifo.getFile());
+        EventDevice device = handle.getDevice();
+        handle.close();
+        handle.close();
+        assertThat(handle.isClosed()).isTrue();
+        assertThat(pool.getReferenceCount(fifo.getFile())).isZero();
+        try {
+            handle.addFrameListener(frame -> {
+            });
+            fail("A closed handle takes no listener");
+        } catch (IllegalStateException expected) {
+        }
+
+        try (EventDeviceHandle again = pool.acquire(fifo.getFile())) {
+            assertThat(again.getDevice()).isNotSameAs(device);
+        }
+    }
+
+    @Test
+    public void opensOtherNodesWhileOneIsSlowToOpen() throws Exception {
+        CountDownLatch opening = new CountDownLatch(1);
+        CountDownLatch failing = new CountDownLatch(1);
+        EventDevicePool slowPool = new EventDevicePool(null, node -> {
+            if (!node.getName().equals("slow")) {
+                return new NamedPipeSource(node, keyboard);
+            }
+            opening.countDown();
+            try {
+                failing.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            throw new IOException("No such device");
+        });
+        File slow = folder.getRoot().toPath().resolve("slow").toFile();
+        CompletableFuture<EventDeviceHandle> slowHandle = CompletableFuture.supplyAsync(() -> {
+            try {
+                return slowPool.acquire(slow);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertThat(opening.await(5, TimeUnit.SECONDS)).isTrue();
+
+        try (EventDeviceHandle handle = slowPool.acquire(fifo.getFile())) {
+            assertThat(slowPool.getReferenceCount(fifo.getFile())).isEqualTo(1);
+        }
+        failing.countDown();
+        try {
+            slowHandle.get(5, TimeUnit.SECONDS);
+            fail("The slow node failed to open");
+        } catch (ExecutionException expected) {
+            assertThat(expected).hasRootCauseInstanceOf(IOException.class);
+        }
+        assertThat(slowPool.getReferenceCount(slow)).isZero();
+        assertThat(slowPool.getOpenCount()).isZero();
+    }
+}
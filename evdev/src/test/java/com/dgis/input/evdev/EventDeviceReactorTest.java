@@ -0,0 +1,219 @@
+/**
+ * This file is part of evdev-java - Java implementation.
+ *
+ * evdev-java - Java implementation is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * evdev-java - Java implementation is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with evdev-java - Java implementation.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.dgis.input.evdev;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.Assume.assumeTrue;
+
+public class EventDeviceReactorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Before
+    public void amd64Only() {
+        assumeTrue(System.getProperty("os.arch").equals("amd64"));
+    }
+
+    @Test
+    public void readsManyDevicesWithFewThreads() throws Exception {
+        int deviceCount = 12;
+        int eventsPerDevice = 100;
+        CountDownLatch received = new CountDownLatch(deviceCount * eventsPerDevice);
+        AtomicInteger lastValue = new AtomicInteger();
+        List<AtomicInteger> counts = new ArrayList<>();
+        List<Fifo> fifos = new ArrayList<>();
+        List<EventDevice> devices = new ArrayList<>();
+
+        try (EventDeviceReactor reactor = new EventDeviceReactor(3)) {
+            for (int i = 0; i < deviceCount; i++) {
+                Fifo fifo = new Fifo(folder.getRoot().toPath().resolve("event" + i).toFile());
+                fifos.add(fifo);
+                EventDevice device = new EventDevice(fifo.getFile(), reactor);
+                AtomicInteger count = new AtomicInteger();
+                counts.add(count);
+                device.addListener((int deviceId, long timestampNanos, int type, int code, int value) -> {
+                    lastValue.set(value);
+                    count.incrementAndGet();
+                    received.countDown();
+                });
+                devices.add(device);
+            }
+            assertThat(reactor.getDeviceCounts()).containsExactly(4, 4, 4);
+
+            for (int n = 0; n < eventsPerDevice; n++) {
+                for (Fifo fifo : fifos) {
+                    fifo.write(1, 2, InputEvent.EV_KEY, InputEvent.KEY_A, n);
+                }
+            }
+
+            assertThat(received.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(lastValue.get()).isEqualTo(eventsPerDevice - 1);
+            for (AtomicInteger count : counts) {
+                assertThat(count.get()).isEqualTo(eventsPerDevice);
+            }
+
+            for (EventDevice device : devices) {
+                device.close();
+            }
+            assertThat(reactor.getDeviceCounts()).containsExactly(0, 0, 0);
+        } finally {
+            for (Fifo fifo : fifos) {
+                fifo.close();
+            }
+        }
+    }
+
+    @Test
+    public void releasesTheSourceWhenTheReactorIsClosed() throws Exception {
+        EventDeviceReactor reactor = new EventDeviceReactor();
+        reactor.close();
+        AtomicInteger closes = new AtomicInteger();
+        Fifo fifo = new Fifo(folder.getRoot().toPath().resolve("event0").toFile());
+        try {
+            EventSource source = new NamedPipeSource(fifo.getFile(), DeviceInfo.builder("pipe").build()) {
+                @Override
+                public void close() {
+                    closes.incrementAndGet();
+                    super.close();
+                }
+            };
+            assertThatThrownBy(() -> new EventDevice(source, EventDevice.DEFAULT_BATCH_CAPACITY, reactor))
+                    .isInstanceOf(IOException.class).hasMessageContaining("closed");
+            assertThat(closes.get()).isEqualTo(1);
+        } finally {
+            fifo.close();
+        }
+    }
+
+    @Test
+    public void releasesDevicesOfAClosedReactor() throws Exception {
+        EventDeviceReactor reactor = new EventDeviceReactor();
+        Fifo fifo = new Fifo(folder.getRoot().toPath().resolve("event0").toFile());
+        try {
+            EventDevice device = new EventDevice(fifo.getFile(), reactor);
+            while (reactor.getDeviceCounts()[0] != 1) Thread.yield();
+            reactor.close();
+            device.close();
+            assertThat(reactor.getDeviceCounts()).containsExactly(0);
+        } finally {
+            fifo.close();
+        }
+    }
+
+    @Test
+    public void closesTheSourceOnlyOnceTheLoopLetsGo() throws Exception {
+        CountDownLatch busy = new CountDownLatch(1);
+        CountDownLatch resume = new CountDownLatch(1);
+        AtomicInteger closes = new AtomicInteger();
+        try (EventDeviceReactor reactor = new EventDeviceReactor();
+             Fifo slowFifo = new Fifo(folder.getRoot().toPath().resolve("event0").toFile());
+             Fifo fifo = new Fifo(folder.getRoot().toPath().resolve("event1").toFile())) {
+            EventDevice slow = new EventDevice(slowFifo.getFile(), reactor);
+            slow.addListener((int deviceId, long timestampNanos, int type, int code, int value) -> {
+                busy.countDown();
+                try {
+                    resume.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            EventSource source = new NamedPipeSource(fifo.getFile(), DeviceInfo.builder("pipe").build()) {
+                @Override
+                public void close() {
+                    closes.incrementAndGet();
+                    super.close();
+                }
+            };
+            EventDevice device = new EventDevice(source, EventDevice.DEFAULT_BATCH_CAPACITY, reactor);
+
+            slowFifo.write(1, 0, InputEvent.EV_KEY, InputEvent.KEY_A, 1);
+            assertThat(busy.await(5, TimeUnit.SECONDS)).isTrue();
+            device.close();
+            /* the loop is stuck in a listener, and may still watch the fd */
+            assertThat(closes.get()).isZero();
+
+            resume.countDown();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (closes.get() == 0 && System.nanoTime() < deadline) Thread.yield();
+            assertThat(closes.get()).isEqualTo(1);
+            assertThat(reactor.getDeviceCounts()).containsExactly(1);
+            slow.close();
+        }
+    }
+
+    @Test
+    public void releasesTheSourceWhenClosingRacesWithTheReactor() throws Exception {
+        for (int round = 0; round < 20; round++) {
+            EventDeviceReactor reactor = new EventDeviceReactor();
+            AtomicInteger closes = new AtomicInteger();
+            try (Fifo fifo = new Fifo(folder.newFolder().toPath().resolve("event0").toFile())) {
+                EventSource source = new NamedPipeSource(fifo.getFile(), DeviceInfo.builder("pipe").build()) {
+                    @Override
+                    public void close() {
+                        closes.incrementAndGet();
+                        super.close();
+                    }
+                };
+                EventDevice device = new EventDevice(source, EventDevice.DEFAULT_BATCH_CAPACITY, reactor);
+                CountDownLatch start = new CountDownLatch(1);
+                Thread closer = new Thread(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    reactor.close();
+                });
+                closer.start();
+                start.countDown();
+                device.close();
+                closer.join();
+                assertThat(closes.get()).isEqualTo(1);
+                assertThat(reactor.getDeviceCounts()).containsExactly(0);
+            }
+        }
+    }
+
+    @Test
+    public void batchesEventsReadyAtOnce() throws Exception {
+        CountDownLatch received = new CountDownLatch(64);
+        try (EventDeviceReactor reactor = new EventDeviceReactor();
+             Fifo fifo = new Fifo(folder.newFolder().toPath().resolve("event0").toFile())) {
+            EventDevice device = new EventDevice(fifo.getFile(), reactor);
+            device.addListener((int deviceId, long timestampNanos, int type, int code, int value) -> received.countDown());
+            fifo.writeBatch(64, InputEvent.EV_REL, InputEvent.REL_X);
+            assertThat(received.await(5, TimeUnit.SECONDS)).isTrue();
+            device.close();
+            assertThat(device.getReadCount()).isEqualTo(1);
+            assertThat(device.getSyscallsPerEvent()).isEqualTo(1.0 / 64);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/**
+ * This file is part of evdev-java - Java implementation.
+ *
+ * evdev-java - Java implementation is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * evdev-java - Java implementation is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with evdev-java - Java implementation.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.dgis.input.evdev;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+public class EventDeviceTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Fifo fifo;
+
+    @Before
+    public void createFifo() throws Exception {
+        assumeTrue(System.getProperty("os.arch").equals("amd64"));
+        fifo = new Fifo(folder.getRoot().toPath().resolve("event0").toFile());
+    }
+
+    @Test
+    public void deliversEvents() throws Exception {
+        CountDownLatch received = new CountDownLatch(3);
+        EventDevice device = new EventDevice(fifo.getFile());
+        try {
+            device.addListener((int deviceId, long timestampNanos, int type, int code, int value) -> {
+                assertThat(deviceId).isEqualTo(device.getDeviceId());
+                assertThat(timestampNanos).isEqualTo(5000006000L);
+                received.countDown();
+            });
+            fifo.write(5, 6, InputEvent.EV_KEY, InputEvent.KEY_A, 1);
+            fifo.write(5, 6, InputEvent.EV_KEY, InputEvent.KEY_A, 0);
+            fifo.write(5, 6, InputEvent.EV_SYN, InputEvent.SYN_REPORT, 0);
+            assertThat(received.await(5, TimeUnit.SECONDS)).isTrue();
+        } finally {
+            device.close();
+            fifo.close();
+        }
+    }
+
+    @Test
+    public void discardsFrameBrokenBySynDropped() throws Exception {
+        List<Integer> codes = new CopyOnWriteArrayList<>();
+        CountDownLatch received = new CountDownLatch(3);
+        EventDevice device = new EventDevice(fifo.getFile());
+        try {
+            device.addListener((int deviceId, long timestampNanos, int type, int code, int value) -> {
+                codes.add(code);
+                received.countDown();
+            });
+            fifo.write(1, 0, InputEvent.EV_KEY, InputEvent.KEY_A, 1);
+            fifo.write(1, 0, InputEvent.EV_SYN, InputEvent.SYN_DROPPED, 0);
+            fifo.write(1, 0, InputEvent.EV_KEY, InputEvent.KEY_B, 1);
+            fifo.write(1, 0, InputEvent.EV_SYN, InputEvent.SYN_REPORT, 0);
+            fifo.write(1, 0, InputEvent.EV_KEY, InputEvent.KEY_C, 1);
+            assertThat(received.await(5, TimeUnit.SECONDS)).isTrue();
+
+            assertThat(codes).containsExactly((int) InputEvent.KEY_A, (int) InputEvent.SYN_REPORT, (int) InputEvent.KEY_C);
+            assertThat(device.getDropCount()).isEqualTo(1);
+        } finally {
+            device.close();
+            fifo.close();
+        }
+    }
+
+    @Test
+    public void derivesEventMaskFromListeners() throws Exception {
+        EventDevice device = new EventDevice(fifo.getFile());
+        try {
+            KeyListener keys = new KeyListener();
+            device.addListener(keys);
+            assertThat(device.getEventMask()).isEqualTo(keys.getEventMask());
+
+            RawInputListener everything = (deviceId, timestampNanos, type, code, value) -> {
+            };
+            device.addListener(everything);
+            assertThat(device.getEventMask()).isEqualTo(EventMask.ALL);
+
+            device.removeListener(everything);
+            assertThat(device.getEventMask()).isEqualTo(keys.getEventMask());
+            /* a FIFO is no evdev node, the kernel cannot mask it */
+            assertThat(device.setEventMask(EventMask.NONE)).isFalse();
+            assertThat(device.getEventMask()).isEqualTo(EventMask.NONE);
+            assertThat(device.getKernelEventMask()).isNull();
+        } finally {
+            device.close();
+            fifo.close();
+        }
+    }
+
+    private static class KeyListener implements RawInputListener, EventMaskProvider {
+
+        @Override
+        public EventMask getEventMask() {
+            return EventMask.builder().type(InputEvent.EV_KEY).build();
+        }
+
+        @Override
+        public void onEvent(int deviceId, long timestampNanos, int type, int code, int value) {
+        }
+    }
+
+    @Test
+    public void closeDoesNotWaitForInput() throws Exception {
+        EventDevice device = new EventDevice(fifo.getFile());
+        Thread.sleep(50);
+
+        long start = System.nanoTime();
+        device.close();
+        long shutdownMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        fifo.close();
+
+        assertThat(shutdownMillis).isLessThan(500);
+        assertThat(device.getEmptyWakeupCount()).isZero();
+    }
+
+    @Test
+    public void parksWhenDeviceIsRemoved() throws Exception {
+        CountDownLatch removed = new CountDownLatch(1);
+        EventDevice device = new EventDevice(fifo.getFile());
+        device.addDeviceRemovedListener(d -> removed.countDown());
+
+        fifo.close();
+        assertThat(removed.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(device.isRemoved()).isTrue();
+
+        long wakeups = device.getWakeupCount();
+        Thread.sleep(200);
+        assertThat(device.getWakeupCount()).isEqualTo(wakeups);
+
+        long start = System.nanoTime();
+        device.close();
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(500);
+    }
+}
@@ -0,0 +1,82 @@
+/**
+ * This file is part of evdev-java - Java implementation.
+ *
+ * evdev-java - Java implementation is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * evdev-java - Java implementation is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with evdev-java - Java implementation.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.dgis.input.evdev;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class EventFrameTest {
+
+    private final DetachedDevice device = new DetachedDevice(DeviceCapabilities.builder()
+            .add(InputEvent.EV_REL, InputEvent.REL_X, InputEvent.REL_Y)
+            .build());
+
+    @Test
+    public void deliversOneReusedFramePerSynReport() {
+        List<String> frames = new ArrayList<>();
+        List<EventFrame> instances = new ArrayList<>();
+        device.addFrameListener(frame -> {
+            frames.add(frame.size() + "@" + frame.getTimestampNanos() + ":" + frame.getValue(frame.size() - 1));
+            instances.add(frame);
+        });
+
+        device.send(1, InputEvent.EV_REL, InputEvent.REL_X, 3);
+        device.send(1, InputEvent.EV_REL, InputEvent.REL_Y, 4);
+        device.send(2, InputEvent.EV_SYN, InputEvent.SYN_REPORT, 0);
+        device.send(3, InputEvent.EV_REL, InputEvent.REL_X, -1);
+        device.send(4, InputEvent.EV_SYN, InputEvent.SYN_REPORT, 0);
+
+        assertThat(frames).containsExactly("2@2:4", "1@4:-1");
+        assertThat(instances.get(0)).isSameAs(instances.get(1));
+    }
+
+    @Test
+    public void growsOnceThenReuses() {
+        List<Integer> capacities = new ArrayList<>();
+        device.addFrameListener(frame -> {
+            assertThat(frame.lastIndexOf(InputEvent.EV_REL, InputEvent.REL_Y)).isEqualTo(frame.size() - 1);
+            capacities.add(frame.capacity());
+        });
+
+        for (int pass = 0; pass < 3; pass++) {
+            for (int i = 0; i < 20; i++) {
+                device.send(pass, InputEvent.EV_REL, InputEvent.REL_X, i);
+            }
+            device.send(pass, InputEvent.EV_REL, InputEvent.REL_Y, 1);
+            device.send(pass, InputEvent.EV_SYN, InputEvent.SYN_REPORT, 0);
+        }
+
+        assertThat(capacities).hasSize(3);
+        assertThat(capacities.get(0)).isGreaterThanOrEqualTo(21).isEqualTo(capacities.get(2));
+    }
+
+    @Test
+    public void replaysFrameAsEvents() {
+        List<Integer> codes = new ArrayList<>();
+        device.addFrameListener(frame -> frame.forEach(
+                (int deviceId, long timestampNanos, int type, int code, int value) -> codes.add(code)));
+
+        device.send(1, InputEvent.EV_REL, InputEvent.REL_Y, 1);
+        device.send(1, InputEvent.EV_SYN, InputEvent.SYN_REPORT, 0);
+
+        assertThat(codes).containsExactly((int) InputEvent.REL_Y, (int) InputEvent.SYN_REPORT);
+    }
+}
@@ -0,0 +1,104 @@
+/**
+ * This file is part of evdev-java - Java implementation.
+ *
+ * evdev-java - Java implementation is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * evdev-java - Java implementation is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with evdev-java - Java implementation.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.dgis.input.evdev;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class EventMaskTest {
+
+    private final EventMask keys = EventMask.builder().type(InputEvent.EV_KEY).build();
+
+    private final EventMask pointer = EventMask.builder()
+            .add(InputEvent.EV_REL, InputEvent.REL_X, InputEvent.REL_Y)
+            .add(InputEvent.EV_KEY, InputEvent.BTN_LEFT)
+            .build();
+
+    @Test
+    public void alwaysIncludesSyn() {
+        assertThat(EventMask.NONE.includes(InputEvent.EV_SYN, InputEvent.SYN_REPORT)).isTrue();
+        assertThat(EventMask.NONE.includes(InputEvent.EV_KEY)).isFalse();
+        assertThat(pointer.includes(InputEvent.EV_SYN, InputEvent.SYN_REPORT)).isTrue();
+    }
+
+    @Test
+    public void answersLookups() {
+        assertThat(keys.includesAllCodes(InputEvent.EV_KEY)).isTrue();
+        assertThat(keys.includes(InputEvent.EV_KEY, InputEvent.KEY_A)).isTrue();
+        assertThat(keys.includes(InputEvent.EV_ABS)).isFalse();
+        assertThat(pointer.includes(InputEvent.EV_REL, InputEvent.REL_Y)).isTrue();
+        assertThat(pointer.includes(InputEvent.EV_REL, InputEvent.REL_WHEEL)).isFalse();
+        assertThat(pointer.includesAllCodes(InputEvent.EV_KEY)).isFalse();
+        assertThat(EventMask.builder().add(InputEvent.EV_ABS).build()).isEqualTo(EventMask.NONE);
+    }
+
+    @Test
+    public void unionKeepsTheWiderMaskOfEachType() {
+        EventMask wheel = EventMask.builder().add(InputEvent.EV_REL, InputEvent.REL_WHEEL).build();
+        EventMask union = keys.union(pointer).union(wheel);
+
+        assertThat(union.includesAllCodes(InputEvent.EV_KEY)).isTrue();
+        assertThat(union.includes(InputEvent.EV_REL, InputEvent.REL_X)).isTrue();
+        assertThat(union.includes(InputEvent.EV_REL, InputEvent.REL_WHEEL)).isTrue();
+        assertThat(union.includes(InputEvent.EV_REL, InputEvent.REL_HWHEEL)).isFalse();
+        assertThat(union.includes(InputEvent.EV_ABS)).isFalse();
+        assertThat(union.union(EventMask.ALL)).isSameAs(EventMask.ALL);
+        assertThat(pointer.union(EventMask.NONE)).isSameAs(pointer);
+    }
+
+    @Test
+    public void roundTripsThroughKernelBitmaps() {
+        long[][] bitmaps = new long[InputEvent.EV_CNT][];
+        for (int type = 0; type < InputEvent.EV_CNT; type++) {
+            if (EventMask.kernelCodeCount(type) == 0) continue;
+            bitmaps[type] = new long[Bits.longs(InputEvent.KEY_CNT)];
+            keys.union(pointer).toKernelBitmap(type, bitmaps[type]);
+        }
+        assertThat(bitmaps[InputEvent.EV_SYN][0])
+                .isEqualTo(1L << InputEvent.EV_SYN | 1L << InputEvent.EV_KEY | 1L << InputEvent.EV_REL);
+        assertThat(bitmaps[InputEvent.EV_ABS]).containsOnly(0L);
+
+        assertThat(EventMask.fromKernelBitmaps(bitmaps)).isEqualTo(keys.union(pointer));
+    }
+
+    @Test
+    public void unmasksEveryTypeWhenTheKernelRefusesOne() {
+        NativeEventDevice nativeEventDevice = mock(NativeEventDevice.class);
+        long[][] kernel = new long[InputEvent.EV_CNT][];
+        AtomicBoolean refuse = new AtomicBoolean();
+        when(nativeEventDevice.ioctlEVIOCSMASK(anyInt(), anyInt(), any(long[].class))).thenAnswer(invocation -> {
+            int type = invocation.getArgument(1);
+            /* the second type of the mask, once */
+            if (type == InputEvent.EV_KEY && refuse.getAndSet(false)) return -22;
+            kernel[type] = ((long[]) invocation.getArgument(2)).clone();
+            return 0;
+        });
+        assertThat(keys.writeTo(nativeEventDevice, 3)).isZero();
+        assertThat(EventMask.fromKernelBitmaps(kernel)).isEqualTo(keys);
+
+        refuse.set(true);
+        assertThat(pointer.writeTo(nativeEventDevice, 3)).isEqualTo(-22);
+        assertThat(EventMask.fromKernelBitmaps(kernel)).isEqualTo(EventMask.ALL);
+    }
+}
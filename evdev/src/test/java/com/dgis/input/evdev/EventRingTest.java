@@ -0,0 +1,152 @@
+/**
+ * This file is part of evdev-java - Java implementation.
+ *
+ * evdev-java - Java implementation is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * evdev-java - Java implementation is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with evdev-java - Java implementation.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.dgis.input.evdev;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class EventRingTest {
+
+    private final DetachedDevice device = new DetachedDevice(DeviceCapabilities.builder()
+            .add(InputEvent.EV_REL, InputEvent.REL_X)
+            .build());
+
+    private final List<EventRing> rings = new ArrayList<>();
+
+    private EventRing ring(int capacity) {
+        EventRing ring = new EventRing(capacity);
+        rings.add(ring);
+        return ring;
+    }
+
+    @After
+    public void tearDown() {
+        rings.forEach(EventRing::close);
+    }
+
+    private void send(int value) {
+        device.send(value, InputEvent.EV_REL, InputEvent.REL_X, value);
+    }
+
+    @Test
+    public void consumersReadEventsPublishedAfterTheyWereAdded() {
+        EventRing ring = ring(8);
+        device.addBatchListener(ring);
+        send(1);
+        device.flush();
+        EventRing.Consumer consumer = ring.addConsumer(EventRing.WaitStrategy.BUSY_SPIN);
+        for (int i = 2; i <= 4; i++) send(i);
+        device.flush();
+
+        List<Integer> values = new ArrayList<>();
+        assertThat(consumer.getLag()).isEqualTo(3);
+        assertThat(consumer.poll((deviceId, timestampNanos, type, code, value) -> {
+            assertThat(deviceId).isEqualTo(device.getDeviceId());
+            assertThat(timestampNanos).isEqualTo(value);
+            values.add(value);
+        })).isEqualTo(3);
+        assertThat(values).containsExactly(2, 3, 4);
+        assertThat(consumer.poll((deviceId, timestampNanos, type, code, value) -> values.add(value))).isZero();
+        assertThat(ring.getCursor()).isEqualTo(3);
+        assertThat(ring.getRemainingCapacity()).isEqualTo(8);
+        assertThatThrownBy(() -> new EventRing(12)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test(timeout = 10000)
+    public void slowestConsumerGatesThePublisher() throws Exception {
+        EventRing ring = ring(4);
+        EventRing.Consumer fast = ring.addConsumer(EventRing.WaitStrategy.YIELDING);
+        EventRing.Consumer slow = ring.addConsumer(EventRing.WaitStrategy.YIELDING);
+        Thread publisher = new Thread(() -> {
+            for (int i = 0; i < 10; i++) ring.onEvent(1, i, InputEvent.EV_REL, InputEvent.REL_X, i);
+        });
+        publisher.start();
+        List<Integer> fastValues = new ArrayList<>();
+        while (fastValues.size() < 4) {
+            fast.take((deviceId, timestampNanos, type, code, value) -> fastValues.add(value));
+        }
+        publisher.join(200);
+        assertThat(ring.getCursor()).isEqualTo(3);
+        assertThat(ring.getRemainingCapacity()).isZero();
+
+        List<Integer> slowValues = new ArrayList<>();
+        while (slowValues.size() < 10 || fastValues.size() < 10) {
+            slow.poll((deviceId, timestampNanos, type, code, value) -> slowValues.add(value));
+            fast.poll((deviceId, timestampNanos, type, code, value) -> fastValues.add(value));
+            Thread.yield();
+        }
+        publisher.join();
+        assertThat(slowValues).containsExactly(0, 1, 2, 3, 4, 5, 6, 7, 8, 9);
+        assertThat(fastValues).isEqualTo(slowValues);
+        assertThat(ring.getPublisherWaitCount()).isPositive();
+    }
+
+    @Test(timeout = 10000)
+    public void closingAConsumerReleasesThePublisher() throws Exception {
+        EventRing ring = ring(2);
+        EventRing.Consumer stalled = ring.addConsumer(EventRing.WaitStrategy.BLOCKING);
+        Thread publisher = new Thread(() -> {
+            for (int i = 0; i < 5; i++) ring.onEvent(1, i, InputEvent.EV_REL, InputEvent.REL_X, i);
+        });
+        publisher.start();
+        publisher.join(200);
+        assertThat(publisher.isAlive()).isTrue();
+
+        stalled.close();
+        publisher.join();
+        assertThat(ring.getCursor()).isEqualTo(4);
+        assertThat(ring.getConsumerCount()).isZero();
+        assertThat(stalled.take((deviceId, timestampNanos, type, code, value) -> { })).isEqualTo(-1);
+    }
+
+    @Test(timeout = 10000)
+    public void startedConsumersEachReceiveEveryEvent() throws Exception {
+        EventRing ring = ring(16);
+        device.addListener(ring);
+        List<List<Integer>> received = new ArrayList<>();
+        CountDownLatch done = new CountDownLatch(EventRing.WaitStrategy.values().length);
+        List<EventRing.Consumer> consumers = new ArrayList<>();
+        for (EventRing.WaitStrategy strategy : EventRing.WaitStrategy.values()) {
+            List<Integer> values = new CopyOnWriteArrayList<>();
+            received.add(values);
+            consumers.add(ring.startConsumer((deviceId, timestampNanos, type, code, value) -> {
+                if (value == 7) throw new IllegalStateException("listener bug");
+                values.add(value);
+                if (value == 99) done.countDown();
+            }, strategy));
+        }
+
+        for (int i = 0; i < 100; i++) send(i);
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        for (int i = 0; i < consumers.size(); i++) {
+            assertThat(received.get(i)).hasSize(99).doesNotContain(7);
+            assertThat(consumers.get(i).getFailureCount()).isEqualTo(1);
+            consumers.get(i).close();
+        }
+        assertThat(ring.getConsumerCount()).isZero();
+    }
+}
@@ -0,0 +1,192 @@
+/**
+ * This file is part of evdev-java - Java implementation.
+ *
+ * evdev-java - Java implementation is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * evdev-java - Java implementation is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with evdev-java - Java implementation.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.dgis.input.evdev;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.junit.Assume.assumeTrue;
+
+public class EventSourceTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final DeviceInfo mouse = DeviceInfo.builder("Synthetic Mouse")
+            .id((short) 3, (short) 0x46d, (short) 0xc077, (short) 0x111)
+            .capabilities(DeviceCapabilities.builder()
+                    .add(InputEvent.EV_KEY, InputEvent.BTN_LEFT)
+                    .add(InputEvent.EV_REL, InputEvent.REL_X, InputEvent.REL_Y)
+                    .add(InputEvent.EV_ABS, InputEvent.ABS_X)
+                    .build())
+            .absInfo(InputEvent.ABS_X, 0, -100, 100, 2, 4)
+            .build();
+
+    @Test
+    public void generatesEventsFromMemory() throws Exception {
+        MemorySource source = MemorySource.builder(mouse)
+                .event(InputEvent.EV_REL, InputEvent.REL_X, 1)
+                .event(InputEvent.EV_REL, InputEvent.REL_Y, -1)
+                .sync()
+                .repeat(1000)
+                .build();
+        AtomicInteger events = new AtomicInteger();
+        AtomicLong lastTimestamp = new AtomicLong();
+        AtomicInteger outOfOrder = new AtomicInteger();
+        CountDownLatch exhausted = new CountDownLatch(1);
+
+        EventDevice device = new EventDevice(source);
+        try {
+            device.addListener((int deviceId, long timestampNanos, int type, int code, int value) -> {
+                events.incrementAndGet();
+                if (timestampNanos < lastTimestamp.getAndSet(timestampNanos)) outOfOrder.incrementAndGet();
+            });
+            device.addDeviceRemovedListener(removed -> exhausted.countDown());
+            /* the source may be exhausted before the listener is added */
+            if (device.isRemoved()) exhausted.countDown();
+            assertThat(exhausted.await(5, TimeUnit.SECONDS)).isTrue();
+
+            assertThat(device.getDeviceName()).isEqualTo("Synthetic Mouse");
+            assertThat(device.getVendorID()).isEqualTo((short) 0x46d);
+            assertThat(device.getCapabilities().supports(InputEvent.EV_REL, InputEvent.REL_Y)).isTrue();
+            assertThat(device.getAxisParameters(InputEvent.ABS_X).getMax()).isEqualTo(100);
+            assertThat(device.getEventCount()).isEqualTo(3000);
+            assertThat(outOfOrder.get()).isZero();
+        } finally {
+            device.close();
+        }
+    }
+
+    @Test
+    public void replaysRecording() throws Exception {
+        File recording = folder.newFile("recording");
+        InputEventAbi abi = InputEventAbi.ARM32;
+        ByteBuffer structs = ByteBuffer.allocate(3 * abi.getStructSize()).order(ByteOrder.LITTLE_ENDIAN);
+        abi.encode(structs, 0, 1000000000L, InputEvent.EV_KEY, InputEvent.BTN_LEFT, 1);
+        abi.encode(structs, abi.getStructSize(), 1000000000L, InputEvent.EV_SYN, InputEvent.SYN_REPORT, 0);
+        abi.encode(structs, 2 * abi.getStructSize(), 1008000000L, InputEvent.EV_KEY, InputEvent.BTN_LEFT, 0);
+        Files.write(recording.toPath(), structs.array());
+
+        CountDownLatch exhausted = new CountDownLatch(1);
+        EventDevice device = new EventDevice(new RecordingSource(recording, mouse, false, abi));
+        try {
+            device.addDeviceRemovedListener(removed -> exhausted.countDown());
+            /* the source may be exhausted before the listener is added */
+            if (device.isRemoved()) exhausted.countDown();
+            assertThat(exhausted.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(device.getEventCount()).isEqualTo(3);
+        } finally {
+            device.close();
+        }
+    }
+
+    @Test
+    public void describesNamedPipeWithGivenInfo() throws Exception {
+        assumeTrue(System.getProperty("os.arch").equals("amd64"));
+        Fifo fifo = new Fifo(folder.getRoot().toPath().resolve("pipe").toFile());
+        CountDownLatch received = new CountDownLatch(1);
+        EventDevice device = new EventDevice(new NamedPipeSource(fifo.getFile(), mouse));
+        try {
+            device.addListener((int deviceId, long timestampNanos, int type, int code, int value) -> received.countDown());
+            fifo.write(1, 0, InputEvent.EV_REL, InputEvent.REL_X, 5);
+            assertThat(received.await(5, TimeUnit.SECONDS)).isTrue();
+
+            assertThat(device.getDeviceName()).isEqualTo("Synthetic Mouse");
+            assertThat(device.getAxisParameters(InputEvent.ABS_X).getFlat()).isEqualTo(4);
+        } finally {
+            device.close();
+            fifo.close();
+        }
+    }
+
+    @Test
+    public void reportsAFailingSourceAsRemoved() throws Exception {
+        CountDownLatch failing = new CountDownLatch(1);
+        EventSource source = new EventSource() {
+            @Override
+            public String getPath() {
+                return "failing";
+            }
+
+            @Override
+            public void open() {
+            }
+
+            @Override
+            public DeviceInfo getInfo() {
+                return mouse;
+            }
+
+            @Override
+            public int getFd() {
+                return -1;
+            }
+
+            @Override
+            public int read(ByteBuffer buffer, int position, int length) throws IOException {
+                try {
+                    failing.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new IOException("EIO");
+            }
+
+            @Override
+            public boolean readAbsInfo(int axis, int[] out) {
+                return false;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        EventDevice device = new EventDevice(source);
+        CountDownLatch removed = new CountDownLatch(1);
+        device.addDeviceRemovedListener(d -> removed.countDown());
+        failing.countDown();
+        try {
+            assertThat(removed.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(device.isRemoved()).isTrue();
+        } finally {
+            device.close();
+        }
+    }
+
+    @Test
+    public void reactorOnlyReadsFileDescriptors() throws Exception {
+        try (EventDeviceReactor reactor = new EventDeviceReactor()) {
+            new EventDevice(MemorySource.builder(mouse).sync().build(), EventDevice.DEFAULT_BATCH_CAPACITY, reactor);
+            fail("A memory source has no fd to poll");
+        } catch (IOException e) {
+            assertThat(e).hasMessageContaining("file descriptor");
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/**
+ * This file is part of evdev-java - Java implementation.
+ *
+ * evdev-java - Java implementation is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * evdev-java - Java implementation is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with evdev-java - Java implementation.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.dgis.input.evdev;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A named pipe standing in for an /dev/input/event* node in tests. The write end is opened read-write, so that
+ * opening it does not block waiting for a reader.
+ */
+class Fifo implements Closeable {
+
+    private final File file;
+    private final RandomAccessFile writer;
+    private final ByteBuffer struct = ByteBuffer.allocate(InputEvent.STRUCT_SIZE_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+    Fifo(File file) throws IOException, InterruptedException {
+        this.file = file;
+        Process mkfifo = new ProcessBuilder("mkfifo", file.getAbsolutePath()).start();
+        if (mkfifo.waitFor() != 0) {
+            throw new IOException("mkfifo failed for " + file);
+        }
+        writer = new RandomAccessFile(file, "rw");
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    /**
+     * Write one amd64 input_event struct.
+     */
+    void write(long timeSec, long timeMicroSec, int type, int code, int value) throws IOException {
+        struct.clear();
+        struct.putLong(timeSec).putLong(timeMicroSec).putShort((short) type).putShort((short) code).putInt(value);
+        writer.write(struct.array());
+    }
+
+    /**
+     * Write count amd64 input_event structs with a single write(), so that a reader gets them all at once.
+     */
+    void writeBatch(int count, int type, int code) throws IOException {
+        ByteBuffer batch = ByteBuffer.allocate(count * InputEvent.STRUCT_SIZE_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (int n = 0; n < count; n++) {
+            batch.putLong(1).putLong(2).putShort((short) type).putShort((short) code).putInt(n);
+        }
+        writer.write(batch.array());
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
@@ -19,9 +19,13 @@ package com.dgis.input.evdev;
 import org.junit.Test;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.AdditionalMatchers.aryEq;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class InputAxisParametersTest {
@@ -61,6 +65,55 @@ public class InputAxisParametersTest {
         assertThat(axisParameters.getFlat()).isEqualTo(8);
     }
 
+    @Test
+    public void readsParametersOnceUntilEventsAreLost() {
+        EventDevice eventDevice = mockEventDevice(2, 6);
+        InputAxisParameters axisParameters = new InputAxisParameters(eventDevice, 0);
+        assertThat(axisParameters.getMax()).isEqualTo(6);
+        assertThat(axisParameters.getMin()).isEqualTo(0);
+        assertThat(axisParameters.getFlat()).isEqualTo(0);
+        verify(eventDevice, times(1)).ioctlEVIOCGABS(any(), any(int[].class), anyInt());
+
+        when(eventDevice.getAbsInfoGeneration()).thenReturn(1L);
+        assertThat(axisParameters.getMax()).isEqualTo(6);
+        assertThat(axisParameters.getResolution()).isEqualTo(0);
+        verify(eventDevice, times(2)).ioctlEVIOCGABS(any(), any(int[].class), anyInt());
+    }
+
+    @Test
+    public void readsParametersAgainAfterAFailedRead() {
+        EventDevice eventDevice = mockEventDevice(2, 6);
+        when(eventDevice.ioctlEVIOCGABS(any(), any(int[].class), anyInt())).thenReturn(false);
+        InputAxisParameters axisParameters = new InputAxisParameters(eventDevice, 0);
+        assertThat(axisParameters.getMax()).isEqualTo(0);
+
+        when(eventDevice.ioctlEVIOCGABS(any(), any(int[].class), anyInt()))
+                .thenAnswer(invocation -> {
+                    int[] response = invocation.getArgument(1);
+                    response[2] = 6;
+                    return true;
+                });
+        assertThat(axisParameters.getMax()).isEqualTo(6);
+        assertThat(axisParameters.getMin()).isEqualTo(0);
+        verify(eventDevice, times(2)).ioctlEVIOCGABS(any(), any(int[].class), anyInt());
+    }
+
+    @Test
+    public void writesFieldOverCurrentParameters() {
+        EventDevice eventDevice = mockEventDevice(2, 6);
+        when(eventDevice.setAbsInfo(anyInt(), any(int[].class))).thenReturn(true);
+        InputAxisParameters axisParameters = new InputAxisParameters(eventDevice, 3);
+
+        assertThat(axisParameters.setFuzz(16)).isTrue();
+        verify(eventDevice).setAbsInfo(eq(3), aryEq(new int[]{0, 0, 6, 16, 0, 0}));
+        assertThat(axisParameters.getFuzz()).isEqualTo(16);
+        verify(eventDevice, times(1)).ioctlEVIOCGABS(any(), any(int[].class), anyInt());
+
+        when(eventDevice.setAbsInfo(anyInt(), any(int[].class))).thenReturn(false);
+        assertThat(axisParameters.setFlat(4)).isFalse();
+        assertThat(axisParameters.getFlat()).isEqualTo(0);
+    }
+
     private EventDevice mockEventDevice(final int position, final int value) {
         EventDevice eventDevice = mock(EventDevice.class);
         when(eventDevice.ioctlEVIOCGABS(any(), any(int[].class), anyInt()))
@@ -0,0 +1,69 @@
+/**
+ * This file is part of evdev-java - Java implementation.
+ *
+ * evdev-java - Java implementation is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * evdev-java - Java implementation is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with evdev-java - Java implementation.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.dgis.input.evdev;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class InputEventAbiTest {
+
+    @Test
+    public void roundTripsEveryLayout() {
+        for (InputEventAbi abi : InputEventAbi.values()) {
+            ByteBuffer buffer = ByteBuffer.allocate(2 * abi.getStructSize()).order(ByteOrder.LITTLE_ENDIAN);
+            abi.encode(buffer, abi.getStructSize(), 1234567891000L, InputEvent.EV_ABS, InputEvent.ABS_MT_SLOT, -7);
+
+            InputEventView event = abi.decode(buffer, abi.getStructSize(), 3, new InputEventView());
+            assertThat(event.getDeviceId()).isEqualTo(3);
+            assertThat(event.getTimestampNanos()).as(abi.name()).isEqualTo(1234567891000L);
+            assertThat(event.getType()).isEqualTo(InputEvent.EV_ABS);
+            assertThat(event.getCode()).isEqualTo(InputEvent.ABS_MT_SLOT);
+            assertThat(event.getValue()).isEqualTo(-7);
+        }
+    }
+
+    @Test
+    public void structSizes() {
+        assertThat(InputEventAbi.X86_64.getStructSize()).isEqualTo(InputEvent.STRUCT_SIZE_BYTES);
+        assertThat(InputEventAbi.AARCH64.getStructSize()).isEqualTo(InputEvent.STRUCT_SIZE_BYTES);
+        assertThat(InputEventAbi.ARM32.getStructSize()).isEqualTo(InputEvent.STRUCT_SIZE_BYTES_ARM);
+        assertThat(InputEventAbi.I386.getStructSize()).isEqualTo(InputEvent.STRUCT_SIZE_BYTES_ARM);
+        assertThat(InputEventAbi.TIME64_32.getStructSize()).isEqualTo(InputEvent.STRUCT_SIZE_BYTES_ARM);
+    }
+
+    @Test
+    public void time64ReadsSecondsPast2038() {
+        ByteBuffer buffer = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(0, 0x80000000).putInt(4, 999999).putShort(8, InputEvent.EV_KEY).putShort(10, (short) 0xffff);
+
+        assertThat(InputEventAbi.TIME64_32.timestampNanos(buffer, 0))
+                .isEqualTo(0x80000000L * 1000000000L + 999999000L);
+        assertThat(InputEventAbi.ARM32.timestampNanos(buffer, 0)).isNegative();
+        assertThat(InputEventAbi.TIME64_32.code(buffer, 0)).isEqualTo(0xffff);
+    }
+
+    @Test
+    public void fallsBackToArchitectureOnUnknownOverride() {
+        assertThat(InputEventAbi.detect("TIME64_32", "aarch64")).isEqualTo(InputEventAbi.TIME64_32);
+        assertThat(InputEventAbi.detect("time64", "aarch64")).isEqualTo(InputEventAbi.AARCH64);
+        assertThat(InputEventAbi.detect(null, "i686")).isEqualTo(InputEventAbi.I386);
+    }
+}
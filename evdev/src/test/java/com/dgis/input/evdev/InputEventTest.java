@@ -51,6 +51,42 @@ public class InputEventTest {
         assertThat(event.value).isEqualTo(10 + (11 << 16));
     }
 
+    @Test
+    public void parsingDoesNotSignExtendHalves() {
+        ShortBuffer buffer = ShortBuffer.allocate(12);
+        write(buffer, 0x8000, 0x7000, 0, 0);
+        write(buffer, 0xffff, 0, 0, 0);
+        buffer.put(EV_KEY.getValue());
+        buffer.put((short) 9);
+        write(buffer, 0x8001, 0);
+
+        buffer.rewind();
+
+        InputEvent event = InputEvent.parse(buffer, "source", "amd64");
+        assertThat(event.timeSec).isEqualTo(0x70008000L);
+        assertThat(event.timeMicroSec).isEqualTo(0xffffL);
+        assertThat(event.value).isEqualTo(0x8001);
+        assertThat(event.getTimestampNanos()).isEqualTo(0x70008000L * 1000000000L + 0xffffL * 1000L);
+    }
+
+    @Test
+    public void createFromPrimitiveFields() {
+        InputEvent event = new InputEventView().set(1, 3000004000L, EV_KEY.getValue(), 9, -1).toInputEvent("source");
+        assertThat(event.source).isEqualTo("source");
+        assertThat(event.timeSec).isEqualTo(3L);
+        assertThat(event.timeMicroSec).isEqualTo(4L);
+        assertThat(event.type).isEqualTo(EV_KEY);
+        assertThat(event.code).isEqualTo((short) 9);
+        assertThat(event.value).isEqualTo(-1);
+    }
+
+    @Test
+    public void adaptersWrappingTheSameListenerAreEqual() {
+        InputListener listener = e -> { };
+        assertThat(new InputListenerAdapter(listener, "a")).isEqualTo(new InputListenerAdapter(listener, "b"));
+        assertThat(new InputListenerAdapter(listener, "a")).isNotEqualTo(new InputListenerAdapter(e -> { }, "a"));
+    }
+
     private void write(ShortBuffer buffer, int s0, int s1, int s2, int s3) {
         buffer.put((short) s0);
         buffer.put((short) s1);
@@ -0,0 +1,140 @@
+/**
+ * This file is part of evdev-java - Java implementation.
+ *
+ * evdev-java - Java implementation is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * evdev-java - Java implementation is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with evdev-java - Java implementation.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.dgis.input.evdev;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class InputStateViewTest {
+
+    private final DetachedDevice device = new DetachedDevice(DeviceCapabilities.builder()
+            .add(InputEvent.EV_KEY, InputEvent.BTN_LEFT)
+            .add(InputEvent.EV_REL, InputEvent.REL_X)
+            .add(InputEvent.EV_ABS, InputEvent.ABS_X, InputEvent.ABS_Y)
+            .build());
+
+    @Test
+    public void reportsStateAndEdgesSinceLastRead() {
+        InputStateView state = device.getInputState();
+        assertThat(device.getInputState()).isSameAs(state);
+        InputStateView.Snapshot snapshot = state.read(state.newSnapshot());
+
+        device.send(InputEvent.EV_KEY, InputEvent.BTN_LEFT, 1);
+        device.send(InputEvent.EV_REL, InputEvent.REL_X, 3);
+        device.send(InputEvent.EV_ABS, InputEvent.ABS_X, 100);
+        device.sync(1);
+        device.send(InputEvent.EV_REL, InputEvent.REL_X, 4);
+        device.sync(2);
+
+        state.read(snapshot);
+        assertThat(snapshot.isKeyDown(InputEvent.BTN_LEFT)).isTrue();
+        assertThat(snapshot.wasPressed(InputEvent.BTN_LEFT)).isTrue();
+        assertThat(snapshot.wasReleased(InputEvent.BTN_LEFT)).isFalse();
+        assertThat(snapshot.getRelative(InputEvent.REL_X)).isEqualTo(7);
+        assertThat(snapshot.getAxis(InputEvent.ABS_X)).isEqualTo(100);
+        assertThat(snapshot.getNewFrames()).isEqualTo(2);
+        assertThat(snapshot.getTimestampNanos()).isEqualTo(2);
+
+        state.read(snapshot);
+        assertThat(snapshot.isKeyDown(InputEvent.BTN_LEFT)).isTrue();
+        assertThat(snapshot.wasPressed(InputEvent.BTN_LEFT)).isFalse();
+        assertThat(snapshot.getRelative(InputEvent.REL_X)).isZero();
+        assertThat(snapshot.getNewFrames()).isZero();
+    }
+
+    @Test
+    public void catchesTapsBetweenReads() {
+        InputStateView state = device.getInputState();
+        InputStateView.Snapshot snapshot = state.read(state.newSnapshot());
+
+        device.send(InputEvent.EV_KEY, InputEvent.BTN_LEFT, 1);
+        device.sync(1);
+        device.send(InputEvent.EV_KEY, InputEvent.BTN_LEFT, 0);
+        device.sync(2);
+
+        state.read(snapshot);
+        assertThat(snapshot.isKeyDown(InputEvent.BTN_LEFT)).isFalse();
+        assertThat(snapshot.wasPressed(InputEvent.BTN_LEFT)).isTrue();
+        assertThat(snapshot.wasReleased(InputEvent.BTN_LEFT)).isTrue();
+    }
+
+    @Test
+    public void neverExposesHalfAFrame() throws Exception {
+        InputStateView state = device.getInputState();
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread writer = new Thread(() -> {
+            for (int value = 0; running.get(); value++) {
+                device.send(InputEvent.EV_ABS, InputEvent.ABS_X, value);
+                device.send(InputEvent.EV_ABS, InputEvent.ABS_Y, value);
+                device.sync(value);
+            }
+        });
+        writer.start();
+        try {
+            InputStateView.Snapshot snapshot = state.newSnapshot();
+            for (int i = 0; i < 100000; i++) {
+                state.read(snapshot);
+                assertThat(snapshot.getAxis(InputEvent.ABS_X)).isEqualTo(snapshot.getAxis(InputEvent.ABS_Y));
+            }
+        } finally {
+            running.set(false);
+            writer.join();
+        }
+    }
+
+    @Test
+    public void frameAppliedWhileLoadingIsNotOverwritten() throws Exception {
+        InputStateView state = new InputStateView(0);
+        EventFrame frame = new EventFrame(device.getDeviceId());
+        frame.add(InputEvent.EV_ABS, InputEvent.ABS_X, 5);
+        frame.close(1);
+        Thread reader = new Thread(() -> state.apply(frame));
+
+        boolean loaded = state.load(() -> {
+            /* the frame happens after the kernel state was read, and reaches the view before the load */
+            byte[] kernelState = new byte[NativeEventDevice.STATE_SIZE];
+            ByteBuffer.wrap(kernelState).order(ByteOrder.LITTLE_ENDIAN)
+                    .putInt(NativeEventDevice.STATE_ABS_OFFSET + 4 * InputEvent.ABS_X, 1);
+            reader.start();
+            while (reader.getState() != Thread.State.WAITING) {
+                Thread.yield();
+            }
+            return kernelState;
+        });
+        reader.join();
+
+        assertThat(loaded).isTrue();
+        InputStateView.Snapshot snapshot = state.read(state.newSnapshot());
+        assertThat(snapshot.getAxis(InputEvent.ABS_X)).isEqualTo(5);
+        assertThat(snapshot.getTimestampNanos()).isEqualTo(1);
+    }
+
+    @Test
+    public void leavesViewAloneWhenStateCannotBeRead() {
+        InputStateView state = device.getInputState();
+        device.send(InputEvent.EV_ABS, InputEvent.ABS_X, 5);
+        device.sync(1);
+
+        assertThat(state.load(() -> null)).isFalse();
+        assertThat(state.read(state.newSnapshot()).getAxis(InputEvent.ABS_X)).isEqualTo(5);
+    }
+}
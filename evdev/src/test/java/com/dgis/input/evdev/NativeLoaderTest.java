@@ -0,0 +1,91 @@
+/**
+ * This file is part of evdev-java - Java implementation.
+ *
+ * evdev-java - Java implementation is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * evdev-java - Java implementation is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with evdev-java - Java implementation.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.dgis.input.evdev;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.Assume.assumeTrue;
+
+public class NativeLoaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final byte[] library = "not really a shared object".getBytes(StandardCharsets.US_ASCII);
+    private final String hash = NativeLoader.sha256(library);
+
+    @Test
+    public void hashesWithSha256() {
+        assertThat(NativeLoader.sha256(new byte[0]))
+                .isEqualTo("e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855");
+    }
+
+    @Test
+    public void extractsOnceIntoTheCache() throws Exception {
+        File cache = new File(folder.getRoot(), "cache");
+        File first = NativeLoader.extract(library, hash, cache);
+        assertThat(first).hasBinaryContent(library).hasParent(cache);
+        assertThat(first.getName()).contains(hash.substring(0, 16));
+
+        assertThat(first.setLastModified(1000)).isTrue();
+        File second = NativeLoader.extract(library, hash, cache);
+        assertThat(second).isEqualTo(first);
+        assertThat(second.lastModified()).isEqualTo(1000);
+        assertThat(cache.list()).containsExactly(first.getName());
+    }
+
+    @Test
+    public void rewritesACorruptCachedCopy() throws Exception {
+        File cache = folder.getRoot();
+        File cached = NativeLoader.extract(library, hash, cache);
+        Files.write(cached.toPath(), "truncated".getBytes(StandardCharsets.US_ASCII));
+
+        assertThat(NativeLoader.extract(library, hash, cache)).isEqualTo(cached).hasBinaryContent(library);
+        assertThat(cache.list()).containsExactly(cached.getName());
+    }
+
+    @Test
+    public void keepsTheCacheToTheUser() throws Exception {
+        File cache = new File(folder.getRoot(), "cache");
+        NativeLoader.extract(library, hash, cache);
+        assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(cache.toPath()))).isEqualTo("rwx------");
+
+        File shared = folder.newFolder("shared");
+        Files.setPosixFilePermissions(shared.toPath(), PosixFilePermissions.fromString("rwxrwxrwx"));
+        assertThatThrownBy(() -> NativeLoader.extract(library, hash, shared))
+                .isInstanceOf(IOException.class).hasMessageContaining("writable by others");
+        assertThat(shared.list()).isEmpty();
+    }
+
+    @Test
+    public void loadsOnce() throws Exception {
+        assumeTrue(System.getProperty("os.arch").equals("amd64"));
+        NativeLoader.load();
+        NativeLoader.load();
+        assertThat(NativeLoader.isLoaded()).isTrue();
+    }
+}
@@ -0,0 +1,195 @@
+/**
+ * This file is part of evdev-java - Java implementation.
+ *
+ * evdev-java - Java implementation is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * evdev-java - Java implementation is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with evdev-java - Java implementation.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.dgis.input.evdev.devices;
+
+import com.dgis.input.evdev.DeviceCapabilities;
+import com.dgis.input.evdev.DeviceInfo;
+import com.dgis.input.evdev.EventDevice;
+import com.dgis.input.evdev.InputEvent;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class EvdevJoystickFilterTest {
+
+    private EvdevJoystickFilter filter;
+
+    private final List<String> changes = new ArrayList<>();
+
+    @Before
+    public void createFilter() {
+        EventDevice device = mock(EventDevice.class);
+        when(device.getDevicePath()).thenReturn("joystick");
+        DeviceCapabilities capabilities = DeviceCapabilities.builder()
+                .add(InputEvent.EV_KEY, InputEvent.BTN_TRIGGER, InputEvent.BTN_THUMB, InputEvent.BTN_TOP)
+                .add(InputEvent.EV_ABS, InputEvent.ABS_X, InputEvent.ABS_Y, InputEvent.ABS_HAT0X)
+                .build();
+        when(device.getCapabilities()).thenReturn(capabilities);
+        when(device.getDeviceInfo()).thenReturn(DeviceInfo.builder("joystick")
+                .capabilities(capabilities)
+                .absInfo(InputEvent.ABS_X, 128, 0, 255, 0, 15, 0)
+                .absInfo(InputEvent.ABS_Y, 128, 0, 255, 0, 15, 0)
+                .absInfo(InputEvent.ABS_HAT0X, 0, -1, 1, 0, 0, 0)
+                .build());
+        filter = new EvdevJoystickFilter(device);
+        filter.addListener(new RawJoystickListener() {
+            @Override
+            public void joystickMoved(int[] changedAxes, int count, JoystickState state, String source) {
+                for (int i = 0; i < count; i++) {
+                    changes.add("axis " + changedAxes[i] + "=" + state.getAxisState(changedAxes[i]));
+                }
+            }
+
+            @Override
+            public void buttonChanged(int[] changedButtons, int count, JoystickState state, String source) {
+                for (int i = 0; i < count; i++) {
+                    changes.add("button " + changedButtons[i] + "=" + state.getButtonState(changedButtons[i]));
+                }
+            }
+        });
+    }
+
+    @Test
+    public void reportsOnlyWhatChangedInTheFrame() {
+        send(InputEvent.EV_ABS, InputEvent.ABS_HAT0X, 1);
+        send(InputEvent.EV_KEY, InputEvent.BTN_TOP, 1);
+        send(InputEvent.EV_ABS, InputEvent.ABS_X, 128);
+        send(InputEvent.EV_ABS, InputEvent.ABS_HAT0X, -1);
+        send(InputEvent.EV_SYN, InputEvent.SYN_REPORT, 0);
+
+        assertThat(changes).containsExactly("button 2=true", "axis 2=-1");
+        assertThat(filter.getAxisEventCode(2)).isEqualTo(InputEvent.ABS_HAT0X);
+        assertThat(filter.getButtonEventCode(2)).isEqualTo(InputEvent.BTN_TOP);
+
+        changes.clear();
+        send(InputEvent.EV_ABS, InputEvent.ABS_HAT0X, -1);
+        send(InputEvent.EV_SYN, InputEvent.SYN_REPORT, 0);
+        assertThat(changes).isEmpty();
+    }
+
+    @Test
+    public void ignoresEventsOutsideItsMask() {
+        send(InputEvent.EV_MSC, InputEvent.MSC_SCAN, 0x90001);
+        send(InputEvent.EV_KEY, InputEvent.BTN_TRIGGER, 1);
+        send(InputEvent.EV_SYN, InputEvent.SYN_REPORT, 0);
+
+        assertThat(changes).containsExactly("button 0=true");
+    }
+
+    @Test
+    public void flagsChangesForLegacyListeners() {
+        List<boolean[]> flags = new ArrayList<>();
+        filter.addListener(new JoystickListener() {
+            @Override
+            public void joystickMoved(boolean[] axesChanged, JoystickState state, String source) {
+                flags.add(axesChanged.clone());
+            }
+
+            @Override
+            public void buttonChanged(boolean[] buttonsChanged, JoystickState state, String source) {
+                flags.add(buttonsChanged.clone());
+            }
+        });
+
+        send(InputEvent.EV_ABS, InputEvent.ABS_Y, 10);
+        send(InputEvent.EV_SYN, InputEvent.SYN_REPORT, 0);
+        send(InputEvent.EV_KEY, InputEvent.BTN_TRIGGER, 1);
+        send(InputEvent.EV_SYN, InputEvent.SYN_REPORT, 0);
+
+        assertThat(flags).hasSize(2);
+        assertThat(flags.get(0)).containsExactly(false, true, false);
+        assertThat(flags.get(1)).containsExactly(true, false, false);
+    }
+
+    @Test
+    public void loadsAxisParametersAndNormalizes() {
+        JoystickState[] last = new JoystickState[1];
+        filter.addListener(new RawJoystickListener() {
+            @Override
+            public void joystickMoved(int[] changedAxes, int count, JoystickState state, String source) {
+                last[0] = state;
+            }
+
+            @Override
+            public void buttonChanged(int[] changedButtons, int count, JoystickState state, String source) {
+            }
+        });
+
+        send(InputEvent.EV_ABS, InputEvent.ABS_X, 255);
+        send(InputEvent.EV_ABS, InputEvent.ABS_Y, 130);
+        send(InputEvent.EV_ABS, InputEvent.ABS_HAT0X, -1);
+        send(InputEvent.EV_SYN, InputEvent.SYN_REPORT, 0);
+
+        JoystickState state = last[0];
+        assertThat(state.getAxisMinValue(0)).isEqualTo(0);
+        assertThat(state.getAxisMaxValue(0)).isEqualTo(255);
+        assertThat(state.getAxisFlat(0)).isEqualTo(15);
+        assertThat(state.getNormalizedAxisState(0)).isEqualTo(1f);
+        /* within the flat of 15 around 127.5 */
+        assertThat(state.getNormalizedAxisState(1)).isZero();
+        assertThat(state.getNormalizedAxisState(2)).isEqualTo(-1f);
+
+        filter.setDeadzone(EvdevJoystickFilter.Deadzone.NONE);
+        filter.setCurve(1, AxisCurve.power(2));
+        send(InputEvent.EV_ABS, InputEvent.ABS_Y, 0);
+        send(InputEvent.EV_SYN, InputEvent.SYN_REPORT, 0);
+        assertThat(state.getNormalizedAxisState(1)).isEqualTo(-1f);
+        send(InputEvent.EV_ABS, InputEvent.ABS_Y, 191);
+        send(InputEvent.EV_SYN, InputEvent.SYN_REPORT, 0);
+        assertThat(state.getNormalizedAxisState(1)).isCloseTo(0.25f, within(0.01f));
+    }
+
+    @Test
+    public void appliesRadialDeadzoneToSticks() {
+        JoystickState[] last = new JoystickState[1];
+        filter.addListener(new RawJoystickListener() {
+            @Override
+            public void joystickMoved(int[] changedAxes, int count, JoystickState state, String source) {
+                last[0] = state;
+            }
+
+            @Override
+            public void buttonChanged(int[] changedButtons, int count, JoystickState state, String source) {
+            }
+        });
+        filter.setDeadzone(EvdevJoystickFilter.Deadzone.RADIAL);
+
+        send(InputEvent.EV_ABS, InputEvent.ABS_X, 135);
+        send(InputEvent.EV_ABS, InputEvent.ABS_Y, 135);
+        send(InputEvent.EV_SYN, InputEvent.SYN_REPORT, 0);
+        assertThat(last[0].getNormalizedAxisState(0)).isZero();
+        assertThat(last[0].getNormalizedAxisState(1)).isZero();
+
+        /* Y is within its flat, but the stick is not */
+        send(InputEvent.EV_ABS, InputEvent.ABS_X, 255);
+        send(InputEvent.EV_ABS, InputEvent.ABS_Y, 140);
+        send(InputEvent.EV_SYN, InputEvent.SYN_REPORT, 0);
+        assertThat(last[0].getNormalizedAxisState(0)).isGreaterThan(0.8f);
+        assertThat(last[0].getNormalizedAxisState(1)).isGreaterThan(0f);
+    }
+
+    private void send(int type, int code, int value) {
+        filter.event(InputEvent.of(0, type, code, value, "joystick"));
+    }
+}